@@ -23,18 +23,48 @@ public class ICEndpointConfigurer extends PropertyConfigurerSupport implements G
     public boolean configure(CamelContext camelContext, Object obj, String name, Object value, boolean ignoreCase) {
         ICEndpoint target = (ICEndpoint) obj;
         switch (ignoreCase ? name.toLowerCase() : name) {
+        case "backofferrorthreshold":
+        case "backoffErrorThreshold": target.setBackoffErrorThreshold(property(camelContext, int.class, value)); return true;
+        case "backoffidlethreshold":
+        case "backoffIdleThreshold": target.setBackoffIdleThreshold(property(camelContext, int.class, value)); return true;
+        case "backoffmultiplier":
+        case "backoffMultiplier": target.setBackoffMultiplier(property(camelContext, int.class, value)); return true;
+        case "batchmethod":
+        case "batchMethod": target.setBatchMethod(property(camelContext, java.lang.String.class, value)); return true;
+        case "batchsize":
+        case "batchSize": target.setBatchSize(property(camelContext, java.lang.Integer.class, value)); return true;
+        case "batchtimeout":
+        case "batchTimeout": target.setBatchTimeout(property(camelContext, java.lang.Long.class, value)); return true;
+        case "blockfetchsize":
+        case "blockFetchSize": target.setBlockFetchSize(property(camelContext, java.lang.Integer.class, value)); return true;
+        case "blockprefetch":
+        case "blockPrefetch": target.setBlockPrefetch(property(camelContext, java.lang.Integer.class, value)); return true;
         case "bridgeerrorhandler":
         case "bridgeErrorHandler": target.setBridgeErrorHandler(property(camelContext, boolean.class, value)); return true;
         case "canisterid":
         case "canisterId": target.setCanisterId(property(camelContext, java.lang.String.class, value)); return true;
+        case "canisterids":
+        case "canisterIds": target.setCanisterIds(property(camelContext, java.lang.String.class, value)); return true;
+        case "changedetection":
+        case "changeDetection": target.setChangeDetection(property(camelContext, java.lang.String.class, value)); return true;
+        case "changesonly":
+        case "changesOnly": target.setChangesOnly(property(camelContext, java.lang.Boolean.class, value)); return true;
+        case "consumerid":
+        case "consumerId": target.setConsumerId(property(camelContext, java.lang.String.class, value)); return true;
+        case "consumermode":
+        case "consumerMode": target.setConsumerMode(property(camelContext, java.lang.String.class, value)); return true;
+        case "delay": target.setDelay(property(camelContext, java.time.Duration.class, value).toMillis()); return true;
         case "effectivecanisterid":
         case "effectiveCanisterId": target.setEffectiveCanisterId(property(camelContext, java.lang.String.class, value)); return true;
         case "exceptionhandler":
         case "exceptionHandler": target.setExceptionHandler(property(camelContext, org.apache.camel.spi.ExceptionHandler.class, value)); return true;
         case "exchangepattern":
         case "exchangePattern": target.setExchangePattern(property(camelContext, org.apache.camel.ExchangePattern.class, value)); return true;
+        case "executionmode":
+        case "executionMode": target.setExecutionMode(property(camelContext, java.lang.String.class, value)); return true;
         case "fetchrootkey":
         case "fetchRootKey": target.setFetchRootKey(property(camelContext, java.lang.Boolean.class, value)); return true;
+        case "greedy": target.setGreedy(property(camelContext, boolean.class, value)); return true;
         case "identitytype":
         case "identityType": target.setIdentityType(property(camelContext, java.lang.String.class, value)); return true;
         case "idlfile":
@@ -43,20 +73,128 @@ public class ICEndpointConfigurer extends PropertyConfigurerSupport implements G
         case "inType": target.setInType(property(camelContext, java.lang.String.class, value)); return true;
         case "ingressexpiryduration":
         case "ingressExpiryDuration": target.setIngressExpiryDuration(property(camelContext, java.time.Duration.class, value)); return true;
+        case "initialdelay":
+        case "initialDelay": target.setInitialDelay(property(camelContext, java.time.Duration.class, value).toMillis()); return true;
         case "lazystartproducer":
         case "lazyStartProducer": target.setLazyStartProducer(property(camelContext, boolean.class, value)); return true;
         case "loadidl":
         case "loadIDL": target.setLoadIDL(property(camelContext, java.lang.Boolean.class, value)); return true;
+        case "maxinflight":
+        case "maxInFlight": target.setMaxInFlight(property(camelContext, java.lang.Integer.class, value)); return true;
+        case "maxinflightpolicy":
+        case "maxInFlightPolicy": target.setMaxInFlightPolicy(property(camelContext, java.lang.String.class, value)); return true;
+        case "maxinflightscope":
+        case "maxInFlightScope": target.setMaxInFlightScope(property(camelContext, java.lang.String.class, value)); return true;
+        case "maxinflighttimeout":
+        case "maxInFlightTimeout": target.setMaxInFlightTimeout(property(camelContext, java.lang.Long.class, value)); return true;
         case "method": target.setMethod(property(camelContext, java.lang.String.class, value)); return true;
+        case "offsetfile":
+        case "offsetFile": target.setOffsetFile(property(camelContext, java.lang.String.class, value)); return true;
+        case "offsetstore":
+        case "offsetStore": target.setOffsetStore(property(camelContext, org.ic4j.camel.ICOffsetStore.class, value)); return true;
         case "outclass":
         case "outClass": target.setOutClass(property(camelContext, java.lang.String.class, value)); return true;
         case "outtype":
         case "outType": target.setOutType(property(camelContext, java.lang.String.class, value)); return true;
         case "pemfile":
         case "pemFile": target.setPemFile(property(camelContext, java.lang.String.class, value)); return true;
+        case "plancachesize":
+        case "planCacheSize": target.setPlanCacheSize(property(camelContext, java.lang.Integer.class, value)); return true;
+        case "pollbackoff":
+        case "pollBackoff": target.setPollBackoff(property(camelContext, java.lang.String.class, value)); return true;
+        case "pollinitialdelay":
+        case "pollInitialDelay": target.setPollInitialDelay(property(camelContext, java.lang.Long.class, value)); return true;
+        case "pollinterval":
+        case "pollInterval": target.setPollInterval(property(camelContext, java.lang.Long.class, value)); return true;
+        case "polljitter":
+        case "pollJitter": target.setPollJitter(property(camelContext, java.lang.Double.class, value)); return true;
+        case "pollmaxinterval":
+        case "pollMaxInterval": target.setPollMaxInterval(property(camelContext, java.lang.Long.class, value)); return true;
+        case "pollmultiplier":
+        case "pollMultiplier": target.setPollMultiplier(property(camelContext, java.lang.Double.class, value)); return true;
+        case "pollstrategy":
+        case "pollStrategy": target.setPollStrategy(property(camelContext, org.apache.camel.spi.PollingConsumerPollStrategy.class, value)); return true;
+        case "polltimeout":
+        case "pollTimeout": target.setPollTimeout(property(camelContext, java.lang.Long.class, value)); return true;
+        case "pollingstrategy":
+        case "pollingStrategy": target.setPollingStrategy(property(camelContext, org.ic4j.camel.ICPollingStrategy.class, value)); return true;
+        case "querycache":
+        case "queryCache": target.setQueryCache(property(camelContext, java.lang.Boolean.class, value)); return true;
+        case "querycachemaxentries":
+        case "queryCacheMaxEntries": target.setQueryCacheMaxEntries(property(camelContext, java.lang.Integer.class, value)); return true;
+        case "querycachemaxweight":
+        case "queryCacheMaxWeight": target.setQueryCacheMaxWeight(property(camelContext, java.lang.Long.class, value)); return true;
+        case "querycachettl":
+        case "queryCacheTtl": target.setQueryCacheTtl(property(camelContext, java.lang.Long.class, value)); return true;
+        case "querycoalescing":
+        case "queryCoalescing": target.setQueryCoalescing(property(camelContext, java.lang.Boolean.class, value)); return true;
+        case "queryhedgemindelay":
+        case "queryHedgeMinDelay": target.setQueryHedgeMinDelay(property(camelContext, java.lang.Long.class, value)); return true;
+        case "queryhedgepercentile":
+        case "queryHedgePercentile": target.setQueryHedgePercentile(property(camelContext, java.lang.Double.class, value)); return true;
+        case "queryhedging":
+        case "queryHedging": target.setQueryHedging(property(camelContext, java.lang.Boolean.class, value)); return true;
+        case "ratelimit":
+        case "rateLimit": target.setRateLimit(property(camelContext, java.lang.Boolean.class, value)); return true;
+        case "ratelimitdecreasefactor":
+        case "rateLimitDecreaseFactor": target.setRateLimitDecreaseFactor(property(camelContext, java.lang.Double.class, value)); return true;
+        case "ratelimitinitialrate":
+        case "rateLimitInitialRate": target.setRateLimitInitialRate(property(camelContext, java.lang.Double.class, value)); return true;
+        case "ratelimitmaxdelay":
+        case "rateLimitMaxDelay": target.setRateLimitMaxDelay(property(camelContext, java.lang.Long.class, value)); return true;
+        case "ratelimitmaxrate":
+        case "rateLimitMaxRate": target.setRateLimitMaxRate(property(camelContext, java.lang.Double.class, value)); return true;
+        case "ratelimitminrate":
+        case "rateLimitMinRate": target.setRateLimitMinRate(property(camelContext, java.lang.Double.class, value)); return true;
+        case "repeatcount":
+        case "repeatCount": target.setRepeatCount(property(camelContext, long.class, value)); return true;
+        case "replicaejectduration":
+        case "replicaEjectDuration": target.setReplicaEjectDuration(property(camelContext, java.lang.Long.class, value)); return true;
+        case "replicaejectthreshold":
+        case "replicaEjectThreshold": target.setReplicaEjectThreshold(property(camelContext, java.lang.Integer.class, value)); return true;
+        case "replicaprobeinterval":
+        case "replicaProbeInterval": target.setReplicaProbeInterval(property(camelContext, java.lang.Long.class, value)); return true;
+        case "retryattempts":
+        case "retryAttempts": target.setRetryAttempts(property(camelContext, java.lang.Integer.class, value)); return true;
+        case "retryinitialdelay":
+        case "retryInitialDelay": target.setRetryInitialDelay(property(camelContext, java.lang.Long.class, value)); return true;
+        case "retryjitter":
+        case "retryJitter": target.setRetryJitter(property(camelContext, java.lang.Double.class, value)); return true;
+        case "retrymaxdelay":
+        case "retryMaxDelay": target.setRetryMaxDelay(property(camelContext, java.lang.Long.class, value)); return true;
+        case "retrymultiplier":
+        case "retryMultiplier": target.setRetryMultiplier(property(camelContext, java.lang.Double.class, value)); return true;
+        case "runlogginglevel":
+        case "runLoggingLevel": target.setRunLoggingLevel(property(camelContext, org.apache.camel.LoggingLevel.class, value)); return true;
+        case "scheduledexecutorservice":
+        case "scheduledExecutorService": target.setScheduledExecutorService(property(camelContext, java.util.concurrent.ScheduledExecutorService.class, value)); return true;
+        case "scheduler": target.setScheduler(property(camelContext, java.lang.Object.class, value)); return true;
+        case "schedulerproperties":
+        case "schedulerProperties": target.setSchedulerProperties(property(camelContext, java.util.Map.class, value)); return true;
+        case "sendemptymessagewhenidle":
+        case "sendEmptyMessageWhenIdle": target.setSendEmptyMessageWhenIdle(property(camelContext, boolean.class, value)); return true;
+        case "startindex":
+        case "startIndex": target.setStartIndex(property(camelContext, java.lang.Long.class, value)); return true;
+        case "startscheduler":
+        case "startScheduler": target.setStartScheduler(property(camelContext, boolean.class, value)); return true;
+        case "timeunit":
+        case "timeUnit": target.setTimeUnit(property(camelContext, java.util.concurrent.TimeUnit.class, value)); return true;
+        case "transport": target.setTransport(property(camelContext, org.ic4j.agent.ReplicaTransport.class, value)); return true;
+        case "transportconnectiontimetolive":
+        case "transportConnectionTimeToLive": target.setTransportConnectionTimeToLive(property(camelContext, java.lang.Integer.class, value)); return true;
+        case "transportfactory":
+        case "transportFactory": target.setTransportFactory(property(camelContext, org.ic4j.camel.ICTransportFactory.class, value)); return true;
+        case "transportmaxconnections":
+        case "transportMaxConnections": target.setTransportMaxConnections(property(camelContext, java.lang.Integer.class, value)); return true;
+        case "transportmaxconnectionsperroute":
+        case "transportMaxConnectionsPerRoute": target.setTransportMaxConnectionsPerRoute(property(camelContext, java.lang.Integer.class, value)); return true;
+        case "transporttimeout":
+        case "transportTimeout": target.setTransportTimeout(property(camelContext, java.lang.Integer.class, value)); return true;
         case "transporttype":
         case "transportType": target.setTransportType(property(camelContext, java.lang.String.class, value)); return true;
         case "url": target.setUrl(property(camelContext, java.lang.String.class, value)); return true;
+        case "usefixeddelay":
+        case "useFixedDelay": target.setUseFixedDelay(property(camelContext, boolean.class, value)); return true;
         case "waitersleep":
         case "waiterSleep": target.setWaiterSleep(property(camelContext, java.lang.Integer.class, value)); return true;
         case "waitertimeout":
@@ -68,18 +206,48 @@ public class ICEndpointConfigurer extends PropertyConfigurerSupport implements G
     @Override
     public Class<?> getOptionType(String name, boolean ignoreCase) {
         switch (ignoreCase ? name.toLowerCase() : name) {
+        case "backofferrorthreshold":
+        case "backoffErrorThreshold": return int.class;
+        case "backoffidlethreshold":
+        case "backoffIdleThreshold": return int.class;
+        case "backoffmultiplier":
+        case "backoffMultiplier": return int.class;
+        case "batchmethod":
+        case "batchMethod": return java.lang.String.class;
+        case "batchsize":
+        case "batchSize": return java.lang.Integer.class;
+        case "batchtimeout":
+        case "batchTimeout": return java.lang.Long.class;
+        case "blockfetchsize":
+        case "blockFetchSize": return java.lang.Integer.class;
+        case "blockprefetch":
+        case "blockPrefetch": return java.lang.Integer.class;
         case "bridgeerrorhandler":
         case "bridgeErrorHandler": return boolean.class;
         case "canisterid":
         case "canisterId": return java.lang.String.class;
+        case "canisterids":
+        case "canisterIds": return java.lang.String.class;
+        case "changedetection":
+        case "changeDetection": return java.lang.String.class;
+        case "changesonly":
+        case "changesOnly": return java.lang.Boolean.class;
+        case "consumerid":
+        case "consumerId": return java.lang.String.class;
+        case "consumermode":
+        case "consumerMode": return java.lang.String.class;
+        case "delay": return long.class;
         case "effectivecanisterid":
         case "effectiveCanisterId": return java.lang.String.class;
         case "exceptionhandler":
         case "exceptionHandler": return org.apache.camel.spi.ExceptionHandler.class;
         case "exchangepattern":
         case "exchangePattern": return org.apache.camel.ExchangePattern.class;
+        case "executionmode":
+        case "executionMode": return java.lang.String.class;
         case "fetchrootkey":
         case "fetchRootKey": return java.lang.Boolean.class;
+        case "greedy": return boolean.class;
         case "identitytype":
         case "identityType": return java.lang.String.class;
         case "idlfile":
@@ -88,20 +256,128 @@ public class ICEndpointConfigurer extends PropertyConfigurerSupport implements G
         case "inType": return java.lang.String.class;
         case "ingressexpiryduration":
         case "ingressExpiryDuration": return java.time.Duration.class;
+        case "initialdelay":
+        case "initialDelay": return long.class;
         case "lazystartproducer":
         case "lazyStartProducer": return boolean.class;
         case "loadidl":
         case "loadIDL": return java.lang.Boolean.class;
+        case "maxinflight":
+        case "maxInFlight": return java.lang.Integer.class;
+        case "maxinflightpolicy":
+        case "maxInFlightPolicy": return java.lang.String.class;
+        case "maxinflightscope":
+        case "maxInFlightScope": return java.lang.String.class;
+        case "maxinflighttimeout":
+        case "maxInFlightTimeout": return java.lang.Long.class;
         case "method": return java.lang.String.class;
+        case "offsetfile":
+        case "offsetFile": return java.lang.String.class;
+        case "offsetstore":
+        case "offsetStore": return org.ic4j.camel.ICOffsetStore.class;
         case "outclass":
         case "outClass": return java.lang.String.class;
         case "outtype":
         case "outType": return java.lang.String.class;
         case "pemfile":
         case "pemFile": return java.lang.String.class;
+        case "plancachesize":
+        case "planCacheSize": return java.lang.Integer.class;
+        case "pollbackoff":
+        case "pollBackoff": return java.lang.String.class;
+        case "pollinitialdelay":
+        case "pollInitialDelay": return java.lang.Long.class;
+        case "pollinterval":
+        case "pollInterval": return java.lang.Long.class;
+        case "polljitter":
+        case "pollJitter": return java.lang.Double.class;
+        case "pollmaxinterval":
+        case "pollMaxInterval": return java.lang.Long.class;
+        case "pollmultiplier":
+        case "pollMultiplier": return java.lang.Double.class;
+        case "pollstrategy":
+        case "pollStrategy": return org.apache.camel.spi.PollingConsumerPollStrategy.class;
+        case "polltimeout":
+        case "pollTimeout": return java.lang.Long.class;
+        case "pollingstrategy":
+        case "pollingStrategy": return org.ic4j.camel.ICPollingStrategy.class;
+        case "querycache":
+        case "queryCache": return java.lang.Boolean.class;
+        case "querycachemaxentries":
+        case "queryCacheMaxEntries": return java.lang.Integer.class;
+        case "querycachemaxweight":
+        case "queryCacheMaxWeight": return java.lang.Long.class;
+        case "querycachettl":
+        case "queryCacheTtl": return java.lang.Long.class;
+        case "querycoalescing":
+        case "queryCoalescing": return java.lang.Boolean.class;
+        case "queryhedgemindelay":
+        case "queryHedgeMinDelay": return java.lang.Long.class;
+        case "queryhedgepercentile":
+        case "queryHedgePercentile": return java.lang.Double.class;
+        case "queryhedging":
+        case "queryHedging": return java.lang.Boolean.class;
+        case "ratelimit":
+        case "rateLimit": return java.lang.Boolean.class;
+        case "ratelimitdecreasefactor":
+        case "rateLimitDecreaseFactor": return java.lang.Double.class;
+        case "ratelimitinitialrate":
+        case "rateLimitInitialRate": return java.lang.Double.class;
+        case "ratelimitmaxdelay":
+        case "rateLimitMaxDelay": return java.lang.Long.class;
+        case "ratelimitmaxrate":
+        case "rateLimitMaxRate": return java.lang.Double.class;
+        case "ratelimitminrate":
+        case "rateLimitMinRate": return java.lang.Double.class;
+        case "repeatcount":
+        case "repeatCount": return long.class;
+        case "replicaejectduration":
+        case "replicaEjectDuration": return java.lang.Long.class;
+        case "replicaejectthreshold":
+        case "replicaEjectThreshold": return java.lang.Integer.class;
+        case "replicaprobeinterval":
+        case "replicaProbeInterval": return java.lang.Long.class;
+        case "retryattempts":
+        case "retryAttempts": return java.lang.Integer.class;
+        case "retryinitialdelay":
+        case "retryInitialDelay": return java.lang.Long.class;
+        case "retryjitter":
+        case "retryJitter": return java.lang.Double.class;
+        case "retrymaxdelay":
+        case "retryMaxDelay": return java.lang.Long.class;
+        case "retrymultiplier":
+        case "retryMultiplier": return java.lang.Double.class;
+        case "runlogginglevel":
+        case "runLoggingLevel": return org.apache.camel.LoggingLevel.class;
+        case "scheduledexecutorservice":
+        case "scheduledExecutorService": return java.util.concurrent.ScheduledExecutorService.class;
+        case "scheduler": return java.lang.Object.class;
+        case "schedulerproperties":
+        case "schedulerProperties": return java.util.Map.class;
+        case "sendemptymessagewhenidle":
+        case "sendEmptyMessageWhenIdle": return boolean.class;
+        case "startindex":
+        case "startIndex": return java.lang.Long.class;
+        case "startscheduler":
+        case "startScheduler": return boolean.class;
+        case "timeunit":
+        case "timeUnit": return java.util.concurrent.TimeUnit.class;
+        case "transport": return org.ic4j.agent.ReplicaTransport.class;
+        case "transportconnectiontimetolive":
+        case "transportConnectionTimeToLive": return java.lang.Integer.class;
+        case "transportfactory":
+        case "transportFactory": return org.ic4j.camel.ICTransportFactory.class;
+        case "transportmaxconnections":
+        case "transportMaxConnections": return java.lang.Integer.class;
+        case "transportmaxconnectionsperroute":
+        case "transportMaxConnectionsPerRoute": return java.lang.Integer.class;
+        case "transporttimeout":
+        case "transportTimeout": return java.lang.Integer.class;
         case "transporttype":
         case "transportType": return java.lang.String.class;
         case "url": return java.lang.String.class;
+        case "usefixeddelay":
+        case "useFixedDelay": return boolean.class;
         case "waitersleep":
         case "waiterSleep": return java.lang.Integer.class;
         case "waitertimeout":
@@ -114,18 +390,48 @@ public class ICEndpointConfigurer extends PropertyConfigurerSupport implements G
     public Object getOptionValue(Object obj, String name, boolean ignoreCase) {
         ICEndpoint target = (ICEndpoint) obj;
         switch (ignoreCase ? name.toLowerCase() : name) {
+        case "backofferrorthreshold":
+        case "backoffErrorThreshold": return target.getBackoffErrorThreshold();
+        case "backoffidlethreshold":
+        case "backoffIdleThreshold": return target.getBackoffIdleThreshold();
+        case "backoffmultiplier":
+        case "backoffMultiplier": return target.getBackoffMultiplier();
+        case "batchmethod":
+        case "batchMethod": return target.getBatchMethod();
+        case "batchsize":
+        case "batchSize": return target.getBatchSize();
+        case "batchtimeout":
+        case "batchTimeout": return target.getBatchTimeout();
+        case "blockfetchsize":
+        case "blockFetchSize": return target.getBlockFetchSize();
+        case "blockprefetch":
+        case "blockPrefetch": return target.getBlockPrefetch();
         case "bridgeerrorhandler":
         case "bridgeErrorHandler": return target.isBridgeErrorHandler();
         case "canisterid":
         case "canisterId": return target.getCanisterId();
+        case "canisterids":
+        case "canisterIds": return target.getCanisterIds();
+        case "changedetection":
+        case "changeDetection": return target.getChangeDetection();
+        case "changesonly":
+        case "changesOnly": return target.getChangesOnly();
+        case "consumerid":
+        case "consumerId": return target.getConsumerId();
+        case "consumermode":
+        case "consumerMode": return target.getConsumerMode();
+        case "delay": return target.getDelay();
         case "effectivecanisterid":
         case "effectiveCanisterId": return target.getEffectiveCanisterId();
         case "exceptionhandler":
         case "exceptionHandler": return target.getExceptionHandler();
         case "exchangepattern":
         case "exchangePattern": return target.getExchangePattern();
+        case "executionmode":
+        case "executionMode": return target.getExecutionMode();
         case "fetchrootkey":
         case "fetchRootKey": return target.getFetchRootKey();
+        case "greedy": return target.isGreedy();
         case "identitytype":
         case "identityType": return target.getIdentityType();
         case "idlfile":
@@ -134,20 +440,128 @@ public class ICEndpointConfigurer extends PropertyConfigurerSupport implements G
         case "inType": return target.getInType();
         case "ingressexpiryduration":
         case "ingressExpiryDuration": return target.getIngressExpiryDuration();
+        case "initialdelay":
+        case "initialDelay": return target.getInitialDelay();
         case "lazystartproducer":
         case "lazyStartProducer": return target.isLazyStartProducer();
         case "loadidl":
         case "loadIDL": return target.getLoadIDL();
+        case "maxinflight":
+        case "maxInFlight": return target.getMaxInFlight();
+        case "maxinflightpolicy":
+        case "maxInFlightPolicy": return target.getMaxInFlightPolicy();
+        case "maxinflightscope":
+        case "maxInFlightScope": return target.getMaxInFlightScope();
+        case "maxinflighttimeout":
+        case "maxInFlightTimeout": return target.getMaxInFlightTimeout();
         case "method": return target.getMethod();
+        case "offsetfile":
+        case "offsetFile": return target.getOffsetFile();
+        case "offsetstore":
+        case "offsetStore": return target.getOffsetStore();
         case "outclass":
         case "outClass": return target.getOutClass();
         case "outtype":
         case "outType": return target.getOutType();
         case "pemfile":
         case "pemFile": return target.getPemFile();
+        case "plancachesize":
+        case "planCacheSize": return target.getPlanCacheSize();
+        case "pollbackoff":
+        case "pollBackoff": return target.getPollBackoff();
+        case "pollinitialdelay":
+        case "pollInitialDelay": return target.getPollInitialDelay();
+        case "pollinterval":
+        case "pollInterval": return target.getPollInterval();
+        case "polljitter":
+        case "pollJitter": return target.getPollJitter();
+        case "pollmaxinterval":
+        case "pollMaxInterval": return target.getPollMaxInterval();
+        case "pollmultiplier":
+        case "pollMultiplier": return target.getPollMultiplier();
+        case "pollstrategy":
+        case "pollStrategy": return target.getPollStrategy();
+        case "polltimeout":
+        case "pollTimeout": return target.getPollTimeout();
+        case "pollingstrategy":
+        case "pollingStrategy": return target.getPollingStrategy();
+        case "querycache":
+        case "queryCache": return target.getQueryCache();
+        case "querycachemaxentries":
+        case "queryCacheMaxEntries": return target.getQueryCacheMaxEntries();
+        case "querycachemaxweight":
+        case "queryCacheMaxWeight": return target.getQueryCacheMaxWeight();
+        case "querycachettl":
+        case "queryCacheTtl": return target.getQueryCacheTtl();
+        case "querycoalescing":
+        case "queryCoalescing": return target.getQueryCoalescing();
+        case "queryhedgemindelay":
+        case "queryHedgeMinDelay": return target.getQueryHedgeMinDelay();
+        case "queryhedgepercentile":
+        case "queryHedgePercentile": return target.getQueryHedgePercentile();
+        case "queryhedging":
+        case "queryHedging": return target.getQueryHedging();
+        case "ratelimit":
+        case "rateLimit": return target.getRateLimit();
+        case "ratelimitdecreasefactor":
+        case "rateLimitDecreaseFactor": return target.getRateLimitDecreaseFactor();
+        case "ratelimitinitialrate":
+        case "rateLimitInitialRate": return target.getRateLimitInitialRate();
+        case "ratelimitmaxdelay":
+        case "rateLimitMaxDelay": return target.getRateLimitMaxDelay();
+        case "ratelimitmaxrate":
+        case "rateLimitMaxRate": return target.getRateLimitMaxRate();
+        case "ratelimitminrate":
+        case "rateLimitMinRate": return target.getRateLimitMinRate();
+        case "repeatcount":
+        case "repeatCount": return target.getRepeatCount();
+        case "replicaejectduration":
+        case "replicaEjectDuration": return target.getReplicaEjectDuration();
+        case "replicaejectthreshold":
+        case "replicaEjectThreshold": return target.getReplicaEjectThreshold();
+        case "replicaprobeinterval":
+        case "replicaProbeInterval": return target.getReplicaProbeInterval();
+        case "retryattempts":
+        case "retryAttempts": return target.getRetryAttempts();
+        case "retryinitialdelay":
+        case "retryInitialDelay": return target.getRetryInitialDelay();
+        case "retryjitter":
+        case "retryJitter": return target.getRetryJitter();
+        case "retrymaxdelay":
+        case "retryMaxDelay": return target.getRetryMaxDelay();
+        case "retrymultiplier":
+        case "retryMultiplier": return target.getRetryMultiplier();
+        case "runlogginglevel":
+        case "runLoggingLevel": return target.getRunLoggingLevel();
+        case "scheduledexecutorservice":
+        case "scheduledExecutorService": return target.getScheduledExecutorService();
+        case "scheduler": return target.getScheduler();
+        case "schedulerproperties":
+        case "schedulerProperties": return target.getSchedulerProperties();
+        case "sendemptymessagewhenidle":
+        case "sendEmptyMessageWhenIdle": return target.isSendEmptyMessageWhenIdle();
+        case "startindex":
+        case "startIndex": return target.getStartIndex();
+        case "startscheduler":
+        case "startScheduler": return target.isStartScheduler();
+        case "timeunit":
+        case "timeUnit": return target.getTimeUnit();
+        case "transport": return target.getTransport();
+        case "transportconnectiontimetolive":
+        case "transportConnectionTimeToLive": return target.getTransportConnectionTimeToLive();
+        case "transportfactory":
+        case "transportFactory": return target.getTransportFactory();
+        case "transportmaxconnections":
+        case "transportMaxConnections": return target.getTransportMaxConnections();
+        case "transportmaxconnectionsperroute":
+        case "transportMaxConnectionsPerRoute": return target.getTransportMaxConnectionsPerRoute();
+        case "transporttimeout":
+        case "transportTimeout": return target.getTransportTimeout();
         case "transporttype":
         case "transportType": return target.getTransportType();
         case "url": return target.getUrl();
+        case "usefixeddelay":
+        case "useFixedDelay": return target.isUseFixedDelay();
         case "waitersleep":
         case "waiterSleep": return target.getWaiterSleep();
         case "waitertimeout":
@@ -155,5 +569,14 @@ public class ICEndpointConfigurer extends PropertyConfigurerSupport implements G
         default: return null;
         }
     }
+
+    @Override
+    public Object getCollectionValueType(Object target, String name, boolean ignoreCase) {
+        switch (ignoreCase ? name.toLowerCase() : name) {
+        case "schedulerproperties":
+        case "schedulerProperties": return java.lang.Object.class;
+        default: return null;
+        }
+    }
 }
 
@@ -23,31 +23,104 @@ public class ICEndpointUriFactory extends org.apache.camel.support.component.End
     private static final Set<String> SECRET_PROPERTY_NAMES;
     private static final Map<String, String> MULTI_VALUE_PREFIXES;
     static {
-        Set<String> props = new HashSet<>(21);
+        Set<String> props = new HashSet<>(92);
+        props.add("backoffErrorThreshold");
+        props.add("backoffIdleThreshold");
+        props.add("backoffMultiplier");
+        props.add("batchMethod");
+        props.add("batchSize");
+        props.add("batchTimeout");
+        props.add("blockFetchSize");
+        props.add("blockPrefetch");
         props.add("bridgeErrorHandler");
         props.add("canisterId");
+        props.add("canisterIds");
+        props.add("changeDetection");
+        props.add("changesOnly");
+        props.add("consumerId");
+        props.add("consumerMode");
+        props.add("delay");
         props.add("effectiveCanisterId");
         props.add("exceptionHandler");
         props.add("exchangePattern");
+        props.add("executionMode");
         props.add("fetchRootKey");
+        props.add("greedy");
         props.add("identityType");
         props.add("idlFile");
         props.add("inType");
         props.add("ingressExpiryDuration");
+        props.add("initialDelay");
         props.add("lazyStartProducer");
         props.add("loadIDL");
+        props.add("maxInFlight");
+        props.add("maxInFlightPolicy");
+        props.add("maxInFlightScope");
+        props.add("maxInFlightTimeout");
         props.add("method");
         props.add("methodType");
+        props.add("offsetFile");
+        props.add("offsetStore");
         props.add("outClass");
         props.add("outType");
         props.add("pemFile");
+        props.add("planCacheSize");
+        props.add("pollBackoff");
+        props.add("pollInitialDelay");
+        props.add("pollInterval");
+        props.add("pollJitter");
+        props.add("pollMaxInterval");
+        props.add("pollMultiplier");
+        props.add("pollStrategy");
+        props.add("pollTimeout");
+        props.add("pollingStrategy");
+        props.add("queryCache");
+        props.add("queryCacheMaxEntries");
+        props.add("queryCacheMaxWeight");
+        props.add("queryCacheTtl");
+        props.add("queryCoalescing");
+        props.add("queryHedgeMinDelay");
+        props.add("queryHedgePercentile");
+        props.add("queryHedging");
+        props.add("rateLimit");
+        props.add("rateLimitDecreaseFactor");
+        props.add("rateLimitInitialRate");
+        props.add("rateLimitMaxDelay");
+        props.add("rateLimitMaxRate");
+        props.add("rateLimitMinRate");
+        props.add("repeatCount");
+        props.add("replicaEjectDuration");
+        props.add("replicaEjectThreshold");
+        props.add("replicaProbeInterval");
+        props.add("retryAttempts");
+        props.add("retryInitialDelay");
+        props.add("retryJitter");
+        props.add("retryMaxDelay");
+        props.add("retryMultiplier");
+        props.add("runLoggingLevel");
+        props.add("scheduledExecutorService");
+        props.add("scheduler");
+        props.add("schedulerProperties");
+        props.add("sendEmptyMessageWhenIdle");
+        props.add("startIndex");
+        props.add("startScheduler");
+        props.add("timeUnit");
+        props.add("transport");
+        props.add("transportConnectionTimeToLive");
+        props.add("transportFactory");
+        props.add("transportMaxConnections");
+        props.add("transportMaxConnectionsPerRoute");
+        props.add("transportTimeout");
         props.add("transportType");
         props.add("url");
+        props.add("useFixedDelay");
         props.add("waiterSleep");
         props.add("waiterTimeout");
         PROPERTY_NAMES = Collections.unmodifiableSet(props);
         SECRET_PROPERTY_NAMES = Collections.emptySet();
-        MULTI_VALUE_PREFIXES = Collections.emptyMap();
+        Map<String, String> prefixes = new HashMap<>(1);
+        prefixes.put("schedulerProperties", "scheduler.");
+        MULTI_VALUE_PREFIXES = Collections.unmodifiableMap(prefixes);
     }
 
     @Override
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Generates Java records and Candid codecs from .did files, and registers
+ * the codecs in META-INF/services/org.ic4j.camel.ICCodec so ic endpoints
+ * use them instead of the reflective Pojo serializers.
+ */
+@Mojo(name = "generate", defaultPhase = LifecyclePhase.GENERATE_SOURCES, threadSafe = true)
+public class CandidGenerateMojo extends AbstractMojo {
+
+	@Parameter(defaultValue = "${project}", readonly = true, required = true)
+	private MavenProject project;
+
+	/**
+	 * Directory searched for .did files when didFiles is not set.
+	 */
+	@Parameter(defaultValue = "${project.basedir}/src/main/candid")
+	private File sourceDirectory;
+
+	/**
+	 * The .did files to generate codecs for, instead of all .did files of the
+	 * sourceDirectory.
+	 */
+	@Parameter
+	private List<File> didFiles;
+
+	/**
+	 * Package of the generated classes.
+	 */
+	@Parameter(required = true)
+	private String packageName;
+
+	@Parameter(defaultValue = "${project.build.directory}/generated-sources/ic4j")
+	private File outputDirectory;
+
+	@Parameter(defaultValue = "${project.build.directory}/generated-resources/ic4j")
+	private File resourceDirectory;
+
+	@Parameter(property = "ic4j.codegen.skip", defaultValue = "false")
+	private boolean skip;
+
+	@Override
+	public void execute() throws MojoExecutionException {
+		if (this.skip) {
+			this.getLog().info("Skipping Candid code generation");
+			return;
+		}
+
+		List<File> files = this.getDidFiles();
+
+		if (files.isEmpty()) {
+			this.getLog().warn("No .did files found in " + this.sourceDirectory);
+			return;
+		}
+
+		CodecGenerator generator = new CodecGenerator(this.packageName);
+
+		try {
+			for (File file : files) {
+				DidParser parser = new DidParser(file.getName(), Files.readString(file.toPath(), StandardCharsets.UTF_8));
+				generator.add(file.getName(), parser.parse());
+
+				for (String imported : parser.getImports())
+					this.getLog().warn(file.getName() + " imports " + imported + ", add it to didFiles to generate its types");
+			}
+
+			Map<String, String> sources = generator.generate();
+
+			for (String warning : generator.getWarnings())
+				this.getLog().warn(warning);
+
+			for (Map.Entry<String, String> source : sources.entrySet()) {
+				File directory = source.getKey().startsWith("META-INF/") ? this.resourceDirectory : this.outputDirectory;
+				this.write(directory.toPath().resolve(source.getKey()), source.getValue());
+			}
+
+			this.getLog().info("Generated " + generator.getTypeCount() + " Candid types from " + files.size() + " .did files");
+		} catch (IOException | IllegalArgumentException e) {
+			throw new MojoExecutionException("Cannot generate Candid codecs: " + e.getMessage(), e);
+		}
+
+		this.project.addCompileSourceRoot(this.outputDirectory.getPath());
+
+		Resource resource = new Resource();
+		resource.setDirectory(this.resourceDirectory.getPath());
+		this.project.addResource(resource);
+	}
+
+	private List<File> getDidFiles() throws MojoExecutionException {
+		if (this.didFiles != null && !this.didFiles.isEmpty())
+			return this.didFiles;
+
+		List<File> files = new ArrayList<File>();
+
+		if (!this.sourceDirectory.isDirectory())
+			return files;
+
+		try (Stream<Path> paths = Files.walk(this.sourceDirectory.toPath())) {
+			paths.filter(path -> path.toString().endsWith(".did")).sorted().forEach(path -> files.add(path.toFile()));
+		} catch (IOException e) {
+			throw new MojoExecutionException("Cannot list " + this.sourceDirectory, e);
+		}
+
+		return files;
+	}
+
+	// unchanged files keep their timestamp, so incremental compilation skips them
+	private void write(Path path, String content) throws IOException {
+		byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+
+		if (Files.exists(path) && Arrays.equals(Files.readAllBytes(path), bytes))
+			return;
+
+		Files.createDirectories(path.getParent());
+		Files.write(path, bytes);
+	}
+}
@@ -0,0 +1,920 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a Java type and an ICCodec for every named record and variant of
+ * a .did file, and for the anonymous records and variants they contain.
+ * Records become Java records, variants without payload become enums and
+ * other variants sealed interfaces with one record per case.
+ *
+ * The codecs write values straight into an ICCandidWriter after a type table
+ * computed here, and read them field by field from an ICCandidReader, so no
+ * reflection and no intermediate IDLValue tree is involved. Recursive types,
+ * func and service references are skipped with a warning, endpoints fall
+ * back to the Pojo serializers for them.
+ */
+final class CodecGenerator {
+
+	static final String CODEC_INTERFACE = "org.ic4j.camel.ICCodec";
+
+	private static final Map<String, Integer> TYPE_CODES = new HashMap<String, Integer>();
+
+	private static final Map<String, String[]> JAVA_TYPES = new HashMap<String, String[]>();
+
+	private static final Set<String> KEYWORDS = Set.of("abstract", "assert", "boolean", "break", "byte", "case", "catch",
+			"char", "class", "const", "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally",
+			"float", "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native", "new",
+			"package", "private", "protected", "public", "return", "short", "static", "strictfp", "super", "switch",
+			"synchronized", "this", "throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false",
+			"null", "var", "yield", "record", "sealed", "permits", "_");
+
+	// record components may not override these Object methods
+	private static final Set<String> OBJECT_METHODS = Set.of("clone", "finalize", "getClass", "hashCode", "notify",
+			"notifyAll", "toString", "wait");
+
+	static {
+		String[] names = { "null", "bool", "nat", "int", "nat8", "nat16", "nat32", "nat64", "int8", "int16", "int32",
+				"int64", "float32", "float64", "text", "reserved", "empty" };
+
+		for (int i = 0; i < names.length; i++)
+			TYPE_CODES.put(names[i], -1 - i);
+
+		TYPE_CODES.put("principal", -24);
+
+		JAVA_TYPES.put("bool", new String[] { "boolean", "Boolean" });
+		JAVA_TYPES.put("nat", new String[] { "BigInteger", "BigInteger" });
+		JAVA_TYPES.put("int", new String[] { "BigInteger", "BigInteger" });
+		JAVA_TYPES.put("nat8", new String[] { "byte", "Byte" });
+		JAVA_TYPES.put("nat16", new String[] { "short", "Short" });
+		JAVA_TYPES.put("nat32", new String[] { "int", "Integer" });
+		JAVA_TYPES.put("nat64", new String[] { "long", "Long" });
+		JAVA_TYPES.put("int8", new String[] { "byte", "Byte" });
+		JAVA_TYPES.put("int16", new String[] { "short", "Short" });
+		JAVA_TYPES.put("int32", new String[] { "int", "Integer" });
+		JAVA_TYPES.put("int64", new String[] { "long", "Long" });
+		JAVA_TYPES.put("float32", new String[] { "float", "Float" });
+		JAVA_TYPES.put("float64", new String[] { "double", "Double" });
+		JAVA_TYPES.put("text", new String[] { "String", "String" });
+		JAVA_TYPES.put("principal", new String[] { "Principal", "Principal" });
+	}
+
+	private final String packageName;
+
+	private final Map<String, DidType> definitions = new LinkedHashMap<String, DidType>();
+
+	// source file of each definition, for the generated comments
+	private final Map<String, String> sources = new HashMap<String, String>();
+
+	// Java type of each generated record and variant, named or anonymous
+	private final Map<DidType, String> classNames = new IdentityHashMap<DidType, String>();
+
+	private final Set<String> usedNames = new HashSet<String>();
+
+	private final List<String> warnings = new ArrayList<String>();
+
+	private int typeCount;
+
+	private int variable;
+
+	CodecGenerator(String packageName) {
+		this.packageName = packageName;
+	}
+
+	/**
+	 * Adds the definitions of one .did file. All files share the package, so
+	 * a name may only be defined once.
+	 */
+	void add(String source, Map<String, DidType> definitions) {
+		for (Map.Entry<String, DidType> definition : definitions.entrySet()) {
+			if (this.definitions.containsKey(definition.getKey()))
+				throw new IllegalArgumentException("Type " + definition.getKey() + " of " + source + " is already defined in "
+						+ this.sources.get(definition.getKey()));
+
+			this.definitions.put(definition.getKey(), definition.getValue());
+			this.sources.put(definition.getKey(), source);
+		}
+	}
+
+	/**
+	 * @return the types that were skipped and why
+	 */
+	List<String> getWarnings() {
+		return this.warnings;
+	}
+
+	/**
+	 * @return the number of Java types, named or nested, of the last generate
+	 */
+	int getTypeCount() {
+		return this.typeCount;
+	}
+
+	/**
+	 * @return the generated sources by relative path, and the service file
+	 *         listing the codecs
+	 */
+	Map<String, String> generate() {
+		List<String> roots = new ArrayList<String>();
+
+		for (Map.Entry<String, DidType> definition : this.definitions.entrySet()) {
+			DidType type = definition.getValue();
+
+			// aliases of other named types share their class
+			if (type.kind != DidType.Kind.RECORD && type.kind != DidType.Kind.VARIANT)
+				continue;
+
+			String reason = this.unsupported(type, new HashSet<String>(Set.of(definition.getKey())));
+
+			if (reason != null) {
+				this.warnings.add("Skipping " + definition.getKey() + ": " + reason);
+				continue;
+			}
+
+			roots.add(definition.getKey());
+			this.classNames.put(type, this.uniqueName(className(definition.getKey())));
+		}
+
+		for (String root : roots)
+			this.nameNested(this.classNames.get(this.definitions.get(root)), this.definitions.get(root));
+
+		Map<String, String> files = new LinkedHashMap<String, String>();
+		StringBuilder services = new StringBuilder();
+
+		String directory = this.packageName.replace('.', '/') + "/";
+		Map<DidType, String> classes = this.orderedClasses();
+
+		for (Map.Entry<DidType, String> entry : classes.entrySet()) {
+			DidType type = entry.getKey();
+			String className = entry.getValue();
+			String source = this.sourceOf(type);
+
+			files.put(directory + className + ".java", this.typeSource(source, className, type));
+			files.put(directory + className + "Codec.java", this.codecSource(source, className, type));
+
+			services.append(this.qualified(className + "Codec")).append('\n');
+		}
+
+		files.put("META-INF/services/" + CODEC_INTERFACE, services.toString());
+		this.typeCount = classes.size();
+
+		return files;
+	}
+
+	// generated classes in definition order, each root followed by its nested types
+	private Map<DidType, String> orderedClasses() {
+		Map<DidType, String> ordered = new LinkedHashMap<DidType, String>();
+
+		for (DidType definition : this.definitions.values())
+			this.collectClasses(definition, ordered);
+
+		return ordered;
+	}
+
+	private void collectClasses(DidType type, Map<DidType, String> ordered) {
+		if (type.kind == DidType.Kind.REFERENCE || !this.classNames.containsKey(type) && type.fields != null)
+			return;
+
+		if (this.classNames.containsKey(type)) {
+			if (ordered.containsKey(type))
+				return;
+
+			ordered.put(type, this.classNames.get(type));
+		}
+
+		if (type.element != null)
+			this.collectClasses(type.element, ordered);
+
+		if (type.fields != null)
+			for (DidType.Field field : type.fields)
+				this.collectClasses(field.type(), ordered);
+	}
+
+	private String sourceOf(DidType type) {
+		for (Map.Entry<String, DidType> definition : this.definitions.entrySet())
+			if (this.contains(definition.getValue(), type))
+				return this.sources.get(definition.getKey());
+
+		return "";
+	}
+
+	private boolean contains(DidType parent, DidType type) {
+		if (parent == type)
+			return true;
+
+		if (parent.element != null && this.contains(parent.element, type))
+			return true;
+
+		if (parent.fields != null)
+			for (DidType.Field field : parent.fields)
+				if (this.contains(field.type(), type))
+					return true;
+
+		return false;
+	}
+
+	/**
+	 * @return why the type cannot be generated, or null when it can
+	 */
+	private String unsupported(DidType type, Set<String> visiting) {
+		switch (type.kind) {
+		case PRIMITIVE:
+			if (type.name.equals("null") || type.name.equals("reserved") || type.name.equals("empty"))
+				return type.name + " is only supported as a variant case";
+			return null;
+		case REFERENCE: {
+			DidType definition = this.definitions.get(type.name);
+
+			if (definition == null)
+				return "unknown type " + type.name;
+
+			if (!visiting.add(type.name))
+				return "recursive type " + type.name;
+
+			String reason = this.unsupported(definition, visiting);
+			visiting.remove(type.name);
+
+			return reason;
+		}
+		case OPT: {
+			DidType element = this.resolve(type.element);
+
+			if (element.kind == DidType.Kind.OPT)
+				return "nested opt";
+
+			return this.unsupported(type.element, visiting);
+		}
+		case VEC:
+			return this.unsupported(type.element, visiting);
+		case RECORD:
+			for (DidType.Field field : type.fields) {
+				String reason = this.unsupported(field.type(), visiting);
+
+				if (reason != null)
+					return reason;
+			}
+			return this.duplicateHash(type);
+		case VARIANT:
+			for (DidType.Field field : type.fields) {
+				if (isUnit(this.resolve(field.type())))
+					continue;
+
+				String reason = this.unsupported(field.type(), visiting);
+
+				if (reason != null)
+					return reason;
+			}
+			return this.duplicateHash(type);
+		default:
+			return type.kind.name().toLowerCase() + " references are not supported";
+		}
+	}
+
+	private String duplicateHash(DidType type) {
+		Set<Long> hashes = new HashSet<Long>();
+
+		for (DidType.Field field : type.fields)
+			if (!hashes.add(field.hash()))
+				return "field " + label(field) + " has the hash of another field";
+
+		return null;
+	}
+
+	private DidType resolve(DidType type) {
+		Set<String> seen = new HashSet<String>();
+
+		while (type.kind == DidType.Kind.REFERENCE) {
+			if (!seen.add(type.name))
+				throw new IllegalArgumentException("Type " + type.name + " is an alias of itself");
+
+			DidType definition = this.definitions.get(type.name);
+
+			if (definition == null)
+				throw new IllegalArgumentException("Unknown type " + type.name);
+
+			type = definition;
+		}
+
+		return type;
+	}
+
+	// names the anonymous records and variants after their parent and field
+	private void nameNested(String parent, DidType type) {
+		if (type.fields == null)
+			return;
+
+		for (DidType.Field field : type.fields)
+			this.nameAnonymous(parent + className(label(field)), field.type());
+	}
+
+	private void nameAnonymous(String name, DidType type) {
+		switch (type.kind) {
+		case OPT:
+		case VEC:
+			this.nameAnonymous(name, type.element);
+			return;
+		case RECORD:
+		case VARIANT:
+			if (this.classNames.containsKey(type))
+				return;
+
+			String className = this.uniqueName(name);
+			this.classNames.put(type, className);
+			this.nameNested(className, type);
+			return;
+		default:
+			return;
+		}
+	}
+
+	private String uniqueName(String name) {
+		String unique = name;
+
+		for (int i = 2; this.usedNames.contains(unique) || this.usedNames.contains(unique + "Codec"); i++)
+			unique = name + i;
+
+		this.usedNames.add(unique);
+		this.usedNames.add(unique + "Codec");
+
+		return unique;
+	}
+
+	private String typeSource(String source, String className, DidType type) {
+		StringBuilder body = new StringBuilder();
+
+		body.append("/**\n * Candid ").append(type.kind.name().toLowerCase()).append(" ").append(className).append(" of ")
+				.append(source).append(".\n */\n");
+
+		if (type.kind == DidType.Kind.RECORD)
+			body.append("public record ").append(className).append("(").append(this.components(type.fields)).append(") {\n}\n");
+		else if (this.isEnum(type)) {
+			body.append("public enum ").append(className).append(" {\n\t");
+
+			List<String> constants = this.caseNames(type, false);
+			body.append(String.join(", ", constants)).append("\n}\n");
+		} else {
+			body.append("public sealed interface ").append(className).append(" {\n");
+
+			List<String> cases = this.caseNames(type, true);
+
+			for (int i = 0; i < type.fields.size(); i++) {
+				DidType payload = type.fields.get(i).type();
+				String component = isUnit(this.resolve(payload)) ? "" : this.javaType(payload, false) + " value";
+
+				if (i > 0)
+					body.append('\n');
+
+				body.append("\trecord ").append(cases.get(i)).append("(").append(component).append(") implements ")
+						.append(className).append(" {\n\t}\n");
+			}
+
+			body.append("}\n");
+		}
+
+		return this.file(source, body.toString());
+	}
+
+	private String codecSource(String source, String className, DidType type) {
+		List<DidType.Field> sorted = new ArrayList<DidType.Field>(type.fields);
+		sorted.sort(Comparator.comparingLong(DidType.Field::hash));
+
+		String codec = className + "Codec";
+		StringBuilder body = new StringBuilder();
+
+		body.append("/**\n * Candid codec of ").append(className).append(".\n */\n");
+		body.append("public final class ").append(codec).append(" implements ICCodec<").append(className).append("> {\n\n");
+		body.append("\tpublic static final ").append(codec).append(" INSTANCE = new ").append(codec).append("();\n\n");
+		body.append("\tprivate static final byte[] HEADER = ").append(byteArray(this.header(type))).append(";\n\n");
+
+		if (type.kind == DidType.Kind.VARIANT) {
+			body.append("\t// case hashes in increasing order\n");
+			body.append("\tprivate static final long[] HASHES = { ");
+
+			for (int i = 0; i < sorted.size(); i++)
+				body.append(i > 0 ? ", " : "").append(sorted.get(i).hash()).append('L');
+
+			body.append(" };\n\n");
+		}
+
+		body.append("\t@Override\n\tpublic Class<").append(className).append("> getType() {\n\t\treturn ").append(className)
+				.append(".class;\n\t}\n\n");
+		body.append("\t@Override\n\tpublic byte[] getHeader() {\n\t\treturn HEADER;\n\t}\n\n");
+
+		this.variable = 0;
+		body.append("\t@Override\n\tpublic void write(ICCandidWriter writer, ").append(className).append(" value) {\n");
+
+		if (type.kind == DidType.Kind.RECORD)
+			this.writeRecord(type, sorted, body);
+		else
+			this.writeVariant(className, type, sorted, body);
+
+		body.append("\t}\n\n");
+
+		this.variable = 0;
+		body.append("\t@Override\n\tpublic ").append(className).append(" read(ICCandidReader reader) {\n");
+
+		if (type.kind == DidType.Kind.RECORD)
+			this.readRecord(className, type, sorted, body);
+		else
+			this.readVariant(className, type, sorted, body);
+
+		body.append("\t}\n}\n");
+
+		return this.file(source, body.toString());
+	}
+
+	private void writeRecord(DidType type, List<DidType.Field> sorted, StringBuilder out) {
+		List<String> names = this.componentNames(type.fields);
+
+		for (DidType.Field field : sorted)
+			this.write(field.type(), "value." + names.get(type.fields.indexOf(field)) + "()", "\t\t", out);
+	}
+
+	private void readRecord(String className, DidType type, List<DidType.Field> sorted, StringBuilder out) {
+		List<String> names = this.componentNames(type.fields);
+		String[] values = new String[type.fields.size()];
+
+		out.append("\t\treader.readRecord();\n\n");
+
+		for (DidType.Field field : sorted) {
+			int index = type.fields.indexOf(field);
+			String value = "f" + index;
+			values[index] = value;
+
+			DidType resolved = this.resolve(field.type());
+
+			if (resolved.kind == DidType.Kind.OPT) {
+				// a missing opt field is null
+				out.append("\t\t").append(this.javaType(field.type(), false)).append(' ').append(value).append(" = null;\n");
+				out.append("\t\tif (reader.field(").append(field.hash()).append("L) && reader.readOpt()) {\n");
+
+				String read = this.read(resolved.element, "\t\t\t", out);
+				out.append("\t\t\t").append(value).append(" = ").append(read).append(";\n\t\t}\n\n");
+			} else {
+				out.append("\t\treader.require(").append(field.hash()).append("L, \"").append(escape(label(field)))
+						.append("\");\n");
+
+				String read = this.read(field.type(), "\t\t", out);
+				out.append("\t\t").append(this.javaType(field.type(), false)).append(' ').append(value).append(" = ")
+						.append(read).append(";\n\n");
+			}
+		}
+
+		out.append("\t\treader.end();\n\n");
+		out.append("\t\treturn new ").append(className).append("(").append(String.join(", ", values)).append(");\n");
+	}
+
+	private void writeVariant(String className, DidType type, List<DidType.Field> sorted, StringBuilder out) {
+		boolean isEnum = this.isEnum(type);
+		List<String> cases = this.caseNames(type, !isEnum);
+
+		if (isEnum) {
+			out.append("\t\tswitch (value) {\n");
+
+			for (int i = 0; i < type.fields.size(); i++)
+				out.append("\t\tcase ").append(cases.get(i)).append(":\n\t\t\twriter.writeVariant(")
+						.append(sorted.indexOf(type.fields.get(i))).append(");\n\t\t\treturn;\n");
+
+			out.append("\t\tdefault:\n\t\t\tthrow new IllegalArgumentException(\"Unknown ").append(className)
+					.append(" \" + value);\n\t\t}\n");
+			return;
+		}
+
+		for (int i = 0; i < type.fields.size(); i++) {
+			DidType payload = type.fields.get(i).type();
+			String caseClass = className + "." + cases.get(i);
+
+			boolean unit = isUnit(this.resolve(payload));
+
+			out.append(i == 0 ? "\t\tif" : " else if").append(" (value instanceof ").append(caseClass).append(unit ? "" : " c")
+					.append(") {\n");
+			out.append("\t\t\twriter.writeVariant(").append(sorted.indexOf(type.fields.get(i))).append(");\n");
+
+			if (!unit)
+				this.write(payload, "c.value()", "\t\t\t", out);
+
+			out.append("\t\t}");
+		}
+
+		out.append(" else\n\t\t\tthrow new IllegalArgumentException(\"Unknown ").append(className).append(" \" + value);\n");
+	}
+
+	private void readVariant(String className, DidType type, List<DidType.Field> sorted, StringBuilder out) {
+		boolean isEnum = this.isEnum(type);
+		List<String> cases = this.caseNames(type, !isEnum);
+
+		out.append("\t\tswitch (reader.readVariant(HASHES)) {\n");
+
+		for (int i = 0; i < sorted.size(); i++) {
+			DidType.Field field = sorted.get(i);
+			String name = cases.get(type.fields.indexOf(field));
+
+			out.append("\t\tcase ").append(i).append(": {\n");
+
+			if (isEnum) {
+				out.append("\t\t\treader.skip();\n\t\t\treturn ").append(className).append('.').append(name).append(";\n");
+			} else if (isUnit(this.resolve(field.type()))) {
+				out.append("\t\t\treader.skip();\n\t\t\treturn new ").append(className).append('.').append(name).append("();\n");
+			} else {
+				String read = this.read(field.type(), "\t\t\t", out);
+				out.append("\t\t\treturn new ").append(className).append('.').append(name).append("(").append(read).append(");\n");
+			}
+
+			out.append("\t\t}\n");
+		}
+
+		out.append("\t\tdefault:\n\t\t\tthrow new IllegalStateException();\n\t\t}\n");
+	}
+
+	private void write(DidType type, String value, String indent, StringBuilder out) {
+		DidType resolved = this.resolve(type);
+
+		switch (resolved.kind) {
+		case PRIMITIVE:
+			out.append(indent).append("writer.write").append(method(resolved.name)).append("(").append(value).append(");\n");
+			return;
+		case OPT: {
+			String option = this.variable();
+
+			out.append(indent).append(this.javaType(resolved.element, true)).append(' ').append(option).append(" = ")
+					.append(value).append(";\n");
+			out.append(indent).append("writer.writeOpt(").append(option).append(" != null);\n");
+			out.append(indent).append("if (").append(option).append(" != null) {\n");
+			this.write(resolved.element, option, indent + "\t", out);
+			out.append(indent).append("}\n");
+			return;
+		}
+		case VEC: {
+			if (isBlob(this.resolve(resolved.element))) {
+				out.append(indent).append("writer.writeBlob(").append(value).append(");\n");
+				return;
+			}
+
+			String list = this.variable();
+			String element = this.variable();
+			String elementType = this.javaType(resolved.element, true);
+
+			out.append(indent).append("List<").append(elementType).append("> ").append(list).append(" = ").append(value)
+					.append(";\n");
+			out.append(indent).append("writer.writeLength(").append(list).append(".size());\n");
+			out.append(indent).append("for (").append(elementType).append(' ').append(element).append(" : ").append(list)
+					.append(") {\n");
+			this.write(resolved.element, element, indent + "\t", out);
+			out.append(indent).append("}\n");
+			return;
+		}
+		default:
+			out.append(indent).append(this.classNames.get(resolved)).append("Codec.INSTANCE.write(writer, ").append(value)
+					.append(");\n");
+		}
+	}
+
+	/**
+	 * Writes the statements reading a value of the type.
+	 *
+	 * @return the expression of the value, valid right after the statements
+	 */
+	private String read(DidType type, String indent, StringBuilder out) {
+		DidType resolved = this.resolve(type);
+
+		switch (resolved.kind) {
+		case PRIMITIVE:
+			return "reader.read" + method(resolved.name) + "()";
+		case OPT: {
+			String option = this.variable();
+
+			out.append(indent).append(this.javaType(resolved.element, true)).append(' ').append(option).append(" = null;\n");
+			out.append(indent).append("if (reader.readOpt()) {\n");
+
+			String read = this.read(resolved.element, indent + "\t", out);
+			out.append(indent).append('\t').append(option).append(" = ").append(read).append(";\n");
+			out.append(indent).append("}\n");
+
+			return option;
+		}
+		case VEC: {
+			if (isBlob(this.resolve(resolved.element)))
+				return "reader.readBlob()";
+
+			String length = this.variable();
+			String list = this.variable();
+			String index = this.variable();
+
+			out.append(indent).append("int ").append(length).append(" = reader.readVec();\n");
+			// the capacity is bounded, the length comes from the wire
+			out.append(indent).append("List<").append(this.javaType(resolved.element, true)).append("> ").append(list)
+					.append(" = new ArrayList<>(Math.min(").append(length).append(", 1024));\n");
+			out.append(indent).append("for (int ").append(index).append(" = 0; ").append(index).append(" < ").append(length)
+					.append("; ").append(index).append("++) {\n");
+			out.append(indent).append("\treader.element();\n");
+
+			String read = this.read(resolved.element, indent + "\t", out);
+			out.append(indent).append('\t').append(list).append(".add(").append(read).append(");\n");
+			out.append(indent).append("}\n");
+			out.append(indent).append("reader.end();\n");
+
+			return list;
+		}
+		default:
+			return this.classNames.get(resolved) + "Codec.INSTANCE.read(reader)";
+		}
+	}
+
+	private String variable() {
+		return "v" + this.variable++;
+	}
+
+	/**
+	 * @return the magic number, type table and argument type of a message
+	 *         holding one value of the type
+	 */
+	byte[] header(DidType type) {
+		List<DidType> table = new ArrayList<DidType>();
+		Map<DidType, Integer> indexes = new IdentityHashMap<DidType, Integer>();
+
+		int root = this.typeRef(type, table, indexes);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.writeBytes("DIDL".getBytes(StandardCharsets.US_ASCII));
+		writeUnsigned(out, table.size());
+
+		for (DidType entry : table) {
+			switch (entry.kind) {
+			case OPT:
+				writeSigned(out, -18);
+				writeSigned(out, this.typeRef(entry.element, table, indexes));
+				break;
+			case VEC:
+				writeSigned(out, -19);
+				writeSigned(out, this.typeRef(entry.element, table, indexes));
+				break;
+			default:
+				writeSigned(out, entry.kind == DidType.Kind.RECORD ? -20 : -21);
+				writeUnsigned(out, entry.fields.size());
+
+				List<DidType.Field> sorted = new ArrayList<DidType.Field>(entry.fields);
+				sorted.sort(Comparator.comparingLong(DidType.Field::hash));
+
+				for (DidType.Field field : sorted) {
+					writeUnsigned(out, field.hash());
+					writeSigned(out, this.typeRef(field.type(), table, indexes));
+				}
+			}
+		}
+
+		writeUnsigned(out, 1);
+		writeSigned(out, root);
+
+		return out.toByteArray();
+	}
+
+	private int typeRef(DidType type, List<DidType> table, Map<DidType, Integer> indexes) {
+		DidType resolved = this.resolve(type);
+
+		if (resolved.kind == DidType.Kind.PRIMITIVE)
+			return TYPE_CODES.get(resolved.name);
+
+		Integer index = indexes.get(resolved);
+
+		if (index != null)
+			return index;
+
+		index = table.size();
+		indexes.put(resolved, index);
+		table.add(resolved);
+
+		if (resolved.element != null)
+			this.typeRef(resolved.element, table, indexes);
+
+		if (resolved.fields != null)
+			for (DidType.Field field : resolved.fields)
+				this.typeRef(field.type(), table, indexes);
+
+		return index;
+	}
+
+	private String javaType(DidType type, boolean boxed) {
+		DidType resolved = this.resolve(type);
+
+		switch (resolved.kind) {
+		case PRIMITIVE:
+			return JAVA_TYPES.get(resolved.name)[boxed ? 1 : 0];
+		case OPT:
+			return this.javaType(resolved.element, true);
+		case VEC:
+			if (isBlob(this.resolve(resolved.element)))
+				return "byte[]";
+
+			return "List<" + this.javaType(resolved.element, true) + ">";
+		default:
+			return this.classNames.get(resolved);
+		}
+	}
+
+	private String components(List<DidType.Field> fields) {
+		List<String> names = this.componentNames(fields);
+		List<String> components = new ArrayList<String>();
+
+		for (int i = 0; i < fields.size(); i++)
+			components.add(this.javaType(fields.get(i).type(), false) + " " + names.get(i));
+
+		return String.join(", ", components);
+	}
+
+	private List<String> componentNames(List<DidType.Field> fields) {
+		List<String> names = new ArrayList<String>();
+
+		for (DidType.Field field : fields) {
+			String name = identifier(label(field));
+
+			if (OBJECT_METHODS.contains(name))
+				name += "_";
+
+			names.add(unique(name, names));
+		}
+
+		return names;
+	}
+
+	private List<String> caseNames(DidType type, boolean classes) {
+		List<String> names = new ArrayList<String>();
+		String owner = this.classNames.get(type);
+
+		for (DidType.Field field : type.fields) {
+			String name = classes ? className(label(field)) : identifier(label(field));
+
+			// a nested class may not have the name of its owner
+			if (name.equals(owner))
+				name += "_";
+
+			names.add(unique(name, names));
+		}
+
+		return names;
+	}
+
+	private boolean isEnum(DidType type) {
+		if (type.kind != DidType.Kind.VARIANT)
+			return false;
+
+		for (DidType.Field field : type.fields)
+			if (!isUnit(this.resolve(field.type())))
+				return false;
+
+		return true;
+	}
+
+	private String qualified(String className) {
+		return this.packageName.isEmpty() ? className : this.packageName + "." + className;
+	}
+
+	private String file(String source, String body) {
+		StringBuilder file = new StringBuilder();
+
+		file.append("// Generated by ic4j-camel-maven-plugin from ").append(source).append(", do not edit.\n\n");
+
+		if (!this.packageName.isEmpty())
+			file.append("package ").append(this.packageName).append(";\n\n");
+
+		List<String> imports = new ArrayList<String>();
+
+		if (body.contains("BigInteger"))
+			imports.add("java.math.BigInteger");
+		if (body.contains("new ArrayList<>"))
+			imports.add("java.util.ArrayList");
+		if (body.contains("List<"))
+			imports.add("java.util.List");
+		if (body.contains("ICCandidReader"))
+			imports.add("org.ic4j.camel.ICCandidReader");
+		if (body.contains("ICCandidWriter"))
+			imports.add("org.ic4j.camel.ICCandidWriter");
+		if (body.contains("ICCodec<"))
+			imports.add(CODEC_INTERFACE);
+		if (body.contains("Principal"))
+			imports.add("org.ic4j.types.Principal");
+
+		for (String imported : imports)
+			file.append("import ").append(imported).append(";\n");
+
+		if (!imports.isEmpty())
+			file.append('\n');
+
+		return file.append(body).toString();
+	}
+
+	private static boolean isUnit(DidType type) {
+		return type.isPrimitive("null") || type.isPrimitive("reserved");
+	}
+
+	private static boolean isBlob(DidType element) {
+		return element.isPrimitive("nat8");
+	}
+
+	private static String label(DidType.Field field) {
+		return field.name() != null ? field.name() : "_" + field.hash();
+	}
+
+	private static String method(String primitive) {
+		return Character.toUpperCase(primitive.charAt(0)) + primitive.substring(1);
+	}
+
+	static String className(String name) {
+		String identifier = identifier(name);
+
+		if (identifier.startsWith("_") && identifier.length() > 1 && Character.isLetter(identifier.charAt(1)))
+			identifier = identifier.substring(1);
+
+		identifier = Character.toUpperCase(identifier.charAt(0)) + identifier.substring(1);
+
+		return KEYWORDS.contains(identifier) ? identifier + "_" : identifier;
+	}
+
+	static String identifier(String name) {
+		StringBuilder identifier = new StringBuilder();
+
+		if (name.isEmpty() || !Character.isJavaIdentifierStart(name.charAt(0)))
+			identifier.append('_');
+
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			identifier.append(Character.isJavaIdentifierPart(c) ? c : '_');
+		}
+
+		String result = identifier.toString();
+
+		return KEYWORDS.contains(result) ? result + "_" : result;
+	}
+
+	private static String unique(String name, List<String> names) {
+		String unique = name;
+
+		for (int i = 2; names.contains(unique); i++)
+			unique = name + i;
+
+		return unique;
+	}
+
+	private static String escape(String text) {
+		return text.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	private static String byteArray(byte[] bytes) {
+		StringBuilder array = new StringBuilder("{ ");
+
+		for (int i = 0; i < bytes.length; i++) {
+			if (i > 0)
+				array.append(i % 16 == 0 ? ",\n\t\t\t" : ", ");
+
+			array.append(bytes[i]);
+		}
+
+		return array.append(" }").toString();
+	}
+
+	private static void writeUnsigned(ByteArrayOutputStream out, long value) {
+		do {
+			int bits = (int) (value & 0x7f);
+			value >>>= 7;
+			out.write(value != 0 ? bits | 0x80 : bits);
+		} while (value != 0);
+	}
+
+	private static void writeSigned(ByteArrayOutputStream out, long value) {
+		while (true) {
+			int bits = (int) (value & 0x7f);
+			value >>= 7;
+
+			if (value == 0 && (bits & 0x40) == 0 || value == -1 && (bits & 0x40) != 0) {
+				out.write(bits);
+				return;
+			}
+
+			out.write(bits | 0x80);
+		}
+	}
+}
@@ -0,0 +1,458 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the type definitions of a .did file. The service itself is parsed
+ * only to validate the file, codecs are generated for the named types.
+ * Imports are not followed.
+ */
+final class DidParser {
+
+	static final Set<String> PRIMITIVES = Set.of("null", "bool", "nat", "int", "nat8", "nat16", "nat32", "nat64", "int8",
+			"int16", "int32", "int64", "float32", "float64", "text", "reserved", "empty", "principal");
+
+	private final String source;
+
+	private final String text;
+
+	private int position;
+
+	private int line = 1;
+
+	private final Map<String, DidType> definitions = new LinkedHashMap<String, DidType>();
+
+	private final List<String> imports = new ArrayList<String>();
+
+	DidParser(String source, String text) {
+		this.source = source;
+		this.text = text;
+	}
+
+	/**
+	 * @return the type definitions by name, in file order
+	 */
+	Map<String, DidType> parse() {
+		this.skipSpace();
+
+		while (this.position < this.text.length()) {
+			String keyword = this.identifier();
+
+			switch (keyword) {
+			case "type": {
+				String name = this.name();
+				this.expect('=');
+
+				if (this.definitions.put(name, this.dataType()) != null)
+					throw this.error("Type " + name + " is defined twice");
+				break;
+			}
+			case "import":
+				if (this.peekIdentifier("service"))
+					this.identifier();
+
+				this.imports.add(this.textLiteral());
+				break;
+			case "service":
+				this.service();
+				break;
+			default:
+				throw this.error("Expected type, import or service, got " + keyword);
+			}
+
+			this.optional(';');
+		}
+
+		return this.definitions;
+	}
+
+	/**
+	 * @return the files imported by the .did file
+	 */
+	List<String> getImports() {
+		return this.imports;
+	}
+
+	private void service() {
+		if (!this.peek(':'))
+			this.identifier();
+
+		this.expect(':');
+
+		if (this.peek('(')) {
+			this.tuple();
+			this.expect("->");
+		}
+
+		if (this.peek('{'))
+			this.serviceBody();
+		else
+			this.identifier();
+	}
+
+	private void serviceBody() {
+		this.expect('{');
+
+		while (!this.optional('}')) {
+			this.name();
+			this.expect(':');
+
+			if (this.peek('('))
+				this.functionType();
+			else
+				this.identifier();
+
+			this.optional(';');
+		}
+	}
+
+	private void functionType() {
+		this.tuple();
+		this.expect("->");
+		this.tuple();
+
+		while (this.peekIdentifier("query") || this.peekIdentifier("oneway") || this.peekIdentifier("composite_query"))
+			this.identifier();
+	}
+
+	private void tuple() {
+		this.expect('(');
+
+		while (!this.optional(')')) {
+			// an argument may be named
+			int mark = this.position;
+			int markLine = this.line;
+
+			if (this.peekName()) {
+				this.name();
+
+				if (!this.optional(':')) {
+					this.position = mark;
+					this.line = markLine;
+				}
+			}
+
+			this.dataType();
+
+			if (!this.optional(',')) {
+				this.expect(')');
+				break;
+			}
+		}
+	}
+
+	private DidType dataType() {
+		String keyword = this.identifier();
+
+		switch (keyword) {
+		case "opt":
+			return DidType.opt(this.dataType());
+		case "vec":
+			return DidType.vec(this.dataType());
+		case "blob":
+			return DidType.vec(DidType.primitive("nat8"));
+		case "record":
+			return DidType.record(this.fields(true));
+		case "variant":
+			return DidType.variant(this.fields(false));
+		case "func":
+			this.functionType();
+			return DidType.func();
+		case "service":
+			this.serviceBody();
+			return DidType.service();
+		default:
+			return PRIMITIVES.contains(keyword) ? DidType.primitive(keyword) : DidType.reference(keyword);
+		}
+	}
+
+	private List<DidType.Field> fields(boolean record) {
+		List<DidType.Field> fields = new ArrayList<DidType.Field>();
+
+		this.expect('{');
+
+		long next = 0;
+
+		while (!this.optional('}')) {
+			DidType.Field field;
+
+			if (this.peekNumber()) {
+				long number = this.number();
+				this.expect(':');
+				field = new DidType.Field(null, number, this.dataType());
+			} else if (this.peek('"')) {
+				String name = this.textLiteral();
+				field = this.labelled(name, record);
+			} else {
+				int mark = this.position;
+				int markLine = this.line;
+				String name = this.identifier();
+
+				if (this.peek(':') || !record)
+					field = this.labelled(name, record);
+				else {
+					// positional field of a tuple record
+					this.position = mark;
+					this.line = markLine;
+					field = new DidType.Field(null, next, this.dataType());
+				}
+			}
+
+			next = field.hash() + 1;
+			fields.add(field);
+
+			if (!this.optional(';')) {
+				this.expect('}');
+				break;
+			}
+		}
+
+		return fields;
+	}
+
+	private DidType.Field labelled(String name, boolean record) {
+		// a variant case without a type is a null case
+		if (!record && !this.peek(':'))
+			return new DidType.Field(name, DidType.Field.hash(name), DidType.primitive("null"));
+
+		this.expect(':');
+
+		return new DidType.Field(name, DidType.Field.hash(name), this.dataType());
+	}
+
+	private String name() {
+		return this.peek('"') ? this.textLiteral() : this.identifier();
+	}
+
+	private boolean peekName() {
+		return this.peek('"') || this.position < this.text.length() && isIdentifierStart(this.text.charAt(this.position));
+	}
+
+	private String identifier() {
+		if (this.position >= this.text.length() || !isIdentifierStart(this.text.charAt(this.position)))
+			throw this.error("Expected an identifier");
+
+		int start = this.position;
+
+		while (this.position < this.text.length() && isIdentifierPart(this.text.charAt(this.position)))
+			this.position++;
+
+		String identifier = this.text.substring(start, this.position);
+		this.skipSpace();
+
+		return identifier;
+	}
+
+	private boolean peekIdentifier(String identifier) {
+		int end = this.position + identifier.length();
+
+		return this.text.startsWith(identifier, this.position)
+				&& (end == this.text.length() || !isIdentifierPart(this.text.charAt(end)));
+	}
+
+	private boolean peekNumber() {
+		return this.position < this.text.length() && Character.isDigit(this.text.charAt(this.position));
+	}
+
+	private long number() {
+		int start = this.position;
+		int radix = 10;
+
+		if (this.text.startsWith("0x", this.position)) {
+			radix = 16;
+			this.position += 2;
+			start = this.position;
+		}
+
+		while (this.position < this.text.length() && (Character.digit(this.text.charAt(this.position), radix) >= 0
+				|| this.text.charAt(this.position) == '_'))
+			this.position++;
+
+		long number;
+
+		try {
+			number = Long.parseLong(this.text.substring(start, this.position).replace("_", ""), radix);
+		} catch (NumberFormatException e) {
+			throw this.error("Invalid number");
+		}
+
+		if (number > 0xffffffffL)
+			throw this.error("Field number " + number + " is out of range");
+
+		this.skipSpace();
+
+		return number;
+	}
+
+	private String textLiteral() {
+		this.expect('"', false);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		while (true) {
+			if (this.position >= this.text.length())
+				throw this.error("Unterminated text");
+
+			char c = this.text.charAt(this.position++);
+
+			if (c == '"')
+				break;
+
+			if (c != '\\') {
+				byte[] utf8 = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+				bytes.write(utf8, 0, utf8.length);
+				continue;
+			}
+
+			char escape = this.text.charAt(this.position++);
+
+			switch (escape) {
+			case 'n':
+				bytes.write('\n');
+				break;
+			case 'r':
+				bytes.write('\r');
+				break;
+			case 't':
+				bytes.write('\t');
+				break;
+			case '\\':
+			case '"':
+			case '\'':
+				bytes.write(escape);
+				break;
+			case 'u': {
+				int end = this.text.indexOf('}', this.position);
+
+				if (!this.text.startsWith("{", this.position) || end < 0)
+					throw this.error("Invalid unicode escape");
+
+				byte[] utf8 = new String(Character.toChars(Integer.parseInt(this.text.substring(this.position + 1, end)
+						.replace("_", ""), 16))).getBytes(StandardCharsets.UTF_8);
+				bytes.write(utf8, 0, utf8.length);
+				this.position = end + 1;
+				break;
+			}
+			default:
+				// two hex digits, a raw byte
+				bytes.write(Integer.parseInt(this.text.substring(this.position - 1, this.position + 1), 16));
+				this.position++;
+			}
+		}
+
+		this.skipSpace();
+
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private boolean peek(char c) {
+		return this.position < this.text.length() && this.text.charAt(this.position) == c;
+	}
+
+	private boolean optional(char c) {
+		if (!this.peek(c))
+			return false;
+
+		this.position++;
+		this.skipSpace();
+
+		return true;
+	}
+
+	private void expect(char c) {
+		this.expect(c, true);
+	}
+
+	private void expect(char c, boolean skipSpace) {
+		if (!this.peek(c))
+			throw this.error("Expected '" + c + "'");
+
+		this.position++;
+
+		if (skipSpace)
+			this.skipSpace();
+	}
+
+	private void expect(String token) {
+		if (!this.text.startsWith(token, this.position))
+			throw this.error("Expected '" + token + "'");
+
+		this.position += token.length();
+		this.skipSpace();
+	}
+
+	private void skipSpace() {
+		while (this.position < this.text.length()) {
+			char c = this.text.charAt(this.position);
+
+			if (c == '\n') {
+				this.line++;
+				this.position++;
+			} else if (Character.isWhitespace(c))
+				this.position++;
+			else if (this.text.startsWith("//", this.position)) {
+				while (this.position < this.text.length() && this.text.charAt(this.position) != '\n')
+					this.position++;
+			} else if (this.text.startsWith("/*", this.position))
+				this.skipComment();
+			else
+				return;
+		}
+	}
+
+	// block comments nest in Candid
+	private void skipComment() {
+		int depth = 0;
+
+		do {
+			if (this.position >= this.text.length())
+				throw this.error("Unterminated comment");
+
+			if (this.text.startsWith("/*", this.position)) {
+				depth++;
+				this.position += 2;
+			} else if (this.text.startsWith("*/", this.position)) {
+				depth--;
+				this.position += 2;
+			} else {
+				if (this.text.charAt(this.position) == '\n')
+					this.line++;
+
+				this.position++;
+			}
+		} while (depth > 0);
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(this.source + ":" + this.line + ": " + message);
+	}
+
+	private static boolean isIdentifierStart(char c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_';
+	}
+
+	private static boolean isIdentifierPart(char c) {
+		return isIdentifierStart(c) || c >= '0' && c <= '9';
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel.maven;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A Candid type as written in a .did file. References to named types are
+ * kept as references, so the generator can tell named from anonymous types.
+ */
+final class DidType {
+
+	enum Kind {
+		PRIMITIVE, REFERENCE, OPT, VEC, RECORD, VARIANT, FUNC, SERVICE
+	}
+
+	final Kind kind;
+
+	// primitive type or referenced type name
+	final String name;
+
+	// opt and vec element
+	final DidType element;
+
+	// record fields and variant cases, in declaration order
+	final List<Field> fields;
+
+	private DidType(Kind kind, String name, DidType element, List<Field> fields) {
+		this.kind = kind;
+		this.name = name;
+		this.element = element;
+		this.fields = fields;
+	}
+
+	static DidType primitive(String name) {
+		return new DidType(Kind.PRIMITIVE, name, null, null);
+	}
+
+	static DidType reference(String name) {
+		return new DidType(Kind.REFERENCE, name, null, null);
+	}
+
+	static DidType opt(DidType element) {
+		return new DidType(Kind.OPT, null, element, null);
+	}
+
+	static DidType vec(DidType element) {
+		return new DidType(Kind.VEC, null, element, null);
+	}
+
+	static DidType record(List<Field> fields) {
+		return new DidType(Kind.RECORD, null, null, fields);
+	}
+
+	static DidType variant(List<Field> fields) {
+		return new DidType(Kind.VARIANT, null, null, fields);
+	}
+
+	static DidType func() {
+		return new DidType(Kind.FUNC, null, null, null);
+	}
+
+	static DidType service() {
+		return new DidType(Kind.SERVICE, null, null, null);
+	}
+
+	boolean isPrimitive(String name) {
+		return this.kind == Kind.PRIMITIVE && this.name.equals(name);
+	}
+
+	@Override
+	public String toString() {
+		switch (this.kind) {
+		case PRIMITIVE:
+		case REFERENCE:
+			return this.name;
+		case OPT:
+			return "opt " + this.element;
+		case VEC:
+			return "vec " + this.element;
+		default:
+			return this.kind.name().toLowerCase();
+		}
+	}
+
+	/**
+	 * A record field or variant case. Positional and numbered fields have no
+	 * name, their hash is their number.
+	 */
+	record Field(String name, long hash, DidType type) {
+
+		/**
+		 * @return the Candid hash of a field name
+		 */
+		static long hash(String name) {
+			long hash = 0;
+
+			for (byte b : name.getBytes(StandardCharsets.UTF_8))
+				hash = (hash * 223 + (b & 0xff)) & 0xffffffffL;
+
+			return hash;
+		}
+	}
+}
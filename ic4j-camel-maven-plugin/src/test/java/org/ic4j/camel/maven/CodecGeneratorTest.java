@@ -0,0 +1,172 @@
+package org.ic4j.camel.maven;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.lang.reflect.Constructor;
+import java.math.BigInteger;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.ic4j.camel.ICCodec;
+import org.ic4j.types.Principal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CodecGeneratorTest {
+
+	static final String PACKAGE = "org.ic4j.camel.maven.generated";
+
+	static final String DID = """
+			// types of motoko-sample.did and a few more
+			type Entry = record { bar : bool; foo : int };
+			type ComplexEntry = record { bar : bool; foo : int; pojo : Entry };
+			type Color = variant { red; green; blue };
+			type Result = variant { Ok : principal; Err : text };
+			type Account = record { owner : principal; subaccount : opt blob };
+			type Batch = record { entries : vec Entry; color : opt Color; meta : vec record { text; opt int32 } };
+			type Tree = variant { leaf : nat; node : record { left : Tree; right : Tree } };
+
+			service : {
+			  echoPojo : (Entry) -> (Entry) query;
+			  echoBatch : (Batch) -> (Batch) query;
+			}
+			""";
+
+	// record { bar : bool; foo : int } = record { bar = true; foo = 42 }, as encoded by ic4j
+	static final String ENTRY = "4449444c016c02d3e3aa027e868eb7027c0100012a";
+
+	@TempDir
+	Path dir;
+
+	@Test
+	public void testGenerate() {
+		CodecGenerator generator = generator();
+		Map<String, String> sources = generator.generate();
+
+		// Batch.meta is a nested anonymous record, the recursive Tree is skipped
+		Assertions.assertEquals(7, generator.getTypeCount());
+		Assertions.assertEquals(List.of("Skipping Tree: recursive type Tree"), generator.getWarnings());
+
+		String directory = PACKAGE.replace('.', '/') + "/";
+
+		for (String type : List.of("Entry", "ComplexEntry", "Color", "Result", "Account", "Batch", "BatchMeta")) {
+			Assertions.assertTrue(sources.containsKey(directory + type + ".java"), type);
+			Assertions.assertTrue(sources.containsKey(directory + type + "Codec.java"), type + "Codec");
+		}
+
+		String services = sources.get("META-INF/services/" + CodecGenerator.CODEC_INTERFACE);
+		Assertions.assertEquals(7, services.lines().count());
+		Assertions.assertTrue(services.contains(PACKAGE + ".EntryCodec"));
+	}
+
+	@Test
+	public void testCompileAndRoundTrip() throws Exception {
+		try (URLClassLoader loader = this.compile(generator().generate())) {
+			Class<?> entryType = loader.loadClass(PACKAGE + ".Entry");
+			ICCodec<Object> entryCodec = codec(loader, "EntryCodec");
+
+			Object entry = construct(entryType, true, BigInteger.valueOf(42));
+
+			// the same bytes as the reflective serializer
+			byte[] message = entryCodec.encode(entry);
+			Assertions.assertEquals(ENTRY, HexFormat.of().formatHex(message));
+			Assertions.assertEquals(entry, entryCodec.decode(message));
+
+			Object complex = construct(loader.loadClass(PACKAGE + ".ComplexEntry"), false, BigInteger.valueOf(-7), entry);
+			Assertions.assertEquals(complex, roundTrip(codec(loader, "ComplexEntryCodec"), complex));
+
+			Class<?> colorType = loader.loadClass(PACKAGE + ".Color");
+			Object blue = colorType.getEnumConstants()[2];
+			Assertions.assertEquals(blue, roundTrip(codec(loader, "ColorCodec"), blue));
+
+			Object err = construct(loader.loadClass(PACKAGE + ".Result$Err"), "failed");
+			Assertions.assertEquals(err, roundTrip(codec(loader, "ResultCodec"), err));
+
+			Object ok = construct(loader.loadClass(PACKAGE + ".Result$Ok"), Principal.fromString("aaaaa-aa"));
+			Assertions.assertEquals(ok, roundTrip(codec(loader, "ResultCodec"), ok));
+
+			// records holding arrays compare by identity, check the decoded components
+			ICCodec<Object> accountCodec = codec(loader, "AccountCodec");
+			Class<?> accountType = loader.loadClass(PACKAGE + ".Account");
+			Object account = roundTrip(accountCodec, construct(accountType, Principal.fromString("aaaaa-aa"), new byte[] { 1, 2 }));
+			Assertions.assertEquals(Principal.fromString("aaaaa-aa"), accountType.getMethod("owner").invoke(account));
+			Assertions.assertArrayEquals(new byte[] { 1, 2 }, (byte[]) accountType.getMethod("subaccount").invoke(account));
+
+			Object noSubaccount = roundTrip(accountCodec, construct(accountType, Principal.fromString("aaaaa-aa"), null));
+			Assertions.assertNull(accountType.getMethod("subaccount").invoke(noSubaccount));
+
+			Object meta = construct(loader.loadClass(PACKAGE + ".BatchMeta"), "limit", 10);
+			Object batch = construct(loader.loadClass(PACKAGE + ".Batch"), List.of(entry, entry), blue, List.of(meta));
+			Assertions.assertEquals(batch, roundTrip(codec(loader, "BatchCodec"), batch));
+
+			Object empty = construct(loader.loadClass(PACKAGE + ".Batch"), List.of(), null, List.of());
+			Assertions.assertEquals(empty, roundTrip(codec(loader, "BatchCodec"), empty));
+		}
+	}
+
+	private static CodecGenerator generator() {
+		DidParser parser = new DidParser("test.did", DID);
+		CodecGenerator generator = new CodecGenerator(PACKAGE);
+		generator.add("test.did", parser.parse());
+
+		return generator;
+	}
+
+	private URLClassLoader compile(Map<String, String> sources) throws Exception {
+		Path classDirectory = this.dir.resolve("classes");
+		Files.createDirectories(classDirectory);
+
+		List<File> files = new ArrayList<File>();
+
+		for (Map.Entry<String, String> source : sources.entrySet()) {
+			// the service file goes with the classes
+			Path path = source.getKey().endsWith(".java") ? this.dir.resolve("sources").resolve(source.getKey())
+					: classDirectory.resolve(source.getKey());
+
+			Files.createDirectories(path.getParent());
+			Files.writeString(path, source.getValue(), StandardCharsets.UTF_8);
+
+			if (source.getKey().endsWith(".java"))
+				files.add(path.toFile());
+		}
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		StringWriter output = new StringWriter();
+
+		try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+			boolean compiled = compiler.getTask(output, fileManager, null,
+					List.of("-classpath", System.getProperty("java.class.path"), "-d", classDirectory.toString(), "-proc:none"), null,
+					fileManager.getJavaFileObjectsFromFiles(files)).call();
+
+			Assertions.assertTrue(compiled, output.toString());
+		}
+
+		return new URLClassLoader(new URL[] { classDirectory.toUri().toURL() }, CodecGeneratorTest.class.getClassLoader());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ICCodec<Object> codec(ClassLoader loader, String name) throws Exception {
+		return (ICCodec<Object>) loader.loadClass(PACKAGE + "." + name).getField("INSTANCE").get(null);
+	}
+
+	private static Object construct(Class<?> type, Object... components) throws Exception {
+		Constructor<?> constructor = type.getDeclaredConstructors()[0];
+		return constructor.newInstance(components);
+	}
+
+	private static Object roundTrip(ICCodec<Object> codec, Object value) {
+		return codec.decode(codec.encode(value));
+	}
+}
@@ -7,6 +7,7 @@ import java.util.Map;
 import org.apache.camel.BindToRegistry;
 import org.apache.camel.Exchange;
 import org.apache.camel.ProducerTemplate;
+import org.ic4j.camel.ICConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,20 +37,21 @@ public class SampleIcpBusinessToolsCallProcessor extends AbstractMcpRequestProce
 		String name = requiredString(parameters, "name");
 		try (ProducerTemplate template = exchange.getContext().createProducerTemplate()) {
 			try {
-				template.sendBody(onewayUri(location, canisterId, "greet"), name);
+				template.sendBodyAndHeaders(canisterUri(location, canisterId), name,
+						Map.of(ICConstants.METHOD_TYPE, "oneway", ICConstants.METHOD, "greet"));
 			} catch (Exception ex) {
 				LOG.info("Ignoring local replica update verification error: {}", ex.getMessage());
 			}
 
 			Thread.sleep(250L);
-			Object current = template.requestBody(queryUri(location, canisterId, "getName"), (Object) null);
+			Object current = template.requestBodyAndHeader(canisterUri(location, canisterId), null, ICConstants.METHOD, "getName");
 			writeTextResult(exchange, "Hello, " + current + "!");
 		}
 	}
 
 	private void handleGetName(Exchange exchange, String location, String canisterId) throws Exception {
 		try (ProducerTemplate template = exchange.getContext().createProducerTemplate()) {
-			Object current = template.requestBody(queryUri(location, canisterId, "getName"), (Object) null);
+			Object current = template.requestBodyAndHeader(canisterUri(location, canisterId), null, ICConstants.METHOD, "getName");
 			writeTextResult(exchange, current == null ? "" : current.toString());
 		}
 	}
@@ -78,16 +80,9 @@ public class SampleIcpBusinessToolsCallProcessor extends AbstractMcpRequestProce
 		return value.toString();
 	}
 
-	private String onewayUri(String location, String canisterId, String method) {
-		return "ic:oneway?url=" + location
-				+ "&method=" + method
-				+ "&canisterId=" + canisterId
-				+ "&fetchRootKey=true";
-	}
-
-	private String queryUri(String location, String canisterId, String method) {
+	// one endpoint per canister, the method and method type are selected with ICConstants headers
+	private String canisterUri(String location, String canisterId) {
 		return "ic:query?url=" + location
-				+ "&method=" + method
 				+ "&canisterId=" + canisterId
 				+ "&fetchRootKey=true";
 	}
@@ -27,8 +27,22 @@ public class ICComponentConfigurer extends PropertyConfigurerSupport implements
         case "autowiredEnabled": target.setAutowiredEnabled(property(camelContext, boolean.class, value)); return true;
         case "bridgeerrorhandler":
         case "bridgeErrorHandler": target.setBridgeErrorHandler(property(camelContext, boolean.class, value)); return true;
+        case "idlrefreshinterval":
+        case "idlRefreshInterval": target.setIdlRefreshInterval(property(camelContext, long.class, value)); return true;
         case "lazystartproducer":
         case "lazyStartProducer": target.setLazyStartProducer(property(camelContext, boolean.class, value)); return true;
+        case "querymaxconcurrency":
+        case "queryMaxConcurrency": target.setQueryMaxConcurrency(property(camelContext, int.class, value)); return true;
+        case "queryqueuesize":
+        case "queryQueueSize": target.setQueryQueueSize(property(camelContext, int.class, value)); return true;
+        case "statuspollconcurrency":
+        case "statusPollConcurrency": target.setStatusPollConcurrency(property(camelContext, int.class, value)); return true;
+        case "transportfactory":
+        case "transportFactory": target.setTransportFactory(property(camelContext, org.ic4j.camel.ICTransportFactory.class, value)); return true;
+        case "updatemaxconcurrency":
+        case "updateMaxConcurrency": target.setUpdateMaxConcurrency(property(camelContext, int.class, value)); return true;
+        case "updatequeuesize":
+        case "updateQueueSize": target.setUpdateQueueSize(property(camelContext, int.class, value)); return true;
         default: return false;
         }
     }
@@ -40,8 +54,22 @@ public class ICComponentConfigurer extends PropertyConfigurerSupport implements
         case "autowiredEnabled": return boolean.class;
         case "bridgeerrorhandler":
         case "bridgeErrorHandler": return boolean.class;
+        case "idlrefreshinterval":
+        case "idlRefreshInterval": return long.class;
         case "lazystartproducer":
         case "lazyStartProducer": return boolean.class;
+        case "querymaxconcurrency":
+        case "queryMaxConcurrency": return int.class;
+        case "queryqueuesize":
+        case "queryQueueSize": return int.class;
+        case "statuspollconcurrency":
+        case "statusPollConcurrency": return int.class;
+        case "transportfactory":
+        case "transportFactory": return org.ic4j.camel.ICTransportFactory.class;
+        case "updatemaxconcurrency":
+        case "updateMaxConcurrency": return int.class;
+        case "updatequeuesize":
+        case "updateQueueSize": return int.class;
         default: return null;
         }
     }
@@ -54,8 +82,22 @@ public class ICComponentConfigurer extends PropertyConfigurerSupport implements
         case "autowiredEnabled": return target.isAutowiredEnabled();
         case "bridgeerrorhandler":
         case "bridgeErrorHandler": return target.isBridgeErrorHandler();
+        case "idlrefreshinterval":
+        case "idlRefreshInterval": return target.getIdlRefreshInterval();
         case "lazystartproducer":
         case "lazyStartProducer": return target.isLazyStartProducer();
+        case "querymaxconcurrency":
+        case "queryMaxConcurrency": return target.getQueryMaxConcurrency();
+        case "queryqueuesize":
+        case "queryQueueSize": return target.getQueryQueueSize();
+        case "statuspollconcurrency":
+        case "statusPollConcurrency": return target.getStatusPollConcurrency();
+        case "transportfactory":
+        case "transportFactory": return target.getTransportFactory();
+        case "updatemaxconcurrency":
+        case "updateMaxConcurrency": return target.getUpdateMaxConcurrency();
+        case "updatequeuesize":
+        case "updateQueueSize": return target.getUpdateQueueSize();
         default: return null;
         }
     }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import org.ic4j.agent.Agent;
+import org.ic4j.agent.ReplicaTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reference counted Agent owned by an {@link ICAgentRegistry}.
+ */
+public final class ICAgentHandle {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ICAgentHandle.class);
+
+	final ICAgentRegistry registry;
+
+	final ICAgentRegistry.Key key;
+
+	private final Agent agent;
+
+	private final ReplicaTransport transport;
+
+	// transports passed in as beans belong to the caller and are not closed here
+	private final boolean ownsTransport;
+
+	ICAgentHandle(ICAgentRegistry registry, ICAgentRegistry.Key key, Agent agent, ReplicaTransport transport, boolean ownsTransport) {
+		this.registry = registry;
+		this.key = key;
+		this.agent = agent;
+		this.transport = transport;
+		this.ownsTransport = ownsTransport;
+	}
+
+	public Agent getAgent() {
+		return this.agent;
+	}
+
+	public ReplicaTransport getTransport() {
+		return this.transport;
+	}
+
+	public void release() {
+		this.registry.release(this);
+	}
+
+	void close() {
+		if (!this.ownsTransport || !(this.transport instanceof AutoCloseable))
+			return;
+
+		try {
+			((AutoCloseable) this.transport).close();
+		} catch (Exception e) {
+			LOG.warn("Error closing transport for {}", this.key, e);
+		}
+	}
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import java.nio.file.Paths;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.ic4j.agent.Agent;
+import org.ic4j.agent.AgentBuilder;
+import org.ic4j.agent.NonceFactory;
+import org.ic4j.agent.ReplicaTransport;
+import org.ic4j.agent.http.ReplicaApacheHttpTransport;
+import org.ic4j.agent.http.ReplicaJavaHttpTransport;
+import org.ic4j.agent.http.ReplicaOkHttpTransport;
+import org.ic4j.agent.identity.AnonymousIdentity;
+import org.ic4j.agent.identity.BasicIdentity;
+import org.ic4j.agent.identity.Identity;
+import org.ic4j.agent.identity.Prime256v1Identity;
+import org.ic4j.agent.identity.Secp256k1Identity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Agents shared by all ic endpoints of one component. Endpoints that talk to
+ * the same replica URL with the same transport, identity and ingress expiry
+ * get the same Agent, so they share one HTTP client and connection pool and
+ * fetch the root key once.
+ *
+ * Agents are created outside the registry lock, so fetching the root key of
+ * one replica does not hold up endpoints of other replicas. Concurrent
+ * acquires of the same agent wait for the same creation.
+ *
+ * Agents are reference counted, the last release closes the transport.
+ * Endpoints with different transport options or factories get their own
+ * transport, so each connection pool is sized for the endpoints using it.
+ */
+public class ICAgentRegistry {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ICAgentRegistry.class);
+
+	static {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	// apache transport settings used for the options left unset
+	static final int APACHE_MAX_CONNECTIONS = 500;
+
+	static final int APACHE_MAX_CONNECTIONS_PER_ROUTE = 100;
+
+	static final int APACHE_CONNECTION_TIME_TO_LIVE = 60;
+
+	static final int TRANSPORT_TIMEOUT = 120;
+
+	// guarded by this
+	private final Map<Key, Slot> agents = new HashMap<Key, Slot>();
+
+	// generated identities, so all replicas of an endpoint see the same caller
+	private final Map<ICEndpoint, Identity> generatedIdentities = new WeakHashMap<ICEndpoint, Identity>();
+
+	/**
+	 * Returns a handle on the Agent matching the endpoint configuration,
+	 * creating it on first use. Every acquire must be paired with a release.
+	 */
+	public ICAgentHandle acquire(ICEndpoint endpoint) throws Exception {
+		return this.acquire(endpoint, endpoint.getUrl());
+	}
+
+	/**
+	 * Returns a handle on the Agent for one of the replica URLs of the
+	 * endpoint.
+	 */
+	public ICAgentHandle acquire(ICEndpoint endpoint, String url) throws Exception {
+		Key key = Key.of(endpoint, url);
+
+		Slot slot;
+		Identity generated = null;
+		boolean create;
+
+		synchronized (this) {
+			slot = this.agents.get(key);
+			create = slot == null;
+
+			if (create) {
+				slot = new Slot();
+				this.agents.put(key, slot);
+
+				if (key.identity() == endpoint)
+					generated = this.generatedIdentities.computeIfAbsent(endpoint, ICAgentRegistry::generateIdentity);
+			}
+
+			// counted before the agent exists, so a concurrent release cannot close it under us
+			slot.refCount++;
+		}
+
+		if (create)
+			this.create(endpoint, url, key, slot, generated);
+
+		try {
+			return slot.handle.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+
+			throw e;
+		}
+	}
+
+	private void create(ICEndpoint endpoint, String url, Key key, Slot slot, Identity generated) {
+		ICAgentHandle handle;
+
+		try {
+			ReplicaTransport transport = endpoint.getTransport() != null ? endpoint.getTransport() : createTransport(endpoint, url);
+
+			Identity identity = generated != null ? generated : createIdentity(endpoint);
+
+			handle = new ICAgentHandle(this, key, createAgent(endpoint, transport, identity), transport, endpoint.getTransport() == null);
+		} catch (Exception e) {
+			synchronized (this) {
+				this.agents.remove(key, slot);
+			}
+
+			slot.handle.completeExceptionally(e);
+			return;
+		}
+
+		boolean cleared;
+
+		synchronized (this) {
+			cleared = this.agents.get(key) != slot;
+		}
+
+		// the registry was cleared while the agent was created
+		if (cleared) {
+			handle.close();
+			slot.handle.completeExceptionally(new IllegalStateException("Agent registry cleared while creating agent for " + key));
+			return;
+		}
+
+		LOG.debug("Created agent for {}", key);
+		slot.handle.complete(handle);
+	}
+
+	void release(ICAgentHandle handle) {
+		synchronized (this) {
+			Slot slot = this.agents.get(handle.key);
+
+			// already closed by clear
+			if (slot == null || slot.handle.getNow(null) != handle)
+				return;
+
+			if (--slot.refCount > 0)
+				return;
+
+			this.agents.remove(handle.key);
+		}
+
+		handle.close();
+	}
+
+	/**
+	 * Closes all agents regardless of their reference count.
+	 */
+	public void clear() {
+		List<Slot> slots;
+
+		synchronized (this) {
+			slots = new ArrayList<Slot>(this.agents.values());
+			this.agents.clear();
+		}
+
+		// agents still being created are closed by their creator
+		for (Slot slot : slots) {
+			ICAgentHandle handle = slot.handle.getNow(null);
+
+			if (handle != null)
+				handle.close();
+		}
+	}
+
+	public synchronized int size() {
+		return this.agents.size();
+	}
+
+	static ReplicaTransport createTransport(ICEndpoint endpoint, String url) throws Exception {
+		ICTransportFactory factory = getTransportFactory(endpoint);
+
+		if (factory != null)
+			return factory.create(endpoint, url);
+
+		switch (endpoint.getTransportType()) {
+		case "okhttp":
+			checkTransportOptions(endpoint);
+
+			if (endpoint.getTransportTimeout() != null)
+				return ReplicaOkHttpTransport.create(url, endpoint.getTransportTimeout());
+
+			return ReplicaOkHttpTransport.create(url);
+		case "apache":
+			if (hasTransportOptions(endpoint))
+				return ReplicaApacheHttpTransport.create(url,
+						valueOf(endpoint.getTransportMaxConnections(), APACHE_MAX_CONNECTIONS),
+						valueOf(endpoint.getTransportMaxConnectionsPerRoute(), APACHE_MAX_CONNECTIONS_PER_ROUTE),
+						valueOf(endpoint.getTransportConnectionTimeToLive(), APACHE_CONNECTION_TIME_TO_LIVE),
+						valueOf(endpoint.getTransportTimeout(), TRANSPORT_TIMEOUT));
+
+			return ReplicaApacheHttpTransport.create(url);
+		default:
+			// the JDK client keeps one pool per client and negotiates HTTP/2 by itself
+			checkTransportOptions(endpoint);
+
+			return ReplicaJavaHttpTransport.create(url);
+		}
+	}
+
+	/**
+	 * Rejects the transport options the transport of the endpoint cannot
+	 * apply. A transport bean or transportFactory handles them by itself.
+	 *
+	 * @throws IllegalArgumentException when an option would be ignored
+	 */
+	static void checkTransportOptions(ICEndpoint endpoint) {
+		if (endpoint.getTransport() != null || getTransportFactory(endpoint) != null)
+			return;
+
+		switch (endpoint.getTransportType()) {
+		case "apache":
+			return;
+		case "okhttp":
+			if (hasPoolOptions(endpoint))
+				throw new IllegalArgumentException(
+						"The okhttp transport only supports the transportTimeout option, use apache or a transportFactory for the pool options");
+			return;
+		default:
+			if (hasTransportOptions(endpoint))
+				throw new IllegalArgumentException(
+						"Transport options are not supported by the java transport, use apache, okhttp or a transportFactory");
+		}
+	}
+
+	static ICTransportFactory getTransportFactory(ICEndpoint endpoint) {
+		if (endpoint.getTransportFactory() != null)
+			return endpoint.getTransportFactory();
+
+		return endpoint.getComponent() != null ? endpoint.getComponent().getTransportFactory() : null;
+	}
+
+	private static boolean hasTransportOptions(ICEndpoint endpoint) {
+		return hasPoolOptions(endpoint) || endpoint.getTransportTimeout() != null;
+	}
+
+	private static boolean hasPoolOptions(ICEndpoint endpoint) {
+		return endpoint.getTransportMaxConnections() != null || endpoint.getTransportMaxConnectionsPerRoute() != null
+				|| endpoint.getTransportConnectionTimeToLive() != null;
+	}
+
+	private static int valueOf(Integer value, int defaultValue) {
+		return value != null ? value : defaultValue;
+	}
+
+	static Identity createIdentity(ICEndpoint endpoint) throws Exception {
+		if (endpoint.getIdentity() != null)
+			return endpoint.getIdentity();
+
+		String pemFileName = endpoint.getPemFile();
+
+		switch (endpoint.getIdentityType()) {
+		case "basic":
+			if(pemFileName == null)
+			{
+				KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+				return BasicIdentity.fromKeyPair(keyPair);
+			}
+			else
+				return BasicIdentity.fromPEMFile(Paths.get(pemFileName));
+		case "secp256k1":
+			return Secp256k1Identity.fromPEMFile(Paths.get(pemFileName));
+		case "prime256v1":
+			return Prime256v1Identity.fromPEMFile(Paths.get(pemFileName));
+		default:
+			return new AnonymousIdentity();
+		}
+	}
+
+	private static Identity generateIdentity(ICEndpoint endpoint) {
+		try {
+			return createIdentity(endpoint);
+		} catch (Exception e) {
+			throw new IllegalStateException("Cannot generate identity", e);
+		}
+	}
+
+	static Agent createAgent(ICEndpoint endpoint, ReplicaTransport transport, Identity identity) throws Exception {
+		Agent agent;
+
+		if(endpoint.getIngressExpiryDuration() == null)
+			agent = new AgentBuilder().transport(transport).identity(identity).nonceFactory(new NonceFactory())
+					.build();
+		else
+			agent = new AgentBuilder().transport(transport).identity(identity).nonceFactory(new NonceFactory()).ingresExpiry(endpoint.getIngressExpiryDuration())
+			.build();
+
+		if(endpoint.getFetchRootKey())
+			agent.fetchRootKey();
+
+		return agent;
+	}
+
+	/**
+	 * Agent of a key with the number of acquires not released yet, completed
+	 * once the agent is created.
+	 */
+	static final class Slot {
+		final CompletableFuture<ICAgentHandle> handle = new CompletableFuture<ICAgentHandle>();
+
+		int refCount;
+	}
+
+	/**
+	 * Identity of a shared agent. Explicit transport or identity beans are
+	 * compared by instance, a generated basic identity is never shared between
+	 * endpoints.
+	 */
+	record Key(String url, String transportType, List<Object> transportOptions, String identityType, String pemFile,
+			Duration ingressExpiry, boolean fetchRootKey, Object transport, Object identity) {
+
+		static Key of(ICEndpoint endpoint, String url) {
+			Object identity = endpoint.getIdentity();
+
+			if (identity == null && "basic".equals(endpoint.getIdentityType()) && endpoint.getPemFile() == null)
+				identity = endpoint;
+
+			List<Object> transportOptions = Arrays.asList(endpoint.getTransportMaxConnections(),
+					endpoint.getTransportMaxConnectionsPerRoute(), endpoint.getTransportConnectionTimeToLive(),
+					endpoint.getTransportTimeout(), getTransportFactory(endpoint));
+
+			return new Key(url, endpoint.getTransportType(), transportOptions, endpoint.getIdentityType(), endpoint.getPemFile(),
+					endpoint.getIngressExpiryDuration(), Boolean.TRUE.equals(endpoint.getFetchRootKey()), endpoint.getTransport(), identity);
+		}
+
+		@Override
+		public String toString() {
+			return this.transportType + ":" + this.url + " (" + this.identityType + ")";
+		}
+	}
+}
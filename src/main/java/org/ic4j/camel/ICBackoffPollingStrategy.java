@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Polling strategy with a fixed, exponential or Fibonacci backoff between
+ * polls, an initial delay, a maximum interval, random jitter and an overall
+ * deadline. All values are in milliseconds.
+ */
+public final class ICBackoffPollingStrategy implements ICPollingStrategy {
+
+	public static final String FIXED = "fixed";
+	public static final String EXPONENTIAL = "exponential";
+	public static final String FIBONACCI = "fibonacci";
+
+	private final String backoff;
+
+	private final long initialDelay;
+
+	private final long interval;
+
+	private final long maxInterval;
+
+	private final double multiplier;
+
+	private final double jitter;
+
+	private final long timeout;
+
+	public ICBackoffPollingStrategy(String backoff, long initialDelay, long interval, long maxInterval, double multiplier,
+			double jitter, long timeout) {
+		if (!FIXED.equals(backoff) && !EXPONENTIAL.equals(backoff) && !FIBONACCI.equals(backoff))
+			throw new IllegalArgumentException("Unsupported polling backoff " + backoff);
+
+		if (jitter < 0 || jitter > 1)
+			throw new IllegalArgumentException("Polling jitter must be between 0 and 1");
+
+		this.backoff = backoff;
+		this.initialDelay = Math.max(0, initialDelay);
+		this.interval = Math.max(1, interval);
+		this.maxInterval = Math.max(this.interval, maxInterval);
+		this.multiplier = Math.max(1, multiplier);
+		this.jitter = jitter;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Polls every interval milliseconds, the first poll is issued immediately.
+	 */
+	public static ICBackoffPollingStrategy fixed(long interval, long timeout) {
+		return new ICBackoffPollingStrategy(FIXED, 0, interval, interval, 1, 0, timeout);
+	}
+
+	@Override
+	public long nextDelay(int attempt) {
+		if (attempt == 0)
+			return this.initialDelay;
+
+		double delay;
+
+		switch (this.backoff) {
+		case EXPONENTIAL:
+			delay = this.interval * Math.pow(this.multiplier, attempt - 1);
+			break;
+		case FIBONACCI:
+			delay = this.interval * fibonacci(attempt);
+			break;
+		default:
+			delay = this.interval;
+			break;
+		}
+
+		delay = Math.min(delay, this.maxInterval);
+
+		if (this.jitter > 0)
+			delay = delay * (1 + this.jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1));
+
+		return Math.min(Math.round(delay), this.maxInterval);
+	}
+
+	@Override
+	public long getTimeout() {
+		return this.timeout;
+	}
+
+	public String getBackoff() {
+		return this.backoff;
+	}
+
+	// 1, 1, 2, 3, 5, ... saturating well above any sensible maxInterval
+	static double fibonacci(int n) {
+		double previous = 0;
+		double current = 1;
+
+		for (int i = 1; i < n && current < Integer.MAX_VALUE; i++) {
+			double next = previous + current;
+			previous = current;
+			current = next;
+		}
+
+		return current;
+	}
+
+	@Override
+	public String toString() {
+		return this.backoff + "[initialDelay=" + this.initialDelay + ", interval=" + this.interval + ", maxInterval="
+				+ this.maxInterval + ", jitter=" + this.jitter + ", timeout=" + this.timeout + "]";
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import org.ic4j.agent.AgentError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects message bodies of concurrent exchanges and sends them as one vec
+ * argument to the batch method. The batch is sent when batchSize bodies are
+ * collected or batchTimeout milliseconds after its first body, whichever comes
+ * first. The vec reply is handed back to the exchanges by position.
+ *
+ * The batch plan is resolved again for every batch, so a canister upgrade or
+ * idlFile change reaches batched calls like any other call.
+ */
+final class ICBatcher {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ICBatcher.class);
+
+	// the current batch plan, rebuilt when its IDL changed
+	private final Supplier<CompletableFuture<ICCallPlan>> plan;
+
+	// sends the encoded batch and completes with the reply
+	private final BiFunction<ICCallPlan, byte[], CompletableFuture<byte[]>> invoker;
+
+	private final int batchSize;
+
+	private final long batchTimeout;
+
+	private final ScheduledExecutorService scheduler;
+
+	private List<Entry> pending = new ArrayList<Entry>();
+
+	private ScheduledFuture<?> flushTask;
+
+	ICBatcher(Supplier<CompletableFuture<ICCallPlan>> plan, BiFunction<ICCallPlan, byte[], CompletableFuture<byte[]>> invoker,
+			int batchSize, long batchTimeout, ScheduledExecutorService scheduler) {
+		this.plan = plan;
+		this.invoker = invoker;
+		this.batchSize = batchSize;
+		this.batchTimeout = batchTimeout;
+		this.scheduler = scheduler;
+	}
+
+	CompletableFuture<Object> add(Object body) {
+		Entry entry = new Entry(body, new CompletableFuture<Object>());
+		List<Entry> batch = null;
+
+		synchronized (this) {
+			this.pending.add(entry);
+
+			if (this.pending.size() >= this.batchSize)
+				batch = this.take();
+			else if (this.flushTask == null)
+				this.flushTask = this.scheduler.schedule(this::flush, this.batchTimeout, TimeUnit.MILLISECONDS);
+		}
+
+		if (batch != null)
+			this.send(batch);
+
+		return entry.reply;
+	}
+
+	/**
+	 * Sends whatever is pending when the batch timeout expires.
+	 */
+	void flush() {
+		List<Entry> batch;
+
+		synchronized (this) {
+			batch = this.take();
+		}
+
+		if (!batch.isEmpty())
+			this.send(batch);
+	}
+
+	// guarded by this
+	private List<Entry> take() {
+		if (this.flushTask != null) {
+			this.flushTask.cancel(false);
+			this.flushTask = null;
+		}
+
+		List<Entry> batch = this.pending;
+		this.pending = new ArrayList<Entry>(this.batchSize);
+
+		return batch;
+	}
+
+	private void send(List<Entry> batch) {
+		List<Object> bodies = new ArrayList<Object>(batch.size());
+
+		for (Entry entry : batch)
+			bodies.add(entry.body);
+
+		CompletableFuture<ICCallPlan> plan;
+
+		try {
+			plan = this.plan.get();
+		} catch (Exception e) {
+			plan = CompletableFuture.failedFuture(e);
+		}
+
+		plan.thenCompose(resolved -> this.send(resolved, bodies)).whenComplete((results, error) -> {
+			if (error != null) {
+				fail(batch, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+				return;
+			}
+
+			// oneway batches have no reply
+			if (results == null) {
+				for (Entry entry : batch)
+					entry.reply.complete(null);
+				return;
+			}
+
+			for (int i = 0; i < batch.size(); i++)
+				batch.get(i).reply.complete(results.get(i));
+		});
+	}
+
+	/**
+	 * @return one result per body, or null for a oneway batch
+	 */
+	private CompletableFuture<List<Object>> send(ICCallPlan plan, List<Object> bodies) {
+		LOG.trace("Sending batch of {} to {}", bodies.size(), plan);
+
+		return this.invoker.apply(plan, plan.encodeBatch(bodies)).thenApply(bytes -> {
+			if (bytes == null)
+				return null;
+
+			List<Object> results = plan.decodeBatch(bytes);
+
+			if (results.size() != bodies.size())
+				throw AgentError.create(AgentError.AgentErrorCode.CUSTOM_ERROR, "Batch method " + plan.method + " returned "
+						+ results.size() + " results for " + bodies.size() + " arguments");
+
+			return results;
+		});
+	}
+
+	private static void fail(List<Entry> batch, Throwable error) {
+		for (Entry entry : batch)
+			entry.reply.completeExceptionally(error);
+	}
+
+	/**
+	 * Fails the exchanges still waiting for their batch, called on stop.
+	 */
+	void cancel() {
+		List<Entry> batch;
+
+		synchronized (this) {
+			batch = this.take();
+		}
+
+		fail(batch, new RejectedExecutionException("Batch producer stopped"));
+	}
+
+	record Entry(Object body, CompletableFuture<Object> reply) {
+	}
+}
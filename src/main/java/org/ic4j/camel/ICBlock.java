@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel;
+
+import java.math.BigInteger;
+
+/**
+ * A ledger block with its index, as returned by icrc3_get_blocks and emitted
+ * by the blocks consumer. The block is the ICRC-3 Value decoded by
+ * {@link ICBlockStream}: byte[] for Blob, String for Text, BigInteger for Nat
+ * and Int, List for Array and Map with String keys for Map.
+ */
+public class ICBlock {
+	public BigInteger id;
+
+	public Object block;
+
+	/**
+	 * @return the block index
+	 */
+	public BigInteger getId() {
+		return id;
+	}
+
+	/**
+	 * @return the block value
+	 */
+	public Object getBlock() {
+		return block;
+	}
+
+	@Override
+	public String toString() {
+		return "ICBlock[" + id + "]";
+	}
+}
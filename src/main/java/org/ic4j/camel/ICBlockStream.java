@@ -0,0 +1,325 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.ic4j.candid.ObjectSerializer;
+import org.ic4j.candid.annotations.Field;
+import org.ic4j.candid.annotations.Name;
+import org.ic4j.candid.parser.IDLArgs;
+import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.candid.pojo.PojoSerializer;
+import org.ic4j.candid.types.Type;
+import org.ic4j.types.Func;
+import org.ic4j.types.Principal;
+
+/**
+ * Reads ranges of ICRC-3 blocks from a ledger with icrc3_get_blocks. Ranges
+ * the ledger moved to archive canisters are read from the archives through
+ * the callbacks of the reply, all archives of a range in parallel. Calls go
+ * through the endpoint service, so replicas, limits and retries apply.
+ *
+ * Replies are decoded with an {@link ICCandidReader} rather than the
+ * reflective deserializer, because the block value is the recursive ICRC-3
+ * Value variant. A block becomes byte[] (Blob), String (Text), BigInteger (Nat
+ * and Int), List (Array) or Map with String keys (Map).
+ */
+public class ICBlockStream {
+
+	static final String GET_BLOCKS = "icrc3_get_blocks";
+
+	// Candid field and case hashes of the reply, in increasing order within each type
+	static final long LOG_LENGTH = 2799807105L;
+	static final long BLOCKS = 2817142406L;
+	static final long ARCHIVED_BLOCKS = 4171053571L;
+
+	static final long ID = 23515L;
+	static final long BLOCK = 3036443981L;
+
+	static final long START = 2215343202L;
+	static final long LENGTH = 2668074214L;
+
+	static final long ARGS = 1081380189L;
+	static final long CALLBACK = 2131139013L;
+
+	// Value cases: Int, Map, Nat, Blob, Text, Array
+	static final long[] VALUE_CASES = { 3654863L, 3850876L, 3900609L, 737307005L, 936573133L, 3099385209L };
+
+	private final ICService service;
+
+	private final ICCallPlan ledgerPlan;
+
+	private final ObjectSerializer serializer = new PojoSerializer();
+
+	ICBlockStream(ICService service, Principal ledger) {
+		this.service = service;
+		this.ledgerPlan = rawQueryPlan(ledger, GET_BLOCKS);
+	}
+
+	/**
+	 * @return the blocks from start on without gaps, with the log length of
+	 *         the ledger reply
+	 */
+	CompletableFuture<Range> fetch(long start, int length) {
+		GetBlocksArgs args = new GetBlocksArgs();
+		args.start = BigInteger.valueOf(start);
+		args.length = BigInteger.valueOf(length);
+
+		return this.getBlocks(this.ledgerPlan, new GetBlocksArgs[] { args }).thenCompose(result -> {
+			List<CompletableFuture<GetBlocksResult>> archived = new ArrayList<CompletableFuture<GetBlocksResult>>();
+
+			if (result.archivedBlocks != null)
+				for (ArchivedBlocks archive : result.archivedBlocks)
+					archived.add(this.getBlocks(rawQueryPlan(archive.callback.getPrincipal(), archive.callback.getMethod()),
+							archive.args));
+
+			return CompletableFuture.allOf(archived.toArray(new CompletableFuture<?>[archived.size()])).thenApply(ignore -> {
+				List<ICBlock> blocks = new ArrayList<ICBlock>();
+
+				if (result.blocks != null)
+					blocks.addAll(Arrays.asList(result.blocks));
+
+				for (CompletableFuture<GetBlocksResult> archive : archived)
+					if (archive.join().blocks != null)
+						blocks.addAll(Arrays.asList(archive.join().blocks));
+
+				// without a log length only a short range marks the tip
+				long logLength = result.logLength != null ? result.logLength.longValueExact()
+						: blocks.size() < length ? start + blocks.size() : Long.MAX_VALUE;
+
+				return new Range(start, length, contiguous(blocks, start, length), logLength);
+			});
+		});
+	}
+
+	private CompletableFuture<GetBlocksResult> getBlocks(ICCallPlan plan, GetBlocksArgs[] args) {
+		List<IDLValue> values = new ArrayList<IDLValue>(1);
+		values.add(IDLValue.create(args, this.serializer));
+
+		return this.service.invoke(plan, IDLArgs.create(values).toBytes()).thenApply(reply -> {
+			ICCandidReader reader = new ICCandidReader(reply);
+
+			if (!reader.nextArg())
+				throw new IllegalArgumentException(plan + " returned no value");
+
+			return readResult(reader);
+		});
+	}
+
+	static GetBlocksResult readResult(ICCandidReader reader) {
+		GetBlocksResult result = new GetBlocksResult();
+
+		reader.readRecord();
+
+		reader.require(LOG_LENGTH, "log_length");
+		result.logLength = reader.readNat();
+
+		reader.require(BLOCKS, "blocks");
+		result.blocks = new ICBlock[reader.readVec()];
+
+		for (int i = 0; i < result.blocks.length; i++) {
+			reader.element();
+			reader.readRecord();
+
+			ICBlock block = new ICBlock();
+			reader.require(ID, "id");
+			block.id = reader.readNat();
+			reader.require(BLOCK, "block");
+			block.block = readValue(reader);
+
+			reader.end();
+			result.blocks[i] = block;
+		}
+
+		reader.end();
+
+		reader.require(ARCHIVED_BLOCKS, "archived_blocks");
+		result.archivedBlocks = new ArchivedBlocks[reader.readVec()];
+
+		for (int i = 0; i < result.archivedBlocks.length; i++) {
+			reader.element();
+			reader.readRecord();
+
+			ArchivedBlocks archive = new ArchivedBlocks();
+			reader.require(ARGS, "args");
+			archive.args = new GetBlocksArgs[reader.readVec()];
+
+			for (int j = 0; j < archive.args.length; j++) {
+				reader.element();
+				reader.readRecord();
+
+				GetBlocksArgs args = new GetBlocksArgs();
+				reader.require(START, "start");
+				args.start = reader.readNat();
+				reader.require(LENGTH, "length");
+				args.length = reader.readNat();
+
+				reader.end();
+				archive.args[j] = args;
+			}
+
+			reader.end();
+
+			reader.require(CALLBACK, "callback");
+			archive.callback = reader.readFunc();
+
+			reader.end();
+			result.archivedBlocks[i] = archive;
+		}
+
+		reader.end();
+		reader.end();
+
+		return result;
+	}
+
+	/**
+	 * Reads an ICRC-3 Value.
+	 */
+	static Object readValue(ICCandidReader reader) {
+		switch (reader.readVariant(VALUE_CASES)) {
+		case 0:
+			return reader.readInt();
+		case 1: {
+			int length = reader.readVec();
+			Map<String, Object> map = new LinkedHashMap<String, Object>();
+
+			for (int i = 0; i < length; i++) {
+				reader.element();
+				reader.readRecord();
+				reader.require(0, "0");
+				String key = reader.readText();
+				reader.require(1, "1");
+				map.put(key, readValue(reader));
+				reader.end();
+			}
+
+			reader.end();
+			return map;
+		}
+		case 2:
+			return reader.readNat();
+		case 3:
+			return reader.readBlob();
+		case 4:
+			return reader.readText();
+		default: {
+			int length = reader.readVec();
+			List<Object> array = new ArrayList<Object>(length);
+
+			for (int i = 0; i < length; i++) {
+				reader.element();
+				array.add(readValue(reader));
+			}
+
+			reader.end();
+			return array;
+		}
+		}
+	}
+
+	static List<ICBlock> contiguous(List<ICBlock> blocks, long start, int length) {
+		blocks.sort(Comparator.comparing((ICBlock block) -> block.id));
+
+		List<ICBlock> result = new ArrayList<ICBlock>(Math.min(blocks.size(), length));
+		long next = start;
+
+		for (ICBlock block : blocks) {
+			if (result.size() == length)
+				break;
+
+			// blocks before the range, or a gap the next fetch fills
+			if (block.id.longValueExact() < next)
+				continue;
+
+			if (block.id.longValueExact() > next)
+				break;
+
+			result.add(block);
+			next++;
+		}
+
+		return result;
+	}
+
+	// the plan only routes the call, arguments and replies are encoded here
+	private static ICCallPlan rawQueryPlan(Principal canisterId, String method) {
+		return new ICCallPlan(canisterId, canisterId, method, ICConfiguration.QUERY_PREFIX, null, null, null, true, true, null,
+				null);
+	}
+
+	public static class GetBlocksArgs {
+		@Field(Type.NAT)
+		@Name("start")
+		public BigInteger start;
+
+		@Field(Type.NAT)
+		@Name("length")
+		public BigInteger length;
+	}
+
+	public static class GetBlocksResult {
+		public BigInteger logLength;
+
+		public ICBlock[] blocks;
+
+		public ArchivedBlocks[] archivedBlocks;
+	}
+
+	public static class ArchivedBlocks {
+		public GetBlocksArgs[] args;
+
+		public Func callback;
+	}
+
+	/**
+	 * A fetched range: the blocks from start on without gaps, and the length
+	 * of the log when the ledger replied.
+	 */
+	record Range(long start, int length, List<ICBlock> blocks, long logLength) {
+
+		/**
+		 * @return the index of the first block after this range
+		 */
+		long next() {
+			return this.start + this.blocks.size();
+		}
+
+		/**
+		 * @return true when no block exists after this range
+		 */
+		boolean isTip() {
+			return this.next() >= this.logLength;
+		}
+
+		/**
+		 * @return true when the ledger returned fewer blocks than requested
+		 *         although the log goes on, ranges fetched after this one would
+		 *         leave a gap
+		 */
+		boolean isShort() {
+			return this.blocks.size() < this.length && !this.isTip();
+		}
+	}
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of canister calls in flight. Calls are asynchronous, so a
+ * call holds its slot from dispatch until its reply arrives, not a thread.
+ * What happens to calls over the limit depends on the policy:
+ * <ul>
+ * <li>wait: the call waits in a bounded queue and is dispatched by the
+ * completion of an earlier call, it is rejected when the queue is full or when
+ * it waited longer than the wait timeout</li>
+ * <li>reject: the call is rejected immediately</li>
+ * </ul>
+ * Wait timeouts run on a scheduler shared by the bulkheads of the component and
+ * are cancelled when the call leaves the queue.
+ */
+public class ICBulkhead {
+
+	public static final String WAIT = "wait";
+	public static final String REJECT = "reject";
+
+	// queued calls handed over by completions on this thread while it dispatches
+	private static final ThreadLocal<Queue<Task>> DISPATCHING = new ThreadLocal<Queue<Task>>();
+
+	private final String name;
+
+	private final int maxConcurrency;
+
+	private final int queueSize;
+
+	private final String policy;
+
+	// 0 waits until a slot frees up
+	private final long waitTimeout;
+
+	// null without a wait timeout
+	private final ScheduledExecutorService scheduler;
+
+	private final Queue<Task> queue = new ArrayDeque<Task>();
+
+	private int inFlight;
+
+	private long rejectedCount;
+
+	private long timedOutCount;
+
+	public ICBulkhead(String name, int maxConcurrency, int queueSize) {
+		this(name, maxConcurrency, queueSize, WAIT, 0, null);
+	}
+
+	public ICBulkhead(String name, int maxConcurrency, int queueSize, String policy, long waitTimeout,
+			ScheduledExecutorService scheduler) {
+		if (maxConcurrency <= 0)
+			throw new IllegalArgumentException("Bulkhead " + name + " maxConcurrency must be positive");
+
+		if (!WAIT.equals(policy) && !REJECT.equals(policy))
+			throw new IllegalArgumentException("Unsupported bulkhead policy " + policy);
+
+		if (WAIT.equals(policy) && waitTimeout > 0 && scheduler == null)
+			throw new IllegalArgumentException("Bulkhead " + name + " needs a scheduler for its wait timeout");
+
+		this.name = name;
+		this.maxConcurrency = maxConcurrency;
+		this.queueSize = WAIT.equals(policy) ? Math.max(0, queueSize) : 0;
+		this.policy = policy;
+		this.waitTimeout = Math.max(0, waitTimeout);
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Dispatches the call now if a slot is free, otherwise applies the policy.
+	 *
+	 * @return the reply of the call, or a RejectedExecutionException when the
+	 *         call is rejected
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+		CompletableFuture<T> reply = new CompletableFuture<T>();
+		Task task = new Task(() -> this.run(call, reply), reply);
+
+		synchronized (this) {
+			if (this.inFlight < this.maxConcurrency) {
+				this.inFlight++;
+			} else if (this.queue.size() < this.queueSize) {
+				this.queue.add(task);
+
+				if (this.waitTimeout > 0)
+					task.timeout = this.scheduler.schedule(() -> this.timeout(task), this.waitTimeout, TimeUnit.MILLISECONDS);
+
+				return reply;
+			} else {
+				this.rejectedCount++;
+				reply.completeExceptionally(new RejectedExecutionException(
+						"Bulkhead " + this.name + " is full, " + this.inFlight + " calls in flight and " + this.queue.size() + " queued"));
+				return reply;
+			}
+		}
+
+		dispatch(task);
+		return reply;
+	}
+
+	private void timeout(Task task) {
+		synchronized (this) {
+			if (!this.queue.remove(task))
+				return;
+
+			this.timedOutCount++;
+			this.rejectedCount++;
+		}
+
+		task.reply.completeExceptionally(new RejectedExecutionException(
+				"Bulkhead " + this.name + " wait timeout of " + this.waitTimeout + " ms expired"));
+	}
+
+	private <T> void run(Supplier<CompletableFuture<T>> call, CompletableFuture<T> reply) {
+		CompletableFuture<T> response;
+
+		try {
+			response = call.get();
+		} catch (Exception e) {
+			response = CompletableFuture.failedFuture(e);
+		}
+
+		response.whenComplete((result, error) -> {
+			this.release();
+
+			if (error != null)
+				reply.completeExceptionally(error);
+			else
+				reply.complete(result);
+		});
+	}
+
+	private void release() {
+		Task next;
+
+		synchronized (this) {
+			next = this.queue.poll();
+
+			// the slot passes to the next queued call
+			if (next == null)
+				this.inFlight--;
+		}
+
+		if (next == null)
+			return;
+
+		if (next.timeout != null)
+			next.timeout.cancel(false);
+
+		dispatch(next);
+	}
+
+	/**
+	 * Runs the task, then the tasks released on this thread meanwhile. A call
+	 * completing synchronously releases its slot from within its own dispatch,
+	 * so the next queued call runs after it returns instead of deeper in the
+	 * stack.
+	 */
+	private static void dispatch(Task task) {
+		Queue<Task> pending = DISPATCHING.get();
+
+		if (pending != null) {
+			pending.add(task);
+			return;
+		}
+
+		pending = new ArrayDeque<Task>();
+		DISPATCHING.set(pending);
+
+		try {
+			for (Task next = task; next != null; next = pending.poll())
+				next.run.run();
+		} finally {
+			DISPATCHING.remove();
+		}
+	}
+
+	/**
+	 * Fails all queued calls, calls in flight complete normally.
+	 */
+	public void clear() {
+		List<Task> tasks;
+
+		synchronized (this) {
+			tasks = new ArrayList<Task>(this.queue);
+			this.queue.clear();
+		}
+
+		for (Task task : tasks) {
+			if (task.timeout != null)
+				task.timeout.cancel(false);
+
+			task.reply.completeExceptionally(new RejectedExecutionException("Bulkhead " + this.name + " stopped"));
+		}
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public int getMaxConcurrency() {
+		return this.maxConcurrency;
+	}
+
+	public int getQueueSize() {
+		return this.queueSize;
+	}
+
+	public String getPolicy() {
+		return this.policy;
+	}
+
+	public long getWaitTimeout() {
+		return this.waitTimeout;
+	}
+
+	public synchronized int getInFlight() {
+		return this.inFlight;
+	}
+
+	public synchronized int getQueueDepth() {
+		return this.queue.size();
+	}
+
+	/**
+	 * @return the number of calls rejected, including calls whose wait timed out
+	 */
+	public synchronized long getRejectedCount() {
+		return this.rejectedCount;
+	}
+
+	public synchronized long getTimedOutCount() {
+		return this.timedOutCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ICBulkhead[" + this.name + ", " + this.policy + ", inFlight=" + this.inFlight + "/" + this.maxConcurrency + ", queued="
+				+ this.queue.size() + "/" + this.queueSize + ", rejected=" + this.rejectedCount + ", timedOut=" + this.timedOutCount + "]";
+	}
+
+	static final class Task {
+		final Runnable run;
+
+		final CompletableFuture<?> reply;
+
+		// the wait timeout, cancelled when the call leaves the queue
+		volatile ScheduledFuture<?> timeout;
+
+		Task(Runnable run, CompletableFuture<?> reply) {
+			this.run = run;
+			this.reply = reply;
+		}
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ic4j.candid.ObjectDeserializer;
+import org.ic4j.candid.ObjectSerializer;
+import org.ic4j.candid.parser.IDLArgs;
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.candid.pojo.PojoDeserializer;
+import org.ic4j.candid.pojo.PojoSerializer;
+import org.ic4j.candid.types.Type;
+import org.ic4j.types.Principal;
+import org.w3c.dom.Node;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+
+/**
+ * Immutable description of a single canister method call, resolved once when
+ * the producer starts. The hot path only encodes the argument, sends it and
+ * decodes the reply, so one plan can be shared by all threads of a producer.
+ *
+ * The serializer and deserializer are created for this plan only and their
+ * IDL types are set before the plan is published, they are not mutated
+ * afterwards. Raw plans skip them, the argument and reply are Candid bytes.
+ * Pojo plans use the generated codec of the argument class or outClass when
+ * there is one, and fall back to the reflective serializers otherwise.
+ */
+final class ICCallPlan {
+
+	final Principal canisterId;
+
+	final Principal effectiveCanisterId;
+
+	final String method;
+
+	final String methodType;
+
+	private final ObjectSerializer serializer;
+
+	private final ObjectDeserializer deserializer;
+
+	private final Class<?> outClass;
+
+	private final boolean rawIn;
+
+	private final boolean rawOut;
+
+	private final boolean codecIn;
+
+	private final ICCodec<?> outCodec;
+
+	// canister or idlFile path the IDL types were read from, null without IDL
+	final Object idlSource;
+
+	final IDLType idlService;
+
+	ICCallPlan(Principal canisterId, Principal effectiveCanisterId, String method, String methodType,
+			ObjectSerializer serializer, ObjectDeserializer deserializer, Class<?> outClass, boolean rawIn, boolean rawOut,
+			Object idlSource, IDLType idlService) {
+		this.canisterId = canisterId;
+		this.effectiveCanisterId = effectiveCanisterId == null ? canisterId : effectiveCanisterId;
+		this.method = method;
+		this.methodType = methodType;
+		this.serializer = serializer;
+		this.deserializer = deserializer;
+		this.outClass = outClass;
+		this.rawIn = rawIn;
+		this.rawOut = rawOut;
+		this.codecIn = serializer instanceof PojoSerializer;
+		this.outCodec = deserializer instanceof PojoDeserializer ? ICCodecs.get(outClass) : null;
+		this.idlSource = idlSource;
+		this.idlService = idlService;
+	}
+
+	boolean isQuery() {
+		return ICConfiguration.QUERY_PREFIX.equals(this.methodType);
+	}
+
+	boolean isOneway() {
+		return ICConfiguration.ONEWAY_PREFIX.equals(this.methodType);
+	}
+
+	/**
+	 * @return the number of leading arguments of the method that cannot be
+	 *         omitted, trailing opt, null and reserved arguments may be; 0 when
+	 *         the method IDL is unknown
+	 */
+	int requiredArgs() {
+		IDLType methodType = this.idlService == null ? null : this.idlService.getMeths().get(this.method);
+
+		if (methodType == null)
+			return 0;
+
+		List<IDLType> args = methodType.getArgs();
+		int required = args.size();
+
+		while (required > 0 && omittable(args.get(required - 1)))
+			required--;
+
+		return required;
+	}
+
+	private static boolean omittable(IDLType type) {
+		return type.getType() == Type.OPT || type.getType() == Type.NULL || type.getType() == Type.RESERVED;
+	}
+
+	byte[] encode(Object arg) {
+		if (this.rawIn && arg != null)
+			return toBytes(arg);
+
+		if (this.codecIn && arg != null) {
+			ICCodec<?> codec = ICCodecs.get(arg.getClass());
+
+			if (codec != null)
+				return encode(codec, arg);
+		}
+
+		List<IDLValue> args = new ArrayList<IDLValue>(1);
+
+		if (arg != null)
+			args.add(IDLValue.create(arg, this.serializer));
+
+		return IDLArgs.create(args).toBytes();
+	}
+
+	Object decode(byte[] reply) {
+		if (this.rawOut)
+			return reply;
+
+		if (this.outCodec != null)
+			return this.outCodec.decode(reply);
+
+		IDLArgs outArgs = IDLArgs.fromBytes(reply);
+
+		if (outArgs.getArgs().isEmpty())
+			return null;
+
+		IDLValue value = outArgs.getArgs().get(0);
+
+		if (this.outClass == null)
+			return value.getValue();
+
+		return value.getObject(this.deserializer, this.outClass);
+	}
+
+	/**
+	 * Encodes the message bodies of a batch as a single vec argument. Jackson
+	 * and Gson bodies become a JSON array, other bodies an array of the class
+	 * of the first body.
+	 */
+	byte[] encodeBatch(List<Object> args) {
+		Object first = args.get(0);
+
+		if (first instanceof JsonNode) {
+			ArrayNode array = JsonNodeFactory.instance.arrayNode(args.size());
+
+			for (Object arg : args)
+				array.add((JsonNode) arg);
+
+			return this.encode(array);
+		}
+
+		if (first instanceof JsonElement) {
+			JsonArray array = new JsonArray(args.size());
+
+			for (Object arg : args)
+				array.add((JsonElement) arg);
+
+			return this.encode(array);
+		}
+
+		if (first instanceof Node)
+			throw new IllegalArgumentException("Batching is not supported for dom bodies");
+
+		Object array = Array.newInstance(first.getClass(), args.size());
+
+		for (int i = 0; i < args.size(); i++)
+			Array.set(array, i, args.get(i));
+
+		return this.encode(array);
+	}
+
+	/**
+	 * Decodes the vec reply of a batch into one result per argument.
+	 */
+	List<Object> decodeBatch(byte[] reply) {
+		IDLArgs outArgs = IDLArgs.fromBytes(reply);
+
+		if (outArgs.getArgs().isEmpty())
+			throw new IllegalArgumentException("Batch method " + this.method + " returned no value");
+
+		IDLValue value = outArgs.getArgs().get(0);
+
+		Object result;
+
+		if (this.outClass == null)
+			result = value.getValue();
+		else if (JsonNode.class.isAssignableFrom(this.outClass) || JsonElement.class.isAssignableFrom(this.outClass))
+			result = value.getObject(this.deserializer, this.outClass);
+		else
+			result = value.getObject(this.deserializer, this.outClass.arrayType());
+
+		if (result instanceof Object[])
+			return Arrays.asList((Object[]) result);
+
+		List<Object> results = new ArrayList<Object>();
+
+		if (result != null && result.getClass().isArray()) {
+			for (int i = 0; i < Array.getLength(result); i++)
+				results.add(Array.get(result, i));
+		} else if (result instanceof Iterable) {
+			// Jackson ArrayNode, Gson JsonArray or a List
+			for (Object item : (Iterable<?>) result)
+				results.add(item);
+		} else
+			throw new IllegalArgumentException("Batch method " + this.method + " did not return a vec");
+
+		return results;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> byte[] encode(ICCodec<T> codec, Object arg) {
+		return codec.encode((T) arg);
+	}
+
+	private static byte[] toBytes(Object arg) {
+		if (arg instanceof byte[])
+			return (byte[]) arg;
+
+		if (arg instanceof ByteBuffer) {
+			// the body buffer is left untouched, it may be read again by the route
+			ByteBuffer buffer = ((ByteBuffer) arg).duplicate();
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			return bytes;
+		}
+
+		throw new IllegalArgumentException("Raw inType requires a byte[] or ByteBuffer body, got " + arg.getClass().getName());
+	}
+
+	@Override
+	public String toString() {
+		return this.methodType + ":" + this.canisterId + "/" + this.method;
+	}
+}
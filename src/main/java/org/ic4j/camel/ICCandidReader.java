@@ -0,0 +1,774 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.ic4j.types.Func;
+import org.ic4j.types.Principal;
+
+/**
+ * Reads the Candid values of a message for a generated codec. The type table
+ * of the message is parsed once, then every read checks the value against
+ * the wire type, which may be a subtype of the type the codec was generated
+ * for: record fields unknown to the codec are skipped, missing opt fields
+ * read as null and nat values are accepted for int.
+ *
+ * Compound values are read between a readRecord or readVec call and the
+ * matching end call. Inside a record each field is selected with field or
+ * require, in field hash order, inside a vec each element with element.
+ */
+public final class ICCandidReader {
+
+	static final int NULL = -1;
+	static final int BOOL = -2;
+	static final int NAT = -3;
+	static final int INT = -4;
+	static final int NAT8 = -5;
+	static final int NAT16 = -6;
+	static final int NAT32 = -7;
+	static final int NAT64 = -8;
+	static final int INT8 = -9;
+	static final int INT16 = -10;
+	static final int INT32 = -11;
+	static final int INT64 = -12;
+	static final int FLOAT32 = -13;
+	static final int FLOAT64 = -14;
+	static final int TEXT = -15;
+	static final int RESERVED = -16;
+	static final int EMPTY = -17;
+	static final int OPT = -18;
+	static final int VEC = -19;
+	static final int RECORD = -20;
+	static final int VARIANT = -21;
+	static final int FUNC = -22;
+	static final int SERVICE = -23;
+	static final int PRINCIPAL = -24;
+
+	private static final byte[] MAGIC = { 'D', 'I', 'D', 'L' };
+
+	private final byte[] message;
+
+	private int position;
+
+	// kind of each type table entry, and its element type or field hashes and types
+	private final int[] kinds;
+
+	private final int[] elements;
+
+	private final long[][] hashes;
+
+	private final int[][] types;
+
+	private final int[] args;
+
+	private int arg;
+
+	// type of the next value to read
+	private int next;
+
+	// open records and vecs: their type and, for records, the next wire field
+	private int[] frameTypes = new int[8];
+
+	private int[] framePositions = new int[8];
+
+	private int depth;
+
+	public ICCandidReader(byte[] message) {
+		this.message = message;
+
+		if (message.length < MAGIC.length || !Arrays.equals(message, 0, MAGIC.length, MAGIC, 0, MAGIC.length))
+			throw new IllegalArgumentException("Not a Candid message");
+
+		this.position = MAGIC.length;
+
+		int count = this.readCount();
+
+		this.kinds = new int[count];
+		this.elements = new int[count];
+		this.hashes = new long[count][];
+		this.types = new int[count][];
+
+		for (int i = 0; i < count; i++)
+			this.readTypeEntry(i);
+
+		this.args = new int[this.readCount()];
+
+		for (int i = 0; i < this.args.length; i++)
+			this.args[i] = this.readTypeRef();
+	}
+
+	/**
+	 * Moves to the next argument of the message.
+	 *
+	 * @return false when all arguments were read
+	 */
+	public boolean nextArg() {
+		if (this.arg >= this.args.length)
+			return false;
+
+		this.next = this.args[this.arg++];
+		return true;
+	}
+
+	public boolean readBool() {
+		this.expect(BOOL);
+
+		int value = this.readByte();
+
+		if (value > 1)
+			throw new IllegalArgumentException("Invalid bool " + value);
+
+		return value == 1;
+	}
+
+	public BigInteger readNat() {
+		this.expect(NAT);
+		return this.readUnsigned();
+	}
+
+	public BigInteger readInt() {
+		// nat is a subtype of int
+		if (this.kind(this.next) == NAT)
+			return this.readUnsigned();
+
+		this.expect(INT);
+
+		int start = this.position;
+		long value = 0;
+		int shift = 0;
+		int b;
+
+		do {
+			b = this.readByte();
+
+			if (shift == 63)
+				return this.readSignedBig(start);
+
+			value |= (long) (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+
+		if (shift < 64 && (b & 0x40) != 0)
+			value |= -1L << shift;
+
+		return BigInteger.valueOf(value);
+	}
+
+	public byte readNat8() {
+		this.expect(NAT8);
+		return (byte) this.readFixed(1);
+	}
+
+	public short readNat16() {
+		this.expect(NAT16);
+		return (short) this.readFixed(2);
+	}
+
+	public int readNat32() {
+		this.expect(NAT32);
+		return (int) this.readFixed(4);
+	}
+
+	public long readNat64() {
+		this.expect(NAT64);
+		return this.readFixed(8);
+	}
+
+	public byte readInt8() {
+		this.expect(INT8);
+		return (byte) this.readFixed(1);
+	}
+
+	public short readInt16() {
+		this.expect(INT16);
+		return (short) this.readFixed(2);
+	}
+
+	public int readInt32() {
+		this.expect(INT32);
+		return (int) this.readFixed(4);
+	}
+
+	public long readInt64() {
+		this.expect(INT64);
+		return this.readFixed(8);
+	}
+
+	public float readFloat32() {
+		this.expect(FLOAT32);
+		return Float.intBitsToFloat((int) this.readFixed(4));
+	}
+
+	public double readFloat64() {
+		this.expect(FLOAT64);
+		return Double.longBitsToDouble(this.readFixed(8));
+	}
+
+	public String readText() {
+		this.expect(TEXT);
+
+		int length = this.readCount();
+		this.check(length);
+
+		String value = new String(this.message, this.position, length, StandardCharsets.UTF_8);
+		this.position += length;
+
+		return value;
+	}
+
+	public Principal readPrincipal() {
+		this.expect(PRINCIPAL);
+
+		if (this.readByte() != 1)
+			throw new IllegalArgumentException("Opaque principal references are not supported");
+
+		return Principal.from(this.readBytes());
+	}
+
+	/**
+	 * Reads a func reference, such as the callback of an archive.
+	 */
+	public Func readFunc() {
+		if (this.kind(this.next) != FUNC)
+			throw this.mismatch("func", this.next);
+
+		if (this.readByte() != 1 || this.readByte() != 1)
+			throw new IllegalArgumentException("Opaque func references are not supported");
+
+		Principal principal = Principal.from(this.readBytes());
+		String method = new String(this.readBytes(), StandardCharsets.UTF_8);
+
+		return new Func(principal, method);
+	}
+
+	/**
+	 * Reads a vec nat8 value.
+	 */
+	public byte[] readBlob() {
+		int type = this.next;
+
+		if (this.kind(type) != VEC || this.kind(this.elements[type]) != NAT8)
+			throw this.mismatch("blob", type);
+
+		return this.readBytes();
+	}
+
+	/**
+	 * Reads the tag of an opt value. A null or reserved wire value reads as
+	 * absent, a value of any other type than opt as present.
+	 *
+	 * @return true when a value follows
+	 */
+	public boolean readOpt() {
+		int type = this.next;
+		int kind = this.kind(type);
+
+		if (kind == NULL || kind == RESERVED)
+			return false;
+
+		if (kind != OPT)
+			return true;
+
+		switch (this.readByte()) {
+		case 0:
+			return false;
+		case 1:
+			this.next = this.elements[type];
+			return true;
+		default:
+			throw new IllegalArgumentException("Invalid opt tag at " + (this.position - 1));
+		}
+	}
+
+	/**
+	 * Opens a vec, each element is then selected with element.
+	 *
+	 * @return the number of elements
+	 */
+	public int readVec() {
+		int type = this.next;
+
+		if (this.kind(type) != VEC)
+			throw this.mismatch("vec", type);
+
+		int length = this.readCount();
+		this.push(type);
+
+		return length;
+	}
+
+	/**
+	 * Selects the next element of the open vec.
+	 */
+	public void element() {
+		this.next = this.elements[this.frameTypes[this.depth - 1]];
+	}
+
+	/**
+	 * Opens a record, its fields are then selected with field or require.
+	 */
+	public void readRecord() {
+		int type = this.next;
+
+		if (this.kind(type) != RECORD)
+			throw this.mismatch("record", type);
+
+		this.push(type);
+	}
+
+	/**
+	 * Selects the field of the open record, skipping the wire fields before
+	 * it. Fields must be selected in increasing hash order.
+	 *
+	 * @return false when the record has no such field
+	 */
+	public boolean field(long hash) {
+		int frame = this.depth - 1;
+		int type = this.frameTypes[frame];
+		long[] fieldHashes = this.hashes[type];
+		int[] fieldTypes = this.types[type];
+
+		int field = this.framePositions[frame];
+
+		while (field < fieldHashes.length && fieldHashes[field] < hash)
+			this.skip(fieldTypes[field++]);
+
+		this.framePositions[frame] = field;
+
+		if (field == fieldHashes.length || fieldHashes[field] != hash)
+			return false;
+
+		this.framePositions[frame] = field + 1;
+		this.next = fieldTypes[field];
+
+		return true;
+	}
+
+	/**
+	 * Selects a field that is not optional.
+	 */
+	public void require(long hash, String name) {
+		if (!this.field(hash))
+			throw new IllegalArgumentException("Record field " + name + " is missing");
+	}
+
+	/**
+	 * Closes the open record or vec, skipping the record fields that were not
+	 * read.
+	 */
+	public void end() {
+		int frame = this.depth - 1;
+		int type = this.frameTypes[frame];
+
+		if (this.kinds[type] == RECORD) {
+			int[] fieldTypes = this.types[type];
+
+			for (int field = this.framePositions[frame]; field < fieldTypes.length; field++)
+				this.skip(fieldTypes[field]);
+		}
+
+		this.depth--;
+	}
+
+	/**
+	 * Reads the case of a variant, its value is read next.
+	 *
+	 * @param caseHashes the case hashes the codec knows, in increasing order
+	 * @return the index of the case in caseHashes
+	 */
+	public int readVariant(long[] caseHashes) {
+		int type = this.next;
+
+		if (this.kind(type) != VARIANT)
+			throw this.mismatch("variant", type);
+
+		int index = this.readCount();
+
+		if (index >= this.hashes[type].length)
+			throw new IllegalArgumentException("Invalid variant index " + index);
+
+		long hash = this.hashes[type][index];
+		int known = Arrays.binarySearch(caseHashes, hash);
+
+		if (known < 0)
+			throw new IllegalArgumentException("Unknown variant case " + hash);
+
+		this.next = this.types[type][index];
+
+		return known;
+	}
+
+	/**
+	 * Skips the current value, such as the payload of a variant case without
+	 * one in the codec.
+	 */
+	public void skip() {
+		this.skip(this.next);
+	}
+
+	private void skip(int type) {
+		switch (this.kind(type)) {
+		case NULL:
+		case RESERVED:
+			return;
+		case BOOL:
+		case NAT8:
+		case INT8:
+			this.advance(1);
+			return;
+		case NAT16:
+		case INT16:
+			this.advance(2);
+			return;
+		case NAT32:
+		case INT32:
+		case FLOAT32:
+			this.advance(4);
+			return;
+		case NAT64:
+		case INT64:
+		case FLOAT64:
+			this.advance(8);
+			return;
+		case NAT:
+		case INT:
+			while ((this.readByte() & 0x80) != 0)
+				;
+			return;
+		case TEXT:
+			this.advance(this.readCount());
+			return;
+		case PRINCIPAL:
+			if (this.readByte() == 1)
+				this.advance(this.readCount());
+			return;
+		case OPT:
+			if (this.readByte() == 1)
+				this.skip(this.elements[type]);
+			return;
+		case VEC: {
+			int length = this.readCount();
+			int element = this.elements[type];
+
+			for (int i = 0; i < length; i++)
+				this.skip(element);
+			return;
+		}
+		case RECORD:
+			for (int field : this.types[type])
+				this.skip(field);
+			return;
+		case VARIANT:
+			this.skip(this.types[type][this.readCount()]);
+			return;
+		case FUNC:
+			if (this.readByte() == 1) {
+				if (this.readByte() == 1)
+					this.advance(this.readCount());
+				this.advance(this.readCount());
+			}
+			return;
+		case SERVICE:
+			if (this.readByte() == 1)
+				this.advance(this.readCount());
+			return;
+		default:
+			throw new IllegalArgumentException("Cannot skip a value of type " + type);
+		}
+	}
+
+	private void readTypeEntry(int index) {
+		int kind = this.readSignedInt();
+		this.kinds[index] = kind;
+
+		switch (kind) {
+		case OPT:
+		case VEC:
+			this.elements[index] = this.readTypeRef();
+			return;
+		case RECORD:
+		case VARIANT: {
+			int count = this.readCount();
+			long[] fieldHashes = new long[count];
+			int[] fieldTypes = new int[count];
+
+			for (int i = 0; i < count; i++) {
+				fieldHashes[i] = this.readUnsignedLong();
+				fieldTypes[i] = this.readTypeRef();
+			}
+
+			this.hashes[index] = fieldHashes;
+			this.types[index] = fieldTypes;
+			return;
+		}
+		case FUNC: {
+			for (int list = 0; list < 2; list++) {
+				int count = this.readCount();
+
+				for (int i = 0; i < count; i++)
+					this.readTypeRef();
+			}
+
+			this.advance(this.readCount());
+			return;
+		}
+		case SERVICE: {
+			int count = this.readCount();
+
+			for (int i = 0; i < count; i++) {
+				this.advance(this.readCount());
+				this.readTypeRef();
+			}
+			return;
+		}
+		default:
+			throw new IllegalArgumentException("Invalid type table entry " + kind);
+		}
+	}
+
+	private int readTypeRef() {
+		int type = this.readSignedInt();
+
+		if (type >= this.kinds.length || type < PRINCIPAL)
+			throw new IllegalArgumentException("Invalid type " + type);
+
+		return type;
+	}
+
+	// the kind of a primitive type is the type itself
+	private int kind(int type) {
+		return type < 0 ? type : this.kinds[type];
+	}
+
+	private void expect(int kind) {
+		if (this.next != kind)
+			throw this.mismatch(name(kind), this.next);
+	}
+
+	private IllegalArgumentException mismatch(String expected, int type) {
+		return new IllegalArgumentException("Expected " + expected + ", got " + name(this.kind(type)));
+	}
+
+	private static String name(int kind) {
+		switch (kind) {
+		case NULL:
+			return "null";
+		case BOOL:
+			return "bool";
+		case NAT:
+			return "nat";
+		case INT:
+			return "int";
+		case NAT8:
+			return "nat8";
+		case NAT16:
+			return "nat16";
+		case NAT32:
+			return "nat32";
+		case NAT64:
+			return "nat64";
+		case INT8:
+			return "int8";
+		case INT16:
+			return "int16";
+		case INT32:
+			return "int32";
+		case INT64:
+			return "int64";
+		case FLOAT32:
+			return "float32";
+		case FLOAT64:
+			return "float64";
+		case TEXT:
+			return "text";
+		case RESERVED:
+			return "reserved";
+		case EMPTY:
+			return "empty";
+		case OPT:
+			return "opt";
+		case VEC:
+			return "vec";
+		case RECORD:
+			return "record";
+		case VARIANT:
+			return "variant";
+		case FUNC:
+			return "func";
+		case SERVICE:
+			return "service";
+		case PRINCIPAL:
+			return "principal";
+		default:
+			return String.valueOf(kind);
+		}
+	}
+
+	private void push(int type) {
+		if (this.depth == this.frameTypes.length) {
+			this.frameTypes = Arrays.copyOf(this.frameTypes, this.depth * 2);
+			this.framePositions = Arrays.copyOf(this.framePositions, this.depth * 2);
+		}
+
+		this.frameTypes[this.depth] = type;
+		this.framePositions[this.depth] = 0;
+		this.depth++;
+	}
+
+	private byte[] readBytes() {
+		int length = this.readCount();
+		this.check(length);
+
+		byte[] bytes = Arrays.copyOfRange(this.message, this.position, this.position + length);
+		this.position += length;
+
+		return bytes;
+	}
+
+	private BigInteger readUnsigned() {
+		int start = this.position;
+		long value = 0;
+		int shift = 0;
+		int b;
+
+		do {
+			b = this.readByte();
+
+			if (shift == 63)
+				return this.readUnsignedBig(start);
+
+			value |= (long) (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+
+		return BigInteger.valueOf(value);
+	}
+
+	// the slow path of values that do not fit a long
+	private BigInteger readUnsignedBig(int start) {
+		this.position = start;
+
+		BigInteger value = BigInteger.ZERO;
+		int shift = 0;
+		int b;
+
+		do {
+			b = this.readByte();
+			value = value.or(BigInteger.valueOf(b & 0x7f).shiftLeft(shift));
+			shift += 7;
+		} while ((b & 0x80) != 0);
+
+		return value;
+	}
+
+	private BigInteger readSignedBig(int start) {
+		this.position = start;
+
+		BigInteger value = BigInteger.ZERO;
+		int shift = 0;
+		int b;
+
+		do {
+			b = this.readByte();
+			value = value.or(BigInteger.valueOf(b & 0x7f).shiftLeft(shift));
+			shift += 7;
+		} while ((b & 0x80) != 0);
+
+		if ((b & 0x40) != 0)
+			value = value.subtract(BigInteger.ONE.shiftLeft(shift));
+
+		return value;
+	}
+
+	private long readUnsignedLong() {
+		long value = 0;
+		int shift = 0;
+		int b;
+
+		do {
+			b = this.readByte();
+
+			if (shift > 63)
+				throw new IllegalArgumentException("LEB128 value too large at " + this.position);
+
+			value |= (long) (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+
+		return value;
+	}
+
+	private int readCount() {
+		long value = this.readUnsignedLong();
+
+		if (value > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Invalid length " + value);
+
+		return (int) value;
+	}
+
+	private int readSignedInt() {
+		long value = 0;
+		int shift = 0;
+		int b;
+
+		do {
+			b = this.readByte();
+
+			if (shift > 31)
+				throw new IllegalArgumentException("Invalid type at " + this.position);
+
+			value |= (long) (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+
+		if ((b & 0x40) != 0)
+			value |= -1L << shift;
+
+		return (int) value;
+	}
+
+	private long readFixed(int size) {
+		this.check(size);
+
+		long value = 0;
+
+		for (int i = 0; i < size; i++)
+			value |= (long) (this.message[this.position++] & 0xff) << (8 * i);
+
+		return value;
+	}
+
+	private int readByte() {
+		if (this.position >= this.message.length)
+			throw new IllegalArgumentException("Unexpected end of Candid message");
+
+		return this.message[this.position++] & 0xff;
+	}
+
+	private void advance(int length) {
+		this.check(length);
+		this.position += length;
+	}
+
+	private void check(int length) {
+		if (length < 0 || length > this.message.length - this.position)
+			throw new IllegalArgumentException("Unexpected end of Candid message");
+	}
+}
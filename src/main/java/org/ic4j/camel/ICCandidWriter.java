@@ -0,0 +1,273 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.ic4j.types.Func;
+import org.ic4j.types.Principal;
+
+/**
+ * Writes Candid values into a growing byte array, after the header of a
+ * generated codec. The type table is part of the header, so values are
+ * written in the order of their type: record fields in field hash order,
+ * variants as the index of their case in hash order.
+ */
+public final class ICCandidWriter {
+
+	private byte[] buffer;
+
+	private int position;
+
+	public ICCandidWriter(byte[] header) {
+		this.buffer = Arrays.copyOf(header, Math.max(64, header.length * 2));
+		this.position = header.length;
+	}
+
+	public void writeBool(boolean value) {
+		this.ensure(1);
+		this.buffer[this.position++] = (byte) (value ? 1 : 0);
+	}
+
+	public void writeNat(BigInteger value) {
+		if (value.signum() < 0)
+			throw new IllegalArgumentException("Negative nat " + value);
+
+		if (value.bitLength() < 64) {
+			this.writeLength(value.longValue());
+			return;
+		}
+
+		this.ensure(value.bitLength() / 7 + 1);
+
+		BigInteger rest = value;
+
+		while (rest.bitLength() > 7) {
+			this.buffer[this.position++] = (byte) (rest.intValue() & 0x7f | 0x80);
+			rest = rest.shiftRight(7);
+		}
+
+		this.buffer[this.position++] = (byte) rest.intValue();
+	}
+
+	public void writeInt(BigInteger value) {
+		if (value.bitLength() < 64) {
+			this.writeSigned(value.longValue());
+			return;
+		}
+
+		this.ensure(value.bitLength() / 7 + 2);
+
+		BigInteger rest = value;
+
+		while (true) {
+			int bits = rest.intValue() & 0x7f;
+			rest = rest.shiftRight(7);
+
+			boolean done = rest.signum() == 0 && (bits & 0x40) == 0 || rest.equals(BigInteger.ONE.negate()) && (bits & 0x40) != 0;
+
+			if (done) {
+				this.buffer[this.position++] = (byte) bits;
+				return;
+			}
+
+			this.buffer[this.position++] = (byte) (bits | 0x80);
+		}
+	}
+
+	public void writeNat8(byte value) {
+		this.ensure(1);
+		this.buffer[this.position++] = value;
+	}
+
+	public void writeNat16(short value) {
+		this.writeFixed(value, 2);
+	}
+
+	public void writeNat32(int value) {
+		this.writeFixed(value, 4);
+	}
+
+	public void writeNat64(long value) {
+		this.writeFixed(value, 8);
+	}
+
+	public void writeInt8(byte value) {
+		this.writeNat8(value);
+	}
+
+	public void writeInt16(short value) {
+		this.writeFixed(value, 2);
+	}
+
+	public void writeInt32(int value) {
+		this.writeFixed(value, 4);
+	}
+
+	public void writeInt64(long value) {
+		this.writeFixed(value, 8);
+	}
+
+	public void writeFloat32(float value) {
+		this.writeFixed(Float.floatToRawIntBits(value), 4);
+	}
+
+	public void writeFloat64(double value) {
+		this.writeFixed(Double.doubleToRawLongBits(value), 8);
+	}
+
+	public void writeText(String value) {
+		int length = utf8Length(value);
+
+		this.writeLength(length);
+		this.ensure(length);
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (c < 0x80)
+				this.buffer[this.position++] = (byte) c;
+			else if (c < 0x800) {
+				this.buffer[this.position++] = (byte) (0xc0 | c >> 6);
+				this.buffer[this.position++] = (byte) (0x80 | c & 0x3f);
+			} else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				this.buffer[this.position++] = (byte) (0xf0 | codePoint >> 18);
+				this.buffer[this.position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+				this.buffer[this.position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+				this.buffer[this.position++] = (byte) (0x80 | codePoint & 0x3f);
+			} else {
+				// an unpaired surrogate is not valid text, it becomes U+FFFD
+				if (Character.isSurrogate(c))
+					c = '\ufffd';
+
+				this.buffer[this.position++] = (byte) (0xe0 | c >> 12);
+				this.buffer[this.position++] = (byte) (0x80 | c >> 6 & 0x3f);
+				this.buffer[this.position++] = (byte) (0x80 | c & 0x3f);
+			}
+		}
+	}
+
+	public void writePrincipal(Principal value) {
+		byte[] bytes = value.getValue();
+
+		this.writeBool(true);
+		this.writeBlob(bytes);
+	}
+
+	/**
+	 * Writes a func reference as its canister and method name.
+	 */
+	public void writeFunc(Func value) {
+		this.writeBool(true);
+		this.writePrincipal(value.getPrincipal());
+		this.writeText(value.getMethod());
+	}
+
+	/**
+	 * Writes a vec nat8 value.
+	 */
+	public void writeBlob(byte[] value) {
+		this.writeLength(value.length);
+		this.ensure(value.length);
+		System.arraycopy(value, 0, this.buffer, this.position, value.length);
+		this.position += value.length;
+	}
+
+	/**
+	 * Writes the tag of an opt value, followed by the value when present.
+	 */
+	public void writeOpt(boolean present) {
+		this.writeBool(present);
+	}
+
+	/**
+	 * Writes the length of a vec, followed by its elements.
+	 */
+	public void writeLength(long length) {
+		this.ensure(10);
+
+		long rest = length;
+
+		while ((rest & ~0x7fL) != 0) {
+			this.buffer[this.position++] = (byte) (rest & 0x7f | 0x80);
+			rest >>>= 7;
+		}
+
+		this.buffer[this.position++] = (byte) rest;
+	}
+
+	/**
+	 * Writes the case index of a variant, followed by the case value.
+	 */
+	public void writeVariant(int index) {
+		this.writeLength(index);
+	}
+
+	public byte[] toByteArray() {
+		return Arrays.copyOf(this.buffer, this.position);
+	}
+
+	private void writeSigned(long value) {
+		this.ensure(10);
+
+		long rest = value;
+
+		while (true) {
+			int bits = (int) (rest & 0x7f);
+			rest >>= 7;
+
+			if (rest == 0 && (bits & 0x40) == 0 || rest == -1 && (bits & 0x40) != 0) {
+				this.buffer[this.position++] = (byte) bits;
+				return;
+			}
+
+			this.buffer[this.position++] = (byte) (bits | 0x80);
+		}
+	}
+
+	private void writeFixed(long value, int size) {
+		this.ensure(size);
+
+		for (int i = 0; i < size; i++)
+			this.buffer[this.position++] = (byte) (value >>> (8 * i));
+	}
+
+	private void ensure(int size) {
+		if (this.position + size > this.buffer.length)
+			this.buffer = Arrays.copyOf(this.buffer, Math.max(this.position + size, this.buffer.length * 2));
+	}
+
+	private static int utf8Length(String value) {
+		int length = value.length();
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (c >= 0x800) {
+				length += 2;
+
+				// a surrogate pair is 4 bytes for 2 chars
+				if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1)))
+					i++;
+			} else if (c >= 0x80)
+				length++;
+		}
+
+		return length;
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.ic4j.agent.Agent;
+import org.ic4j.types.Principal;
+
+/**
+ * Reads values of the certified state tree of a canister with a read_state
+ * call, which costs far less than a query returning the canister data.
+ */
+final class ICCanisterState {
+
+	static final String CERTIFIED_DATA = "certified_data";
+
+	static final String MODULE_HASH = "module_hash";
+
+	private ICCanisterState() {
+	}
+
+	/**
+	 * Reads /canister/&lt;canisterId&gt;/&lt;path&gt;. The value is verified
+	 * against the certificate of the subnet by the agent.
+	 *
+	 * @return the value, empty when the canister has none
+	 */
+	static CompletableFuture<byte[]> read(Agent agent, Principal canisterId, String path) {
+		// the only dependency on the read_state API of the agent
+		return agent.readStateCanisterInfo(canisterId, path).thenApply(value -> value != null ? value : new byte[0]);
+	}
+}
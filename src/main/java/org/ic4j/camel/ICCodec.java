@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel;
+
+/**
+ * Candid encoder and decoder of one Java type, usually generated from a .did
+ * file by the ic4j-camel-maven-plugin. Codecs listed in
+ * META-INF/services/org.ic4j.camel.ICCodec are picked up by all endpoints
+ * with a pojo inType or outType, in place of the reflective Pojo serializer
+ * and deserializer.
+ *
+ * Implementations are stateless and shared by all threads.
+ */
+public interface ICCodec<T> {
+
+	/**
+	 * @return the type of the values this codec encodes and decodes
+	 */
+	Class<T> getType();
+
+	/**
+	 * @return the Candid magic number, type table and argument types of a
+	 *         message holding a single value of this type
+	 */
+	byte[] getHeader();
+
+	/**
+	 * Writes the value, without any type information.
+	 */
+	void write(ICCandidWriter writer, T value);
+
+	/**
+	 * Reads a value of the current type of the reader.
+	 */
+	T read(ICCandidReader reader);
+
+	/**
+	 * @return the Candid message with the value as its single argument
+	 */
+	default byte[] encode(T value) {
+		ICCandidWriter writer = new ICCandidWriter(this.getHeader());
+		this.write(writer, value);
+		return writer.toByteArray();
+	}
+
+	/**
+	 * @return the first argument of the Candid message, or null when it has
+	 *         none or it is an empty opt
+	 */
+	default T decode(byte[] message) {
+		ICCandidReader reader = new ICCandidReader(message);
+
+		// a method returning opt T is decoded like one returning T
+		if (!reader.nextArg() || !reader.readOpt())
+			return null;
+
+		return this.read(reader);
+	}
+}
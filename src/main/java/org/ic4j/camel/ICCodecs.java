@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The codecs found on the class path, loaded once on first use. A codec
+ * registered for an interface, such as a generated variant, also serves the
+ * classes implementing it.
+ */
+public final class ICCodecs {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ICCodecs.class);
+
+	private static final Map<Class<?>, ICCodec<?>> CODECS = load();
+
+	private static final ClassValue<ICCodec<?>> LOOKUP = new ClassValue<ICCodec<?>>() {
+		@Override
+		protected ICCodec<?> computeValue(Class<?> type) {
+			return find(type);
+		}
+	};
+
+	private ICCodecs() {
+	}
+
+	/**
+	 * @return the codec of the class or of one of its supertypes, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> ICCodec<T> get(Class<T> type) {
+		if (type == null || CODECS.isEmpty())
+			return null;
+
+		return (ICCodec<T>) LOOKUP.get(type);
+	}
+
+	private static ICCodec<?> find(Class<?> type) {
+		ICCodec<?> codec = CODECS.get(type);
+
+		if (codec != null)
+			return codec;
+
+		for (Class<?> superInterface : type.getInterfaces()) {
+			codec = find(superInterface);
+
+			if (codec != null)
+				return codec;
+		}
+
+		Class<?> superClass = type.getSuperclass();
+
+		return superClass == null || superClass == Object.class ? null : find(superClass);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static Map<Class<?>, ICCodec<?>> load() {
+		Map<Class<?>, ICCodec<?>> codecs = new HashMap<Class<?>, ICCodec<?>>();
+
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+		if (classLoader == null)
+			classLoader = ICCodecs.class.getClassLoader();
+
+		Iterator<ICCodec> iterator = ServiceLoader.load(ICCodec.class, classLoader).iterator();
+
+		while (iterator.hasNext()) {
+			ICCodec<?> codec;
+
+			try {
+				codec = iterator.next();
+			} catch (ServiceConfigurationError e) {
+				// a broken codec only costs its type the reflective path
+				LOG.warn("Cannot load Candid codec: {}", e.getMessage());
+				continue;
+			}
+
+			ICCodec<?> previous = codecs.put(codec.getType(), codec);
+
+			if (previous != null)
+				LOG.warn("Codec {} replaces {} for {}", codec.getClass().getName(), previous.getClass().getName(),
+						codec.getType().getName());
+		}
+
+		if (!codecs.isEmpty())
+			LOG.debug("Loaded {} Candid codecs", codecs.size());
+
+		return codecs;
+	}
+}
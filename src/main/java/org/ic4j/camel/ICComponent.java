@@ -16,10 +16,20 @@
 
 package org.ic4j.camel;
 
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
 
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.spi.Metadata;
 import org.apache.camel.spi.annotations.Component;
 import org.apache.camel.support.DefaultComponent;
+import org.apache.camel.support.service.ServiceHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +37,55 @@ import org.slf4j.LoggerFactory;
 public class ICComponent extends DefaultComponent {
 	
 	private static final Logger LOG = LoggerFactory.getLogger(ICComponent.class);
+	
+	private final ICAgentRegistry agentRegistry = new ICAgentRegistry();
+	
+	@Metadata(label = "advanced", defaultValue = "64", description = "Maximum number of concurrent request status reads for update calls of all endpoints")
+	private int statusPollConcurrency = 64;
+	
+	private ICStatusPoller statusPoller;
+	
+	@Metadata(label = "advanced", defaultValue = "60000", description = "Milliseconds between checks of the module hash of canisters, or the modification time of idl files, whose IDL is cached")
+	private long idlRefreshInterval = 60000;
+	
+	private ICIdlRegistry idlRegistry;
+	
+	// fetches and parses IDL for the registry
+	private ExecutorService idlExecutor;
+	
+	@Metadata(label = "advanced", defaultValue = "100", description = "Maximum number of query calls in flight for endpoints with executionMode bulkhead")
+	private int queryMaxConcurrency = 100;
+	
+	@Metadata(label = "advanced", defaultValue = "1000", description = "Maximum number of query calls waiting for a slot in the query bulkhead")
+	private int queryQueueSize = 1000;
+	
+	@Metadata(label = "advanced", defaultValue = "100", description = "Maximum number of update and oneway calls in flight for endpoints with executionMode bulkhead")
+	private int updateMaxConcurrency = 100;
+	
+	@Metadata(label = "advanced", defaultValue = "1000", description = "Maximum number of update and oneway calls waiting for a slot in the update bulkhead")
+	private int updateQueueSize = 1000;
+	
+	@Metadata(label = "advanced", description = "Factory creating the replica transports of endpoints without their own transport or transportFactory")
+	private ICTransportFactory transportFactory;
+	
+	private ICBulkhead queryBulkhead;
+	
+	private ICBulkhead updateBulkhead;
+	
+	// wait timeouts of the maxInFlight limiters
+	private ScheduledExecutorService bulkheadScheduler;
+	
+	// maxInFlight limiters by endpoint URI or canister ID
+	private final Map<String, ICBulkhead> inFlightLimiters = new ConcurrentHashMap<String, ICBulkhead>();
+	
+	// rateLimit limiters by replica URL and canister ID
+	private final Map<String, ICRateLimiter> rateLimiters = new ConcurrentHashMap<String, ICRateLimiter>();
+	
+	// limiter keys and endpoint URIs already warned about conflicting settings
+	private final Set<String> limiterWarnings = ConcurrentHashMap.newKeySet();
+	
+	// offset stores of the blocks consumers, by offsetFile or by endpoint URI
+	private final Map<String, ICOffsetStore> offsetStores = new ConcurrentHashMap<String, ICOffsetStore>();
 
 	@Override
 	protected ICEndpoint createEndpoint(String uri, String remaining, Map<String, Object> parameters) throws Exception {
@@ -38,7 +97,275 @@ public class ICComponent extends DefaultComponent {
 			endpoint.setMethodType(ICConfiguration.QUERY_PREFIX);
 		else
 			endpoint.setMethodType(ICConfiguration.UPDATE_PREFIX);
+		
+		// options the transport would ignore fail here rather than on the first call
+		ICAgentRegistry.checkTransportOptions(endpoint);
 		return endpoint;
 	}
+	
+	/**
+	 * @return the agents shared by the endpoints of this component
+	 */
+	public ICAgentRegistry getAgentRegistry() {
+		return agentRegistry;
+	}
+	
+	/**
+	 * @return the poller waiting for update call replies of all endpoints
+	 */
+	public ICStatusPoller getStatusPoller() {
+		return statusPoller;
+	}
+	
+	/**
+	 * @return the IDL service types shared by the endpoints of this component
+	 */
+	public ICIdlRegistry getIdlRegistry() {
+		return idlRegistry;
+	}
+	
+	/**
+	 * @return the idlRefreshInterval
+	 */
+	public long getIdlRefreshInterval() {
+		return idlRefreshInterval;
+	}
+
+	/**
+	 * @param idlRefreshInterval the idlRefreshInterval to set
+	 */
+	public void setIdlRefreshInterval(long idlRefreshInterval) {
+		this.idlRefreshInterval = idlRefreshInterval;
+	}
+	
+	/**
+	 * @return the statusPollConcurrency
+	 */
+	public int getStatusPollConcurrency() {
+		return statusPollConcurrency;
+	}
+
+	/**
+	 * @param statusPollConcurrency the statusPollConcurrency to set
+	 */
+	public void setStatusPollConcurrency(int statusPollConcurrency) {
+		this.statusPollConcurrency = statusPollConcurrency;
+	}
+	
+	/**
+	 * @return the transportFactory
+	 */
+	public ICTransportFactory getTransportFactory() {
+		return transportFactory;
+	}
+
+	/**
+	 * @param transportFactory the transportFactory to set
+	 */
+	public void setTransportFactory(ICTransportFactory transportFactory) {
+		this.transportFactory = transportFactory;
+	}
+	
+	/**
+	 * @return the bulkhead bounding query calls
+	 */
+	public ICBulkhead getQueryBulkhead() {
+		return queryBulkhead;
+	}
+	
+	/**
+	 * @return the bulkhead bounding update and oneway calls
+	 */
+	public ICBulkhead getUpdateBulkhead() {
+		return updateBulkhead;
+	}
+	
+	/**
+	 * @return the scheduler expiring the wait timeouts of the maxInFlight limiters
+	 */
+	public ScheduledExecutorService getBulkheadScheduler() {
+		return bulkheadScheduler;
+	}
+	
+	/**
+	 * Returns the maxInFlight limiter for an endpoint or canister scope key,
+	 * created by the first endpoint asking for it. Its settings apply to all
+	 * endpoints sharing it.
+	 */
+	public ICBulkhead getInFlightLimiter(String key, Function<String, ICBulkhead> factory) {
+		return inFlightLimiters.computeIfAbsent(key, factory);
+	}
+	
+	/**
+	 * @return the maxInFlight limiters with their queue depth and rejection counts
+	 */
+	public Map<String, ICBulkhead> getInFlightLimiters() {
+		return Collections.unmodifiableMap(inFlightLimiters);
+	}
+	
+	/**
+	 * Returns the rate limiter for a replica URL and canister, created by the
+	 * first endpoint asking for it. Its settings apply to all endpoints sharing
+	 * it.
+	 */
+	public ICRateLimiter getRateLimiter(String key, Function<String, ICRateLimiter> factory) {
+		return rateLimiters.computeIfAbsent(key, factory);
+	}
+	
+	/**
+	 * @return the rate limiters with their current rate
+	 */
+	public Map<String, ICRateLimiter> getRateLimiters() {
+		return Collections.unmodifiableMap(rateLimiters);
+	}
+	
+	/**
+	 * Logs once per limiter and endpoint that the endpoint shares a limiter
+	 * created with other settings than its own.
+	 */
+	void warnLimiterSettings(String key, ICEndpoint endpoint, String settings) {
+		if (limiterWarnings.add(key + " " + endpoint.getEndpointUri()))
+			LOG.warn("Endpoint {} shares the limiter {} created by another endpoint, its own settings are ignored for {}",
+					endpoint.getEndpointUri(), key, settings);
+	}
+	
+	/**
+	 * Returns the offset store of a blocks consumer endpoint: its offsetStore,
+	 * the memory-mapped store of its offsetFile, shared by the consumers
+	 * naming the same file, or a memory store. The offsetStore bean is
+	 * started and stopped by its owner. The other stores are created and
+	 * started once, consumers restarting on the endpoint keep them, and they
+	 * are stopped with the component.
+	 */
+	public ICOffsetStore getOffsetStore(ICEndpoint endpoint) {
+		if (endpoint.getOffsetStore() != null)
+			return endpoint.getOffsetStore();
+		
+		ICOffsetStore store;
+		
+		if (endpoint.getOffsetFile() != null)
+			store = offsetStores.computeIfAbsent("file:" + Paths.get(endpoint.getOffsetFile()).toAbsolutePath().normalize(),
+					key -> new ICMappedOffsetStore(Paths.get(endpoint.getOffsetFile()).toAbsolutePath().normalize()));
+		else
+			store = offsetStores.computeIfAbsent(endpoint.getEndpointUri(), key -> new ICMemoryOffsetStore());
+		
+		// started outside the map, starting a started store does nothing
+		CamelContextAware.trySetCamelContext(store, getCamelContext());
+		ServiceHelper.startService(store);
+		
+		return store;
+	}
+	
+	/**
+	 * @return the queryMaxConcurrency
+	 */
+	public int getQueryMaxConcurrency() {
+		return queryMaxConcurrency;
+	}
+
+	/**
+	 * @param queryMaxConcurrency the queryMaxConcurrency to set
+	 */
+	public void setQueryMaxConcurrency(int queryMaxConcurrency) {
+		this.queryMaxConcurrency = queryMaxConcurrency;
+	}
+	
+	/**
+	 * @return the queryQueueSize
+	 */
+	public int getQueryQueueSize() {
+		return queryQueueSize;
+	}
+
+	/**
+	 * @param queryQueueSize the queryQueueSize to set
+	 */
+	public void setQueryQueueSize(int queryQueueSize) {
+		this.queryQueueSize = queryQueueSize;
+	}
+	
+	/**
+	 * @return the updateMaxConcurrency
+	 */
+	public int getUpdateMaxConcurrency() {
+		return updateMaxConcurrency;
+	}
+
+	/**
+	 * @param updateMaxConcurrency the updateMaxConcurrency to set
+	 */
+	public void setUpdateMaxConcurrency(int updateMaxConcurrency) {
+		this.updateMaxConcurrency = updateMaxConcurrency;
+	}
+	
+	/**
+	 * @return the updateQueueSize
+	 */
+	public int getUpdateQueueSize() {
+		return updateQueueSize;
+	}
+
+	/**
+	 * @param updateQueueSize the updateQueueSize to set
+	 */
+	public void setUpdateQueueSize(int updateQueueSize) {
+		this.updateQueueSize = updateQueueSize;
+	}
+	
+	@Override
+	protected void doStart() throws Exception {
+		super.doStart();
+		
+		statusPoller = new ICStatusPoller(getCamelContext(), statusPollConcurrency);
+		ServiceHelper.startService(statusPoller);
+		
+		idlExecutor = getCamelContext().getExecutorServiceManager().newCachedThreadPool(this, "ICIdlRegistry");
+		idlRegistry = new ICIdlRegistry(idlRefreshInterval, idlExecutor);
+		
+		bulkheadScheduler = getCamelContext().getExecutorServiceManager().newSingleThreadScheduledExecutor(this, "ICBulkhead");
+		
+		queryBulkhead = new ICBulkhead(ICConfiguration.QUERY_PREFIX, queryMaxConcurrency, queryQueueSize);
+		updateBulkhead = new ICBulkhead(ICConfiguration.UPDATE_PREFIX, updateMaxConcurrency, updateQueueSize);
+	}
+	
+	@Override
+	protected void doStop() throws Exception {
+		ServiceHelper.stopService(statusPoller);
+		
+		if (queryBulkhead != null)
+			queryBulkhead.clear();
+		
+		if (updateBulkhead != null)
+			updateBulkhead.clear();
+		
+		for (ICBulkhead limiter : inFlightLimiters.values())
+			limiter.clear();
+		
+		inFlightLimiters.clear();
+		
+		if (bulkheadScheduler != null)
+			getCamelContext().getExecutorServiceManager().shutdown(bulkheadScheduler);
+		
+		bulkheadScheduler = null;
+		rateLimiters.clear();
+		limiterWarnings.clear();
+		
+		ServiceHelper.stopService(offsetStores.values());
+		offsetStores.clear();
+		
+		if (idlRegistry != null)
+			idlRegistry.clear();
+		
+		if (idlExecutor != null)
+			getCamelContext().getExecutorServiceManager().shutdown(idlExecutor);
+		
+		idlExecutor = null;
+		
+		if (agentRegistry.size() > 0)
+			LOG.debug("Closing {} shared agents", agentRegistry.size());
+		
+		agentRegistry.clear();
+		super.doStop();
+	}
 
 }
@@ -4,4 +4,23 @@ public class ICConfiguration implements Cloneable{
 	public static final String UPDATE_PREFIX = "update";
 	public static final String QUERY_PREFIX = "query";
 	public static final String ONEWAY_PREFIX = "oneway";
+	
+	public static final String CALLER_EXECUTION_MODE = "caller";
+	public static final String VIRTUAL_EXECUTION_MODE = "virtual";
+	public static final String BULKHEAD_EXECUTION_MODE = "bulkhead";
+	
+	public static final String ENDPOINT_SCOPE = "endpoint";
+	public static final String CANISTER_SCOPE = "canister";
+	
+	public static final String RAW_TYPE = "raw";
+	
+	public static final String POLL_CONSUMER_MODE = "poll";
+	public static final String BLOCKS_CONSUMER_MODE = "blocks";
+	
+	public static final String REPLY_CHANGE_DETECTION = "reply";
+	public static final String CERTIFIED_DATA_CHANGE_DETECTION = "certifiedData";
+	public static final String MODULE_HASH_CHANGE_DETECTION = "moduleHash";
+	
+	public static final String REPLY_EVENT = "reply";
+	public static final String UPGRADE_EVENT = "upgrade";
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import org.apache.camel.spi.Metadata;
+
+/**
+ * Message headers understood by the ic component.
+ */
+public final class ICConstants {
+
+	@Metadata(label = "producer", description = "The name of the canister method being called, overrides the endpoint method", javaType = "String")
+	public static final String METHOD = "CamelIcMethod";
+
+	@Metadata(label = "producer", description = "The principal ID of the canister being called, overrides the endpoint canisterId", javaType = "String")
+	public static final String CANISTER_ID = "CamelIcCanisterId";
+
+	@Metadata(label = "producer", description = "The type of IC operation to use (update, query or oneway), overrides the endpoint methodType", javaType = "String")
+	public static final String METHOD_TYPE = "CamelIcMethodType";
+
+	@Metadata(label = "producer", description = "The effective canister ID of the destination, overrides the endpoint effectiveCanisterId", javaType = "String")
+	public static final String EFFECTIVE_CANISTER_ID = "CamelIcEffectiveCanisterId";
+
+	@Metadata(label = "consumer", description = "The index of the ledger block emitted by a blocks consumer", javaType = "Long")
+	public static final String BLOCK_INDEX = "CamelIcBlockIndex";
+
+	@Metadata(label = "consumer", description = "The event emitted by a polling consumer, reply or upgrade when the module hash of the canister changed", javaType = "String")
+	public static final String EVENT_TYPE = "CamelIcEventType";
+
+	@Metadata(label = "consumer", description = "The new module hash of an upgraded canister, in hex", javaType = "String")
+	public static final String MODULE_HASH = "CamelIcModuleHash";
+
+	private ICConstants() {
+	}
+}
@@ -16,21 +16,353 @@
 
 package org.ic4j.camel;
 
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
 import org.apache.camel.Processor;
 import org.apache.camel.Suspendable;
-import org.apache.camel.support.DefaultConsumer;
+import org.apache.camel.support.ScheduledPollConsumer;
+import org.apache.camel.support.service.ServiceHelper;
+import org.ic4j.types.Principal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-
-public class ICConsumer extends DefaultConsumer implements Suspendable {
+/**
+ * Calls the query method of the endpoint on every scheduled poll, once for
+ * each polled canister, and emits the decoded reply. By default an exchange
+ * is emitted only when the SHA-256 of the reply bytes differs from the last
+ * reply delivered, so idle polls create no exchange and count as idle for
+ * the backoff options of the scheduler.
+ *
+ * With changeDetection certifiedData or moduleHash, every poll first reads
+ * that value of each canister through read_state and calls the query only
+ * when it changed. A changed module hash also emits an upgrade event.
+ *
+ * With consumerMode blocks the consumer tails the ICRC-3 log of the ledger
+ * canisterId instead. Each poll reads ranges of blockFetchSize blocks from
+ * the last delivered block on, keeping blockPrefetch ranges in flight, and
+ * emits the blocks one by one in index order until the tip of the log. The
+ * index of every delivered block is committed to the offset store.
+ */
+public class ICConsumer extends ScheduledPollConsumer implements Suspendable {
 	
 	private static final Logger LOG = LoggerFactory.getLogger(ICConsumer.class);
 	private ICEndpoint endpoint;
+	
+	private ICService service;
+	
+	private List<String> canisterIds;
+	
+	// digest of the last reply delivered, by canister
+	private final Map<String, byte[]> digests = new ConcurrentHashMap<String, byte[]>();
+	
+	// certified data or module hash seen by the last query call that was delivered, by canister
+	private final Map<String, byte[]> states = new ConcurrentHashMap<String, byte[]>();
+	
+	// module hash of the last upgrade event delivered, by canister
+	private final Map<String, byte[]> moduleHashes = new ConcurrentHashMap<String, byte[]>();
+	
+	private String statePath;
+	
+	private ICBlockStream blockStream;
+	
+	private ICOffsetStore offsetStore;
+	
+	private String offsetKey;
 
 	public ICConsumer(ICEndpoint endpoint, Processor processor) {
+        this(endpoint, processor, new ICService(endpoint));
+	}
+	
+	ICConsumer(ICEndpoint endpoint, Processor processor, ICService service) {
         super(endpoint, processor);
         this.endpoint = endpoint;
+        this.service = service;
+	}
+	
+	@Override
+	protected void doStart() throws Exception {
+		if (!ICConfiguration.QUERY_PREFIX.equals(this.endpoint.getMethodType()))
+			throw new IllegalArgumentException("The ic consumer only calls query methods, use an ic:query endpoint");
+		
+		if (this.isBlocksMode()) {
+			if (this.endpoint.getCanisterId() == null)
+				throw new IllegalArgumentException("The ic blocks consumer requires the ledger canisterId");
+			
+			// the store outlives the consumer, a restarted consumer continues from its offsets
+			this.offsetStore = this.endpoint.getComponent().getOffsetStore(this.endpoint);
+			
+			String consumerId = this.endpoint.getConsumerId() != null ? this.endpoint.getConsumerId() : this.getRouteId();
+			this.offsetKey = this.endpoint.getCanisterId() + "/" + ICBlockStream.GET_BLOCKS + "/" + consumerId;
+			
+			ServiceHelper.startService(this.service);
+			this.blockStream = new ICBlockStream(this.service, Principal.fromString(this.endpoint.getCanisterId()));
+			
+			super.doStart();
+			return;
+		}
+		
+		if (this.endpoint.getMethod() == null)
+			throw new IllegalArgumentException("The ic consumer requires the method option");
+		
+		this.canisterIds = new ArrayList<String>();
+		
+		if (this.endpoint.getCanisterIds() != null)
+			for (String canisterId : this.endpoint.getCanisterIds().split(","))
+				if (!canisterId.isBlank())
+					this.canisterIds.add(canisterId.trim());
+		
+		if (this.canisterIds.isEmpty() && this.endpoint.getCanisterId() != null)
+			this.canisterIds.add(this.endpoint.getCanisterId());
+		
+		if (this.canisterIds.isEmpty())
+			throw new IllegalArgumentException("The ic consumer requires the canisterId or canisterIds option");
+		
+		if (ICConfiguration.CERTIFIED_DATA_CHANGE_DETECTION.equals(this.endpoint.getChangeDetection()))
+			this.statePath = ICCanisterState.CERTIFIED_DATA;
+		else if (ICConfiguration.MODULE_HASH_CHANGE_DETECTION.equals(this.endpoint.getChangeDetection()))
+			this.statePath = ICCanisterState.MODULE_HASH;
+		else
+			this.statePath = null;
+		
+		ServiceHelper.startService(this.service);
+		
+		// an idlFile is read without a replica, a method taking arguments fails the start
+		if (!this.endpoint.getLoadIDL() && this.endpoint.getIdlFile() != null)
+			this.checkArgs(await(this.service.getCallPlan(this.canisterIds.get(0), null, null, null)));
+		
+		super.doStart();
+	}
+	
+	@Override
+	protected void doStop() throws Exception {
+		super.doStop();
+		
+		ServiceHelper.stopService(this.service);
+		this.digests.clear();
+		this.states.clear();
+		this.moduleHashes.clear();
+		this.blockStream = null;
+	}
+	
+	private boolean isBlocksMode() {
+		return ICConfiguration.BLOCKS_CONSUMER_MODE.equals(this.endpoint.getConsumerMode());
+	}
+
+	@Override
+	protected int poll() throws Exception {
+		if (this.blockStream != null)
+			return this.pollBlocks();
+		
+		int count = 0;
+		
+		for (String canisterId : this.canisterIds) {
+			if (!this.isRunAllowed())
+				break;
+			
+			// other canisters of the list are their own effective canister
+			String effectiveCanisterId = canisterId.equals(this.endpoint.getCanisterId()) ? null : canisterId;
+			
+			ICCallPlan plan = await(this.service.getCallPlan(canisterId, null, null, effectiveCanisterId));
+			
+			// a canister IDL is only known once fetched
+			this.checkArgs(plan);
+			
+			byte[] state = null;
+			
+			if (this.statePath != null) {
+				state = await(this.service.readState(plan.canisterId, this.statePath));
+				
+				if (MessageDigest.isEqual(state, this.states.get(canisterId))) {
+					LOG.trace("{} of {} unchanged", this.statePath, plan.canisterId);
+					continue;
+				}
+				
+				if (ICCanisterState.MODULE_HASH.equals(this.statePath) && !this.upgraded(plan, state))
+					continue;
+			}
+			
+			byte[] reply = await(this.service.invoke(plan, plan.encode(null)));
+			
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(reply);
+			
+			if (Boolean.TRUE.equals(this.endpoint.getChangesOnly()) && MessageDigest.isEqual(digest, this.digests.get(canisterId))) {
+				LOG.trace("Reply of {} unchanged", plan);
+				
+				if (state != null)
+					this.states.put(canisterId, state);
+				
+				continue;
+			}
+			
+			boolean delivered = this.emit(plan.toString(), message -> {
+				message.setHeader(ICConstants.CANISTER_ID, plan.canisterId.toString());
+				message.setHeader(ICConstants.METHOD, plan.method);
+				message.setHeader(ICConstants.EVENT_TYPE, ICConfiguration.REPLY_EVENT);
+				message.setBody(plan.decode(reply));
+			});
+			
+			if (delivered) {
+				this.digests.put(canisterId, digest);
+				
+				if (state != null)
+					this.states.put(canisterId, state);
+				
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Emits an upgrade event when the module hash differs from the one of the
+	 * last event. The first hash seen is only recorded.
+	 *
+	 * @return false when the event could not be delivered
+	 */
+	private boolean upgraded(ICCallPlan plan, byte[] moduleHash) {
+		String canisterId = plan.canisterId.toString();
+		byte[] previous = this.moduleHashes.get(canisterId);
+		
+		if (previous != null && !MessageDigest.isEqual(previous, moduleHash)) {
+			boolean delivered = this.emit("upgrade of " + canisterId, message -> {
+				message.setHeader(ICConstants.CANISTER_ID, canisterId);
+				message.setHeader(ICConstants.EVENT_TYPE, ICConfiguration.UPGRADE_EVENT);
+				message.setHeader(ICConstants.MODULE_HASH, HexFormat.of().formatHex(moduleHash));
+			});
+			
+			if (!delivered)
+				return false;
+		}
+		
+		this.moduleHashes.put(canisterId, moduleHash);
+		return true;
+	}
+	
+	private int pollBlocks() throws Exception {
+		Long last = this.offsetStore.load(this.offsetKey);
+		long fetchStart = last != null ? last + 1 : this.endpoint.getStartIndex();
+		int fetchSize = Math.max(1, this.endpoint.getBlockFetchSize());
+		
+		Deque<CompletableFuture<ICBlockStream.Range>> window = new ArrayDeque<CompletableFuture<ICBlockStream.Range>>();
+		int prefetch = Math.max(1, this.endpoint.getBlockPrefetch());
+		
+		for (int i = 0; i < prefetch; i++, fetchStart += fetchSize)
+			window.add(this.blockStream.fetch(fetchStart, fetchSize));
+		
+		int count = 0;
+		
+		try {
+			while (this.isRunAllowed()) {
+				ICBlockStream.Range range = await(window.poll());
+				
+				for (ICBlock block : range.blocks()) {
+					// an undelivered block stops the poll, it is fetched again by the next one
+					boolean delivered = this.emit(this.offsetKey + "#" + block.id, message -> {
+						message.setHeader(ICConstants.CANISTER_ID, this.endpoint.getCanisterId());
+						message.setHeader(ICConstants.BLOCK_INDEX, block.id.longValueExact());
+						message.setBody(block);
+					});
+					
+					if (!delivered)
+						return count;
+					
+					this.offsetStore.commit(this.offsetKey, block.id.longValueExact());
+					count++;
+				}
+				
+				// tip of the log from the ledger reply, ranges fetched beyond it are dropped
+				if (range.isTip())
+					break;
+				
+				// nothing came back short of the tip, the next poll tries again
+				if (range.blocks().isEmpty())
+					break;
+				
+				if (range.isShort()) {
+					// the ledger capped the reply, the ranges in flight would leave a gap
+					for (CompletableFuture<ICBlockStream.Range> skipped : window)
+						skipped.cancel(false);
+					
+					window.clear();
+					fetchStart = range.next();
+					
+					for (int i = 0; i < prefetch; i++, fetchStart += fetchSize)
+						window.add(this.blockStream.fetch(fetchStart, fetchSize));
+					
+					continue;
+				}
+				
+				window.add(this.blockStream.fetch(fetchStart, fetchSize));
+				fetchStart += fetchSize;
+			}
+		} finally {
+			for (CompletableFuture<ICBlockStream.Range> range : window)
+				range.cancel(false);
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * The query is called without arguments, so a method whose IDL declares
+	 * arguments that cannot be omitted is rejected before it is called.
+	 */
+	private void checkArgs(ICCallPlan plan) {
+		int required = plan.requiredArgs();
+		
+		if (required > 0)
+			throw new IllegalArgumentException("The ic consumer calls " + plan.method + " without arguments, but it requires "
+					+ required);
+	}
+	
+	private static <T> T await(CompletableFuture<T> response) throws Exception {
+		try {
+			return response.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			
+			throw e;
+		}
+	}
+	
+	/**
+	 * @return true when the exchange was processed without error
+	 */
+	private boolean emit(String source, Consumer<Message> populate) {
+		Exchange exchange = this.createExchange(false);
+		
+		try {
+			populate.accept(exchange.getIn());
+			
+			this.getProcessor().process(exchange);
+		} catch (Exception e) {
+			exchange.setException(e);
+		}
+		
+		try {
+			if (exchange.getException() == null)
+				return true;
+			
+			// the position is not updated, so the message is emitted again on the next poll
+			this.getExceptionHandler().handleException("Error processing " + source, exchange, exchange.getException());
+			return false;
+		} finally {
+			this.releaseExchange(exchange, false);
+		}
 	}
 
 }
@@ -26,15 +26,15 @@ import org.apache.camel.spi.Metadata;
 import org.apache.camel.spi.UriEndpoint;
 import org.apache.camel.spi.UriParam;
 import org.apache.camel.spi.UriPath;
-import org.apache.camel.support.DefaultEndpoint;
+import org.apache.camel.support.ScheduledPollEndpoint;
 import org.apache.camel.util.UnsafeUriCharactersEncoder;
 import org.ic4j.agent.ReplicaTransport;
 import org.ic4j.agent.identity.Identity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-@UriEndpoint(firstVersion = "3.19.0", scheme = "ic", syntax = "ic:canister", title = "Internet Computer", category = { Category.BLOCKCHAIN })
-public class ICEndpoint extends DefaultEndpoint {
+@UriEndpoint(firstVersion = "3.19.0", scheme = "ic", syntax = "ic:canister", title = "Internet Computer", category = { Category.BLOCKCHAIN }, headersClass = ICConstants.class)
+public class ICEndpoint extends ScheduledPollEndpoint {
 	
 	private static final Logger LOG = LoggerFactory.getLogger(ICEndpoint.class);
 	
@@ -43,7 +43,7 @@ public class ICEndpoint extends DefaultEndpoint {
     private String methodType;
 	
 	@UriParam(label = "common")
-	@Metadata(description = "Set the URL of the Agent", required = true)
+	@Metadata(description = "Set the URL of the Agent, or a comma separated list of replica or boundary node URLs to balance calls over", required = true)
     private String url;	
 	
 	@UriParam(label = "common")
@@ -65,11 +65,51 @@ public class ICEndpoint extends DefaultEndpoint {
     @Metadata(description = "The effective canister ID of the destination")
     private String effectiveCanisterId;  
     
-    @UriParam(label = "common", enums = "pojo,jackson,gson,dom,jaxb.javax,jaxb.jakarta")
-	@Metadata(description = "Input type")
+    @UriParam(label = "consumer", defaultValue = "poll", enums = "poll,blocks")
+    @Metadata(description = "What the consumer emits, the reply of the query method when it changes or the ICRC-3 blocks of the ledger canisterId")
+    private String consumerMode = ICConfiguration.POLL_CONSUMER_MODE;
+    
+    @UriParam(label = "consumer", defaultValue = "0")
+    @Metadata(description = "Index of the first block emitted by a blocks consumer without a stored offset")
+    private Long startIndex = 0L;
+    
+    @UriParam(label = "consumer", defaultValue = "1000")
+    @Metadata(description = "Number of blocks requested by one icrc3_get_blocks call of a blocks consumer")
+    private Integer blockFetchSize = 1000;
+    
+    @UriParam(label = "consumer", defaultValue = "4")
+    @Metadata(description = "Number of block ranges a blocks consumer fetches ahead of the blocks it delivers")
+    private Integer blockPrefetch = 4;
+    
+    @UriParam(label = "consumer,advanced")
+    @Metadata(description = "Store of the last block delivered by a blocks consumer, offsets are kept in memory by default")
+    private ICOffsetStore offsetStore;
+    
+    @UriParam(label = "consumer")
+    @Metadata(description = "File of a memory-mapped offset store shared by the consumers naming it, used when no offsetStore is set")
+    private String offsetFile;
+    
+    @UriParam(label = "consumer")
+    @Metadata(description = "Identifies the consumer in offset store keys, together with the canister and method, defaults to the route id")
+    private String consumerId;
+    
+    @UriParam(label = "consumer")
+    @Metadata(description = "Comma separated principal IDs of the canisters polled by the consumer, defaults to canisterId")
+    private String canisterIds;
+    
+    @UriParam(label = "consumer", defaultValue = "reply", enums = "reply,certifiedData,moduleHash")
+    @Metadata(description = "What a polling consumer reads first to find out whether a canister changed, the query is only called when that value changed")
+    private String changeDetection = ICConfiguration.REPLY_CHANGE_DETECTION;
+    
+    @UriParam(label = "consumer", defaultValue = "true")
+    @Metadata(description = "Emit an exchange only when the reply of a polled canister differs from the last one delivered")
+    private Boolean changesOnly = true;
+    
+    @UriParam(label = "common", enums = "pojo,jackson,gson,dom,jaxb.javax,jaxb.jakarta,raw")
+	@Metadata(description = "Input type, raw sends a byte[] or ByteBuffer body of Candid encoded arguments as is")
     private String inType;
-    @UriParam(label = "common", enums = "pojo,jackson,gson,dom,jaxb.javax,jaxb.jakarta")
-    @Metadata( description = "Output type")
+    @UriParam(label = "common", enums = "pojo,jackson,gson,dom,jaxb.javax,jaxb.jakarta,raw")
+    @Metadata( description = "Output type, raw returns the Candid encoded reply as a byte[]")
     private String outType;
     
     @UriParam(label = "common")
@@ -102,13 +142,191 @@ public class ICEndpoint extends DefaultEndpoint {
     @Metadata(description = "Delay between two retries") 	
 	private Integer waiterSleep;  
     
+    @UriParam(label = "producer", defaultValue = "false")
+    @Metadata(description = "Cache query replies by canister, method and arguments")
+    private Boolean queryCache = false;
+    
+    @UriParam(label = "producer", defaultValue = "1000")
+    @Metadata(description = "Time to live in milliseconds of cached query replies")
+    private Long queryCacheTtl = 1000L;
+    
+    @UriParam(label = "producer", defaultValue = "1000")
+    @Metadata(description = "Maximum number of cached query replies, least recently used replies are evicted first")
+    private Integer queryCacheMaxEntries = 1000;
+    
+    @UriParam(label = "producer", defaultValue = "0")
+    @Metadata(description = "Maximum total size in bytes of cached query replies, 0 for no limit")
+    private Long queryCacheMaxWeight = 0L;
+    
+    @UriParam(label = "producer", defaultValue = "false")
+    @Metadata(description = "Identical concurrent queries share one request to the replica")
+    private Boolean queryCoalescing = false;
+    
+    @UriParam(label = "producer")
+    @Metadata(description = "Number of message bodies sent together as one vec argument, batching is enabled when greater than 1")
+    private Integer batchSize;
+    
+    @UriParam(label = "producer", defaultValue = "10")
+    @Metadata(description = "Milliseconds to wait for a batch to fill up before it is sent")
+    private Long batchTimeout = 10L;
+    
+    @UriParam(label = "producer")
+    @Metadata(description = "Canister method taking a vec of arguments and returning a vec of results, defaults to method")
+    private String batchMethod;
+    
+    @UriParam(label = "producer", defaultValue = "false")
+    @Metadata(description = "Send a second query to another replica when the first one is slower than the hedge percentile")
+    private Boolean queryHedging = false;
+    
+    @UriParam(label = "producer", defaultValue = "95")
+    @Metadata(description = "Percentile of recent query latencies after which a query is hedged")
+    private Double queryHedgePercentile = 95.0;
+    
+    @UriParam(label = "producer", defaultValue = "20")
+    @Metadata(description = "Minimum milliseconds before a query is hedged, also used until enough latencies are known")
+    private Long queryHedgeMinDelay = 20L;
+    
+    @UriParam(label = "producer", defaultValue = "3")
+    @Metadata(description = "Consecutive transport failures or throttling errors after which a replica of the url list is ejected")
+    private Integer replicaEjectThreshold = 3;
+    
+    @UriParam(label = "producer", defaultValue = "30000")
+    @Metadata(description = "Milliseconds an ejected replica stays out of the url list unless a probe succeeds")
+    private Long replicaEjectDuration = 30000L;
+    
+    @UriParam(label = "producer", defaultValue = "5000")
+    @Metadata(description = "Milliseconds between status probes of ejected replicas, 0 to disable probing")
+    private Long replicaProbeInterval = 5000L;
+    
+    @UriParam(label = "producer", defaultValue = "0")
+    @Metadata(description = "Number of retries of transient failures. Queries are resent, updates poll the original request ID again and are resubmitted only when they were not executed")
+    private Integer retryAttempts = 0;
+    
+    @UriParam(label = "producer", defaultValue = "100")
+    @Metadata(description = "Milliseconds before the first retry")
+    private Long retryInitialDelay = 100L;
+    
+    @UriParam(label = "producer", defaultValue = "5000")
+    @Metadata(description = "Maximum milliseconds between retries")
+    private Long retryMaxDelay = 5000L;
+    
+    @UriParam(label = "producer", defaultValue = "2.0")
+    @Metadata(description = "Growth factor of the delay between retries")
+    private Double retryMultiplier = 2.0;
+    
+    @UriParam(label = "producer", defaultValue = "0.2")
+    @Metadata(description = "Random jitter applied to the delay between retries, as a fraction between 0 and 1")
+    private Double retryJitter = 0.2;
+    
+    @UriParam(label = "producer", defaultValue = "false")
+    @Metadata(description = "Adapt the call rate to each canister to throttling errors, shared by the endpoints of the component calling the same URL and canister")
+    private Boolean rateLimit = false;
+    
+    @UriParam(label = "producer", defaultValue = "100")
+    @Metadata(description = "Calls per second allowed before any throttling error is seen")
+    private Double rateLimitInitialRate = 100.0;
+    
+    @UriParam(label = "producer", defaultValue = "1")
+    @Metadata(description = "Lowest calls per second the rate limiter goes down to")
+    private Double rateLimitMinRate = 1.0;
+    
+    @UriParam(label = "producer", defaultValue = "1000")
+    @Metadata(description = "Highest calls per second the rate limiter goes up to")
+    private Double rateLimitMaxRate = 1000.0;
+    
+    @UriParam(label = "producer", defaultValue = "0.5")
+    @Metadata(description = "Factor applied to the call rate on HTTP 429, 503 or SYS_TRANSIENT errors")
+    private Double rateLimitDecreaseFactor = 0.5;
+    
+    @UriParam(label = "producer", defaultValue = "30000")
+    @Metadata(description = "Milliseconds a call may wait for its slot at the current rate, a call that would wait longer fails right away")
+    private Long rateLimitMaxDelay = 30000L;
+    
+    @UriParam(label = "producer")
+    @Metadata(description = "Maximum number of calls in flight for this endpoint or canister, unlimited when not set")
+    private Integer maxInFlight;
+    
+    @UriParam(label = "producer", enums = "endpoint,canister", defaultValue = "endpoint")
+    @Metadata(description = "Whether maxInFlight applies to this endpoint or to the canister called, shared with other endpoints of the component")
+    private String maxInFlightScope = ICConfiguration.ENDPOINT_SCOPE;
+    
+    @UriParam(label = "producer", enums = "wait,reject", defaultValue = "wait")
+    @Metadata(description = "What happens to calls over maxInFlight: wait for a slot or reject them")
+    private String maxInFlightPolicy = ICBulkhead.WAIT;
+    
+    @UriParam(label = "producer", defaultValue = "30000")
+    @Metadata(description = "Milliseconds a call waits for a slot with the wait policy before it is rejected, 0 to wait forever")
+    private Long maxInFlightTimeout = 30000L;
+    
+    @UriParam(label = "producer", enums = "caller,virtual,bulkhead", defaultValue = "caller")
+    @Metadata(description = "How canister calls are dispatched, on the caller thread, on a new virtual thread per call or through the query and update bulkheads of the component")
+    private String executionMode = ICConfiguration.CALLER_EXECUTION_MODE;
+    
+    @UriParam(label = "producer", enums = "fixed,exponential,fibonacci")
+    @Metadata(description = "Backoff between update status polls, overrides waiterSleep with millisecond polling options")
+    private String pollBackoff;
+    
+    @UriParam(label = "producer", defaultValue = "500")
+    @Metadata(description = "Milliseconds before the first update status poll")
+    private Long pollInitialDelay = 500L;
+    
+    @UriParam(label = "producer", defaultValue = "250")
+    @Metadata(description = "Base interval in milliseconds between update status polls")
+    private Long pollInterval = 250L;
+    
+    @UriParam(label = "producer", defaultValue = "2000")
+    @Metadata(description = "Maximum interval in milliseconds between update status polls")
+    private Long pollMaxInterval = 2000L;
+    
+    @UriParam(label = "producer", defaultValue = "2.0")
+    @Metadata(description = "Growth factor of the exponential poll backoff")
+    private Double pollMultiplier = 2.0;
+    
+    @UriParam(label = "producer", defaultValue = "0.2")
+    @Metadata(description = "Random jitter applied to poll intervals, as a fraction between 0 and 1")
+    private Double pollJitter = 0.2;
+    
+    @UriParam(label = "producer")
+    @Metadata(description = "Overall deadline in milliseconds for an update call, defaults to waiterTimeout")
+    private Long pollTimeout;
+    
+    @UriParam(label = "producer,advanced")
+    @Metadata(description = "Custom strategy deciding when update status is polled, overrides all other poll options")
+    private ICPollingStrategy pollingStrategy;
+    
 	//Only use this when you are _not_ talking to the main Internet Computer
     @UriParam(label = "common")
     @Metadata(description = "Only use this when you are not talking to the main Internet Computer") 	
 	private Boolean fetchRootKey = false;    
     
+    @UriParam(label = "producer", defaultValue = "1000")
+    @Metadata(description = "Maximum number of call plans cached for canister and method header overrides") 	
+	private Integer planCacheSize = 1000;
+    
+    
+    @UriParam(label = "common,advanced")
+    @Metadata(description = "Maximum number of pooled connections of the apache transport, for all replicas of the agent. Rejected by the java and okhttp transports")
+    private Integer transportMaxConnections;
+    
+    @UriParam(label = "common,advanced")
+    @Metadata(description = "Maximum number of pooled connections to one replica for the apache transport. Rejected by the java and okhttp transports")
+    private Integer transportMaxConnectionsPerRoute;
+    
+    @UriParam(label = "common,advanced")
+    @Metadata(description = "Time to live in seconds of a pooled connection of the apache transport. Rejected by the java and okhttp transports")
+    private Integer transportConnectionTimeToLive;
+    
+    @UriParam(label = "common,advanced")
+    @Metadata(description = "Connect and read timeout in seconds of the apache and okhttp transports. Rejected by the java transport")
+    private Integer transportTimeout;
+    
+    @UriParam(label = "common,advanced")
+    @Metadata(description = "Factory creating the transport of each replica URL, overrides transportType and the transport options")
+    private ICTransportFactory transportFactory;
     
     //Set a Replica transport to talk to serve as the replica interface.
+    @UriParam(label = "common,advanced")
+    @Metadata(description = "Prebuilt transport bean to use instead of creating one, bound to a single replica URL")
     private ReplicaTransport transport;
     
     //Add an identity provider for signing messages. 
@@ -153,6 +371,11 @@ public class ICEndpoint extends DefaultEndpoint {
     	super(UnsafeUriCharactersEncoder.encode(uri), component);
     }   
 
+    @Override
+    public ICComponent getComponent() {
+        return (ICComponent) super.getComponent();
+    }
+
 	@Override
 	public Producer createProducer() throws Exception {
 		Producer producer = new ICProducer(this);
@@ -308,6 +531,216 @@ public class ICEndpoint extends DefaultEndpoint {
 		this.pemFile = pemFile;
 	}
 
+	/**
+	 * @return the transportMaxConnections
+	 */
+	public Integer getTransportMaxConnections() {
+		return transportMaxConnections;
+	}
+
+	/**
+	 * @param transportMaxConnections the transportMaxConnections to set
+	 */
+	public void setTransportMaxConnections(Integer transportMaxConnections) {
+		this.transportMaxConnections = transportMaxConnections;
+	}
+
+	/**
+	 * @return the transportMaxConnectionsPerRoute
+	 */
+	public Integer getTransportMaxConnectionsPerRoute() {
+		return transportMaxConnectionsPerRoute;
+	}
+
+	/**
+	 * @param transportMaxConnectionsPerRoute the transportMaxConnectionsPerRoute to set
+	 */
+	public void setTransportMaxConnectionsPerRoute(Integer transportMaxConnectionsPerRoute) {
+		this.transportMaxConnectionsPerRoute = transportMaxConnectionsPerRoute;
+	}
+
+	/**
+	 * @return the transportConnectionTimeToLive
+	 */
+	public Integer getTransportConnectionTimeToLive() {
+		return transportConnectionTimeToLive;
+	}
+
+	/**
+	 * @param transportConnectionTimeToLive the transportConnectionTimeToLive to set
+	 */
+	public void setTransportConnectionTimeToLive(Integer transportConnectionTimeToLive) {
+		this.transportConnectionTimeToLive = transportConnectionTimeToLive;
+	}
+
+	/**
+	 * @return the transportTimeout
+	 */
+	public Integer getTransportTimeout() {
+		return transportTimeout;
+	}
+
+	/**
+	 * @param transportTimeout the transportTimeout to set
+	 */
+	public void setTransportTimeout(Integer transportTimeout) {
+		this.transportTimeout = transportTimeout;
+	}
+
+	/**
+	 * @return the transportFactory
+	 */
+	public ICTransportFactory getTransportFactory() {
+		return transportFactory;
+	}
+
+	/**
+	 * @param transportFactory the transportFactory to set
+	 */
+	public void setTransportFactory(ICTransportFactory transportFactory) {
+		this.transportFactory = transportFactory;
+	}
+
+	/**
+	 * @return the consumerMode
+	 */
+	public String getConsumerMode() {
+		return consumerMode;
+	}
+
+	/**
+	 * @param consumerMode the consumerMode to set
+	 */
+	public void setConsumerMode(String consumerMode) {
+		this.consumerMode = consumerMode;
+	}
+
+	/**
+	 * @return the startIndex
+	 */
+	public Long getStartIndex() {
+		return startIndex;
+	}
+
+	/**
+	 * @param startIndex the startIndex to set
+	 */
+	public void setStartIndex(Long startIndex) {
+		this.startIndex = startIndex;
+	}
+
+	/**
+	 * @return the blockFetchSize
+	 */
+	public Integer getBlockFetchSize() {
+		return blockFetchSize;
+	}
+
+	/**
+	 * @param blockFetchSize the blockFetchSize to set
+	 */
+	public void setBlockFetchSize(Integer blockFetchSize) {
+		this.blockFetchSize = blockFetchSize;
+	}
+
+	/**
+	 * @return the blockPrefetch
+	 */
+	public Integer getBlockPrefetch() {
+		return blockPrefetch;
+	}
+
+	/**
+	 * @param blockPrefetch the blockPrefetch to set
+	 */
+	public void setBlockPrefetch(Integer blockPrefetch) {
+		this.blockPrefetch = blockPrefetch;
+	}
+
+	/**
+	 * @return the offsetStore
+	 */
+	public ICOffsetStore getOffsetStore() {
+		return offsetStore;
+	}
+
+	/**
+	 * @param offsetStore the offsetStore to set
+	 */
+	public void setOffsetStore(ICOffsetStore offsetStore) {
+		this.offsetStore = offsetStore;
+	}
+
+	/**
+	 * @return the offsetFile
+	 */
+	public String getOffsetFile() {
+		return offsetFile;
+	}
+
+	/**
+	 * @param offsetFile the offsetFile to set
+	 */
+	public void setOffsetFile(String offsetFile) {
+		this.offsetFile = offsetFile;
+	}
+
+	/**
+	 * @return the consumerId
+	 */
+	public String getConsumerId() {
+		return consumerId;
+	}
+
+	/**
+	 * @param consumerId the consumerId to set
+	 */
+	public void setConsumerId(String consumerId) {
+		this.consumerId = consumerId;
+	}
+
+	/**
+	 * @return the changeDetection
+	 */
+	public String getChangeDetection() {
+		return changeDetection;
+	}
+
+	/**
+	 * @param changeDetection the changeDetection to set
+	 */
+	public void setChangeDetection(String changeDetection) {
+		this.changeDetection = changeDetection;
+	}
+
+	/**
+	 * @return the canisterIds
+	 */
+	public String getCanisterIds() {
+		return canisterIds;
+	}
+
+	/**
+	 * @param canisterIds the canisterIds to set
+	 */
+	public void setCanisterIds(String canisterIds) {
+		this.canisterIds = canisterIds;
+	}
+
+	/**
+	 * @return the changesOnly
+	 */
+	public Boolean getChangesOnly() {
+		return changesOnly;
+	}
+
+	/**
+	 * @param changesOnly the changesOnly to set
+	 */
+	public void setChangesOnly(Boolean changesOnly) {
+		this.changesOnly = changesOnly;
+	}
+
 	/**
 	 * @return the transport
 	 */
@@ -402,6 +835,538 @@ public class ICEndpoint extends DefaultEndpoint {
 		this.waiterSleep = waiterSleep;
 	}
 
+	/**
+	 * @return the queryCache
+	 */
+	public Boolean getQueryCache() {
+		return queryCache;
+	}
+
+	/**
+	 * @param queryCache the queryCache to set
+	 */
+	public void setQueryCache(Boolean queryCache) {
+		this.queryCache = queryCache;
+	}
+
+	/**
+	 * @return the queryCacheTtl
+	 */
+	public Long getQueryCacheTtl() {
+		return queryCacheTtl;
+	}
+
+	/**
+	 * @param queryCacheTtl the queryCacheTtl to set
+	 */
+	public void setQueryCacheTtl(Long queryCacheTtl) {
+		this.queryCacheTtl = queryCacheTtl;
+	}
+
+	/**
+	 * @return the queryCacheMaxEntries
+	 */
+	public Integer getQueryCacheMaxEntries() {
+		return queryCacheMaxEntries;
+	}
+
+	/**
+	 * @param queryCacheMaxEntries the queryCacheMaxEntries to set
+	 */
+	public void setQueryCacheMaxEntries(Integer queryCacheMaxEntries) {
+		this.queryCacheMaxEntries = queryCacheMaxEntries;
+	}
+
+	/**
+	 * @return the queryCacheMaxWeight
+	 */
+	public Long getQueryCacheMaxWeight() {
+		return queryCacheMaxWeight;
+	}
+
+	/**
+	 * @param queryCacheMaxWeight the queryCacheMaxWeight to set
+	 */
+	public void setQueryCacheMaxWeight(Long queryCacheMaxWeight) {
+		this.queryCacheMaxWeight = queryCacheMaxWeight;
+	}
+
+	/**
+	 * @return the queryCoalescing
+	 */
+	public Boolean getQueryCoalescing() {
+		return queryCoalescing;
+	}
+
+	/**
+	 * @param queryCoalescing the queryCoalescing to set
+	 */
+	public void setQueryCoalescing(Boolean queryCoalescing) {
+		this.queryCoalescing = queryCoalescing;
+	}
+
+	/**
+	 * @return the batchSize
+	 */
+	public Integer getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @param batchSize the batchSize to set
+	 */
+	public void setBatchSize(Integer batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @return the batchTimeout
+	 */
+	public Long getBatchTimeout() {
+		return batchTimeout;
+	}
+
+	/**
+	 * @param batchTimeout the batchTimeout to set
+	 */
+	public void setBatchTimeout(Long batchTimeout) {
+		this.batchTimeout = batchTimeout;
+	}
+
+	/**
+	 * @return the batchMethod
+	 */
+	public String getBatchMethod() {
+		return batchMethod;
+	}
+
+	/**
+	 * @param batchMethod the batchMethod to set
+	 */
+	public void setBatchMethod(String batchMethod) {
+		this.batchMethod = batchMethod;
+	}
+
+	/**
+	 * @return the queryHedging
+	 */
+	public Boolean getQueryHedging() {
+		return queryHedging;
+	}
+
+	/**
+	 * @param queryHedging the queryHedging to set
+	 */
+	public void setQueryHedging(Boolean queryHedging) {
+		this.queryHedging = queryHedging;
+	}
+
+	/**
+	 * @return the queryHedgePercentile
+	 */
+	public Double getQueryHedgePercentile() {
+		return queryHedgePercentile;
+	}
+
+	/**
+	 * @param queryHedgePercentile the queryHedgePercentile to set
+	 */
+	public void setQueryHedgePercentile(Double queryHedgePercentile) {
+		this.queryHedgePercentile = queryHedgePercentile;
+	}
+
+	/**
+	 * @return the queryHedgeMinDelay
+	 */
+	public Long getQueryHedgeMinDelay() {
+		return queryHedgeMinDelay;
+	}
+
+	/**
+	 * @param queryHedgeMinDelay the queryHedgeMinDelay to set
+	 */
+	public void setQueryHedgeMinDelay(Long queryHedgeMinDelay) {
+		this.queryHedgeMinDelay = queryHedgeMinDelay;
+	}
+
+	/**
+	 * @return the replicaEjectThreshold
+	 */
+	public Integer getReplicaEjectThreshold() {
+		return replicaEjectThreshold;
+	}
+
+	/**
+	 * @param replicaEjectThreshold the replicaEjectThreshold to set
+	 */
+	public void setReplicaEjectThreshold(Integer replicaEjectThreshold) {
+		this.replicaEjectThreshold = replicaEjectThreshold;
+	}
+
+	/**
+	 * @return the replicaEjectDuration
+	 */
+	public Long getReplicaEjectDuration() {
+		return replicaEjectDuration;
+	}
+
+	/**
+	 * @param replicaEjectDuration the replicaEjectDuration to set
+	 */
+	public void setReplicaEjectDuration(Long replicaEjectDuration) {
+		this.replicaEjectDuration = replicaEjectDuration;
+	}
+
+	/**
+	 * @return the replicaProbeInterval
+	 */
+	public Long getReplicaProbeInterval() {
+		return replicaProbeInterval;
+	}
+
+	/**
+	 * @param replicaProbeInterval the replicaProbeInterval to set
+	 */
+	public void setReplicaProbeInterval(Long replicaProbeInterval) {
+		this.replicaProbeInterval = replicaProbeInterval;
+	}
+
+	/**
+	 * @return the retryAttempts
+	 */
+	public Integer getRetryAttempts() {
+		return retryAttempts;
+	}
+
+	/**
+	 * @param retryAttempts the retryAttempts to set
+	 */
+	public void setRetryAttempts(Integer retryAttempts) {
+		this.retryAttempts = retryAttempts;
+	}
+
+	/**
+	 * @return the retryInitialDelay
+	 */
+	public Long getRetryInitialDelay() {
+		return retryInitialDelay;
+	}
+
+	/**
+	 * @param retryInitialDelay the retryInitialDelay to set
+	 */
+	public void setRetryInitialDelay(Long retryInitialDelay) {
+		this.retryInitialDelay = retryInitialDelay;
+	}
+
+	/**
+	 * @return the retryMaxDelay
+	 */
+	public Long getRetryMaxDelay() {
+		return retryMaxDelay;
+	}
+
+	/**
+	 * @param retryMaxDelay the retryMaxDelay to set
+	 */
+	public void setRetryMaxDelay(Long retryMaxDelay) {
+		this.retryMaxDelay = retryMaxDelay;
+	}
+
+	/**
+	 * @return the retryMultiplier
+	 */
+	public Double getRetryMultiplier() {
+		return retryMultiplier;
+	}
+
+	/**
+	 * @param retryMultiplier the retryMultiplier to set
+	 */
+	public void setRetryMultiplier(Double retryMultiplier) {
+		this.retryMultiplier = retryMultiplier;
+	}
+
+	/**
+	 * @return the retryJitter
+	 */
+	public Double getRetryJitter() {
+		return retryJitter;
+	}
+
+	/**
+	 * @param retryJitter the retryJitter to set
+	 */
+	public void setRetryJitter(Double retryJitter) {
+		this.retryJitter = retryJitter;
+	}
+
+	/**
+	 * @return the rateLimit
+	 */
+	public Boolean getRateLimit() {
+		return rateLimit;
+	}
+
+	/**
+	 * @param rateLimit the rateLimit to set
+	 */
+	public void setRateLimit(Boolean rateLimit) {
+		this.rateLimit = rateLimit;
+	}
+
+	/**
+	 * @return the rateLimitInitialRate
+	 */
+	public Double getRateLimitInitialRate() {
+		return rateLimitInitialRate;
+	}
+
+	/**
+	 * @param rateLimitInitialRate the rateLimitInitialRate to set
+	 */
+	public void setRateLimitInitialRate(Double rateLimitInitialRate) {
+		this.rateLimitInitialRate = rateLimitInitialRate;
+	}
+
+	/**
+	 * @return the rateLimitMinRate
+	 */
+	public Double getRateLimitMinRate() {
+		return rateLimitMinRate;
+	}
+
+	/**
+	 * @param rateLimitMinRate the rateLimitMinRate to set
+	 */
+	public void setRateLimitMinRate(Double rateLimitMinRate) {
+		this.rateLimitMinRate = rateLimitMinRate;
+	}
+
+	/**
+	 * @return the rateLimitMaxRate
+	 */
+	public Double getRateLimitMaxRate() {
+		return rateLimitMaxRate;
+	}
+
+	/**
+	 * @param rateLimitMaxRate the rateLimitMaxRate to set
+	 */
+	public void setRateLimitMaxRate(Double rateLimitMaxRate) {
+		this.rateLimitMaxRate = rateLimitMaxRate;
+	}
+
+	/**
+	 * @return the rateLimitDecreaseFactor
+	 */
+	public Double getRateLimitDecreaseFactor() {
+		return rateLimitDecreaseFactor;
+	}
+
+	/**
+	 * @param rateLimitDecreaseFactor the rateLimitDecreaseFactor to set
+	 */
+	public void setRateLimitDecreaseFactor(Double rateLimitDecreaseFactor) {
+		this.rateLimitDecreaseFactor = rateLimitDecreaseFactor;
+	}
+
+	/**
+	 * @return the rateLimitMaxDelay
+	 */
+	public Long getRateLimitMaxDelay() {
+		return rateLimitMaxDelay;
+	}
+
+	/**
+	 * @param rateLimitMaxDelay the rateLimitMaxDelay to set
+	 */
+	public void setRateLimitMaxDelay(Long rateLimitMaxDelay) {
+		this.rateLimitMaxDelay = rateLimitMaxDelay;
+	}
+
+	/**
+	 * @return the maxInFlight
+	 */
+	public Integer getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * @param maxInFlight the maxInFlight to set
+	 */
+	public void setMaxInFlight(Integer maxInFlight) {
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * @return the maxInFlightScope
+	 */
+	public String getMaxInFlightScope() {
+		return maxInFlightScope;
+	}
+
+	/**
+	 * @param maxInFlightScope the maxInFlightScope to set
+	 */
+	public void setMaxInFlightScope(String maxInFlightScope) {
+		this.maxInFlightScope = maxInFlightScope;
+	}
+
+	/**
+	 * @return the maxInFlightPolicy
+	 */
+	public String getMaxInFlightPolicy() {
+		return maxInFlightPolicy;
+	}
+
+	/**
+	 * @param maxInFlightPolicy the maxInFlightPolicy to set
+	 */
+	public void setMaxInFlightPolicy(String maxInFlightPolicy) {
+		this.maxInFlightPolicy = maxInFlightPolicy;
+	}
+
+	/**
+	 * @return the maxInFlightTimeout
+	 */
+	public Long getMaxInFlightTimeout() {
+		return maxInFlightTimeout;
+	}
+
+	/**
+	 * @param maxInFlightTimeout the maxInFlightTimeout to set
+	 */
+	public void setMaxInFlightTimeout(Long maxInFlightTimeout) {
+		this.maxInFlightTimeout = maxInFlightTimeout;
+	}
+
+	/**
+	 * @return the executionMode
+	 */
+	public String getExecutionMode() {
+		return executionMode;
+	}
+
+	/**
+	 * @param executionMode the executionMode to set
+	 */
+	public void setExecutionMode(String executionMode) {
+		this.executionMode = executionMode;
+	}
+
+	/**
+	 * @return the pollBackoff
+	 */
+	public String getPollBackoff() {
+		return pollBackoff;
+	}
+
+	/**
+	 * @param pollBackoff the pollBackoff to set
+	 */
+	public void setPollBackoff(String pollBackoff) {
+		this.pollBackoff = pollBackoff;
+	}
+
+	/**
+	 * @return the pollInitialDelay
+	 */
+	public Long getPollInitialDelay() {
+		return pollInitialDelay;
+	}
+
+	/**
+	 * @param pollInitialDelay the pollInitialDelay to set
+	 */
+	public void setPollInitialDelay(Long pollInitialDelay) {
+		this.pollInitialDelay = pollInitialDelay;
+	}
+
+	/**
+	 * @return the pollInterval
+	 */
+	public Long getPollInterval() {
+		return pollInterval;
+	}
+
+	/**
+	 * @param pollInterval the pollInterval to set
+	 */
+	public void setPollInterval(Long pollInterval) {
+		this.pollInterval = pollInterval;
+	}
+
+	/**
+	 * @return the pollMaxInterval
+	 */
+	public Long getPollMaxInterval() {
+		return pollMaxInterval;
+	}
+
+	/**
+	 * @param pollMaxInterval the pollMaxInterval to set
+	 */
+	public void setPollMaxInterval(Long pollMaxInterval) {
+		this.pollMaxInterval = pollMaxInterval;
+	}
+
+	/**
+	 * @return the pollMultiplier
+	 */
+	public Double getPollMultiplier() {
+		return pollMultiplier;
+	}
+
+	/**
+	 * @param pollMultiplier the pollMultiplier to set
+	 */
+	public void setPollMultiplier(Double pollMultiplier) {
+		this.pollMultiplier = pollMultiplier;
+	}
+
+	/**
+	 * @return the pollJitter
+	 */
+	public Double getPollJitter() {
+		return pollJitter;
+	}
+
+	/**
+	 * @param pollJitter the pollJitter to set
+	 */
+	public void setPollJitter(Double pollJitter) {
+		this.pollJitter = pollJitter;
+	}
+
+	/**
+	 * @return the pollTimeout
+	 */
+	public Long getPollTimeout() {
+		return pollTimeout;
+	}
+
+	/**
+	 * @param pollTimeout the pollTimeout to set
+	 */
+	public void setPollTimeout(Long pollTimeout) {
+		this.pollTimeout = pollTimeout;
+	}
+
+	/**
+	 * @return the pollingStrategy
+	 */
+	public ICPollingStrategy getPollingStrategy() {
+		return pollingStrategy;
+	}
+
+	/**
+	 * @param pollingStrategy the pollingStrategy to set
+	 */
+	public void setPollingStrategy(ICPollingStrategy pollingStrategy) {
+		this.pollingStrategy = pollingStrategy;
+	}
+
 	/**
 	 * @return the fetchRootKey
 	 */
@@ -415,6 +1380,20 @@ public class ICEndpoint extends DefaultEndpoint {
 	public void setFetchRootKey(Boolean fetchRootKey) {
 		this.fetchRootKey = fetchRootKey;
 	}
+
+	/**
+	 * @return the planCacheSize
+	 */
+	public Integer getPlanCacheSize() {
+		return planCacheSize;
+	}
+
+	/**
+	 * @param planCacheSize the planCacheSize to set
+	 */
+	public void setPlanCacheSize(Integer planCacheSize) {
+		this.planCacheSize = planCacheSize;
+	}
 	
 	
 
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.ic4j.agent.AgentError;
+
+/**
+ * Classifies call failures. Update rejects carry an {@link ICRejectException}
+ * cause. HTTP errors and query rejects are reported by the agent as
+ * AgentErrors with the HTTP_ERROR or TRANSPORT_ERROR and the REPLICA_ERROR
+ * code. Their status or reject code is only read from the messages of such
+ * errors, never from a canister reply or any other failure.
+ */
+public final class ICErrors {
+
+	// an error status right after "HTTP", "HTTP/1.1", "HTTP error" or "status code",
+	// or the reason phrase of the throttling ones, other numbers are not statuses
+	private static final Pattern HTTP_STATUS = Pattern.compile(
+			"(?:\\bHTTP(?:/\\d(?:\\.\\d)?)?(?: error)?|\\bstatus(?: code)?)[ :=]+([45]\\d\\d)\\b|(Too Many Requests)|(Service Unavailable)",
+			Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern SYS_TRANSIENT = Pattern.compile("SYS_TRANSIENT|SysTransient|reject code:? ?2\\b",
+			Pattern.CASE_INSENSITIVE);
+
+	static final int TOO_MANY_REQUESTS = 429;
+
+	static final int SERVICE_UNAVAILABLE = 503;
+
+	private ICErrors() {
+	}
+
+	/**
+	 * @return the reject exception in the cause chain, or null
+	 */
+	public static ICRejectException getReject(Throwable error) {
+		for (Throwable e = error; e != null; e = e.getCause()) {
+			if (e instanceof ICRejectException)
+				return (ICRejectException) e;
+
+			if (e.getCause() == e)
+				break;
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return the HTTP status of the replica or boundary node response, or
+	 *         null when the failure is not an HTTP error
+	 */
+	public static Integer getHttpStatus(Throwable error) {
+		AgentError http = getAgentError(error, AgentError.AgentErrorCode.HTTP_ERROR, AgentError.AgentErrorCode.TRANSPORT_ERROR);
+
+		if (http == null)
+			return null;
+
+		for (Throwable e = http; e != null; e = e.getCause()) {
+			if (e.getMessage() != null) {
+				Matcher matcher = HTTP_STATUS.matcher(e.getMessage());
+
+				if (matcher.find())
+					return matcher.group(1) != null ? Integer.valueOf(matcher.group(1))
+							: matcher.group(2) != null ? TOO_MANY_REQUESTS : SERVICE_UNAVAILABLE;
+			}
+
+			if (e.getCause() == e)
+				break;
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return true when the replica or boundary node asked the client to slow
+	 *         down, through HTTP 429 or 503 or a SYS_TRANSIENT reject
+	 */
+	public static boolean isThrottled(Throwable error) {
+		ICRejectException reject = getReject(error);
+
+		if (reject != null)
+			return reject.isTransient();
+
+		Integer status = getHttpStatus(error);
+
+		if (status != null)
+			return status == TOO_MANY_REQUESTS || status == SERVICE_UNAVAILABLE;
+
+		// query rejects have no reject exception, the agent reports their code in the message
+		AgentError replica = getAgentError(error, AgentError.AgentErrorCode.REPLICA_ERROR);
+
+		return replica != null && replica.getMessage() != null && SYS_TRANSIENT.matcher(replica.getMessage()).find();
+	}
+
+	/**
+	 * @return true when the failure proves the call was not executed: the
+	 *         connection could not be opened, the boundary node throttled it
+	 *         or the replica rejected it as SYS_TRANSIENT
+	 */
+	public static boolean isNotExecuted(Throwable error) {
+		return isThrottled(error) || hasCause(error, ConnectException.class) || hasCause(error, UnknownHostException.class)
+				|| hasCause(error, NoRouteToHostException.class);
+	}
+
+	/**
+	 * @return true when the same call may succeed later: the call was not
+	 *         executed, or it failed with an I/O error or timed out without a
+	 *         reply
+	 */
+	public static boolean isTransient(Throwable error) {
+		if (isNotExecuted(error))
+			return true;
+
+		// a reject other than SYS_TRANSIENT is final
+		if (getReject(error) != null)
+			return false;
+
+		return hasCause(error, IOException.class) || hasCause(error, TimeoutException.class);
+	}
+
+	private static boolean hasCause(Throwable error, Class<? extends Throwable> type) {
+		for (Throwable e = error; e != null; e = e.getCause()) {
+			if (type.isInstance(e))
+				return true;
+
+			if (e.getCause() == e)
+				break;
+		}
+
+		return false;
+	}
+
+	private static AgentError getAgentError(Throwable error, AgentError.AgentErrorCode... codes) {
+		for (Throwable e = error; e != null; e = e.getCause()) {
+			if (e instanceof AgentError)
+				for (AgentError.AgentErrorCode code : codes)
+					if (((AgentError) e).getCode() == code)
+						return (AgentError) e;
+
+			if (e.getCause() == e)
+				break;
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.ic4j.agent.Agent;
+import org.ic4j.candid.parser.IDLParser;
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.types.Principal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parsed service types shared by all ic endpoints of one component, for
+ * canisters whose IDL is loaded with loadIDL and for idlFile sources.
+ *
+ * The IDL of a canister is fetched and parsed once on the executor of the
+ * registry. Concurrent requests get the same fetch and no caller blocks on
+ * it. Every refreshInterval the module hash of the canister is read, and the
+ * IDL is fetched again only when the hash changed. A file is parsed again
+ * when its modification time changed.
+ */
+public class ICIdlRegistry {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ICIdlRegistry.class);
+
+	private final long refreshIntervalNanos;
+
+	// fetches and parses IDL, off the threads dispatching calls
+	private final Executor executor;
+
+	// by canister Principal or file Path
+	private final Map<Object, Entry> entries = new ConcurrentHashMap<Object, Entry>();
+
+	/**
+	 * @param refreshInterval milliseconds between module hash or modification
+	 *                        time checks, 0 to never check
+	 * @param executor        runs the IDL fetches and file reads
+	 */
+	public ICIdlRegistry(long refreshInterval, Executor executor) {
+		this.refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(refreshInterval);
+		this.executor = executor;
+	}
+
+	/**
+	 * @return the service type of the canister candid:service metadata, null
+	 *         when the canister publishes none
+	 */
+	public CompletableFuture<IDLType> getService(Agent agent, Principal canisterId) {
+		Entry entry = this.entries.get(canisterId);
+
+		if (entry == null) {
+			Entry created = new Entry();
+			entry = this.entries.putIfAbsent(canisterId, created);
+
+			if (entry == null) {
+				entry = created;
+
+				// the module hash is read first, the IDL fetch starts once it is known
+				this.readModuleHash(agent, canisterId).whenComplete((hash, error) -> {
+					// without a hash the IDL is kept until the component stops
+					if (error != null)
+						LOG.debug("Cannot read module hash of {}: {}", canisterId, error.getMessage());
+
+					created.version = hash;
+					this.load(created, canisterId, () -> this.loadService(agent, canisterId));
+				});
+			}
+		} else
+			this.check(entry, canisterId, agent);
+
+		// callers get their own stage so they cannot complete the shared one
+		return entry.service.copy();
+	}
+
+	/**
+	 * @return the first service type of the file, null when it declares none
+	 */
+	public CompletableFuture<IDLType> getService(Path file) {
+		Path key = (Path) key(file);
+		Entry entry = this.entries.get(key);
+
+		if (entry == null) {
+			Entry created = new Entry();
+			entry = this.entries.putIfAbsent(key, created);
+
+			if (entry == null) {
+				entry = created;
+				this.load(entry, key, () -> {
+					created.version = Files.getLastModifiedTime(key);
+					return parseService(Files.readString(key));
+				});
+			}
+		} else
+			this.check(entry, key, null);
+
+		return entry.service.copy();
+	}
+
+	/**
+	 * @return true when the service type is still the latest one of the
+	 *         canister or file, checked at most once per refreshInterval
+	 */
+	public boolean isCurrent(Agent agent, Object source, IDLType service) {
+		Object key = key(source);
+		Entry entry = this.entries.get(key);
+
+		if (entry == null)
+			return false;
+
+		this.check(entry, key, agent);
+
+		return entry.service.getNow(null) == service && this.entries.get(key) == entry;
+	}
+
+	private static Object key(Object source) {
+		return source instanceof Path ? ((Path) source).toAbsolutePath().normalize() : source;
+	}
+
+	private void load(Entry entry, Object key, Loader loader) {
+		entry.key = key;
+		entry.nextCheck = System.nanoTime() + this.refreshIntervalNanos;
+
+		try {
+			this.executor.execute(() -> {
+				try {
+					entry.service.complete(loader.load());
+				} catch (Exception e) {
+					this.fail(entry, key, e);
+				}
+			});
+		} catch (Exception e) {
+			// the executor is shut down with the component
+			this.fail(entry, key, e);
+		}
+	}
+
+	private void fail(Entry entry, Object key, Exception e) {
+		// the next request fetches again
+		this.entries.remove(key, entry);
+		entry.service.completeExceptionally(e);
+	}
+
+	private void check(Entry entry, Object key, Agent agent) {
+		if (this.refreshIntervalNanos <= 0 || System.nanoTime() - entry.nextCheck < 0 || !entry.service.isDone()
+				|| !entry.checking.compareAndSet(false, true))
+			return;
+
+		if (key instanceof Path) {
+			try {
+				if (!Files.getLastModifiedTime((Path) key).equals(entry.version)) {
+					LOG.debug("IDL file {} changed", key);
+					this.entries.remove(key, entry);
+				}
+			} catch (Exception e) {
+				LOG.debug("Cannot check IDL file {}: {}", key, e.getMessage());
+			} finally {
+				entry.nextCheck = System.nanoTime() + this.refreshIntervalNanos;
+				entry.checking.set(false);
+			}
+
+			return;
+		}
+
+		this.readModuleHash(agent, (Principal) key).whenComplete((hash, error) -> {
+			if (error == null && entry.version != null && !Arrays.equals(hash, (byte[]) entry.version)) {
+				LOG.debug("Module hash of {} changed, reloading its IDL", key);
+				this.entries.remove(key, entry);
+			}
+
+			entry.nextCheck = System.nanoTime() + this.refreshIntervalNanos;
+			entry.checking.set(false);
+		});
+	}
+
+	/**
+	 * @return the module hash the IDL of the canister is versioned by
+	 */
+	CompletableFuture<byte[]> readModuleHash(Agent agent, Principal canisterId) {
+		return ICCanisterState.read(agent, canisterId, ICCanisterState.MODULE_HASH);
+	}
+
+	/**
+	 * Fetches and parses the candid:service metadata of the canister, on the
+	 * registry executor.
+	 */
+	IDLType loadService(Agent agent, Principal canisterId) throws Exception {
+		return parseService(agent.getIDL(canisterId));
+	}
+
+	static IDLType parseService(String idl) {
+		if (idl == null)
+			return null;
+
+		Reader reader = new StringReader(idl);
+		IDLParser parser = new IDLParser(reader);
+		parser.parse();
+
+		Map<String, IDLType> services = parser.getServices();
+
+		if (services.isEmpty())
+			return null;
+
+		return services.values().iterator().next();
+	}
+
+	public void clear() {
+		this.entries.clear();
+	}
+
+	public int size() {
+		return this.entries.size();
+	}
+
+	@FunctionalInterface
+	private interface Loader {
+		IDLType load() throws Exception;
+	}
+
+	static final class Entry {
+		final CompletableFuture<IDLType> service = new CompletableFuture<IDLType>();
+
+		final AtomicBoolean checking = new AtomicBoolean();
+
+		Object key;
+
+		// module hash or file modification time the service was loaded from
+		volatile Object version;
+
+		volatile long nextCheck;
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.support.service.ServiceSupport;
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Offset store backed by a memory-mapped file. Commits only update a map in
+ * memory. All offsets are written to the file every forceInterval
+ * milliseconds, and when the store stops, followed by a single force.
+ *
+ * The file holds two copies, each with a sequence number and a CRC32 of its
+ * content. A write always goes to the older copy, so a crash during a write
+ * leaves the newer one intact. On start the valid copy with the highest
+ * sequence is loaded. A crash loses at most the commits of the last interval,
+ * whose messages are delivered again.
+ */
+public class ICMappedOffsetStore extends ServiceSupport implements ICOffsetStore, CamelContextAware {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ICMappedOffsetStore.class);
+
+	// sequence, content length and CRC32 of a copy
+	static final int HEADER_SIZE = 16;
+
+	static final int DEFAULT_COPY_SIZE = 1 << 20;
+
+	static final long DEFAULT_FORCE_INTERVAL = 1000;
+
+	private final Path file;
+
+	private final int copySize;
+
+	private final long forceInterval;
+
+	private final Map<String, Long> offsets = new ConcurrentHashMap<String, Long>();
+
+	private volatile boolean dirty;
+
+	private CamelContext camelContext;
+
+	// guarded by this
+	private FileChannel channel;
+
+	private MappedByteBuffer buffer;
+
+	private long sequence;
+
+	private int current = -1;
+
+	private ScheduledExecutorService flusher;
+
+	public ICMappedOffsetStore(Path file) {
+		this(file, DEFAULT_COPY_SIZE, DEFAULT_FORCE_INTERVAL);
+	}
+
+	/**
+	 * @param copySize      bytes reserved for each copy of the offsets, it must
+	 *                      not change for an existing file
+	 * @param forceInterval milliseconds between writes of the file
+	 */
+	public ICMappedOffsetStore(Path file, int copySize, long forceInterval) {
+		if (copySize <= HEADER_SIZE)
+			throw new IllegalArgumentException("Copy size must be greater than " + HEADER_SIZE);
+
+		this.file = file;
+		this.copySize = copySize;
+		this.forceInterval = forceInterval;
+	}
+
+	@Override
+	public Long load(String key) {
+		return this.offsets.get(key);
+	}
+
+	@Override
+	public void commit(String key, long offset) {
+		this.offsets.put(key, offset);
+		this.dirty = true;
+	}
+
+	@Override
+	protected synchronized void doStart() throws Exception {
+		ObjectHelper.notNull(this.camelContext, "camelContext");
+
+		this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * this.copySize);
+
+		this.read();
+
+		this.flusher = this.camelContext.getExecutorServiceManager().newSingleThreadScheduledExecutor(this, "ICOffsetStore");
+		this.flusher.scheduleWithFixedDelay(this::flushQuietly, this.forceInterval, this.forceInterval, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	protected synchronized void doStop() throws Exception {
+		if (this.flusher != null) {
+			this.camelContext.getExecutorServiceManager().shutdown(this.flusher);
+			this.flusher = null;
+		}
+
+		if (this.channel == null)
+			return;
+
+		try {
+			this.flush();
+		} finally {
+			this.channel.close();
+			this.channel = null;
+			this.buffer = null;
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			this.flush();
+		} catch (Exception e) {
+			LOG.warn("Cannot write offsets to {}: {}", this.file, e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes all offsets to the older copy and forces the file.
+	 */
+	synchronized void flush() throws IOException {
+		if (!this.dirty || this.buffer == null)
+			return;
+
+		// commits from now on are written by the next flush
+		this.dirty = false;
+
+		Map<String, Long> offsets = new HashMap<String, Long>(this.offsets);
+
+		int next = this.current == 0 ? 1 : 0;
+		int base = next * this.copySize;
+
+		ByteBuffer content = this.buffer.duplicate();
+		content.position(base + HEADER_SIZE).limit(base + this.copySize);
+
+		try {
+			content.putInt(offsets.size());
+
+			for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+				byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+				content.putShort((short) key.length);
+				content.put(key);
+				content.putLong(entry.getValue());
+			}
+		} catch (BufferOverflowException e) {
+			this.dirty = true;
+			throw new IOException("Offsets do not fit in " + this.copySize + " bytes of " + this.file, e);
+		}
+
+		int length = content.position() - base - HEADER_SIZE;
+
+		CRC32 crc = new CRC32();
+		crc.update(this.buffer.duplicate().position(base + HEADER_SIZE).limit(base + HEADER_SIZE + length));
+
+		// the sequence is written last, a torn header fails the CRC check
+		this.buffer.putInt(base + 8, length);
+		this.buffer.putInt(base + 12, (int) crc.getValue());
+		this.buffer.putLong(base, this.sequence + 1);
+
+		this.buffer.force();
+
+		this.sequence++;
+		this.current = next;
+	}
+
+	private void read() {
+		int best = -1;
+		long bestSequence = 0;
+
+		for (int copy = 0; copy < 2; copy++) {
+			int base = copy * this.copySize;
+			long sequence = this.buffer.getLong(base);
+			int length = this.buffer.getInt(base + 8);
+
+			if (sequence <= bestSequence || length < 4 || length > this.copySize - HEADER_SIZE)
+				continue;
+
+			CRC32 crc = new CRC32();
+			crc.update(this.buffer.duplicate().position(base + HEADER_SIZE).limit(base + HEADER_SIZE + length));
+
+			if ((int) crc.getValue() != this.buffer.getInt(base + 12)) {
+				LOG.warn("Ignoring corrupted copy {} of {}", copy, this.file);
+				continue;
+			}
+
+			best = copy;
+			bestSequence = sequence;
+		}
+
+		if (best < 0)
+			return;
+
+		ByteBuffer content = this.buffer.duplicate();
+		content.position(best * this.copySize + HEADER_SIZE);
+
+		int count = content.getInt();
+
+		for (int i = 0; i < count; i++) {
+			byte[] key = new byte[content.getShort() & 0xFFFF];
+			content.get(key);
+			this.offsets.put(new String(key, StandardCharsets.UTF_8), content.getLong());
+		}
+
+		this.sequence = bestSequence;
+		this.current = best;
+
+		LOG.debug("Loaded {} offsets from {}", count, this.file);
+	}
+
+	@Override
+	public CamelContext getCamelContext() {
+		return camelContext;
+	}
+
+	@Override
+	public void setCamelContext(CamelContext camelContext) {
+		this.camelContext = camelContext;
+	}
+
+	/**
+	 * @return the file
+	 */
+	public Path getFile() {
+		return file;
+	}
+}
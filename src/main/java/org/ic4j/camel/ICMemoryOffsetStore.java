@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Offset store keeping offsets in memory only, the default of consumers
+ * without an offsetStore. Offsets are lost when the context stops.
+ */
+public class ICMemoryOffsetStore implements ICOffsetStore {
+
+	private final Map<String, Long> offsets = new ConcurrentHashMap<String, Long>();
+
+	@Override
+	public Long load(String key) {
+		return this.offsets.get(key);
+	}
+
+	@Override
+	public void commit(String key, long offset) {
+		this.offsets.put(key, offset);
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel;
+
+/**
+ * Persists the position of incremental consumers, such as the last ledger
+ * block delivered by a blocks consumer. A store may be shared by several
+ * consumers. The component starts and stops only the stores it creates, a
+ * store given as the offsetStore option is started and stopped by its owner,
+ * for instance by adding it to the CamelContext as a service.
+ */
+public interface ICOffsetStore {
+
+	/**
+	 * @return the last committed offset of the key, or null when none was
+	 *         committed
+	 */
+	Long load(String key) throws Exception;
+
+	/**
+	 * Records the offset of the last message delivered for the key. Called
+	 * after every delivered message, so it must be cheap.
+	 */
+	void commit(String key, long offset) throws Exception;
+}
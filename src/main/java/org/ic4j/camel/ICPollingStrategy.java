@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+/**
+ * Decides when the request_status of an in-flight update call is polled.
+ * Implementations are shared by all exchanges of an endpoint and must be
+ * thread-safe.
+ */
+public interface ICPollingStrategy {
+
+	/**
+	 * @param attempt number of request_status polls already issued, 0 for the
+	 *                first poll after the call was submitted
+	 * @return delay in milliseconds before the next poll
+	 */
+	long nextDelay(int attempt);
+
+	/**
+	 * @return overall deadline in milliseconds, measured from the submission of
+	 *         the call
+	 */
+	long getTimeout();
+}
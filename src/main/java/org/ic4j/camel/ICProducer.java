@@ -20,6 +20,7 @@ import org.apache.camel.AsyncCallback;
 import org.apache.camel.CamelContext;
 import org.apache.camel.Exchange;
 import org.apache.camel.support.DefaultAsyncProducer;
+import org.apache.camel.support.service.ServiceHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +45,25 @@ public class ICProducer extends DefaultAsyncProducer {
     public ICEndpoint getEndpoint() {
         return (ICEndpoint) super.getEndpoint();
     }	
+    
+    /**
+     * @return the query reply cache with its hit/miss statistics, null when queryCache is not enabled
+     */
+    public ICQueryCache getQueryCache() {
+        return service.getQueryCache();
+    }
+    
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        ServiceHelper.startService(service);
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        ServiceHelper.stopService(service);
+        super.doStop();
+    }
 
 	@Override
 	public boolean process(Exchange exchange, AsyncCallback callback) {
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.ic4j.types.Principal;
+
+/**
+ * LRU cache of raw query replies keyed by canister, method and encoded Candid
+ * arguments. Entries expire after a fixed time to live and the cache is
+ * bounded by entry count and, optionally, by the total size of the cached
+ * replies.
+ *
+ * Replies are kept as Candid bytes and decoded on every hit, so each exchange
+ * gets its own copy of the output and cached entries do not depend on the
+ * output type.
+ */
+public class ICQueryCache {
+
+	private final long ttlNanos;
+
+	private final int maxEntries;
+
+	// 0 means unbounded
+	private final long maxWeight;
+
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+	private long weight;
+
+	private long hitCount;
+
+	private long missCount;
+
+	private long evictionCount;
+
+	private long expirationCount;
+
+	public ICQueryCache(long ttl, int maxEntries, long maxWeight) {
+		if (ttl <= 0)
+			throw new IllegalArgumentException("Query cache ttl must be positive");
+
+		if (maxEntries <= 0)
+			throw new IllegalArgumentException("Query cache maxEntries must be positive");
+
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+		this.maxEntries = maxEntries;
+		this.maxWeight = Math.max(0, maxWeight);
+	}
+
+	static Key key(Principal canisterId, String method, byte[] arg) {
+		return new Key(canisterId.toString(), method, ByteBuffer.wrap(arg));
+	}
+
+	/**
+	 * @return the cached reply, or null when absent or expired
+	 */
+	synchronized byte[] get(Key key) {
+		Entry entry = this.entries.get(key);
+
+		if (entry == null) {
+			this.missCount++;
+			return null;
+		}
+
+		if (System.nanoTime() - entry.expiresAt >= 0) {
+			this.remove(key, entry);
+			this.expirationCount++;
+			this.missCount++;
+			return null;
+		}
+
+		this.hitCount++;
+		return entry.reply;
+	}
+
+	synchronized void put(Key key, byte[] reply) {
+		if (this.maxWeight > 0 && reply.length > this.maxWeight)
+			return;
+
+		Entry previous = this.entries.put(key, new Entry(reply, System.nanoTime() + this.ttlNanos));
+
+		if (previous != null)
+			this.weight -= previous.reply.length;
+
+		this.weight += reply.length;
+
+		Iterator<Map.Entry<Key, Entry>> eldest = this.entries.entrySet().iterator();
+
+		while (eldest.hasNext() && (this.entries.size() > this.maxEntries || (this.maxWeight > 0 && this.weight > this.maxWeight))) {
+			Map.Entry<Key, Entry> entry = eldest.next();
+			eldest.remove();
+			this.weight -= entry.getValue().reply.length;
+			this.evictionCount++;
+		}
+	}
+
+	public synchronized void clear() {
+		this.entries.clear();
+		this.weight = 0;
+	}
+
+	private void remove(Key key, Entry entry) {
+		this.entries.remove(key);
+		this.weight -= entry.reply.length;
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * @return the total size in bytes of the cached replies
+	 */
+	public synchronized long getWeight() {
+		return this.weight;
+	}
+
+	public synchronized long getHitCount() {
+		return this.hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return this.missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	public synchronized long getExpirationCount() {
+		return this.expirationCount;
+	}
+
+	public synchronized double getHitRatio() {
+		long requests = this.hitCount + this.missCount;
+
+		return requests == 0 ? 0 : (double) this.hitCount / requests;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ICQueryCache[size=" + this.entries.size() + ", weight=" + this.weight + ", hits=" + this.hitCount + ", misses="
+				+ this.missCount + ", evictions=" + this.evictionCount + ", expirations=" + this.expirationCount + "]";
+	}
+
+	/**
+	 * ByteBuffer compares the remaining bytes, so two encodings of the same
+	 * arguments are equal keys.
+	 */
+	record Key(String canisterId, String method, ByteBuffer arg) {
+	}
+
+	record Entry(byte[] reply, long expiresAt) {
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends a second, identical query to another replica when the first one has
+ * not replied within the hedge delay. The first successful reply wins, the
+ * query fails only when both fail.
+ *
+ * The hedge delay is the configured percentile of the latest query latencies,
+ * so only the slowest queries are duplicated. It is never below the minimum
+ * delay, which is also used until enough latencies are known.
+ *
+ * A hedge only goes to another healthy replica. While fewer than 2 replicas
+ * are healthy, hedging is suspended rather than sending the query twice to the
+ * same replica.
+ */
+final class ICQueryHedger {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ICQueryHedger.class);
+
+	static final int SAMPLES = 1024;
+
+	static final int MIN_SAMPLES = 32;
+
+	// the percentile is recomputed after this many new samples
+	static final int REFRESH = 64;
+
+	private final ICReplicaPool replicaPool;
+
+	private final double percentile;
+
+	private final long minDelayNanos;
+
+	private final long[] samples = new long[SAMPLES];
+
+	private int count;
+
+	private int next;
+
+	private long delayNanos;
+
+	private long hedgeCount;
+
+	private long hedgeWinCount;
+
+	private long skippedCount;
+
+	private boolean suspended;
+
+	ICQueryHedger(ICReplicaPool replicaPool, double percentile, long minDelay) {
+		if (percentile <= 0 || percentile >= 100)
+			throw new IllegalArgumentException("Hedge percentile must be between 0 and 100");
+
+		this.replicaPool = replicaPool;
+		this.percentile = percentile;
+		this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelay);
+		this.delayNanos = this.minDelayNanos;
+	}
+
+	/**
+	 * @param query sends the query to the given node through the replica pool
+	 */
+	CompletableFuture<byte[]> query(Function<ICReplicaPool.Node, CompletableFuture<byte[]>> query) {
+		CompletableFuture<byte[]> result = new CompletableFuture<byte[]>();
+		AtomicInteger pending = new AtomicInteger(1);
+		long start = System.nanoTime();
+
+		ICReplicaPool.Node primaryNode = this.replicaPool.select();
+		CompletableFuture<byte[]> primary = query.apply(primaryNode);
+
+		BiConsumer<byte[], Throwable> completion = (reply, error) -> {
+			if (error == null) {
+				if (result.complete(reply))
+					this.record(System.nanoTime() - start);
+			} else if (pending.decrementAndGet() == 0)
+				result.completeExceptionally(error);
+		};
+
+		primary.whenComplete(completion);
+
+		if (result.isDone())
+			return result;
+
+		CompletableFuture.delayedExecutor(this.getDelayNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+			if (result.isDone())
+				return;
+
+			ICReplicaPool.Node hedgeNode = this.replicaPool.select(primaryNode);
+
+			if (!this.hedge(primaryNode, hedgeNode))
+				return;
+
+			pending.incrementAndGet();
+
+			CompletableFuture<byte[]> hedge = query.apply(hedgeNode);
+
+			hedge.whenComplete((reply, error) -> {
+				// the agent cannot abort the slower request, its late reply is dropped
+				if (error == null && !primary.isDone()) {
+					synchronized (this) {
+						this.hedgeWinCount++;
+					}
+				}
+
+				completion.accept(reply, error);
+			});
+		});
+
+		return result;
+	}
+
+	/**
+	 * Counts the hedge, or skips it when there is no other healthy replica.
+	 */
+	private synchronized boolean hedge(ICReplicaPool.Node primaryNode, ICReplicaPool.Node hedgeNode) {
+		if (hedgeNode == null || hedgeNode == primaryNode || hedgeNode.isEjected()) {
+			this.skippedCount++;
+
+			if (!this.suspended) {
+				this.suspended = true;
+				LOG.warn("Query hedging suspended, fewer than 2 healthy replicas");
+			}
+
+			return false;
+		}
+
+		if (this.suspended) {
+			this.suspended = false;
+			LOG.info("Query hedging resumed");
+		}
+
+		this.hedgeCount++;
+		return true;
+	}
+
+	private synchronized void record(long latency) {
+		this.samples[this.next] = latency;
+		this.next = (this.next + 1) % SAMPLES;
+		this.count++;
+
+		if (this.count >= MIN_SAMPLES && this.count % REFRESH == 0) {
+			long[] sorted = Arrays.copyOf(this.samples, Math.min(this.count, SAMPLES));
+			Arrays.sort(sorted);
+
+			long delay = sorted[(int) Math.min(sorted.length - 1, Math.ceil(sorted.length * this.percentile / 100) - 1)];
+			this.delayNanos = Math.max(this.minDelayNanos, delay);
+		}
+	}
+
+	synchronized long getDelayNanos() {
+		return this.delayNanos;
+	}
+
+	synchronized long getHedgeCount() {
+		return this.hedgeCount;
+	}
+
+	synchronized long getHedgeWinCount() {
+		return this.hedgeWinCount;
+	}
+
+	/**
+	 * @return the number of hedges skipped for lack of another healthy replica
+	 */
+	synchronized long getSkippedCount() {
+		return this.skippedCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ICQueryHedger[p" + this.percentile + "=" + TimeUnit.NANOSECONDS.toMillis(this.delayNanos) + "ms, hedges="
+				+ this.hedgeCount + ", wins=" + this.hedgeWinCount + ", skipped=" + this.skippedCount + "]";
+	}
+}
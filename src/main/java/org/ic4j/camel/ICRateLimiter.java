@@ -0,0 +1,204 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive rate limiter for the calls to one canister through one replica URL.
+ * Calls are spaced evenly at the current rate, a call over the rate is
+ * delayed. A call that would wait longer than the maximum delay fails right
+ * away, so a burst far over the rate does not pile up delayed calls.
+ *
+ * The rate follows additive increase, multiplicative decrease: every
+ * successful call raises it by roughly one call per second per second, a
+ * throttling error multiplies it by the decrease factor. Decreases are spaced
+ * by one second so a burst of errors from the same overload counts once.
+ */
+public class ICRateLimiter {
+
+	static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	static final long DEFAULT_MAX_DELAY = 30000;
+
+	private final String name;
+
+	private final double minRate;
+
+	private final double maxRate;
+
+	private final double decreaseFactor;
+
+	private final long maxDelayNanos;
+
+	private double rate;
+
+	// time the next call may be sent
+	private long nextPermit = System.nanoTime();
+
+	private long lastDecrease;
+
+	private long throttledCount;
+
+	private long rejectedCount;
+
+	public ICRateLimiter(String name, double initialRate, double minRate, double maxRate, double decreaseFactor) {
+		this(name, initialRate, minRate, maxRate, decreaseFactor, DEFAULT_MAX_DELAY);
+	}
+
+	/**
+	 * @param maxDelay milliseconds a call may wait for its slot
+	 */
+	public ICRateLimiter(String name, double initialRate, double minRate, double maxRate, double decreaseFactor, long maxDelay) {
+		if (minRate <= 0 || maxRate < minRate)
+			throw new IllegalArgumentException("Rate limiter " + name + " needs 0 < minRate <= maxRate");
+
+		if (decreaseFactor <= 0 || decreaseFactor >= 1)
+			throw new IllegalArgumentException("Rate limiter " + name + " decrease factor must be between 0 and 1");
+
+		this.name = name;
+		this.minRate = minRate;
+		this.maxRate = maxRate;
+		this.decreaseFactor = decreaseFactor;
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelay));
+		this.rate = Math.max(minRate, Math.min(maxRate, initialRate));
+		this.lastDecrease = System.nanoTime() - DECREASE_INTERVAL_NANOS;
+	}
+
+	/**
+	 * Sends the call at the current rate and adjusts the rate to its outcome.
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+		long delay;
+
+		try {
+			delay = this.reserve();
+		} catch (RejectedExecutionException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+
+		CompletableFuture<T> response;
+
+		if (delay <= 0)
+			response = this.send(call);
+		else
+			response = CompletableFuture.supplyAsync(() -> null, CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS))
+					.thenCompose(ignore -> this.send(call));
+
+		return response.whenComplete((result, error) -> {
+			if (error == null)
+				this.onSuccess();
+			else if (ICErrors.isThrottled(error))
+				this.onThrottled();
+		});
+	}
+
+	private <T> CompletableFuture<T> send(Supplier<CompletableFuture<T>> call) {
+		try {
+			return call.get();
+		} catch (Exception e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * @return nanoseconds until the reserved slot
+	 * @throws RejectedExecutionException when the slot is beyond the maximum
+	 *                                    delay
+	 */
+	synchronized long reserve() {
+		long now = System.nanoTime();
+		long permit = Math.max(now, this.nextPermit);
+
+		if (permit - now > this.maxDelayNanos) {
+			this.rejectedCount++;
+			throw new RejectedExecutionException("Rate limiter " + this.name + " is " + TimeUnit.NANOSECONDS.toMillis(permit - now)
+					+ " ms behind at " + String.format("%.1f", this.rate) + " calls/s");
+		}
+
+		this.nextPermit = permit + (long) (TimeUnit.SECONDS.toNanos(1) / this.rate);
+
+		return permit - now;
+	}
+
+	synchronized void onSuccess() {
+		this.rate = Math.min(this.maxRate, this.rate + 1 / this.rate);
+	}
+
+	synchronized void onThrottled() {
+		this.throttledCount++;
+
+		long now = System.nanoTime();
+
+		if (now - this.lastDecrease < DECREASE_INTERVAL_NANOS)
+			return;
+
+		this.lastDecrease = now;
+		this.rate = Math.max(this.minRate, this.rate * this.decreaseFactor);
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public double getMinRate() {
+		return this.minRate;
+	}
+
+	public double getMaxRate() {
+		return this.maxRate;
+	}
+
+	public double getDecreaseFactor() {
+		return this.decreaseFactor;
+	}
+
+	/**
+	 * @return milliseconds a call may wait for its slot
+	 */
+	public long getMaxDelay() {
+		return TimeUnit.NANOSECONDS.toMillis(this.maxDelayNanos);
+	}
+
+	/**
+	 * @return the allowed calls per second
+	 */
+	public synchronized double getRate() {
+		return this.rate;
+	}
+
+	public synchronized long getThrottledCount() {
+		return this.throttledCount;
+	}
+
+	/**
+	 * @return the number of calls failed because their slot was beyond the
+	 *         maximum delay
+	 */
+	public synchronized long getRejectedCount() {
+		return this.rejectedCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ICRateLimiter[" + this.name + ", rate=" + String.format("%.1f", this.rate) + "/s, throttled=" + this.throttledCount
+				+ ", rejected=" + this.rejectedCount + "]";
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+/**
+ * Reject of a call by the replica or the canister. It is set as the cause of
+ * the AgentError reported on the exchange, so the reject code stays available
+ * to error classification and to route error handlers.
+ */
+public class ICRejectException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int SYS_FATAL = 1;
+	public static final int SYS_TRANSIENT = 2;
+	public static final int DESTINATION_INVALID = 3;
+	public static final int CANISTER_REJECT = 4;
+	public static final int CANISTER_ERROR = 5;
+
+	private final Integer rejectCode;
+
+	public ICRejectException(Integer rejectCode, String rejectMessage) {
+		super("Reject code " + rejectCode + ": " + rejectMessage);
+		this.rejectCode = rejectCode;
+	}
+
+	/**
+	 * @return the reject code, null if the replica did not return one
+	 */
+	public Integer getRejectCode() {
+		return rejectCode;
+	}
+
+	public boolean isTransient() {
+		return rejectCode != null && rejectCode == SYS_TRANSIENT;
+	}
+}
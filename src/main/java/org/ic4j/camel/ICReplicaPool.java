@@ -0,0 +1,356 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.camel.support.service.ServiceSupport;
+import org.ic4j.agent.Agent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replicas or API boundary nodes of one endpoint, from its comma separated
+ * url. Every call goes to the node with the best score, its latency EWMA
+ * weighted by its calls in flight and its error EWMA.
+ *
+ * A node failing ejectThreshold calls in a row with a transport error or
+ * throttling is ejected for ejectDuration. Ejected nodes are probed with a
+ * status call every probeInterval and return to the pool as soon as a probe
+ * succeeds, or when their ejection expires. When all nodes are ejected the
+ * one ejected first is used.
+ */
+public class ICReplicaPool extends ServiceSupport {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ICReplicaPool.class);
+
+	// weight of the latest sample in the latency and error averages
+	static final double EWMA_ALPHA = 0.3;
+
+	// latency sample recorded for a failed call, so failing nodes score badly
+	static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final ICEndpoint endpoint;
+
+	private final List<Node> nodes = new ArrayList<Node>();
+
+	private final int ejectThreshold;
+
+	private final long ejectDurationNanos;
+
+	private final long probeInterval;
+
+	private ScheduledExecutorService prober;
+
+	public ICReplicaPool(ICEndpoint endpoint, int ejectThreshold, long ejectDuration, long probeInterval) {
+		this.endpoint = endpoint;
+		this.ejectThreshold = Math.max(1, ejectThreshold);
+		this.ejectDurationNanos = TimeUnit.MILLISECONDS.toNanos(ejectDuration);
+		this.probeInterval = probeInterval;
+	}
+
+	/**
+	 * @return the replica URLs of the endpoint url option
+	 */
+	static List<String> parseUrls(String url) {
+		List<String> urls = new ArrayList<String>();
+
+		if (url == null)
+			return urls;
+
+		for (String item : url.split(","))
+			if (!item.isBlank())
+				urls.add(item.trim());
+
+		return urls;
+	}
+
+	@Override
+	protected void doStart() throws Exception {
+		List<String> urls = parseUrls(this.endpoint.getUrl());
+
+		// a transport bean is bound to its own URL
+		if (this.endpoint.getTransport() != null || urls.size() < 2) {
+			this.nodes.add(new Node(this.endpoint.getUrl(), this.endpoint.getComponent().getAgentRegistry().acquire(this.endpoint)));
+			return;
+		}
+
+		ICAgentRegistry registry = this.endpoint.getComponent().getAgentRegistry();
+
+		try {
+			for (String url : urls)
+				this.nodes.add(new Node(url, registry.acquire(this.endpoint, url)));
+		} catch (Exception e) {
+			this.releaseAll();
+			throw e;
+		}
+
+		if (this.probeInterval > 0) {
+			this.prober = this.endpoint.getCamelContext().getExecutorServiceManager()
+					.newSingleThreadScheduledExecutor(this, "ICReplicaProbe");
+			this.prober.scheduleWithFixedDelay(this::probe, this.probeInterval, this.probeInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+		if (this.prober != null) {
+			this.endpoint.getCamelContext().getExecutorServiceManager().shutdown(this.prober);
+			this.prober = null;
+		}
+
+		this.releaseAll();
+	}
+
+	private void releaseAll() {
+		for (Node node : this.nodes)
+			node.handle.release();
+
+		this.nodes.clear();
+	}
+
+	/**
+	 * @return the node the next call should go to
+	 */
+	Node select() {
+		return this.select(null);
+	}
+
+	/**
+	 * @return the best node other than the excluded one, if there is another
+	 */
+	Node select(Node excluded) {
+		if (this.nodes.size() == 1)
+			return this.nodes.get(0);
+
+		long now = System.nanoTime();
+
+		// nodes without a latency yet score like the slowest known node, so a new
+		// or recovered node gets its share of the calls rather than all of them
+		double unknownLatency = 1;
+
+		for (Node node : this.nodes) {
+			synchronized (node) {
+				unknownLatency = Math.max(unknownLatency, node.latency);
+			}
+		}
+
+		Node best = null;
+		double bestScore = Double.MAX_VALUE;
+		Node firstEjected = null;
+
+		for (Node node : this.nodes) {
+			if (node == excluded)
+				continue;
+
+			synchronized (node) {
+				if (node.isEjected(now)) {
+					if (firstEjected == null || node.ejectedUntil < firstEjected.ejectedUntil)
+						firstEjected = node;
+					continue;
+				}
+
+				double score = node.score(unknownLatency);
+
+				if (score < bestScore) {
+					bestScore = score;
+					best = node;
+				}
+			}
+		}
+
+		return best != null ? best : firstEjected;
+	}
+
+	/**
+	 * Sends the call to the best node and records its latency and outcome.
+	 */
+	<T> CompletableFuture<T> call(Function<Agent, CompletableFuture<T>> call) {
+		Node node = this.select();
+		return this.call(node, call);
+	}
+
+	/**
+	 * Sends the call to the given node, used when a call must stay on the node
+	 * that accepted an earlier request.
+	 */
+	<T> CompletableFuture<T> call(Node node, Function<Agent, CompletableFuture<T>> call) {
+		long start = System.nanoTime();
+
+		synchronized (node) {
+			node.inFlight++;
+		}
+
+		CompletableFuture<T> response;
+
+		try {
+			response = call.apply(node.getAgent());
+		} catch (Exception e) {
+			response = CompletableFuture.failedFuture(e);
+		}
+
+		return response.whenComplete((result, error) -> this.record(node, System.nanoTime() - start, error));
+	}
+
+	private void record(Node node, long latency, Throwable error) {
+		// canister rejects and decoding errors say nothing about the node
+		boolean failed = error != null && ICErrors.getReject(error) == null && ICErrors.isTransient(error);
+
+		synchronized (node) {
+			node.inFlight--;
+
+			node.errorRate = node.errorRate * (1 - EWMA_ALPHA) + (failed ? EWMA_ALPHA : 0);
+
+			if (failed)
+				latency = Math.max(latency, FAILURE_PENALTY_NANOS);
+
+			node.latency = node.latency == 0 ? latency : node.latency * (1 - EWMA_ALPHA) + latency * EWMA_ALPHA;
+
+			if (!failed) {
+				node.consecutiveFailures = 0;
+				return;
+			}
+
+			if (++node.consecutiveFailures >= this.ejectThreshold && !node.isEjected(System.nanoTime())) {
+				node.ejectedUntil = System.nanoTime() + this.ejectDurationNanos;
+				node.ejectionCount++;
+				LOG.warn("Ejecting replica {} after {} failures: {}", node.url, node.consecutiveFailures, error.getMessage());
+			}
+		}
+	}
+
+	private void probe() {
+		long now = System.nanoTime();
+
+		for (Node node : this.nodes) {
+			synchronized (node) {
+				if (!node.isEjected(now))
+					continue;
+			}
+
+			node.getAgent().status().whenComplete((status, error) -> {
+				if (error != null)
+					return;
+
+				synchronized (node) {
+					node.ejectedUntil = 0;
+					node.consecutiveFailures = 0;
+					node.errorRate = 0;
+					// forget the failure penalties so the node gets traffic again
+					node.latency = 0;
+				}
+
+				LOG.info("Replica {} is back", node.url);
+			});
+		}
+	}
+
+	/**
+	 * @return the agent of the first node, for calls that do not need routing
+	 */
+	Agent getDefaultAgent() {
+		return this.nodes.get(0).getAgent();
+	}
+
+	/**
+	 * @return the nodes with their latency and error statistics
+	 */
+	public List<Node> getNodes() {
+		return Collections.unmodifiableList(this.nodes);
+	}
+
+	public static final class Node {
+		final String url;
+
+		final ICAgentHandle handle;
+
+		// guarded by this
+		double latency;
+
+		double errorRate;
+
+		int inFlight;
+
+		int consecutiveFailures;
+
+		long ejectedUntil;
+
+		long ejectionCount;
+
+		Node(String url, ICAgentHandle handle) {
+			this.url = url;
+			this.handle = handle;
+		}
+
+		Agent getAgent() {
+			return this.handle.getAgent();
+		}
+
+		boolean isEjected(long now) {
+			return this.ejectedUntil != 0 && now - this.ejectedUntil < 0;
+		}
+
+		// calls in flight count even before the first latency is known
+		double score(double unknownLatency) {
+			double latency = this.latency == 0 ? unknownLatency : this.latency;
+
+			return latency * (1 + this.inFlight) * (1 + 10 * this.errorRate);
+		}
+
+		public String getUrl() {
+			return this.url;
+		}
+
+		/**
+		 * @return the latency EWMA in milliseconds
+		 */
+		public synchronized double getLatency() {
+			return this.latency / 1_000_000;
+		}
+
+		/**
+		 * @return the error EWMA, between 0 and 1
+		 */
+		public synchronized double getErrorRate() {
+			return this.errorRate;
+		}
+
+		public synchronized int getInFlight() {
+			return this.inFlight;
+		}
+
+		public synchronized boolean isEjected() {
+			return this.isEjected(System.nanoTime());
+		}
+
+		public synchronized long getEjectionCount() {
+			return this.ejectionCount;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return this.url + "[latency=" + String.format("%.1f", this.getLatency()) + "ms, errorRate="
+					+ String.format("%.2f", this.errorRate) + ", inFlight=" + this.inFlight + (this.isEjected() ? ", ejected" : "") + "]";
+		}
+	}
+}
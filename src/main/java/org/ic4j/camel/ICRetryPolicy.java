@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Number of retries and exponential backoff with jitter between them. Which
+ * failures may be retried depends on the call, see ICService.
+ */
+final class ICRetryPolicy {
+
+	private final int maxRetries;
+
+	private final ICBackoffPollingStrategy backoff;
+
+	ICRetryPolicy(int maxRetries, long initialDelay, long maxDelay, double multiplier, double jitter) {
+		this.maxRetries = maxRetries;
+		// the backoff timeout is unused, the caller owns the deadline
+		this.backoff = new ICBackoffPollingStrategy(ICBackoffPollingStrategy.EXPONENTIAL, initialDelay, initialDelay, maxDelay,
+				multiplier, jitter, 0);
+	}
+
+	/**
+	 * @param retry number of retries already made
+	 */
+	boolean canRetry(int retry) {
+		return retry < this.maxRetries;
+	}
+
+	/**
+	 * @return a stage completing after the backoff delay of the retry
+	 */
+	CompletableFuture<Void> delay(int retry) {
+		return CompletableFuture.runAsync(() -> {
+		}, CompletableFuture.delayedExecutor(this.backoff.nextDelay(retry + 1), TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Repeats the call while it fails with a retryable error.
+	 */
+	<T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call, Predicate<Throwable> retryable) {
+		return this.execute(call, retryable, 0);
+	}
+
+	private <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call, Predicate<Throwable> retryable, int retry) {
+		CompletableFuture<T> response;
+
+		try {
+			response = call.get();
+		} catch (Exception e) {
+			response = CompletableFuture.failedFuture(e);
+		}
+
+		return response.handle((result, error) -> {
+			if (error == null)
+				return CompletableFuture.completedFuture(result);
+
+			if (this.canRetry(retry) && retryable.test(error))
+				return this.delay(retry).thenCompose(ignore -> this.execute(call, retryable, retry + 1));
+
+			return CompletableFuture.<T>failedFuture(error);
+		}).thenCompose(stage -> stage);
+	}
+}
@@ -18,29 +18,31 @@ package org.ic4j.camel;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.Security;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.apache.camel.AsyncCallback;
 import org.apache.camel.Exchange;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.apache.camel.Message;
+import org.apache.camel.support.LRUCacheFactory;
+import org.apache.camel.support.service.ServiceHelper;
+import org.apache.camel.support.service.ServiceSupport;
 import org.ic4j.agent.Agent;
-import org.ic4j.agent.AgentBuilder;
 import org.ic4j.agent.AgentError;
-import org.ic4j.agent.FuncProxy;
-import org.ic4j.agent.NonceFactory;
-import org.ic4j.agent.ProxyBuilder;
-import org.ic4j.agent.ReplicaTransport;
-import org.ic4j.agent.Waiter;
-import org.ic4j.agent.http.ReplicaApacheHttpTransport;
-import org.ic4j.agent.http.ReplicaJavaHttpTransport;
-import org.ic4j.agent.http.ReplicaOkHttpTransport;
-import org.ic4j.agent.identity.AnonymousIdentity;
-import org.ic4j.agent.identity.BasicIdentity;
-import org.ic4j.agent.identity.Identity;
-import org.ic4j.agent.identity.Prime256v1Identity;
-import org.ic4j.agent.identity.Secp256k1Identity;
+import org.ic4j.agent.RequestStatusResponse;
+import org.ic4j.agent.requestid.RequestId;
 import org.ic4j.candid.ObjectDeserializer;
 import org.ic4j.candid.ObjectSerializer;
 import org.ic4j.candid.dom.DOMDeserializer;
@@ -51,10 +53,9 @@ import org.ic4j.candid.jackson.JacksonDeserializer;
 import org.ic4j.candid.jackson.JacksonSerializer;
 import org.ic4j.candid.jaxb.javax.JAXBDeserializer;
 import org.ic4j.candid.jaxb.javax.JAXBSerializer;
+import org.ic4j.candid.parser.IDLType;
 import org.ic4j.candid.pojo.PojoDeserializer;
 import org.ic4j.candid.pojo.PojoSerializer;
-import org.ic4j.candid.types.Mode;
-import org.ic4j.types.Func;
 import org.ic4j.types.Principal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,7 +64,7 @@ import org.w3c.dom.Node;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.gson.JsonElement;
 
-public class ICService {
+public class ICService extends ServiceSupport {
 	
 	private static final Logger LOG = LoggerFactory.getLogger(ICService.class);	
 	static int WAITER_TIMEOUT = 60;
@@ -71,163 +72,695 @@ public class ICService {
 	
 	private ICEndpoint endpoint;
 	
+	// agents of the endpoint replicas, shared with other endpoints through the component agent registry
+	private ICReplicaPool replicaPool;
+	
+	// agent of the first replica, used for calls that are not routed such as fetching the IDL
 	private Agent agent;
 	
-	private int waiterTimeout = WAITER_TIMEOUT;
-	private int waiterSleep = WAITER_SLEEP;
+	private ICPollingStrategy pollingStrategy;
+	
+	// resolved once in doStart, read concurrently by all exchanges
+	private volatile ICCallPlan callPlan;
+	
+	// plans for canister/method combinations selected through message headers
+	private Map<PlanKey, ICCallPlan> callPlans;
+	
+	// null unless queryCache is enabled on the endpoint
+	private ICQueryCache queryCache;
+	
+	// null unless executionMode is virtual
+	private ExecutorService callExecutor;
+	
+	// null unless queryHedging is enabled
+	private ICQueryHedger hedger;
+	
+	// null unless retryAttempts is greater than 0
+	private ICRetryPolicy retryPolicy;
+	
+	// component bulkheads, null unless executionMode is bulkhead
+	private ICBulkhead queryBulkhead;
 	
-	ProxyBuilder proxyBuilder;
+	private ICBulkhead updateBulkhead;
+	
+	// null unless batchSize is greater than 1
+	private ICBatcher batcher;
+	
+	// rebuilt like callPlan when its IDL changes
+	private volatile ICCallPlan batchPlan;
+	
+	private ScheduledExecutorService batchScheduler;
+	
+	// identical queries in flight, null unless queryCoalescing is enabled on the endpoint
+	private Map<ICQueryCache.Key, CompletableFuture<byte[]>> inFlightQueries;
 	
 
 	public ICService(ICEndpoint endpoint) {
 		this.endpoint = endpoint;
-		
-		
-		Security.addProvider(new BouncyCastleProvider());
-		
-		String transportType = endpoint.getTransportType();
+		this.pollingStrategy = createPollingStrategy(endpoint);
+	}
 	
-		
-		ReplicaTransport transport;
-		
-		String url = endpoint.getUrl();
-		
-		try {
-		
-		switch (transportType) {
-		case "okhttp":
-			transport = ReplicaOkHttpTransport.create(url);
-			break;
-		case "apache":
-			transport = ReplicaApacheHttpTransport.create(url);		
-			break;
-		default:
-			transport = ReplicaJavaHttpTransport.create(url);
-			break;
-		}
-		
-		String identityType = endpoint.getIdentityType();
-		
-		Identity identity;
-		
-		
-		String pemFileName = endpoint.getPemFile();
-		
-		switch (identityType) {
-		case "basic":		
-			if(pemFileName == null)
-			{
-				KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
-				identity = BasicIdentity.fromKeyPair(keyPair);
-			}
-			else
-				identity = BasicIdentity.fromPEMFile(Paths.get(pemFileName));	
-			break;
-		case "secp256k1":				
-				identity = Secp256k1Identity.fromPEMFile(Paths.get(pemFileName));	
-			break;	
-		case "prime256v1":				
-			identity = Prime256v1Identity.fromPEMFile(Paths.get(pemFileName));	
-		break;				
-		default:
-			identity = new AnonymousIdentity();
-			break;
-		}
-			
-		
-		if(endpoint.getIngressExpiryDuration() == null)
-			this.agent = new AgentBuilder().transport(transport).identity(identity).nonceFactory(new NonceFactory())
-					.build();
-		else
-			this.agent = new AgentBuilder().transport(transport).identity(identity).nonceFactory(new NonceFactory()).ingresExpiry(endpoint.getIngressExpiryDuration())
-			.build();	
-		
-		if(endpoint.getFetchRootKey())
-			this.agent.fetchRootKey();
+	/**
+	 * Uses the endpoint pollingStrategy bean, else a backoff strategy when
+	 * pollBackoff is set, else the legacy fixed waiterSleep/waiterTimeout
+	 * seconds.
+	 */
+	static ICPollingStrategy createPollingStrategy(ICEndpoint endpoint) {
+		if(endpoint.getPollingStrategy() != null)
+			return endpoint.getPollingStrategy();
+		
+		int waiterTimeout = WAITER_TIMEOUT;
+		int waiterSleep = WAITER_SLEEP;
 		
 		if(endpoint.getWaiterTimeout() != null)
-			this.waiterTimeout = endpoint.getWaiterTimeout();
+			waiterTimeout = endpoint.getWaiterTimeout();
 		
 		if(endpoint.getWaiterSleep() != null)
-			this.waiterSleep = endpoint.getWaiterSleep();	
+			waiterSleep = endpoint.getWaiterSleep();	
 		
-		this.proxyBuilder = ProxyBuilder.create(agent);
+		long timeout = endpoint.getPollTimeout() != null ? endpoint.getPollTimeout() : TimeUnit.SECONDS.toMillis(waiterTimeout);
 		
-		} catch (Exception e) {
-			LOG.error(e.getLocalizedMessage(), e);
-		}
+		if(endpoint.getPollBackoff() == null)
+			return ICBackoffPollingStrategy.fixed(TimeUnit.SECONDS.toMillis(waiterSleep), timeout);
+		
+		return new ICBackoffPollingStrategy(endpoint.getPollBackoff(), endpoint.getPollInitialDelay(), endpoint.getPollInterval(),
+				endpoint.getPollMaxInterval(), endpoint.getPollMultiplier(), endpoint.getPollJitter(), timeout);
 	}
 	
     public ICEndpoint getEndpoint() {
         return this.endpoint;
     }	
 
+	@Override
+	protected void doStart() throws Exception {
+		// the limiter is created by the first call, check its policy before
+		if (this.endpoint.getMaxInFlight() != null && !ICBulkhead.WAIT.equals(this.endpoint.getMaxInFlightPolicy())
+				&& !ICBulkhead.REJECT.equals(this.endpoint.getMaxInFlightPolicy()))
+			throw new IllegalArgumentException("Unsupported maxInFlightPolicy " + this.endpoint.getMaxInFlightPolicy() + ", use wait or reject");
+
+		this.replicaPool = new ICReplicaPool(this.endpoint, this.endpoint.getReplicaEjectThreshold(),
+				this.endpoint.getReplicaEjectDuration(), this.endpoint.getReplicaProbeInterval());
+		ServiceHelper.startService(this.replicaPool);
+		this.agent = this.replicaPool.getDefaultAgent();
+
+		if (Boolean.TRUE.equals(this.endpoint.getQueryHedging())) {
+			// a hedge to the same replica only doubles its load
+			if (this.replicaPool.getNodes().size() < 2)
+				LOG.warn("Query hedging of {} is disabled, it needs at least 2 replica URLs", this.endpoint.getEndpointUri());
+			else
+				this.hedger = new ICQueryHedger(this.replicaPool, this.endpoint.getQueryHedgePercentile(),
+						this.endpoint.getQueryHedgeMinDelay());
+		}
+
+		// an endpoint used only with header overrides has no default plan
+		if (this.endpoint.getCanisterId() != null && this.endpoint.getMethod() != null)
+			this.callPlan = await(this.createCallPlan(this.endpoint.getCanisterId(), this.endpoint.getMethod(),
+					this.endpoint.getMethodType(), this.endpoint.getEffectiveCanisterId()));
+
+		this.callPlans = LRUCacheFactory.newLRUCache(this.endpoint.getPlanCacheSize());
+
+		if (Boolean.TRUE.equals(this.endpoint.getQueryCache()))
+			this.queryCache = new ICQueryCache(this.endpoint.getQueryCacheTtl(), this.endpoint.getQueryCacheMaxEntries(),
+					this.endpoint.getQueryCacheMaxWeight());
+
+		if (ICConfiguration.VIRTUAL_EXECUTION_MODE.equals(this.endpoint.getExecutionMode()))
+			this.callExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+		if (this.endpoint.getRetryAttempts() != null && this.endpoint.getRetryAttempts() > 0)
+			this.retryPolicy = new ICRetryPolicy(this.endpoint.getRetryAttempts(), this.endpoint.getRetryInitialDelay(),
+					this.endpoint.getRetryMaxDelay(), this.endpoint.getRetryMultiplier(), this.endpoint.getRetryJitter());
+
+		if (ICConfiguration.BULKHEAD_EXECUTION_MODE.equals(this.endpoint.getExecutionMode())) {
+			this.queryBulkhead = this.endpoint.getComponent().getQueryBulkhead();
+			this.updateBulkhead = this.endpoint.getComponent().getUpdateBulkhead();
+		}
+
+		if (Boolean.TRUE.equals(this.endpoint.getQueryCoalescing()))
+			this.inFlightQueries = new ConcurrentHashMap<ICQueryCache.Key, CompletableFuture<byte[]>>();
+
+		if (this.endpoint.getBatchSize() != null && this.endpoint.getBatchSize() > 1) {
+			if (this.callPlan == null)
+				throw new IllegalArgumentException("Batching requires canisterId and method on the endpoint");
+
+			if (ICConfiguration.RAW_TYPE.equals(this.endpoint.getInType()) || ICConfiguration.RAW_TYPE.equals(this.endpoint.getOutType()))
+				throw new IllegalArgumentException("Batching is not supported with raw inType or outType");
+
+			this.batchPlan = await(this.createBatchPlan());
+
+			this.batchScheduler = this.endpoint.getCamelContext().getExecutorServiceManager()
+					.newSingleThreadScheduledExecutor(this, "ICBatcher");
+			this.batcher = new ICBatcher(this::getBatchPlan, this::invoke, this.endpoint.getBatchSize(), this.endpoint.getBatchTimeout(),
+					this.batchScheduler);
+		}
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+		if (this.callPlans != null)
+			this.callPlans.clear();
+
+		if (this.batcher != null) {
+			this.batcher.cancel();
+			this.batcher = null;
+			this.batchPlan = null;
+			this.endpoint.getCamelContext().getExecutorServiceManager().shutdown(this.batchScheduler);
+			this.batchScheduler = null;
+		}
+
+		// the bulkheads are shared and stopped with the component
+		this.queryBulkhead = null;
+		this.updateBulkhead = null;
 
+		if (this.callExecutor != null) {
+			// calls already dispatched complete on their own virtual threads
+			this.callExecutor.shutdown();
+			this.callExecutor = null;
+		}
+
+		if (this.queryCache != null) {
+			LOG.debug("Query cache of {}: {}", this.endpoint.getEndpointUri(), this.queryCache);
+			this.queryCache.clear();
+		}
+
+		if (this.hedger != null) {
+			LOG.debug("Query hedging of {}: {}", this.endpoint.getEndpointUri(), this.hedger);
+			this.hedger = null;
+		}
+
+		if (this.replicaPool != null) {
+			ServiceHelper.stopService(this.replicaPool);
+			this.replicaPool = null;
+			this.agent = null;
+		}
+	}
+
+
+	/**
+	 * Dispatches the canister call without blocking the calling thread. The
+	 * request is encoded and handed to the replica transport here, the
+	 * AsyncCallback is completed from the transport completion stage.
+	 *
+	 * With executionMode=virtual, encoding, dispatch and completion run on a
+	 * virtual thread instead of the calling thread and the transport threads.
+	 * With executionMode=bulkhead, calls wait for a slot in the query or update
+	 * bulkhead of the component.
+	 */
 	boolean process(Exchange exchange, AsyncCallback callback) {
-		Principal canisterId = Principal.fromString(this.getEndpoint().getCanisterId());
-		
-		String method = this.getEndpoint().getMethod();
-		
-		String methodType = this.getEndpoint().getMethodType();
-		
-		Waiter waiter = Waiter.create(this.waiterTimeout, this.waiterSleep);
-		this.proxyBuilder = this.proxyBuilder.waiter(waiter).disableRangeCheck(this.getEndpoint().getFetchRootKey());
-		
-		if(this.getEndpoint().getEffectiveCanisterId() != null)
-		{
-			Principal effectiveCanisterId = Principal.fromString(this.getEndpoint().getEffectiveCanisterId());
-			this.proxyBuilder = this.proxyBuilder.effectiveCanisterId(effectiveCanisterId);
+		if (this.callExecutor == null)
+			return this.dispatch(exchange, callback, true);
+
+		try {
+			this.callExecutor.execute(() -> this.dispatch(exchange, callback, false));
+		} catch (RejectedExecutionException e) {
+			exchange.setException(e);
+			callback.done(true);
+			return true;
 		}
-		
-		if(this.getEndpoint().getIdlFile() != null)
-		{
-			Path idlFilePath = Path.of(this.getEndpoint().getIdlFile());
-			this.proxyBuilder = this.proxyBuilder.idlFile(idlFilePath);
+
+		return false;
+	}
+
+	private boolean dispatch(Exchange exchange, AsyncCallback callback, boolean doneSync) {
+		CompletableFuture<Object> response;
+
+		try {
+			Message message = exchange.getIn();
+
+			// exchanges overriding the endpoint call through headers are never batched
+			if (this.batcher != null && isEndpointCall(message))
+				response = this.batcher.add(message.getBody());
+			else
+				response = this.resolveCallPlan(message).thenCompose(plan -> this.call(plan, message.getBody()));
+		} catch (Exception e) {
+			exchange.setException(toAgentError(e));
+			callback.done(doneSync);
+			return doneSync;
 		}
-		
-		this.proxyBuilder = this.proxyBuilder.loadIDL(this.getEndpoint().getLoadIDL());
-		
-		Func func = new Func(canisterId, method);
-		
-		FuncProxy<?> funcProxy = this.proxyBuilder.getFuncProxy(func);
-		
+
+		BiConsumer<Object, Throwable> completion = (result, error) -> {
+			if (error != null)
+				exchange.setException(toAgentError(error));
+			else
+				exchange.getMessage().setBody(result);
+
+			callback.done(false);
+		};
+
+		if (this.callExecutor == null)
+			response.whenComplete(completion);
+		else
+			response.whenCompleteAsync(completion, this.callExecutor);
+
+		return false;
+	}
+
+	CompletableFuture<Object> call(ICCallPlan plan, Object arg) {
+		return this.invoke(plan, plan.encode(arg)).thenApply(reply -> reply == null ? null : plan.decode(reply));
+	}
+
+	/**
+	 * Sends the encoded argument and completes with the raw reply, or with
+	 * null for oneway calls.
+	 */
+	CompletableFuture<byte[]> invoke(ICCallPlan plan, byte[] buf) {
+		// queries are read only, any transient failure can be retried
+		if (plan.isQuery())
+			return this.retryPolicy == null ? this.query(plan, buf)
+					: this.retryPolicy.execute(() -> this.query(plan, buf), ICErrors::isTransient);
+
+		// an update call holds its bulkhead slot until its reply arrives
+		return this.limit(plan, this.updateBulkhead, () -> this.update(plan, buf, 0));
+	}
+
+	/**
+	 * Submits the update call. A new submission gets a new nonce and request
+	 * ID, so it is only retried when the failure proves the previous one was
+	 * not executed.
+	 */
+	private CompletableFuture<byte[]> update(ICCallPlan plan, byte[] buf, int retry) {
+		// the reply is read from the replica that accepted the call
+		ICReplicaPool.Node node = this.replicaPool.select();
+
+		CompletableFuture<RequestId> requestId = this.call(plan, node,
+				agent -> agent.updateRaw(plan.canisterId, plan.effectiveCanisterId, plan.method, buf, Optional.empty()));
+
+		return requestId.handle((id, error) -> {
+			if (error == null)
+				return plan.isOneway() ? CompletableFuture.<byte[]>completedFuture(null) : this.awaitReply(plan, buf, node, id, retry);
+
+			if (this.retryPolicy != null && this.retryPolicy.canRetry(retry) && ICErrors.isNotExecuted(error))
+				return this.retryPolicy.delay(retry).thenCompose(ignore -> this.update(plan, buf, retry + 1));
+
+			return CompletableFuture.<byte[]>failedFuture(error);
+		}).thenCompose(stage -> stage);
+	}
+
+	/**
+	 * Waits for the reply of a submitted update call. Transport errors and
+	 * timeouts poll the same request ID again, the call is never submitted
+	 * twice unless the replica rejected it as SYS_TRANSIENT.
+	 */
+	private CompletableFuture<byte[]> awaitReply(ICCallPlan plan, byte[] buf, ICReplicaPool.Node node, RequestId requestId, int retry) {
+		return this.waitForReply(node.getAgent(), requestId, plan.effectiveCanisterId).handle((reply, error) -> {
+			if (error == null)
+				return CompletableFuture.completedFuture(reply);
+
+			if (this.retryPolicy == null || !this.retryPolicy.canRetry(retry) || !ICErrors.isTransient(error))
+				return CompletableFuture.<byte[]>failedFuture(error);
+
+			if (ICErrors.getReject(error) != null)
+				return this.retryPolicy.delay(retry).thenCompose(ignore -> this.update(plan, buf, retry + 1));
+
+			return this.retryPolicy.delay(retry).thenCompose(ignore -> this.awaitReply(plan, buf, node, requestId, retry + 1));
+		}).thenCompose(stage -> stage);
+	}
+
+	/**
+	 * Sends the call through the maxInFlight limiter of the endpoint or
+	 * canister, then through the bulkhead when executionMode is bulkhead.
+	 */
+	private <T> CompletableFuture<T> limit(ICCallPlan plan, ICBulkhead bulkhead, Supplier<CompletableFuture<T>> call) {
+		Supplier<CompletableFuture<T>> bounded = bulkhead == null ? call : () -> bulkhead.submit(call);
+
+		ICBulkhead limiter = this.getInFlightLimiter(plan);
+
+		if (limiter == null)
+			return bounded.get();
+
+		return limiter.submit(bounded);
+	}
+
+	/**
+	 * Sends the call to the selected replica, at the adaptive rate of the
+	 * canister on that replica when rateLimit is enabled.
+	 */
+	private <T> CompletableFuture<T> call(ICCallPlan plan, ICReplicaPool.Node node, Function<Agent, CompletableFuture<T>> call) {
+		ICRateLimiter rateLimiter = this.getRateLimiter(plan, node);
+
+		if (rateLimiter == null)
+			return this.replicaPool.call(node, call);
+
+		return rateLimiter.submit(() -> this.replicaPool.call(node, call));
+	}
+
+	private ICRateLimiter getRateLimiter(ICCallPlan plan, ICReplicaPool.Node node) {
+		if (!Boolean.TRUE.equals(this.endpoint.getRateLimit()))
+			return null;
+
+		// each replica throttles on its own, the endpoint URL may list several
+		String key = node.getUrl() + "/" + plan.canisterId;
+
+		ICRateLimiter limiter = this.endpoint.getComponent().getRateLimiter(key,
+				name -> new ICRateLimiter(name, this.endpoint.getRateLimitInitialRate(), this.endpoint.getRateLimitMinRate(),
+						this.endpoint.getRateLimitMaxRate(), this.endpoint.getRateLimitDecreaseFactor(), this.endpoint.getRateLimitMaxDelay()));
+
+		// the initial rate is not compared, the shared rate has moved on since
+		if (limiter.getMinRate() != this.endpoint.getRateLimitMinRate() || limiter.getMaxRate() != this.endpoint.getRateLimitMaxRate()
+				|| limiter.getDecreaseFactor() != this.endpoint.getRateLimitDecreaseFactor()
+				|| limiter.getMaxDelay() != Math.max(0, this.endpoint.getRateLimitMaxDelay()))
+			this.endpoint.getComponent().warnLimiterSettings(key, this.endpoint, "rateLimitMinRate=" + limiter.getMinRate()
+					+ ", rateLimitMaxRate=" + limiter.getMaxRate() + ", rateLimitDecreaseFactor=" + limiter.getDecreaseFactor()
+					+ ", rateLimitMaxDelay=" + limiter.getMaxDelay());
+
+		return limiter;
+	}
+
+	private ICBulkhead getInFlightLimiter(ICCallPlan plan) {
+		Integer maxInFlight = this.endpoint.getMaxInFlight();
+
+		if (maxInFlight == null || maxInFlight <= 0)
+			return null;
+
+		String key = ICConfiguration.CANISTER_SCOPE.equals(this.endpoint.getMaxInFlightScope())
+				? ICConfiguration.CANISTER_SCOPE + ":" + plan.canisterId
+				: ICConfiguration.ENDPOINT_SCOPE + ":" + this.endpoint.getEndpointUri();
+
+		ICBulkhead limiter = this.endpoint.getComponent().getInFlightLimiter(key, name -> new ICBulkhead(name, maxInFlight,
+				Integer.MAX_VALUE, this.endpoint.getMaxInFlightPolicy(), this.endpoint.getMaxInFlightTimeout(),
+				this.endpoint.getComponent().getBulkheadScheduler()));
+
+		// a canister limiter is created by the first endpoint calling the canister
+		if (limiter.getMaxConcurrency() != maxInFlight || !limiter.getPolicy().equals(this.endpoint.getMaxInFlightPolicy())
+				|| limiter.getWaitTimeout() != Math.max(0, this.endpoint.getMaxInFlightTimeout()))
+			this.endpoint.getComponent().warnLimiterSettings(key, this.endpoint, "maxInFlight=" + limiter.getMaxConcurrency()
+					+ ", maxInFlightPolicy=" + limiter.getPolicy() + ", maxInFlightTimeout=" + limiter.getWaitTimeout());
+
+		return limiter;
+	}
+
+	/**
+	 * Sends the query, or returns the cached reply bytes, or joins an identical
+	 * query already in flight. Replies are decoded by the caller, so every
+	 * exchange gets its own output object even when the bytes are shared.
+	 */
+	private CompletableFuture<byte[]> query(ICCallPlan plan, byte[] buf) {
+		if (this.queryCache == null && this.inFlightQueries == null)
+			return this.send(plan, buf, null);
+
+		ICQueryCache.Key key = ICQueryCache.key(plan.canisterId, plan.method, buf);
+
+		if (this.queryCache != null) {
+			byte[] cached = this.queryCache.get(key);
+
+			if (cached != null)
+				return CompletableFuture.completedFuture(cached);
+		}
+
+		if (this.inFlightQueries == null)
+			return this.send(plan, buf, key);
+
+		CompletableFuture<byte[]> reply = new CompletableFuture<byte[]>();
+		CompletableFuture<byte[]> inFlight = this.inFlightQueries.putIfAbsent(key, reply);
+
+		// joiners get a dependent stage so they cannot complete the shared one
+		if (inFlight != null)
+			return inFlight.thenApply(bytes -> bytes);
+
+		this.send(plan, buf, key).whenComplete((bytes, error) -> {
+			this.inFlightQueries.remove(key, reply);
+
+			if (error != null)
+				reply.completeExceptionally(error);
+			else
+				reply.complete(bytes);
+		});
+
+		return reply;
+	}
+
+	private CompletableFuture<byte[]> send(ICCallPlan plan, byte[] buf, ICQueryCache.Key key) {
+		CompletableFuture<byte[]> reply;
+
+		try {
+			reply = this.limit(plan, this.queryBulkhead,
+					() -> this.hedger == null
+							? this.call(plan, this.replicaPool.select(), agent -> agent.queryRaw(plan.canisterId, plan.effectiveCanisterId,
+									plan.method, buf, Optional.empty()))
+							: this.hedger.query(node -> this.call(plan, node, agent -> agent.queryRaw(plan.canisterId, plan.effectiveCanisterId,
+									plan.method, buf, Optional.empty()))));
+		} catch (Exception e) {
+			return CompletableFuture.failedFuture(e);
+		}
+
+		if (this.queryCache == null)
+			return reply;
+
+		return reply.thenApply(bytes -> {
+			this.queryCache.put(key, bytes);
+			return bytes;
+		});
+	}
+
+	/**
+	 * @return the query reply cache, null when queryCache is not enabled
+	 */
+	public ICQueryCache getQueryCache() {
+		return this.queryCache;
+	}
+
+	/**
+	 * Reads a path of the canister state tree from the best replica.
+	 */
+	CompletableFuture<byte[]> readState(Principal canisterId, String path) {
+		return this.replicaPool.call(agent -> ICCanisterState.read(agent, canisterId, path));
+	}
+
+	/**
+	 * @return true when no ICConstants header overrides the endpoint call
+	 */
+	static boolean isEndpointCall(Message message) {
+		return message.getHeader(ICConstants.CANISTER_ID) == null && message.getHeader(ICConstants.METHOD) == null
+				&& message.getHeader(ICConstants.METHOD_TYPE) == null && message.getHeader(ICConstants.EFFECTIVE_CANISTER_ID) == null;
+	}
+
+	/**
+	 * Returns the endpoint call plan, or a cached plan for the canister, method
+	 * and method type selected by the ICConstants headers of the message. The
+	 * plan is already built unless its IDL changed, a rebuild completes the
+	 * returned stage once the IDL registry has the new service type.
+	 */
+	CompletableFuture<ICCallPlan> resolveCallPlan(Message message) throws Exception {
+		if (isEndpointCall(message)) {
+			ICCallPlan plan = this.callPlan;
+
+			if (plan == null)
+				throw new IllegalArgumentException("No canisterId and method configured on endpoint or set in headers "
+						+ ICConstants.CANISTER_ID + " and " + ICConstants.METHOD);
+
+			if (this.isCurrent(plan))
+				return CompletableFuture.completedFuture(plan);
+
+			return this.createCallPlan(this.endpoint.getCanisterId(), this.endpoint.getMethod(), this.endpoint.getMethodType(),
+					this.endpoint.getEffectiveCanisterId()).thenApply(created -> {
+						this.callPlan = created;
+						return created;
+					});
+		}
+
+		return this.getCallPlan(message.getHeader(ICConstants.CANISTER_ID, String.class), message.getHeader(ICConstants.METHOD, String.class),
+				message.getHeader(ICConstants.METHOD_TYPE, String.class), message.getHeader(ICConstants.EFFECTIVE_CANISTER_ID, String.class));
+	}
+
+	/**
+	 * Returns a cached plan for the canister, method and method type, null
+	 * values default to the endpoint options.
+	 */
+	CompletableFuture<ICCallPlan> getCallPlan(String canisterId, String method, String methodType, String effectiveCanisterId) throws Exception {
+		if (canisterId == null)
+			canisterId = this.getEndpoint().getCanisterId();
+
+		if (method == null)
+			method = this.getEndpoint().getMethod();
+
+		if (methodType == null)
+			methodType = this.getEndpoint().getMethodType();
+
+		if (effectiveCanisterId == null)
+			effectiveCanisterId = this.getEndpoint().getEffectiveCanisterId();
+
+		if (canisterId == null || method == null)
+			throw new IllegalArgumentException("Both canisterId and method are required, set them on the endpoint or in headers "
+					+ ICConstants.CANISTER_ID + " and " + ICConstants.METHOD);
+
+		if (!ICConfiguration.QUERY_PREFIX.equals(methodType) && !ICConfiguration.UPDATE_PREFIX.equals(methodType)
+				&& !ICConfiguration.ONEWAY_PREFIX.equals(methodType))
+			throw new IllegalArgumentException("Unsupported method type " + methodType);
+
+		PlanKey key = new PlanKey(canisterId, method, methodType, effectiveCanisterId);
+
+		ICCallPlan plan = this.callPlans.get(key);
+
+		if (plan != null && this.isCurrent(plan))
+			return CompletableFuture.completedFuture(plan);
+
+		// concurrent misses may build the same plan twice, the last one wins
+		return this.createCallPlan(canisterId, method, methodType, effectiveCanisterId).thenApply(created -> {
+			this.callPlans.put(key, created);
+			return created;
+		});
+	}
+
+	/**
+	 * Returns the plan of the batch method, rebuilt through the IDL registry
+	 * when the canister was upgraded or the idlFile changed.
+	 */
+	CompletableFuture<ICCallPlan> getBatchPlan() {
+		ICCallPlan plan = this.batchPlan;
+
+		if (plan == null)
+			return CompletableFuture.failedFuture(new RejectedExecutionException("Batch producer stopped"));
+
+		if (this.isCurrent(plan))
+			return CompletableFuture.completedFuture(plan);
+
+		return this.createBatchPlan().thenApply(created -> {
+			this.batchPlan = created;
+			return created;
+		});
+	}
+
+	private CompletableFuture<ICCallPlan> createBatchPlan() {
+		String batchMethod = this.endpoint.getBatchMethod() != null ? this.endpoint.getBatchMethod() : this.endpoint.getMethod();
+
+		return this.createCallPlan(this.endpoint.getCanisterId(), batchMethod, this.endpoint.getMethodType(),
+				this.endpoint.getEffectiveCanisterId());
+	}
+
+	/**
+	 * Resolves everything that does not depend on the exchange: principals,
+	 * IDL types, serializers and the output class. The IDL is fetched by the
+	 * component IDL registry, the plan is built when it is available.
+	 */
+	CompletableFuture<ICCallPlan> createCallPlan(String canisterId, String method, String methodType, String effectiveCanisterId) {
+		try {
+			Principal canister = Principal.fromString(canisterId);
+
+			Principal effectiveCanister = null;
+
+			if(effectiveCanisterId != null)
+				effectiveCanister = Principal.fromString(effectiveCanisterId);
+
+			boolean rawIn = ICConfiguration.RAW_TYPE.equals(this.getEndpoint().getInType());
+			boolean rawOut = ICConfiguration.RAW_TYPE.equals(this.getEndpoint().getOutType());
+
+			Class<?> outClass = this.getOutClass();
+
+			// raw calls never touch the IDL, so it is not fetched
+			Object idlSource = rawIn && rawOut ? null : this.getIDLSource(canister);
+
+			CompletableFuture<IDLType> idlService = idlSource == null ? CompletableFuture.completedFuture(null)
+					: this.getIDLService(idlSource);
+
+			Principal effective = effectiveCanister;
+
+			return idlService.thenApply(service -> this.createCallPlan(canister, effective, method, methodType, outClass, rawIn, rawOut,
+					idlSource, service));
+		} catch (Exception e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	private ICCallPlan createCallPlan(Principal canister, Principal effectiveCanister, String method, String methodType,
+			Class<?> outClass, boolean rawIn, boolean rawOut, Object idlSource, IDLType idlService) {
 		ObjectSerializer objectSerializer = this.getSerializer();
 		ObjectDeserializer objectDeserializer = this.getDeserializer();
-		
-		funcProxy.setSerializers(objectSerializer);
-		funcProxy.setDeserializer(objectDeserializer);
-		
-		if(methodType != null)
+
+		IDLType idlMethodType = idlService == null ? null : idlService.getMeths().get(method);
+
+		if(idlMethodType != null)
 		{
-            if (methodType.equals(ICConfiguration.QUERY_PREFIX)) 
-            {
-            	Mode[] modes = {Mode.QUERY};
-            	funcProxy.setModes(modes);
-            }
-            else if (methodType.equals(ICConfiguration.ONEWAY_PREFIX))
-            {
-            	Mode[] modes = {Mode.ONEWAY};
-            	funcProxy.setModes(modes);
-            }
-            else 
-            	funcProxy.setModes(new Mode[0]);
+			if(!idlMethodType.getArgs().isEmpty())
+				objectSerializer.setIDLType(idlMethodType.getArgs().get(0));
+
+			if(!idlMethodType.getRets().isEmpty())
+				objectDeserializer.setIDLType(idlMethodType.getRets().get(0));
 		}
-					
+
+		return new ICCallPlan(canister, effectiveCanister, method, methodType, objectSerializer, objectDeserializer, outClass,
+				rawIn, rawOut, idlSource, idlService);
+	}
+
+	/**
+	 * Hands the request to the component status poller, which completes the
+	 * reply once the update call is replied, rejected or times out.
+	 */
+	CompletableFuture<byte[]> waitForReply(Agent agent, RequestId requestId, Principal effectiveCanisterId) {
+		return this.endpoint.getComponent().getStatusPoller().submit(agent, requestId, effectiveCanisterId,
+				this.pollingStrategy, this.getEndpoint().getFetchRootKey());
+	}
+
+	static AgentError rejected(RequestStatusResponse status) {
+		Object rejectCode = status.rejectCode.orElse(null);
+
+		// the cause keeps the reject code available to ICErrors
+		ICRejectException reject = new ICRejectException(rejectCode instanceof Number ? ((Number) rejectCode).intValue() : null,
+				status.rejectMessage.orElse(null));
+
+		return AgentError.create(AgentError.AgentErrorCode.REPLICA_ERROR, reject, rejectCode,
+				status.rejectMessage.orElse(null));
+	}
+
+	record PlanKey(String canisterId, String method, String methodType, String effectiveCanisterId) {
+	}
+
+	private static <T> T await(CompletableFuture<T> response) throws Exception {
 		try {
-			funcProxy.setResponseClass(this.getOutClass());
-			Object arg = exchange.getIn().getBody();
-			Object response = funcProxy.call(arg);
-			
-			exchange.getMessage().setBody(response);
-		} catch (Exception e) {
-			if(e.getCause() != null && e.getCause() instanceof AgentError)
-				exchange.setException((AgentError)e.getCause());
-			else	
-				exchange.setException(AgentError.create(AgentError.AgentErrorCode.CUSTOM_ERROR, e, e.getLocalizedMessage()));			
+			return response.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+
+			throw e;
 		}
-		
-		callback.done(true);
-		return true;
+	}
+
+	static AgentError toAgentError(Throwable e) {
+		// unwrap completion stage wrappers to report the original failure
+		while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null)
+			e = e.getCause();
+
+		if (e instanceof AgentError)
+			return (AgentError) e;
+
+		if (e.getCause() != null && e.getCause() instanceof AgentError)
+			return (AgentError) e.getCause();
+
+		return AgentError.create(AgentError.AgentErrorCode.CUSTOM_ERROR, e, e.getLocalizedMessage());
+	}
+
+	/**
+	 * @return the canister (loadIDL) or the idlFile path the Candid types are
+	 *         read from, null when neither is set
+	 */
+	Object getIDLSource(Principal canisterId) {
+		if (this.getEndpoint().getLoadIDL())
+			return canisterId;
+
+		if (this.getEndpoint().getIdlFile() != null)
+			return Paths.get(this.getEndpoint().getIdlFile());
+
+		return null;
+	}
+
+	/**
+	 * Resolves the service type from the component IDL registry, which fetches
+	 * and parses each canister IDL or file once.
+	 */
+	CompletableFuture<IDLType> getIDLService(Object source) {
+		ICIdlRegistry registry = this.endpoint.getComponent().getIdlRegistry();
+
+		if (source instanceof Path)
+			return registry.getService((Path) source);
+
+		return registry.getService(this.agent, (Principal) source);
+	}
+
+	/**
+	 * @return false when the canister was upgraded or the idlFile changed since
+	 *         the plan was built
+	 */
+	boolean isCurrent(ICCallPlan plan) {
+		return plan.idlSource == null || this.endpoint.getComponent().getIdlRegistry().isCurrent(this.agent, plan.idlSource, plan.idlService);
 	}
 	
 	
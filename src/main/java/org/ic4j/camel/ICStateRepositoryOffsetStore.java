@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.camel;
+
+import org.apache.camel.spi.StateRepository;
+import org.apache.camel.support.service.ServiceHelper;
+import org.apache.camel.support.service.ServiceSupport;
+
+/**
+ * Offset store keeping offsets in a Camel StateRepository, such as a file or
+ * JDBC state repository, as decimal strings.
+ */
+public class ICStateRepositoryOffsetStore extends ServiceSupport implements ICOffsetStore {
+
+	private final StateRepository<String, String> repository;
+
+	public ICStateRepositoryOffsetStore(StateRepository<String, String> repository) {
+		this.repository = repository;
+	}
+
+	@Override
+	public Long load(String key) {
+		String state = this.repository.getState(key);
+
+		return state != null ? Long.valueOf(state) : null;
+	}
+
+	@Override
+	public void commit(String key, long offset) {
+		this.repository.setState(key, Long.toString(offset));
+	}
+
+	@Override
+	protected void doStart() throws Exception {
+		ServiceHelper.startService(this.repository);
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+		ServiceHelper.stopService(this.repository);
+	}
+
+	/**
+	 * @return the repository
+	 */
+	public StateRepository<String, String> getRepository() {
+		return repository;
+	}
+}
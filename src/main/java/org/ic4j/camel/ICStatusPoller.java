@@ -0,0 +1,393 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.support.service.ServiceSupport;
+import org.ic4j.agent.Agent;
+import org.ic4j.agent.AgentError;
+import org.ic4j.agent.RequestStatusResponse;
+import org.ic4j.agent.requestid.RequestId;
+import org.ic4j.types.Principal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Polls request_status for all update calls in flight on the endpoints of one
+ * component, on a single scheduler thread.
+ *
+ * Outstanding requests are queued per agent and effective canister, ordered by
+ * the time of their next poll. When a queue wakes up, all its requests due
+ * within the next 5 ms are polled in the same tick. This only saves scheduler
+ * wakeups: each request is still read with its own read_state call, so the
+ * load on the replica is one read_state per request and poll, as before.
+ * Reading several request IDs with one read_state call is left for later.
+ *
+ * A request is never polled again while its previous read is in flight, and
+ * the number of concurrent reads is bounded by the component
+ * statusPollConcurrency. A queue is removed once all its requests are
+ * replied, so agents and canisters no longer called are not kept.
+ */
+public class ICStatusPoller extends ServiceSupport {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ICStatusPoller.class);
+
+	// requests due this close to a wakeup are polled in the same tick, each with its own read_state
+	static final long COALESCE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+	// retry delay when all read permits are taken
+	static final long BUSY_RETRY_MILLIS = 5;
+
+	private final CamelContext camelContext;
+
+	private final int concurrency;
+
+	private final Semaphore permits;
+
+	private final Map<QueueKey, CanisterQueue> queues = new ConcurrentHashMap<QueueKey, CanisterQueue>();
+
+	private volatile ScheduledExecutorService scheduler;
+
+	public ICStatusPoller(CamelContext camelContext, int concurrency) {
+		this.camelContext = camelContext;
+		this.concurrency = Math.max(1, concurrency);
+		this.permits = new Semaphore(this.concurrency);
+	}
+
+	/**
+	 * Tracks the request until it is replied, rejected or the deadline of the
+	 * polling strategy expires.
+	 *
+	 * @return the reply arg of the update call
+	 */
+	public CompletableFuture<byte[]> submit(Agent agent, RequestId requestId, Principal effectiveCanisterId,
+			ICPollingStrategy strategy, boolean disableRangeCheck) {
+		CompletableFuture<byte[]> reply = new CompletableFuture<byte[]>();
+
+		if (this.scheduler == null) {
+			reply.completeExceptionally(new RejectedExecutionException("ICStatusPoller is not started"));
+			return reply;
+		}
+
+		QueueKey key = new QueueKey(agent, effectiveCanisterId);
+		CanisterQueue queue;
+
+		// a queue removed after draining takes no more requests
+		do
+			queue = this.queues.computeIfAbsent(key, CanisterQueue::new);
+		while (!queue.enter());
+
+		CanisterQueue entered = queue;
+		reply.whenComplete((result, error) -> this.leave(entered));
+
+		PendingRequest request = new PendingRequest(queue, requestId, strategy, disableRangeCheck, reply,
+				System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(strategy.getTimeout()));
+
+		this.schedule(request);
+
+		return reply;
+	}
+
+	/**
+	 * @return the number of update calls waiting for a reply
+	 */
+	public int getPendingCount() {
+		int count = 0;
+
+		for (CanisterQueue queue : this.queues.values())
+			count += queue.outstanding();
+
+		return count;
+	}
+
+	/**
+	 * @return the number of agent and canister queues with calls waiting for a
+	 *         reply
+	 */
+	int getQueueCount() {
+		return this.queues.size();
+	}
+
+	/**
+	 * @return the number of status reads currently sent to a replica
+	 */
+	public int getInFlightCount() {
+		return this.concurrency - this.permits.availablePermits();
+	}
+
+	@Override
+	protected void doStart() throws Exception {
+		this.scheduler = this.camelContext.getExecutorServiceManager().newSingleThreadScheduledExecutor(this, "ICStatusPoller");
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+		ScheduledExecutorService scheduler = this.scheduler;
+		this.scheduler = null;
+
+		if (scheduler != null)
+			this.camelContext.getExecutorServiceManager().shutdown(scheduler);
+
+		for (CanisterQueue queue : this.queues.values())
+			queue.cancelAll();
+
+		this.queues.clear();
+	}
+
+	private void schedule(PendingRequest request) {
+		// cancelled by the caller, the queue may already be gone
+		if (request.reply.isDone())
+			return;
+
+		long delay = request.strategy.nextDelay(request.attempt);
+		long now = System.nanoTime();
+
+		// the last poll happens right at the deadline
+		request.due = Math.min(now + TimeUnit.MILLISECONDS.toNanos(delay), request.deadline);
+
+		request.queue.add(request);
+		this.wakeup(request.queue, request.due);
+	}
+
+	private void wakeup(CanisterQueue queue, long due) {
+		ScheduledExecutorService scheduler = this.scheduler;
+
+		if (scheduler == null) {
+			queue.cancelAll();
+			return;
+		}
+
+		synchronized (queue) {
+			// an earlier wakeup will pick this request up
+			if (queue.wakeup != null && queue.wakeupAt <= due + COALESCE_NANOS)
+				return;
+
+			if (queue.wakeup != null)
+				queue.wakeup.cancel(false);
+
+			queue.wakeupAt = due;
+
+			try {
+				queue.wakeup = scheduler.schedule(() -> this.drain(queue), Math.max(0, due - System.nanoTime()),
+						TimeUnit.NANOSECONDS);
+			} catch (RejectedExecutionException e) {
+				queue.wakeup = null;
+				queue.cancelAll();
+			}
+		}
+	}
+
+	private void drain(CanisterQueue queue) {
+		List<PendingRequest> due = new ArrayList<PendingRequest>();
+		long next = -1;
+		boolean busy = false;
+
+		synchronized (queue) {
+			queue.wakeup = null;
+
+			long horizon = System.nanoTime() + COALESCE_NANOS;
+
+			while (!queue.requests.isEmpty() && queue.requests.peek().due <= horizon) {
+				if (!this.permits.tryAcquire()) {
+					busy = true;
+					break;
+				}
+
+				PendingRequest request = queue.requests.poll();
+
+				if (request.reply.isDone()) {
+					this.permits.release();
+					continue;
+				}
+
+				due.add(request);
+			}
+
+			if (!queue.requests.isEmpty())
+				next = busy ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BUSY_RETRY_MILLIS) : queue.requests.peek().due;
+		}
+
+		if (next >= 0)
+			this.wakeup(queue, next);
+
+		if (due.size() > 1)
+			LOG.trace("Reading status of {} requests for {}", due.size(), queue.key.effectiveCanisterId);
+
+		for (PendingRequest request : due)
+			this.read(request);
+	}
+
+	private void leave(CanisterQueue queue) {
+		synchronized (queue) {
+			if (--queue.outstanding > 0)
+				return;
+
+			queue.removed = true;
+
+			if (queue.wakeup != null)
+				queue.wakeup.cancel(false);
+
+			queue.wakeup = null;
+			this.queues.remove(queue.key, queue);
+		}
+	}
+
+	private void read(PendingRequest request) {
+		CompletableFuture<RequestStatusResponse> status;
+
+		try {
+			status = request.queue.key.agent.requestStatusRaw(request.requestId, request.queue.key.effectiveCanisterId,
+					request.disableRangeCheck);
+		} catch (Exception e) {
+			this.permits.release();
+			request.reply.completeExceptionally(e);
+			return;
+		}
+
+		status.whenComplete((response, error) -> {
+			this.permits.release();
+
+			if (error != null) {
+				request.reply.completeExceptionally(error);
+				return;
+			}
+
+			switch (response.status) {
+			case REPLIED_STATUS:
+				request.reply.complete(response.replied.get().arg);
+				return;
+			case REJECTED_STATUS:
+				request.reply.completeExceptionally(ICService.rejected(response));
+				return;
+			case DONE_STATUS:
+				request.reply.completeExceptionally(AgentError.create(AgentError.AgentErrorCode.REQUEST_STATUS_DONE_NO_REPLY,
+						request.requestId.toHexString()));
+				return;
+			default:
+				break;
+			}
+
+			if (System.nanoTime() >= request.deadline) {
+				// the TimeoutException cause lets ICErrors tell a timeout from other failures
+				request.reply.completeExceptionally(AgentError.create(AgentError.AgentErrorCode.TIMEOUT_WAITING_FOR_RESPONSE,
+						new TimeoutException(request.requestId.toHexString())));
+				return;
+			}
+
+			request.attempt++;
+			this.schedule(request);
+		});
+	}
+
+	record QueueKey(Agent agent, Principal effectiveCanisterId) {
+	}
+
+	static final class CanisterQueue {
+		final QueueKey key;
+
+		final PriorityQueue<PendingRequest> requests = new PriorityQueue<PendingRequest>(
+				Comparator.comparingLong((PendingRequest request) -> request.due));
+
+		ScheduledFuture<?> wakeup;
+
+		long wakeupAt;
+
+		// requests without a reply, queued or being read
+		int outstanding;
+
+		boolean removed;
+
+		CanisterQueue(QueueKey key) {
+			this.key = key;
+		}
+
+		synchronized boolean enter() {
+			if (this.removed)
+				return false;
+
+			this.outstanding++;
+			return true;
+		}
+
+		synchronized void add(PendingRequest request) {
+			this.requests.add(request);
+		}
+
+		synchronized int outstanding() {
+			return this.outstanding;
+		}
+
+		void cancelAll() {
+			List<PendingRequest> requests;
+
+			synchronized (this) {
+				if (this.wakeup != null)
+					this.wakeup.cancel(false);
+
+				this.wakeup = null;
+				requests = new ArrayList<PendingRequest>(this.requests);
+				this.requests.clear();
+			}
+
+			for (PendingRequest request : requests)
+				request.reply.completeExceptionally(new RejectedExecutionException("ICStatusPoller stopped"));
+		}
+	}
+
+	static final class PendingRequest {
+		final CanisterQueue queue;
+
+		final RequestId requestId;
+
+		final ICPollingStrategy strategy;
+
+		final boolean disableRangeCheck;
+
+		final CompletableFuture<byte[]> reply;
+
+		final long deadline;
+
+		// only touched by the thread owning the request, either the scheduler or the status callback
+		int attempt;
+
+		volatile long due;
+
+		PendingRequest(CanisterQueue queue, RequestId requestId, ICPollingStrategy strategy, boolean disableRangeCheck,
+				CompletableFuture<byte[]> reply, long deadline) {
+			this.queue = queue;
+			this.requestId = requestId;
+			this.strategy = strategy;
+			this.disableRangeCheck = disableRangeCheck;
+			this.reply = reply;
+			this.deadline = deadline;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2021 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.camel;
+
+import org.ic4j.agent.ReplicaTransport;
+
+/**
+ * Creates the transport of each replica URL of an endpoint, for HTTP clients
+ * that need more tuning than the transport options offer, such as a shared
+ * executor or an HTTP/2 only client. Transports created by a factory are
+ * shared and closed by the agent registry like the built-in ones.
+ */
+@FunctionalInterface
+public interface ICTransportFactory {
+
+	/**
+	 * @param endpoint the endpoint with its transportType and transport options
+	 * @param url      one of the replica URLs of the endpoint
+	 */
+	ReplicaTransport create(ICEndpoint endpoint, String url) throws Exception;
+}
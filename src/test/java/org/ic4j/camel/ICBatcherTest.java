@@ -0,0 +1,163 @@
+package org.ic4j.camel;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import org.ic4j.agent.AgentError;
+import org.ic4j.candid.pojo.PojoDeserializer;
+import org.ic4j.candid.pojo.PojoSerializer;
+import org.ic4j.types.Principal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ICBatcherTest {
+
+	static final Principal CANISTER = Principal.fromString("ryjl3-tyaaa-aaaaa-aaaba-cai");
+
+	// vec int32 in, vec int32 out, without IDL
+	static final ICCallPlan PLAN = new ICCallPlan(CANISTER, null, "echoBatch", ICConfiguration.QUERY_PREFIX, new PojoSerializer(),
+			new PojoDeserializer(), null, false, false, null, null);
+
+	ScheduledThreadPoolExecutor scheduler;
+
+	// number of bodies of every batch sent
+	List<Integer> batches;
+
+	@BeforeEach
+	public void start() {
+		this.scheduler = new ScheduledThreadPoolExecutor(1);
+		this.scheduler.setRemoveOnCancelPolicy(true);
+		this.batches = new CopyOnWriteArrayList<Integer>();
+	}
+
+	@AfterEach
+	public void stop() {
+		this.scheduler.shutdownNow();
+	}
+
+	@Test
+	public void testFlushOnSize() {
+		ICBatcher batcher = this.batcher(this.echo(), 3, 60000);
+
+		CompletableFuture<Object> reply1 = batcher.add(1);
+		CompletableFuture<Object> reply2 = batcher.add(2);
+
+		Assertions.assertTrue(this.batches.isEmpty());
+		Assertions.assertFalse(reply1.isDone());
+
+		CompletableFuture<Object> reply3 = batcher.add(3);
+
+		Assertions.assertEquals(List.of(3), this.batches);
+		Assertions.assertEquals(1, reply1.join());
+		Assertions.assertEquals(2, reply2.join());
+		Assertions.assertEquals(3, reply3.join());
+	}
+
+	@Test
+	public void testFlushOnTimeout() throws Exception {
+		ICBatcher batcher = this.batcher(this.echo(), 10, 50);
+
+		CompletableFuture<Object> reply1 = batcher.add(1);
+		CompletableFuture<Object> reply2 = batcher.add(2);
+
+		Assertions.assertEquals(1, reply1.get(10, TimeUnit.SECONDS));
+		Assertions.assertEquals(2, reply2.get(10, TimeUnit.SECONDS));
+		Assertions.assertEquals(List.of(2), this.batches);
+	}
+
+	@Test
+	public void testSplit() throws Exception {
+		ICBatcher batcher = this.batcher(this.echo(), 2, 50);
+
+		CompletableFuture<?>[] replies = new CompletableFuture<?>[5];
+
+		for (int i = 0; i < replies.length; i++)
+			replies[i] = batcher.add(i);
+
+		CompletableFuture.allOf(replies).get(10, TimeUnit.SECONDS);
+
+		// 2 full batches, the last body goes with the timeout
+		Assertions.assertEquals(List.of(2, 2, 1), this.batches);
+
+		for (int i = 0; i < replies.length; i++)
+			Assertions.assertEquals(i, replies[i].join());
+	}
+
+	@Test
+	public void testResultCountMismatch() {
+		ICBatcher batcher = this.batcher((plan, arg) -> {
+			this.batches.add(plan.decodeBatch(arg).size());
+			return CompletableFuture.completedFuture(plan.encodeBatch(List.of(1)));
+		}, 2, 60000);
+
+		CompletableFuture<Object> reply1 = batcher.add(1);
+		CompletableFuture<Object> reply2 = batcher.add(2);
+
+		CompletionException e = Assertions.assertThrows(CompletionException.class, () -> reply1.join());
+		Assertions.assertTrue(e.getCause() instanceof AgentError);
+		Assertions.assertThrows(CompletionException.class, () -> reply2.join());
+	}
+
+	@Test
+	public void testPlanFailure() {
+		IllegalStateException failure = new IllegalStateException("no IDL");
+
+		ICBatcher batcher = new ICBatcher(() -> CompletableFuture.failedFuture(failure), this.echo(), 2, 60000, this.scheduler);
+
+		CompletableFuture<Object> reply1 = batcher.add(1);
+		CompletableFuture<Object> reply2 = batcher.add(2);
+
+		// every exchange of the batch gets the original failure
+		Assertions.assertSame(failure, Assertions.assertThrows(CompletionException.class, () -> reply1.join()).getCause());
+		Assertions.assertSame(failure, Assertions.assertThrows(CompletionException.class, () -> reply2.join()).getCause());
+		Assertions.assertTrue(this.batches.isEmpty());
+	}
+
+	@Test
+	public void testOneway() {
+		ICBatcher batcher = this.batcher((plan, arg) -> CompletableFuture.completedFuture(null), 2, 60000);
+
+		CompletableFuture<Object> reply1 = batcher.add(1);
+		CompletableFuture<Object> reply2 = batcher.add(2);
+
+		Assertions.assertNull(reply1.join());
+		Assertions.assertNull(reply2.join());
+	}
+
+	@Test
+	public void testCancel() {
+		ICBatcher batcher = this.batcher(this.echo(), 10, 60000);
+
+		CompletableFuture<Object> reply = batcher.add(1);
+		batcher.cancel();
+
+		CompletionException e = Assertions.assertThrows(CompletionException.class, () -> reply.join());
+		Assertions.assertTrue(e.getCause() instanceof RejectedExecutionException);
+		Assertions.assertTrue(this.batches.isEmpty());
+
+		// the flush task is gone with the pending bodies
+		Assertions.assertTrue(this.scheduler.getQueue().isEmpty());
+	}
+
+	private ICBatcher batcher(BiFunction<ICCallPlan, byte[], CompletableFuture<byte[]>> invoker, int batchSize, long batchTimeout) {
+		return new ICBatcher(() -> CompletableFuture.completedFuture(PLAN), invoker, batchSize, batchTimeout, this.scheduler);
+	}
+
+	/**
+	 * @return an invoker replying with its argument, like a canister echoing the vec
+	 */
+	private BiFunction<ICCallPlan, byte[], CompletableFuture<byte[]>> echo() {
+		return (plan, arg) -> {
+			this.batches.add(plan.decodeBatch(arg).size());
+			return CompletableFuture.completedFuture(arg);
+		};
+	}
+}
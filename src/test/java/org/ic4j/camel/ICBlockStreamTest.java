@@ -0,0 +1,236 @@
+package org.ic4j.camel;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.ic4j.types.Func;
+import org.ic4j.types.Principal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ICBlockStreamTest {
+
+	static final byte[] ARCHIVE = { 0, 0, 0, 0, 0, 0, 0, 2, 1, 1 };
+
+	@Test
+	public void testReadResult() {
+		ICCandidReader reader = new ICCandidReader(reply());
+
+		Assertions.assertTrue(reader.nextArg());
+
+		ICBlockStream.GetBlocksResult result = ICBlockStream.readResult(reader);
+
+		Assertions.assertEquals(BigInteger.valueOf(10), result.logLength);
+		Assertions.assertEquals(2, result.blocks.length);
+
+		ICBlock transfer = result.blocks[0];
+		Assertions.assertEquals(BigInteger.valueOf(7), transfer.getId());
+
+		Map<?, ?> block = (Map<?, ?>) transfer.getBlock();
+		Assertions.assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) block.get("phash"));
+		Assertions.assertEquals(BigInteger.valueOf(1700000000), block.get("ts"));
+
+		Map<?, ?> tx = (Map<?, ?>) block.get("tx");
+		Assertions.assertEquals(BigInteger.valueOf(100), tx.get("amt"));
+		Assertions.assertEquals(BigInteger.valueOf(-1), tx.get("fee"));
+		Assertions.assertEquals("hi", tx.get("memo"));
+
+		List<?> to = (List<?>) tx.get("to");
+		Assertions.assertEquals(2, to.size());
+		Assertions.assertArrayEquals(new byte[] { 4 }, (byte[]) to.get(0));
+		Assertions.assertArrayEquals(new byte[] { 5 }, (byte[]) to.get(1));
+
+		Assertions.assertEquals(BigInteger.valueOf(8), result.blocks[1].getId());
+		Assertions.assertEquals("x", result.blocks[1].getBlock());
+
+		Assertions.assertEquals(1, result.archivedBlocks.length);
+
+		ICBlockStream.ArchivedBlocks archive = result.archivedBlocks[0];
+		Assertions.assertEquals(1, archive.args.length);
+		Assertions.assertEquals(BigInteger.ZERO, archive.args[0].start);
+		Assertions.assertEquals(BigInteger.valueOf(7), archive.args[0].length);
+		Assertions.assertArrayEquals(ARCHIVE, archive.callback.getPrincipal().getValue());
+		Assertions.assertEquals(ICBlockStream.GET_BLOCKS, archive.callback.getMethod());
+	}
+
+	@Test
+	public void testRange() {
+		List<ICBlock> blocks = new ArrayList<ICBlock>();
+
+		for (long id = 5; id < 8; id++)
+			blocks.add(block(id));
+
+		// the ledger capped the reply at 3 blocks, the log goes on
+		ICBlockStream.Range capped = new ICBlockStream.Range(5, 10, blocks, 100);
+		Assertions.assertEquals(8, capped.next());
+		Assertions.assertFalse(capped.isTip());
+		Assertions.assertTrue(capped.isShort());
+
+		ICBlockStream.Range tip = new ICBlockStream.Range(5, 10, blocks, 8);
+		Assertions.assertTrue(tip.isTip());
+		Assertions.assertFalse(tip.isShort());
+
+		// a full range ending right at the tip
+		ICBlockStream.Range full = new ICBlockStream.Range(5, 3, blocks, 8);
+		Assertions.assertTrue(full.isTip());
+	}
+
+	@Test
+	public void testContiguous() {
+		List<ICBlock> blocks = new ArrayList<ICBlock>();
+		blocks.add(block(7));
+		blocks.add(block(4));
+		blocks.add(block(5));
+		blocks.add(block(3));
+
+		List<ICBlock> range = ICBlockStream.contiguous(blocks, 4, 10);
+
+		// block 3 is before the range, the gap at 6 ends it
+		Assertions.assertEquals(2, range.size());
+		Assertions.assertEquals(BigInteger.valueOf(4), range.get(0).id);
+		Assertions.assertEquals(BigInteger.valueOf(5), range.get(1).id);
+	}
+
+	private static ICBlock block(long id) {
+		ICBlock block = new ICBlock();
+		block.id = BigInteger.valueOf(id);
+		return block;
+	}
+
+	/**
+	 * An icrc3_get_blocks reply with a transaction block, a text block and one
+	 * archive callback, typed like the ledger reply.
+	 */
+	static byte[] reply() {
+		ICCandidWriter writer = new ICCandidWriter(new byte[] { 'D', 'I', 'D', 'L' });
+
+		writer.writeLength(13);
+
+		// 0: Value = variant { Int : int; Map : 3; Nat : nat; Blob : 1; Text : text; Array : 2 }
+		ref(writer, ICCandidReader.VARIANT);
+		writer.writeLength(6);
+		field(writer, ICBlockStream.VALUE_CASES[0], ICCandidReader.INT);
+		field(writer, ICBlockStream.VALUE_CASES[1], 3);
+		field(writer, ICBlockStream.VALUE_CASES[2], ICCandidReader.NAT);
+		field(writer, ICBlockStream.VALUE_CASES[3], 1);
+		field(writer, ICBlockStream.VALUE_CASES[4], ICCandidReader.TEXT);
+		field(writer, ICBlockStream.VALUE_CASES[5], 2);
+
+		// 1: blob, 2: vec Value, 3: vec 4
+		ref(writer, ICCandidReader.VEC);
+		ref(writer, ICCandidReader.NAT8);
+		ref(writer, ICCandidReader.VEC);
+		ref(writer, 0);
+		ref(writer, ICCandidReader.VEC);
+		ref(writer, 4);
+
+		// 4: record { text; Value }
+		ref(writer, ICCandidReader.RECORD);
+		writer.writeLength(2);
+		field(writer, 0, ICCandidReader.TEXT);
+		field(writer, 1, 0);
+
+		// 5: record { id : nat; block : Value }, 6: vec 5
+		ref(writer, ICCandidReader.RECORD);
+		writer.writeLength(2);
+		field(writer, ICBlockStream.ID, ICCandidReader.NAT);
+		field(writer, ICBlockStream.BLOCK, 0);
+		ref(writer, ICCandidReader.VEC);
+		ref(writer, 5);
+
+		// 7: GetBlocksArgs = record { start : nat; length : nat }, 8: vec 7
+		ref(writer, ICCandidReader.RECORD);
+		writer.writeLength(2);
+		field(writer, ICBlockStream.START, ICCandidReader.NAT);
+		field(writer, ICBlockStream.LENGTH, ICCandidReader.NAT);
+		ref(writer, ICCandidReader.VEC);
+		ref(writer, 7);
+
+		// 9: func (vec GetBlocksArgs) -> (GetBlocksResult) query
+		ref(writer, ICCandidReader.FUNC);
+		writer.writeLength(1);
+		ref(writer, 8);
+		writer.writeLength(1);
+		ref(writer, 12);
+		writer.writeLength(1);
+		writer.writeNat8((byte) 1);
+
+		// 10: record { args : vec GetBlocksArgs; callback : 9 }, 11: vec 10
+		ref(writer, ICCandidReader.RECORD);
+		writer.writeLength(2);
+		field(writer, ICBlockStream.ARGS, 8);
+		field(writer, ICBlockStream.CALLBACK, 9);
+		ref(writer, ICCandidReader.VEC);
+		ref(writer, 10);
+
+		// 12: GetBlocksResult = record { log_length : nat; blocks : 6; archived_blocks : 11 }
+		ref(writer, ICCandidReader.RECORD);
+		writer.writeLength(3);
+		field(writer, ICBlockStream.LOG_LENGTH, ICCandidReader.NAT);
+		field(writer, ICBlockStream.BLOCKS, 6);
+		field(writer, ICBlockStream.ARCHIVED_BLOCKS, 11);
+
+		writer.writeLength(1);
+		ref(writer, 12);
+
+		// log_length
+		writer.writeNat(BigInteger.valueOf(10));
+
+		writer.writeLength(2);
+
+		// block 7: Map { phash = Blob; ts = Nat; tx = Map { amt = Nat; fee = Int; memo = Text; to = Array { Blob; Blob } } }
+		writer.writeNat(BigInteger.valueOf(7));
+		writer.writeVariant(1);
+		writer.writeLength(3);
+		writer.writeText("phash");
+		writer.writeVariant(3);
+		writer.writeBlob(new byte[] { 1, 2, 3 });
+		writer.writeText("ts");
+		writer.writeVariant(2);
+		writer.writeNat(BigInteger.valueOf(1700000000));
+		writer.writeText("tx");
+		writer.writeVariant(1);
+		writer.writeLength(4);
+		writer.writeText("amt");
+		writer.writeVariant(2);
+		writer.writeNat(BigInteger.valueOf(100));
+		writer.writeText("fee");
+		writer.writeVariant(0);
+		writer.writeInt(BigInteger.valueOf(-1));
+		writer.writeText("memo");
+		writer.writeVariant(4);
+		writer.writeText("hi");
+		writer.writeText("to");
+		writer.writeVariant(5);
+		writer.writeLength(2);
+		writer.writeVariant(3);
+		writer.writeBlob(new byte[] { 4 });
+		writer.writeVariant(3);
+		writer.writeBlob(new byte[] { 5 });
+
+		// block 8: Text
+		writer.writeNat(BigInteger.valueOf(8));
+		writer.writeVariant(4);
+		writer.writeText("x");
+
+		// one archive holding blocks 0 to 6
+		writer.writeLength(1);
+		writer.writeLength(1);
+		writer.writeNat(BigInteger.ZERO);
+		writer.writeNat(BigInteger.valueOf(7));
+		writer.writeFunc(new Func(Principal.from(ARCHIVE), ICBlockStream.GET_BLOCKS));
+
+		return writer.toByteArray();
+	}
+
+	private static void ref(ICCandidWriter writer, int type) {
+		writer.writeInt(BigInteger.valueOf(type));
+	}
+
+	private static void field(ICCandidWriter writer, long hash, int type) {
+		writer.writeLength(hash);
+		ref(writer, type);
+	}
+}
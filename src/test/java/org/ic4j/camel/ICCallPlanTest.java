@@ -0,0 +1,61 @@
+package org.ic4j.camel;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import org.ic4j.candid.pojo.PojoDeserializer;
+import org.ic4j.candid.pojo.PojoSerializer;
+import org.ic4j.types.Principal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ICCallPlanTest {
+
+	static final Principal CANISTER = Principal.fromString("ryjl3-tyaaa-aaaaa-aaaba-cai");
+
+	// (record { bar = true; foo = 42 })
+	static final byte[] ENTRY = HexFormat.of().parseHex("4449444c016c02d3e3aa027e868eb7027c0100012a");
+
+	@Test
+	public void testRawIn() {
+		ICCallPlan plan = plan(true, false);
+
+		// the body is sent as is, not wrapped in a blob
+		Assertions.assertSame(ENTRY, plan.encode(ENTRY));
+
+		ByteBuffer buffer = ByteBuffer.wrap(ENTRY);
+		Assertions.assertArrayEquals(ENTRY, plan.encode(buffer));
+
+		// the body buffer can be read again
+		Assertions.assertEquals(0, buffer.position());
+
+		Assertions.assertThrows(IllegalArgumentException.class, () -> plan.encode("DIDL"));
+	}
+
+	@Test
+	public void testRawInWithoutBody() {
+		// no body encodes the empty argument list
+		Assertions.assertEquals("4449444c0000", HexFormat.of().formatHex(plan(true, true).encode(null)));
+	}
+
+	@Test
+	public void testRawOut() {
+		ICCallPlan plan = plan(false, true);
+
+		Assertions.assertSame(ENTRY, plan.decode(ENTRY));
+	}
+
+	@Test
+	public void testDecoded() {
+		// without raw the same bytes are encoded as a Candid value
+		ICCallPlan plan = plan(false, false);
+
+		Assertions.assertFalse(Arrays.equals(ENTRY, plan.encode(ENTRY)));
+	}
+
+	private static ICCallPlan plan(boolean rawIn, boolean rawOut) {
+		return new ICCallPlan(CANISTER, null, "echoPojo", ICConfiguration.QUERY_PREFIX, new PojoSerializer(), new PojoDeserializer(),
+				null, rawIn, rawOut, null, null);
+	}
+}
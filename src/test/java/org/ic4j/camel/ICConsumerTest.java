@@ -0,0 +1,227 @@
+package org.ic4j.camel;
+
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Message;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.ic4j.candid.pojo.PojoDeserializer;
+import org.ic4j.candid.pojo.PojoSerializer;
+import org.ic4j.types.Principal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ICConsumerTest {
+
+	static final String CANISTER = "ryjl3-tyaaa-aaaaa-aaaba-cai";
+
+	// never called, the stub service replies
+	static final String URL = "http://localhost:4943";
+
+	CamelContext context;
+
+	StubService service;
+
+	ICConsumer consumer;
+
+	List<Message> messages = new CopyOnWriteArrayList<Message>();
+
+	AtomicBoolean failing = new AtomicBoolean();
+
+	@BeforeEach
+	public void start() {
+		this.context = new DefaultCamelContext();
+		this.context.start();
+	}
+
+	@AfterEach
+	public void stop() {
+		if (this.consumer != null)
+			this.consumer.stop();
+
+		this.context.stop();
+	}
+
+	@Test
+	public void testReplyChanges() throws Exception {
+		this.startConsumer(ICConfiguration.REPLY_CHANGE_DETECTION);
+
+		this.service.reply = new byte[] { 1 };
+
+		Assertions.assertEquals(1, this.consumer.poll());
+		Assertions.assertEquals(0, this.consumer.poll());
+
+		this.service.reply = new byte[] { 2 };
+
+		Assertions.assertEquals(1, this.consumer.poll());
+		Assertions.assertEquals(3, this.service.queries.get());
+
+		Assertions.assertEquals(2, this.messages.size());
+		Assertions.assertArrayEquals(new byte[] { 2 }, this.messages.get(1).getBody(byte[].class));
+		Assertions.assertEquals(ICConfiguration.REPLY_EVENT, this.messages.get(1).getHeader(ICConstants.EVENT_TYPE));
+		Assertions.assertEquals(CANISTER, this.messages.get(1).getHeader(ICConstants.CANISTER_ID));
+	}
+
+	@Test
+	public void testCertifiedData() throws Exception {
+		this.startConsumer(ICConfiguration.CERTIFIED_DATA_CHANGE_DETECTION);
+
+		this.service.state = new byte[] { 1 };
+		this.service.reply = new byte[] { 1 };
+
+		Assertions.assertEquals(1, this.consumer.poll());
+
+		// the certified data did not change, the query is not called
+		Assertions.assertEquals(0, this.consumer.poll());
+		Assertions.assertEquals(1, this.service.queries.get());
+		Assertions.assertEquals(2, this.service.stateReads.get());
+
+		// changed certified data with the same reply emits nothing, and is not queried again
+		this.service.state = new byte[] { 2 };
+
+		Assertions.assertEquals(0, this.consumer.poll());
+		Assertions.assertEquals(0, this.consumer.poll());
+		Assertions.assertEquals(2, this.service.queries.get());
+
+		Assertions.assertEquals(1, this.messages.size());
+	}
+
+	@Test
+	public void testUpgradeEvent() throws Exception {
+		this.startConsumer(ICConfiguration.MODULE_HASH_CHANGE_DETECTION);
+
+		this.service.state = new byte[] { 1 };
+		this.service.reply = new byte[] { 1 };
+
+		// the first module hash is only recorded
+		Assertions.assertEquals(1, this.consumer.poll());
+		Assertions.assertEquals(1, this.messages.size());
+
+		this.service.state = new byte[] { 2 };
+
+		// the reply did not change, only the upgrade is emitted
+		Assertions.assertEquals(0, this.consumer.poll());
+		Assertions.assertEquals(2, this.messages.size());
+
+		Message upgrade = this.messages.get(1);
+		Assertions.assertEquals(ICConfiguration.UPGRADE_EVENT, upgrade.getHeader(ICConstants.EVENT_TYPE));
+		Assertions.assertEquals(CANISTER, upgrade.getHeader(ICConstants.CANISTER_ID));
+		Assertions.assertEquals(HexFormat.of().formatHex(new byte[] { 2 }), upgrade.getHeader(ICConstants.MODULE_HASH));
+
+		Assertions.assertEquals(0, this.consumer.poll());
+		Assertions.assertEquals(2, this.messages.size());
+	}
+
+	@Test
+	public void testRedelivery() throws Exception {
+		this.startConsumer(ICConfiguration.MODULE_HASH_CHANGE_DETECTION);
+
+		this.service.state = new byte[] { 1 };
+		this.service.reply = new byte[] { 1 };
+
+		Assertions.assertEquals(1, this.consumer.poll());
+
+		this.service.state = new byte[] { 2 };
+		this.service.reply = new byte[] { 2 };
+		this.failing.set(true);
+
+		// the failed upgrade event is emitted again by the next poll
+		Assertions.assertEquals(0, this.consumer.poll());
+
+		this.failing.set(false);
+
+		Assertions.assertEquals(1, this.consumer.poll());
+
+		Assertions.assertEquals(ICConfiguration.UPGRADE_EVENT, this.messages.get(1).getHeader(ICConstants.EVENT_TYPE));
+		Assertions.assertArrayEquals(new byte[] { 2 }, this.messages.get(2).getBody(byte[].class));
+		Assertions.assertEquals(3, this.messages.size());
+	}
+
+	@Test
+	public void testMethodWithArguments() throws Exception {
+		this.startConsumer(ICConfiguration.REPLY_CHANGE_DETECTION);
+
+		this.service.reply = new byte[] { 1 };
+
+		// trailing opt arguments may be omitted
+		this.service.idl = "service : { getValue : (opt nat) -> (nat) query }";
+		Assertions.assertEquals(1, this.consumer.poll());
+
+		this.service.idl = "service : { getValue : (nat, opt nat) -> (nat) query }";
+		IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class, () -> this.consumer.poll());
+		Assertions.assertTrue(e.getMessage().contains("getValue"), e.getMessage());
+		Assertions.assertEquals(1, this.service.queries.get());
+	}
+
+	private void startConsumer(String changeDetection) throws Exception {
+		ICEndpoint endpoint = this.context.getEndpoint("ic:query?url=" + URL + "&canisterId=" + CANISTER
+				+ "&method=getValue&inType=raw&outType=raw&changeDetection=" + changeDetection, ICEndpoint.class);
+
+		this.service = new StubService(endpoint);
+
+		this.consumer = new ICConsumer(endpoint, exchange -> {
+			if (this.failing.get())
+				throw new IllegalStateException("route failed");
+
+			this.messages.add(exchange.getIn().copy());
+		}, this.service);
+
+		// the test polls, the scheduler is never started
+		this.consumer.setStartScheduler(false);
+		this.consumer.start();
+	}
+
+	/**
+	 * Replies with the current state and reply bytes, without a replica.
+	 */
+	static final class StubService extends ICService {
+		volatile byte[] state;
+
+		volatile byte[] reply;
+
+		// IDL of the plans, none by default
+		volatile String idl;
+
+		final AtomicInteger stateReads = new AtomicInteger();
+
+		final AtomicInteger queries = new AtomicInteger();
+
+		StubService(ICEndpoint endpoint) {
+			super(endpoint);
+		}
+
+		@Override
+		protected void doStart() {
+		}
+
+		@Override
+		protected void doStop() {
+		}
+
+		@Override
+		CompletableFuture<ICCallPlan> getCallPlan(String canisterId, String method, String methodType, String effectiveCanisterId) {
+			return CompletableFuture.completedFuture(new ICCallPlan(Principal.fromString(canisterId), null, "getValue",
+					ICConfiguration.QUERY_PREFIX, new PojoSerializer(), new PojoDeserializer(), null, true, true, null,
+					ICIdlRegistry.parseService(this.idl)));
+		}
+
+		@Override
+		CompletableFuture<byte[]> readState(Principal canisterId, String path) {
+			this.stateReads.incrementAndGet();
+			return CompletableFuture.completedFuture(this.state);
+		}
+
+		@Override
+		CompletableFuture<byte[]> invoke(ICCallPlan plan, byte[] buf) {
+			this.queries.incrementAndGet();
+			return CompletableFuture.completedFuture(this.reply);
+		}
+	}
+}
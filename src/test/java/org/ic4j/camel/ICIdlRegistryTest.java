@@ -0,0 +1,105 @@
+package org.ic4j.camel;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ic4j.agent.Agent;
+import org.ic4j.candid.parser.IDLType;
+import org.ic4j.candid.types.Type;
+import org.ic4j.types.Principal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ICIdlRegistryTest {
+
+	static final Principal CANISTER = Principal.fromString("ryjl3-tyaaa-aaaaa-aaaba-cai");
+
+	@Test
+	public void testModuleHashChange() throws Exception {
+		StubRegistry registry = new StubRegistry(20, Runnable::run);
+
+		IDLType service = registry.getService(null, CANISTER).get();
+		Assertions.assertSame(service, registry.getService(null, CANISTER).get());
+		Assertions.assertEquals(1, registry.loads.get());
+
+		// the same module hash keeps the service
+		Thread.sleep(50);
+		Assertions.assertTrue(registry.isCurrent(null, CANISTER, service));
+		Assertions.assertEquals(2, registry.hashReads.get());
+
+		// an upgrade invalidates it and the next request loads it again
+		registry.moduleHash = new byte[] { 2 };
+		Thread.sleep(50);
+		Assertions.assertFalse(registry.isCurrent(null, CANISTER, service));
+
+		IDLType reloaded = registry.getService(null, CANISTER).get();
+		Assertions.assertNotSame(service, reloaded);
+		Assertions.assertEquals(2, registry.loads.get());
+		Assertions.assertTrue(registry.isCurrent(null, CANISTER, reloaded));
+	}
+
+	@Test
+	public void testNoRefresh() throws Exception {
+		StubRegistry registry = new StubRegistry(0, Runnable::run);
+
+		IDLType service = registry.getService(null, CANISTER).get();
+		registry.moduleHash = new byte[] { 2 };
+
+		// without a refresh interval the module hash is read once
+		Assertions.assertTrue(registry.isCurrent(null, CANISTER, service));
+		Assertions.assertEquals(1, registry.hashReads.get());
+		Assertions.assertFalse(registry.isCurrent(null, CANISTER, IDLType.createType(Type.TEXT)));
+	}
+
+	@Test
+	public void testCopyPerCaller() throws Exception {
+		Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+		StubRegistry registry = new StubRegistry(0, tasks::add);
+
+		CompletableFuture<IDLType> first = registry.getService(null, CANISTER);
+		CompletableFuture<IDLType> second = registry.getService(null, CANISTER);
+
+		// completing a caller's stage does not complete the shared fetch
+		first.complete(null);
+		Assertions.assertFalse(second.isDone());
+		Assertions.assertEquals(1, tasks.size());
+
+		tasks.poll().run();
+
+		Assertions.assertNull(first.get());
+		Assertions.assertNotNull(second.get());
+		Assertions.assertSame(second.get(), registry.getService(null, CANISTER).get());
+		Assertions.assertEquals(1, registry.loads.get());
+	}
+
+	/**
+	 * Replies with the current module hash and a new service type per load,
+	 * without a replica.
+	 */
+	static final class StubRegistry extends ICIdlRegistry {
+		volatile byte[] moduleHash = new byte[] { 1 };
+
+		final AtomicInteger hashReads = new AtomicInteger();
+
+		final AtomicInteger loads = new AtomicInteger();
+
+		StubRegistry(long refreshInterval, Executor executor) {
+			super(refreshInterval, executor);
+		}
+
+		@Override
+		CompletableFuture<byte[]> readModuleHash(Agent agent, Principal canisterId) {
+			this.hashReads.incrementAndGet();
+			return CompletableFuture.completedFuture(this.moduleHash);
+		}
+
+		@Override
+		IDLType loadService(Agent agent, Principal canisterId) {
+			this.loads.incrementAndGet();
+			return IDLType.createType(Type.TEXT);
+		}
+	}
+}
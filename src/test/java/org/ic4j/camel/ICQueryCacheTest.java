@@ -0,0 +1,112 @@
+package org.ic4j.camel;
+
+import org.ic4j.types.Principal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ICQueryCacheTest {
+
+	static final Principal CANISTER = Principal.fromString("ryjl3-tyaaa-aaaaa-aaaba-cai");
+
+	@Test
+	public void testHit() {
+		ICQueryCache cache = new ICQueryCache(60000, 10, 0);
+
+		cache.put(ICQueryCache.key(CANISTER, "balance", new byte[] { 1 }), new byte[] { 42 });
+
+		// a new array with the same argument bytes is the same key
+		Assertions.assertArrayEquals(new byte[] { 42 }, cache.get(ICQueryCache.key(CANISTER, "balance", new byte[] { 1 })));
+		Assertions.assertNull(cache.get(ICQueryCache.key(CANISTER, "balance", new byte[] { 2 })));
+		Assertions.assertNull(cache.get(ICQueryCache.key(CANISTER, "symbol", new byte[] { 1 })));
+
+		Assertions.assertEquals(1L, cache.getHitCount());
+		Assertions.assertEquals(2L, cache.getMissCount());
+		Assertions.assertEquals(1.0 / 3, cache.getHitRatio(), 0.001);
+	}
+
+	@Test
+	public void testTtl() throws Exception {
+		ICQueryCache cache = new ICQueryCache(50, 10, 0);
+		ICQueryCache.Key key = ICQueryCache.key(CANISTER, "balance", new byte[] { 1 });
+
+		cache.put(key, new byte[] { 42 });
+		Assertions.assertNotNull(cache.get(key));
+
+		Thread.sleep(100);
+
+		Assertions.assertNull(cache.get(key));
+		Assertions.assertEquals(1L, cache.getExpirationCount());
+		Assertions.assertEquals(0, cache.size());
+		Assertions.assertEquals(0L, cache.getWeight());
+	}
+
+	@Test
+	public void testMaxEntries() {
+		ICQueryCache cache = new ICQueryCache(60000, 2, 0);
+
+		ICQueryCache.Key key1 = ICQueryCache.key(CANISTER, "balance", new byte[] { 1 });
+		ICQueryCache.Key key2 = ICQueryCache.key(CANISTER, "balance", new byte[] { 2 });
+		ICQueryCache.Key key3 = ICQueryCache.key(CANISTER, "balance", new byte[] { 3 });
+
+		cache.put(key1, new byte[] { 1 });
+		cache.put(key2, new byte[] { 2 });
+
+		// key1 becomes the most recently used, key2 is evicted
+		cache.get(key1);
+		cache.put(key3, new byte[] { 3 });
+
+		Assertions.assertEquals(2, cache.size());
+		Assertions.assertEquals(1L, cache.getEvictionCount());
+		Assertions.assertNotNull(cache.get(key1));
+		Assertions.assertNull(cache.get(key2));
+		Assertions.assertNotNull(cache.get(key3));
+	}
+
+	@Test
+	public void testMaxWeight() {
+		ICQueryCache cache = new ICQueryCache(60000, 100, 10);
+
+		ICQueryCache.Key key1 = ICQueryCache.key(CANISTER, "balance", new byte[] { 1 });
+		ICQueryCache.Key key2 = ICQueryCache.key(CANISTER, "balance", new byte[] { 2 });
+		ICQueryCache.Key key3 = ICQueryCache.key(CANISTER, "balance", new byte[] { 3 });
+
+		cache.put(key1, new byte[4]);
+		cache.put(key2, new byte[4]);
+		Assertions.assertEquals(8L, cache.getWeight());
+
+		// 12 bytes are over the limit, the eldest reply goes
+		cache.put(key3, new byte[4]);
+
+		Assertions.assertEquals(2, cache.size());
+		Assertions.assertEquals(8L, cache.getWeight());
+		Assertions.assertEquals(1L, cache.getEvictionCount());
+		Assertions.assertNull(cache.get(key1));
+
+		// a replaced reply only counts once
+		cache.put(key3, new byte[6]);
+		Assertions.assertEquals(10L, cache.getWeight());
+
+		// a reply larger than the limit is not cached and evicts nothing
+		cache.put(ICQueryCache.key(CANISTER, "balance", new byte[] { 4 }), new byte[11]);
+
+		Assertions.assertEquals(2, cache.size());
+		Assertions.assertEquals(10L, cache.getWeight());
+	}
+
+	@Test
+	public void testClear() {
+		ICQueryCache cache = new ICQueryCache(60000, 10, 100);
+
+		cache.put(ICQueryCache.key(CANISTER, "balance", new byte[] { 1 }), new byte[4]);
+		cache.clear();
+
+		Assertions.assertEquals(0, cache.size());
+		Assertions.assertEquals(0L, cache.getWeight());
+	}
+
+	@Test
+	public void testInvalidOptions() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new ICQueryCache(0, 10, 0));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new ICQueryCache(1000, 0, 0));
+	}
+}
@@ -0,0 +1,140 @@
+package org.ic4j.camel;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.ic4j.agent.Agent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class ICQueryHedgerTest {
+
+	CamelContext context;
+
+	HttpServer replica1;
+
+	HttpServer replica2;
+
+	@BeforeEach
+	public void start() throws IOException {
+		this.context = new DefaultCamelContext();
+		this.context.start();
+
+		this.replica1 = ICReplicaPoolTest.startReplica(0);
+	}
+
+	@AfterEach
+	public void stop() {
+		this.context.stop();
+
+		this.replica1.stop(0);
+
+		if (this.replica2 != null)
+			this.replica2.stop(0);
+	}
+
+	@Test
+	public void testHedge() throws Exception {
+		this.replica2 = ICReplicaPoolTest.startReplica(0);
+
+		ICReplicaPool pool = this.createPool(ICReplicaPoolTest.url(this.replica1) + "," + ICReplicaPoolTest.url(this.replica2));
+		ICQueryHedger hedger = new ICQueryHedger(pool, 95, 10);
+
+		List<Agent> agents = new CopyOnWriteArrayList<Agent>();
+		CompletableFuture<byte[]> slow = new CompletableFuture<byte[]>();
+
+		CompletableFuture<byte[]> result = hedger.query(node -> pool.call(node, agent -> {
+			// the primary query hangs, the hedge replies
+			if (agents.isEmpty()) {
+				agents.add(agent);
+				return slow;
+			}
+
+			agents.add(agent);
+			return CompletableFuture.completedFuture(new byte[] { 1 });
+		}));
+
+		Assertions.assertEquals(1, result.get(10, TimeUnit.SECONDS).length);
+		Assertions.assertEquals(2, agents.size());
+		Assertions.assertNotSame(agents.get(0), agents.get(1));
+		Assertions.assertEquals(1L, hedger.getHedgeCount());
+		Assertions.assertEquals(1L, hedger.getHedgeWinCount());
+
+		slow.complete(new byte[0]);
+		pool.stop();
+	}
+
+	@Test
+	public void testSingleReplica() throws Exception {
+		ICReplicaPool pool = this.createPool(ICReplicaPoolTest.url(this.replica1));
+
+		Assertions.assertEquals(1, pool.getNodes().size());
+
+		this.assertNoHedge(pool);
+	}
+
+	@Test
+	public void testOtherReplicaEjected() throws Exception {
+		ICReplicaPool pool = this.createPool(
+				ICReplicaPoolTest.url(this.replica1) + "," + "http://127.0.0.1:" + ICReplicaPoolTest.freePort());
+
+		ICReplicaPool.Node dead = pool.getNodes().get(1);
+
+		for (int i = 0; i < 2; i++)
+			Assertions.assertThrows(Exception.class, () -> pool.call(dead, agent -> agent.status()).join());
+
+		Assertions.assertTrue(dead.isEjected());
+
+		this.assertNoHedge(pool);
+	}
+
+	private void assertNoHedge(ICReplicaPool pool) throws Exception {
+		ICQueryHedger hedger = new ICQueryHedger(pool, 95, 10);
+
+		List<Agent> agents = new CopyOnWriteArrayList<Agent>();
+		CompletableFuture<byte[]> slow = new CompletableFuture<byte[]>();
+
+		CompletableFuture<byte[]> result = hedger.query(node -> pool.call(node, agent -> {
+			agents.add(agent);
+			return slow;
+		}));
+
+		waitFor(() -> hedger.getSkippedCount() == 1);
+
+		Assertions.assertEquals(0L, hedger.getHedgeCount());
+		Assertions.assertEquals(1, agents.size());
+
+		slow.complete(new byte[] { 1 });
+
+		Assertions.assertEquals(1, result.get(10, TimeUnit.SECONDS).length);
+
+		pool.stop();
+	}
+
+	private ICReplicaPool createPool(String urls) throws Exception {
+		ICEndpoint endpoint = this.context.getEndpoint("ic:query?url=" + urls + "&canisterId=aaaaa-aa&method=status",
+				ICEndpoint.class);
+
+		ICReplicaPool pool = new ICReplicaPool(endpoint, 2, 60000, 0);
+		pool.start();
+
+		return pool;
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline)
+			Thread.sleep(10);
+	}
+}
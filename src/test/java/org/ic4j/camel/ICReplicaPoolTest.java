@@ -0,0 +1,163 @@
+package org.ic4j.camel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class ICReplicaPoolTest {
+
+	// self-described CBOR map { "ic_api_version": "0.18.0", "impl_version": "stub" }
+	static final byte[] STATUS = HexFormat.of()
+			.parseHex("d9d9f7a26e69635f6170695f76657273696f6e66302e31382e306c696d706c5f76657273696f6e6473747562");
+
+	CamelContext context;
+
+	HttpServer replica1;
+
+	HttpServer replica2;
+
+	@BeforeEach
+	public void start() throws IOException {
+		this.context = new DefaultCamelContext();
+		this.context.start();
+
+		this.replica1 = startReplica(0);
+	}
+
+	@AfterEach
+	public void stop() {
+		this.context.stop();
+
+		this.replica1.stop(0);
+
+		if (this.replica2 != null)
+			this.replica2.stop(0);
+	}
+
+	@Test
+	public void testEjection() throws Exception {
+		ICReplicaPool pool = this.createPool(url(this.replica1) + "," + "http://127.0.0.1:" + freePort(), 0);
+
+		ICReplicaPool.Node healthy = pool.getNodes().get(0);
+		ICReplicaPool.Node dead = pool.getNodes().get(1);
+
+		// connection refused twice in a row
+		for (int i = 0; i < 2; i++)
+			Assertions.assertThrows(Exception.class, () -> pool.call(dead, agent -> agent.status()).join());
+
+		Assertions.assertTrue(dead.isEjected());
+		Assertions.assertEquals(1, dead.getEjectionCount());
+
+		for (int i = 0; i < 10; i++)
+			Assertions.assertSame(healthy, pool.select());
+
+		pool.stop();
+	}
+
+	@Test
+	public void testProbeRecovery() throws Exception {
+		int port = freePort();
+
+		ICReplicaPool pool = this.createPool(url(this.replica1) + "," + "http://127.0.0.1:" + port, 100);
+
+		ICReplicaPool.Node recovering = pool.getNodes().get(1);
+
+		for (int i = 0; i < 2; i++)
+			Assertions.assertThrows(Exception.class, () -> pool.call(recovering, agent -> agent.status()).join());
+
+		Assertions.assertTrue(recovering.isEjected());
+
+		this.replica2 = startReplica(port);
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+		while (recovering.isEjected() && System.nanoTime() < deadline)
+			Thread.sleep(50);
+
+		Assertions.assertFalse(recovering.isEjected());
+		Assertions.assertEquals(0.0, recovering.getErrorRate());
+
+		pool.stop();
+	}
+
+	@Test
+	public void testLeastLoaded() throws Exception {
+		this.replica2 = startReplica(0);
+
+		ICReplicaPool pool = this.createPool(url(this.replica1) + "," + url(this.replica2), 0);
+
+		ICReplicaPool.Node node1 = pool.getNodes().get(0);
+		ICReplicaPool.Node node2 = pool.getNodes().get(1);
+
+		// node1 gets a latency, node2 stays unknown like a node that just recovered
+		pool.call(node1, agent -> agent.status()).handle((status, error) -> status).get(10, TimeUnit.SECONDS);
+
+		CompletableFuture<Object> pending = new CompletableFuture<Object>();
+
+		for (int i = 0; i < 4; i++)
+			pool.call(agent -> pending);
+
+		// the unknown node is not handed every call
+		Assertions.assertEquals(2, node1.getInFlight());
+		Assertions.assertEquals(2, node2.getInFlight());
+
+		pending.complete(null);
+
+		Assertions.assertEquals(0, node1.getInFlight());
+		Assertions.assertEquals(0, node2.getInFlight());
+
+		pool.stop();
+	}
+
+	private ICReplicaPool createPool(String urls, long probeInterval) throws Exception {
+		ICEndpoint endpoint = this.context.getEndpoint("ic:query?url=" + urls + "&canisterId=aaaaa-aa&method=status",
+				ICEndpoint.class);
+
+		ICReplicaPool pool = new ICReplicaPool(endpoint, 2, 60000, probeInterval);
+		pool.start();
+
+		Assertions.assertEquals(2, pool.getNodes().size());
+
+		return pool;
+	}
+
+	static HttpServer startReplica(int port) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+
+		server.createContext("/api/v2/status", exchange -> {
+			exchange.getResponseHeaders().add("Content-Type", "application/cbor");
+			exchange.sendResponseHeaders(200, STATUS.length);
+
+			try (OutputStream body = exchange.getResponseBody()) {
+				body.write(STATUS);
+			}
+		});
+
+		server.start();
+
+		return server;
+	}
+
+	static String url(HttpServer server) {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package org.ic4j.camel;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ICRetryPolicyTest {
+
+	@Test
+	public void testRetryUntilSuccess() throws Exception {
+		ICRetryPolicy policy = new ICRetryPolicy(3, 1, 10, 2, 0);
+		AtomicInteger attempts = new AtomicInteger();
+
+		CompletableFuture<String> reply = policy.execute(() -> attempts.incrementAndGet() < 3
+				? CompletableFuture.failedFuture(new IOException("connection reset"))
+				: CompletableFuture.completedFuture("ok"), ICErrors::isTransient);
+
+		Assertions.assertEquals("ok", reply.get(10, TimeUnit.SECONDS));
+		Assertions.assertEquals(3, attempts.get());
+	}
+
+	@Test
+	public void testMaxRetries() {
+		ICRetryPolicy policy = new ICRetryPolicy(2, 1, 10, 2, 0);
+		AtomicInteger attempts = new AtomicInteger();
+
+		CompletableFuture<String> reply = policy.execute(() -> {
+			attempts.incrementAndGet();
+			return CompletableFuture.failedFuture(new IOException("connection reset"));
+		}, ICErrors::isTransient);
+
+		CompletionException e = Assertions.assertThrows(CompletionException.class, () -> reply.join());
+		Assertions.assertTrue(e.getCause() instanceof IOException);
+
+		// the first call and 2 retries
+		Assertions.assertEquals(3, attempts.get());
+	}
+
+	@Test
+	public void testFinalErrorNotRetried() {
+		ICRetryPolicy policy = new ICRetryPolicy(3, 1, 10, 2, 0);
+		AtomicInteger attempts = new AtomicInteger();
+
+		// a canister reject other than SYS_TRANSIENT
+		CompletableFuture<String> reply = policy.execute(() -> {
+			attempts.incrementAndGet();
+			return CompletableFuture.failedFuture(new ICRejectException(ICRejectException.CANISTER_ERROR, "trapped"));
+		}, ICErrors::isTransient);
+
+		Assertions.assertThrows(CompletionException.class, () -> reply.join());
+		Assertions.assertEquals(1, attempts.get());
+	}
+
+	@Test
+	public void testThrowingCall() throws Exception {
+		ICRetryPolicy policy = new ICRetryPolicy(1, 1, 10, 2, 0);
+		AtomicInteger attempts = new AtomicInteger();
+
+		// a call failing before it returns a stage is retried like a failed stage
+		CompletableFuture<String> reply = policy.execute(() -> {
+			if (attempts.incrementAndGet() == 1)
+				throw new CompletionException(new IOException("connection reset"));
+
+			return CompletableFuture.completedFuture("ok");
+		}, ICErrors::isTransient);
+
+		Assertions.assertEquals("ok", reply.get(10, TimeUnit.SECONDS));
+		Assertions.assertEquals(2, attempts.get());
+	}
+
+	@Test
+	public void testCanRetry() {
+		ICRetryPolicy policy = new ICRetryPolicy(2, 1, 10, 2, 0);
+
+		Assertions.assertTrue(policy.canRetry(0));
+		Assertions.assertTrue(policy.canRetry(1));
+		Assertions.assertFalse(policy.canRetry(2));
+	}
+}
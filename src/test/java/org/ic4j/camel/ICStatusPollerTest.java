@@ -0,0 +1,87 @@
+package org.ic4j.camel;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.ic4j.agent.Agent;
+import org.ic4j.agent.requestid.RequestId;
+import org.ic4j.types.Principal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ICStatusPollerTest {
+
+	static final Principal CANISTER = Principal.fromString("ryjl3-tyaaa-aaaaa-aaaba-cai");
+
+	CamelContext context;
+
+	ICStatusPoller poller;
+
+	ICAgentHandle handle;
+
+	@BeforeEach
+	public void start() throws Exception {
+		this.context = new DefaultCamelContext();
+		this.context.start();
+
+		this.poller = new ICStatusPoller(this.context, 4);
+		this.poller.start();
+
+		// status reads are refused by the replica
+		ICEndpoint endpoint = this.context.getEndpoint(
+				"ic:update?url=http://127.0.0.1:" + ICReplicaPoolTest.freePort() + "&canisterId=" + CANISTER + "&method=transfer",
+				ICEndpoint.class);
+		this.handle = endpoint.getComponent().getAgentRegistry().acquire(endpoint);
+	}
+
+	@AfterEach
+	public void stop() {
+		this.handle.release();
+		this.poller.stop();
+		this.context.stop();
+	}
+
+	@Test
+	public void testQueueRemovedWhenReplied() throws Exception {
+		Agent agent = this.handle.getAgent();
+
+		CompletableFuture<byte[]> reply1 = this.poller.submit(agent, requestId(1), CANISTER, ICBackoffPollingStrategy.fixed(0, 10000), false);
+		CompletableFuture<byte[]> reply2 = this.poller.submit(agent, requestId(2), CANISTER, ICBackoffPollingStrategy.fixed(0, 10000), false);
+
+		Assertions.assertThrows(ExecutionException.class, () -> reply1.get(10, TimeUnit.SECONDS));
+		Assertions.assertThrows(ExecutionException.class, () -> reply2.get(10, TimeUnit.SECONDS));
+
+		Assertions.assertEquals(0, this.poller.getQueueCount());
+		Assertions.assertEquals(0, this.poller.getPendingCount());
+
+		// a new request to the canister gets a new queue
+		CompletableFuture<byte[]> reply3 = this.poller.submit(agent, requestId(3), CANISTER, ICBackoffPollingStrategy.fixed(0, 10000), false);
+
+		Assertions.assertThrows(ExecutionException.class, () -> reply3.get(10, TimeUnit.SECONDS));
+		Assertions.assertEquals(0, this.poller.getQueueCount());
+	}
+
+	@Test
+	public void testQueueRemovedWhenCancelled() {
+		// the first read is due in a minute
+		CompletableFuture<byte[]> reply = this.poller.submit(this.handle.getAgent(), requestId(1), CANISTER,
+				new ICBackoffPollingStrategy(ICBackoffPollingStrategy.FIXED, 60000, 60000, 60000, 1, 0, 120000), false);
+
+		Assertions.assertEquals(1, this.poller.getQueueCount());
+		Assertions.assertEquals(1, this.poller.getPendingCount());
+
+		reply.cancel(false);
+
+		Assertions.assertEquals(0, this.poller.getQueueCount());
+		Assertions.assertEquals(0, this.poller.getPendingCount());
+	}
+
+	private static RequestId requestId(int id) {
+		return RequestId.fromHexString(String.format("%064x", id));
+	}
+}
@@ -0,0 +1,166 @@
+package org.ic4j.camel.test;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.ic4j.agent.ReplicaTransport;
+import org.ic4j.camel.ICAgentHandle;
+import org.ic4j.camel.ICAgentRegistry;
+import org.ic4j.camel.ICEndpoint;
+import org.ic4j.camel.ICTransportFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ICAgentRegistryTest {
+
+	static final String CANISTER = "ryjl3-tyaaa-aaaaa-aaaba-cai";
+
+	static final String URL = "http://localhost:4943";
+
+	CamelContext context;
+
+	ICAgentRegistry registry;
+
+	// close calls of the transports created by the test
+	AtomicInteger closed = new AtomicInteger();
+
+	@BeforeEach
+	public void start() {
+		this.context = new DefaultCamelContext();
+		this.context.start();
+
+		this.registry = new ICAgentRegistry();
+	}
+
+	@AfterEach
+	public void stop() {
+		this.registry.clear();
+		this.context.stop();
+	}
+
+	@Test
+	public void testSharedAgent() throws Exception {
+		ICAgentHandle query = this.registry.acquire(this.endpoint("query", URL, ""));
+		ICAgentHandle update = this.registry.acquire(this.endpoint("update", URL, ""));
+
+		Assertions.assertSame(query, update);
+		Assertions.assertEquals(1, this.registry.size());
+
+		// still used by the update endpoint
+		query.release();
+		Assertions.assertEquals(1, this.registry.size());
+
+		update.release();
+		Assertions.assertEquals(0, this.registry.size());
+
+		// the next acquire creates a new agent
+		ICAgentHandle next = this.registry.acquire(this.endpoint("query", URL, ""));
+
+		Assertions.assertNotSame(query.getAgent(), next.getAgent());
+		next.release();
+	}
+
+	@Test
+	public void testKey() throws Exception {
+		ICAgentHandle handle = this.registry.acquire(this.endpoint("query", URL, ""));
+
+		Assertions.assertNotSame(handle, this.registry.acquire(this.endpoint("query", "http://localhost:4944", "")));
+		Assertions.assertNotSame(handle, this.registry.acquire(this.endpoint("query", URL, "&transportType=apache")));
+		Assertions.assertNotSame(handle, this.registry.acquire(this.endpoint("query", URL, "&identityType=basic")));
+		Assertions.assertEquals(4, this.registry.size());
+	}
+
+	@Test
+	public void testTransportBean() throws Exception {
+		ReplicaTransport transport = this.transport();
+
+		ICEndpoint query = this.endpoint("query", URL, "");
+		ICEndpoint update = this.endpoint("update", URL, "");
+		query.setTransport(transport);
+		update.setTransport(transport);
+
+		ICAgentHandle handle = this.registry.acquire(query);
+
+		Assertions.assertSame(handle, this.registry.acquire(update));
+		Assertions.assertSame(transport, handle.getTransport());
+
+		// another bean is another agent
+		ICEndpoint other = this.endpoint("oneway", URL, "");
+		other.setTransport(this.transport());
+		ICAgentHandle otherHandle = this.registry.acquire(other);
+
+		Assertions.assertNotSame(handle, otherHandle);
+
+		handle.release();
+		handle.release();
+		otherHandle.release();
+
+		// the beans belong to the caller and are never closed
+		Assertions.assertEquals(0, this.registry.size());
+		Assertions.assertEquals(0, this.closed.get());
+	}
+
+	@Test
+	public void testTransportFactory() throws Exception {
+		AtomicInteger created = new AtomicInteger();
+		ICTransportFactory factory = (endpoint, url) -> {
+			created.incrementAndGet();
+			return this.transport();
+		};
+		this.context.getRegistry().bind("factory", factory);
+
+		ICAgentHandle query = this.registry.acquire(this.endpoint("query", URL, "&transportFactory=#factory"));
+		ICAgentHandle update = this.registry.acquire(this.endpoint("update", URL, "&transportFactory=#factory"));
+
+		Assertions.assertSame(query, update);
+		Assertions.assertEquals(1, created.get());
+
+		// endpoints with other pool settings get their own transport
+		ICAgentHandle pooled = this.registry.acquire(this.endpoint("query", URL, "&transportFactory=#factory&transportMaxConnections=10"));
+
+		Assertions.assertNotSame(query, pooled);
+		Assertions.assertEquals(2, created.get());
+
+		// factory transports belong to the registry, the last release closes them
+		query.release();
+		Assertions.assertEquals(0, this.closed.get());
+
+		update.release();
+		Assertions.assertEquals(1, this.closed.get());
+
+		pooled.release();
+		Assertions.assertEquals(2, this.closed.get());
+		Assertions.assertEquals(0, this.registry.size());
+	}
+
+	private ICEndpoint endpoint(String methodType, String url, String options) {
+		return this.context.getEndpoint("ic:" + methodType + "?url=" + url + "&canisterId=" + CANISTER + "&method=get" + options,
+				ICEndpoint.class);
+	}
+
+	/**
+	 * @return a transport that only counts its close calls
+	 */
+	private ReplicaTransport transport() {
+		return (ReplicaTransport) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+				new Class<?>[] { ReplicaTransport.class, AutoCloseable.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "close":
+						this.closed.incrementAndGet();
+						return null;
+					case "equals":
+						return proxy == args[0];
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "toString":
+						return "transport";
+					default:
+						return null;
+					}
+				});
+	}
+}
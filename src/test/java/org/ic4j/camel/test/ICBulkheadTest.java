@@ -0,0 +1,166 @@
+package org.ic4j.camel.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ic4j.camel.ICBulkhead;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class ICBulkheadTest {
+
+	@Test
+	public void testWait() {
+		ICBulkhead bulkhead = new ICBulkhead("test", 1, 10);
+
+		CompletableFuture<String> first = new CompletableFuture<String>();
+		AtomicInteger dispatched = new AtomicInteger();
+
+		CompletableFuture<String> reply1 = bulkhead.submit(() -> {
+			dispatched.incrementAndGet();
+			return first;
+		});
+		CompletableFuture<String> reply2 = bulkhead.submit(() -> {
+			dispatched.incrementAndGet();
+			return CompletableFuture.completedFuture("second");
+		});
+
+		Assertions.assertEquals(1, dispatched.get());
+		Assertions.assertEquals(1, bulkhead.getInFlight());
+		Assertions.assertEquals(1, bulkhead.getQueueDepth());
+
+		first.complete("first");
+
+		Assertions.assertEquals("first", reply1.join());
+		Assertions.assertEquals("second", reply2.join());
+		Assertions.assertEquals(2, dispatched.get());
+		Assertions.assertEquals(0, bulkhead.getInFlight());
+		Assertions.assertEquals(0, bulkhead.getQueueDepth());
+	}
+
+	@Test
+	public void testQueueFull() {
+		ICBulkhead bulkhead = new ICBulkhead("test", 1, 1);
+
+		bulkhead.submit(() -> new CompletableFuture<String>());
+		bulkhead.submit(() -> new CompletableFuture<String>());
+		CompletableFuture<String> reply = bulkhead.submit(() -> new CompletableFuture<String>());
+
+		CompletionException e = Assertions.assertThrows(CompletionException.class, () -> reply.join());
+		Assertions.assertTrue(e.getCause() instanceof RejectedExecutionException);
+		Assertions.assertEquals(1L, bulkhead.getRejectedCount());
+	}
+
+	@Test
+	public void testWaitTimeout() throws Exception {
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+		scheduler.setRemoveOnCancelPolicy(true);
+
+		try {
+			ICBulkhead bulkhead = new ICBulkhead("test", 1, 10, ICBulkhead.WAIT, 100, scheduler);
+
+			bulkhead.submit(() -> new CompletableFuture<String>());
+			CompletableFuture<String> reply = bulkhead.submit(() -> CompletableFuture.completedFuture("late"));
+
+			CompletionException e = Assertions.assertThrows(CompletionException.class, () -> reply.join());
+			Assertions.assertTrue(e.getCause() instanceof RejectedExecutionException);
+			Assertions.assertEquals(1L, bulkhead.getTimedOutCount());
+			Assertions.assertEquals(0, bulkhead.getQueueDepth());
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testTimeoutCancelledWhenDequeued() {
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+		scheduler.setRemoveOnCancelPolicy(true);
+
+		try {
+			ICBulkhead bulkhead = new ICBulkhead("test", 1, 10, ICBulkhead.WAIT, 30000, scheduler);
+
+			CompletableFuture<String> first = new CompletableFuture<String>();
+			bulkhead.submit(() -> first);
+			CompletableFuture<String> reply = bulkhead.submit(() -> CompletableFuture.completedFuture("second"));
+
+			Assertions.assertEquals(1, scheduler.getQueue().size());
+
+			first.complete("first");
+
+			// the dispatched call no longer holds its exchange in the scheduler
+			Assertions.assertEquals("second", reply.join());
+			Assertions.assertEquals(0, scheduler.getQueue().size());
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testReject() {
+		ICBulkhead bulkhead = new ICBulkhead("test", 1, 10, ICBulkhead.REJECT, 0, null);
+
+		bulkhead.submit(() -> new CompletableFuture<String>());
+		CompletableFuture<String> reply = bulkhead.submit(() -> CompletableFuture.completedFuture("rejected"));
+
+		CompletionException e = Assertions.assertThrows(CompletionException.class, () -> reply.join());
+		Assertions.assertTrue(e.getCause() instanceof RejectedExecutionException);
+		Assertions.assertEquals(0, bulkhead.getQueueSize());
+		Assertions.assertEquals(1L, bulkhead.getRejectedCount());
+	}
+
+	@Test
+	public void testUnsupportedPolicy() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new ICBulkhead("test", 1, 10, "callerRuns", 0, null));
+	}
+
+	@Test
+	public void testSynchronousCompletionsDoNotRecurse() {
+		ICBulkhead bulkhead = new ICBulkhead("test", 1, Integer.MAX_VALUE);
+
+		CompletableFuture<Integer> first = new CompletableFuture<Integer>();
+		bulkhead.submit(() -> first);
+
+		List<CompletableFuture<Integer>> replies = new ArrayList<CompletableFuture<Integer>>();
+
+		for (int i = 0; i < 100000; i++) {
+			int value = i;
+			replies.add(bulkhead.submit(() -> CompletableFuture.completedFuture(value)));
+		}
+
+		first.complete(-1);
+
+		for (int i = 0; i < replies.size(); i++)
+			Assertions.assertEquals(i, replies.get(i).getNow(null));
+
+		Assertions.assertEquals(0, bulkhead.getInFlight());
+	}
+
+	@Test
+	public void testClear() {
+		ICBulkhead bulkhead = new ICBulkhead("test", 1, 10);
+
+		CompletableFuture<String> first = new CompletableFuture<String>();
+		CompletableFuture<String> reply1 = bulkhead.submit(() -> first);
+		CompletableFuture<String> reply2 = bulkhead.submit(() -> CompletableFuture.completedFuture("queued"));
+
+		bulkhead.clear();
+
+		Assertions.assertTrue(reply2.isCompletedExceptionally());
+		Assertions.assertFalse(reply1.isDone());
+
+		first.complete("first");
+
+		Assertions.assertEquals("first", reply1.join());
+	}
+
+	@Test
+	public void testTimeoutNeedsScheduler() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new ICBulkhead("test", 1, 10, ICBulkhead.WAIT, 1000, null));
+	}
+}
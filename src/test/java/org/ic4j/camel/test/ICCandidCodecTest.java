@@ -0,0 +1,92 @@
+package org.ic4j.camel.test;
+
+import java.math.BigInteger;
+import java.util.HexFormat;
+
+import org.ic4j.camel.ICCandidReader;
+import org.ic4j.camel.ICCandidWriter;
+import org.ic4j.camel.ICCodec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ICCandidCodecTest {
+
+	// record { bar : bool; foo : int } = record { bar = true; foo = 42 }
+	static final String ENTRY = "4449444c016c02d3e3aa027e868eb7027c0100012a";
+
+	@Test
+	public void testEncode() {
+		byte[] message = EntryCodec.INSTANCE.encode(new Entry(true, BigInteger.valueOf(42)));
+
+		Assertions.assertEquals(ENTRY, HexFormat.of().formatHex(message));
+		Assertions.assertEquals(new Entry(true, BigInteger.valueOf(42)), EntryCodec.INSTANCE.decode(message));
+	}
+
+	@Test
+	public void testLargeValues() {
+		BigInteger foo = BigInteger.TWO.pow(100).negate().add(BigInteger.valueOf(12345));
+
+		byte[] message = EntryCodec.INSTANCE.encode(new Entry(false, foo));
+
+		Assertions.assertEquals(new Entry(false, foo), EntryCodec.INSTANCE.decode(message));
+	}
+
+	@Test
+	public void testDecodeSubtype() {
+		// record { a : bool; bar : bool; foo : nat; 4294967280 : text }, the codec skips a and the text field and reads nat as int
+		byte[] message = HexFormat.of().parseHex("4449444c016c04617ed3e3aa027e868eb7027df0ffffff0f710100" + "00" + "01" + "07"
+				+ "03616263");
+
+		Assertions.assertEquals(new Entry(true, BigInteger.valueOf(7)), EntryCodec.INSTANCE.decode(message));
+	}
+
+	@Test
+	public void testMissingField() {
+		// record { bar : bool }
+		byte[] message = HexFormat.of().parseHex("4449444c016c01d3e3aa027e010001");
+
+		Assertions.assertThrows(IllegalArgumentException.class, () -> EntryCodec.INSTANCE.decode(message));
+	}
+
+	public record Entry(boolean bar, BigInteger foo) {
+	}
+
+	// what the maven plugin generates for the Entry type
+	public static final class EntryCodec implements ICCodec<Entry> {
+
+		public static final EntryCodec INSTANCE = new EntryCodec();
+
+		private static final byte[] HEADER = { 68, 73, 68, 76, 1, 108, 2, -45, -29, -86, 2, 126, -122, -114, -73, 2, 124, 1, 0 };
+
+		@Override
+		public Class<Entry> getType() {
+			return Entry.class;
+		}
+
+		@Override
+		public byte[] getHeader() {
+			return HEADER;
+		}
+
+		@Override
+		public void write(ICCandidWriter writer, Entry value) {
+			writer.writeBool(value.bar());
+			writer.writeInt(value.foo());
+		}
+
+		@Override
+		public Entry read(ICCandidReader reader) {
+			reader.readRecord();
+
+			reader.require(4895187L, "bar");
+			boolean f0 = reader.readBool();
+
+			reader.require(5097222L, "foo");
+			BigInteger f1 = reader.readInt();
+
+			reader.end();
+
+			return new Entry(f0, f1);
+		}
+	}
+}
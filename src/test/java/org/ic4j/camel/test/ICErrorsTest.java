@@ -0,0 +1,122 @@
+package org.ic4j.camel.test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import org.ic4j.agent.AgentError;
+import org.ic4j.camel.ICErrors;
+import org.ic4j.camel.ICRejectException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class ICErrorsTest {
+
+	@Test
+	public void testReject() {
+		Throwable transientReject = new CompletionException(reject(ICRejectException.SYS_TRANSIENT));
+
+		Assertions.assertTrue(ICErrors.isThrottled(transientReject));
+		Assertions.assertTrue(ICErrors.isNotExecuted(transientReject));
+		Assertions.assertTrue(ICErrors.isTransient(transientReject));
+
+		// the canister ran the call and trapped, a new attempt runs it again
+		Throwable canisterError = reject(ICRejectException.CANISTER_ERROR);
+
+		Assertions.assertFalse(ICErrors.isThrottled(canisterError));
+		Assertions.assertFalse(ICErrors.isNotExecuted(canisterError));
+		Assertions.assertFalse(ICErrors.isTransient(canisterError));
+	}
+
+	@Test
+	public void testHttpStatus() {
+		Throwable tooManyRequests = AgentError.create(AgentError.AgentErrorCode.HTTP_ERROR, new IOException("HTTP 429 Too Many Requests"),
+				"429");
+
+		Assertions.assertEquals(429, ICErrors.getHttpStatus(tooManyRequests));
+		Assertions.assertTrue(ICErrors.isThrottled(tooManyRequests));
+		Assertions.assertTrue(ICErrors.isNotExecuted(tooManyRequests));
+
+		Throwable unavailable = AgentError.create(AgentError.AgentErrorCode.TRANSPORT_ERROR, new IOException("Service Unavailable"),
+				"Service Unavailable");
+
+		Assertions.assertEquals(503, ICErrors.getHttpStatus(unavailable));
+		Assertions.assertTrue(ICErrors.isThrottled(unavailable));
+
+		Throwable serverError = AgentError.create(AgentError.AgentErrorCode.HTTP_ERROR, new IOException("HTTP 500 Internal Server Error"),
+				"500");
+
+		Assertions.assertEquals(500, ICErrors.getHttpStatus(serverError));
+		Assertions.assertFalse(ICErrors.isThrottled(serverError));
+
+		Throwable statusLine = AgentError.create(AgentError.AgentErrorCode.HTTP_ERROR, new IOException("HTTP/1.1 503"), "503");
+
+		Assertions.assertEquals(503, ICErrors.getHttpStatus(statusLine));
+
+		Throwable statusCode = AgentError.create(AgentError.AgentErrorCode.HTTP_ERROR, new IOException("Unexpected status code: 429"),
+				"429");
+
+		Assertions.assertEquals(429, ICErrors.getHttpStatus(statusCode));
+	}
+
+	@Test
+	public void testOtherNumberInHttpError() {
+		// a number that is not the status of the response
+		Throwable timeout = AgentError.create(AgentError.AgentErrorCode.TRANSPORT_ERROR,
+				new IOException("Request timed out after 500 ms"), "Request timed out after 500 ms");
+
+		Assertions.assertNull(ICErrors.getHttpStatus(timeout));
+		Assertions.assertFalse(ICErrors.isThrottled(timeout));
+		Assertions.assertFalse(ICErrors.isNotExecuted(timeout));
+		Assertions.assertTrue(ICErrors.isTransient(timeout));
+
+		Throwable connections = AgentError.create(AgentError.AgentErrorCode.TRANSPORT_ERROR,
+				new IOException("Pool exhausted, 429 connections leased"), "Pool exhausted, 429 connections leased");
+
+		Assertions.assertNull(ICErrors.getHttpStatus(connections));
+		Assertions.assertFalse(ICErrors.isThrottled(connections));
+	}
+
+	@Test
+	public void testStatusInMessage() {
+		// a canister reject about order 429 is no HTTP status
+		Throwable canisterReject = AgentError.create(AgentError.AgentErrorCode.REPLICA_ERROR,
+				new ICRejectException(ICRejectException.CANISTER_REJECT, "order 429 failed: 503 items out of stock"),
+				ICRejectException.CANISTER_REJECT, "order 429 failed: 503 items out of stock");
+
+		Assertions.assertNull(ICErrors.getHttpStatus(canisterReject));
+		Assertions.assertFalse(ICErrors.isThrottled(canisterReject));
+
+		Throwable decodeError = new IllegalArgumentException("Expected 429 fields, Service Unavailable field missing");
+
+		Assertions.assertNull(ICErrors.getHttpStatus(decodeError));
+		Assertions.assertFalse(ICErrors.isThrottled(decodeError));
+		Assertions.assertFalse(ICErrors.isTransient(decodeError));
+	}
+
+	@Test
+	public void testTransport() {
+		Throwable refused = new CompletionException(new ConnectException("Connection refused"));
+
+		Assertions.assertFalse(ICErrors.isThrottled(refused));
+		Assertions.assertTrue(ICErrors.isNotExecuted(refused));
+		Assertions.assertTrue(ICErrors.isTransient(refused));
+
+		// the call may have been executed before the connection broke
+		Throwable reset = new CompletionException(new IOException("Connection reset"));
+
+		Assertions.assertFalse(ICErrors.isNotExecuted(reset));
+		Assertions.assertTrue(ICErrors.isTransient(reset));
+
+		Throwable timeout = new CompletionException(new TimeoutException());
+
+		Assertions.assertFalse(ICErrors.isNotExecuted(timeout));
+		Assertions.assertTrue(ICErrors.isTransient(timeout));
+	}
+
+	private static AgentError reject(int rejectCode) {
+		return AgentError.create(AgentError.AgentErrorCode.REPLICA_ERROR, new ICRejectException(rejectCode, "reject"), rejectCode,
+				"reject");
+	}
+}
@@ -0,0 +1,129 @@
+package org.ic4j.camel.test;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.processor.state.MemoryStateRepository;
+import org.ic4j.camel.ICComponent;
+import org.ic4j.camel.ICEndpoint;
+import org.ic4j.camel.ICMappedOffsetStore;
+import org.ic4j.camel.ICMemoryOffsetStore;
+import org.ic4j.camel.ICOffsetStore;
+import org.ic4j.camel.ICStateRepositoryOffsetStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public final class ICMappedOffsetStoreTest {
+
+	static final int COPY_SIZE = 4096;
+
+	@TempDir
+	Path dir;
+
+	CamelContext context;
+
+	@BeforeEach
+	public void start() {
+		this.context = new DefaultCamelContext();
+		this.context.start();
+	}
+
+	@AfterEach
+	public void stop() {
+		this.context.stop();
+	}
+
+	@Test
+	public void testReload() {
+		Path file = this.dir.resolve("offsets");
+
+		ICMappedOffsetStore store = this.open(file);
+		store.commit("ledger/icrc3_get_blocks/route1", 41);
+		store.commit("ledger/icrc3_get_blocks/route1", 42);
+		store.commit("ledger/icrc3_get_blocks/route2", 7);
+		store.stop();
+
+		store = this.open(file);
+		Assertions.assertEquals(42L, store.load("ledger/icrc3_get_blocks/route1"));
+		Assertions.assertEquals(7L, store.load("ledger/icrc3_get_blocks/route2"));
+		Assertions.assertNull(store.load("other"));
+		store.stop();
+	}
+
+	@Test
+	public void testTornWrite() throws Exception {
+		Path file = this.dir.resolve("offsets");
+
+		ICMappedOffsetStore store = this.open(file);
+		store.commit("key", 1);
+		store.stop();
+
+		store = this.open(file);
+		store.commit("key", 2);
+		store.stop();
+
+		// the second write went to copy 1, corrupt its content
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			raf.seek(COPY_SIZE + 20);
+			raf.write(0xFF);
+		}
+
+		store = this.open(file);
+		Assertions.assertEquals(1L, store.load("key"));
+		store.stop();
+	}
+
+	@Test
+	public void testStorePerEndpoint() throws Exception {
+		ICComponent component = this.context.getComponent("ic", ICComponent.class);
+
+		String file = this.dir.resolve("offsets").toString();
+		ICEndpoint endpoint1 = this.endpoint("&offsetFile=" + file);
+		ICEndpoint endpoint2 = this.endpoint("&offsetFile=" + file + "&consumerId=other");
+
+		// consumers naming the same file share its store, restarts reuse it
+		ICOffsetStore mapped = component.getOffsetStore(endpoint1);
+		Assertions.assertTrue(mapped instanceof ICMappedOffsetStore);
+		Assertions.assertSame(mapped, component.getOffsetStore(endpoint1));
+		Assertions.assertSame(mapped, component.getOffsetStore(endpoint2));
+		Assertions.assertTrue(((ICMappedOffsetStore) mapped).isStarted());
+
+		// without a store or file the offsets outlive a consumer restart
+		ICEndpoint endpoint3 = this.endpoint("");
+		ICOffsetStore memory = component.getOffsetStore(endpoint3);
+		Assertions.assertTrue(memory instanceof ICMemoryOffsetStore);
+		memory.commit("key", 3);
+		Assertions.assertEquals(3L, component.getOffsetStore(endpoint3).load("key"));
+
+		// a store bean is left to its owner
+		ICStateRepositoryOffsetStore bean = new ICStateRepositoryOffsetStore(new MemoryStateRepository());
+		ICEndpoint endpoint4 = this.endpoint("&consumerId=bean");
+		endpoint4.setOffsetStore(bean);
+		Assertions.assertSame(bean, component.getOffsetStore(endpoint4));
+		Assertions.assertFalse(bean.isStarted());
+		bean.start();
+
+		component.stop();
+
+		Assertions.assertTrue(((ICMappedOffsetStore) mapped).isStopped());
+		Assertions.assertTrue(bean.isStarted());
+		bean.stop();
+	}
+
+	private ICEndpoint endpoint(String options) {
+		return this.context.getEndpoint("ic:query?url=http://localhost:4943&canisterId=ryjl3-tyaaa-aaaaa-aaaba-cai&consumerMode=blocks"
+				+ options, ICEndpoint.class);
+	}
+
+	private ICMappedOffsetStore open(Path file) {
+		ICMappedOffsetStore store = new ICMappedOffsetStore(file, COPY_SIZE, 60000);
+		store.setCamelContext(this.context);
+		store.start();
+		return store;
+	}
+}
@@ -0,0 +1,58 @@
+package org.ic4j.camel.test;
+
+import org.ic4j.camel.ICBackoffPollingStrategy;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class ICPollingStrategyTest {
+
+	@Test
+	public void testFixed() {
+		ICBackoffPollingStrategy strategy = ICBackoffPollingStrategy.fixed(5000, 60000);
+
+		Assertions.assertEquals(0, strategy.nextDelay(0));
+		Assertions.assertEquals(5000, strategy.nextDelay(1));
+		Assertions.assertEquals(5000, strategy.nextDelay(10));
+		Assertions.assertEquals(60000, strategy.getTimeout());
+	}
+
+	@Test
+	public void testExponential() {
+		ICBackoffPollingStrategy strategy = new ICBackoffPollingStrategy(ICBackoffPollingStrategy.EXPONENTIAL, 500, 250, 2000, 2.0, 0, 30000);
+
+		Assertions.assertEquals(500, strategy.nextDelay(0));
+		Assertions.assertEquals(250, strategy.nextDelay(1));
+		Assertions.assertEquals(500, strategy.nextDelay(2));
+		Assertions.assertEquals(1000, strategy.nextDelay(3));
+		Assertions.assertEquals(2000, strategy.nextDelay(4));
+		Assertions.assertEquals(2000, strategy.nextDelay(20));
+	}
+
+	@Test
+	public void testFibonacci() {
+		ICBackoffPollingStrategy strategy = new ICBackoffPollingStrategy(ICBackoffPollingStrategy.FIBONACCI, 0, 100, 1000, 1, 0, 30000);
+
+		Assertions.assertEquals(100, strategy.nextDelay(1));
+		Assertions.assertEquals(100, strategy.nextDelay(2));
+		Assertions.assertEquals(200, strategy.nextDelay(3));
+		Assertions.assertEquals(300, strategy.nextDelay(4));
+		Assertions.assertEquals(500, strategy.nextDelay(5));
+		Assertions.assertEquals(1000, strategy.nextDelay(10));
+	}
+
+	@Test
+	public void testJitter() {
+		ICBackoffPollingStrategy strategy = new ICBackoffPollingStrategy(ICBackoffPollingStrategy.EXPONENTIAL, 0, 1000, 1000, 2.0, 0.2, 30000);
+
+		for (int i = 0; i < 100; i++) {
+			long delay = strategy.nextDelay(1);
+			Assertions.assertTrue(delay >= 800 && delay <= 1000, "delay " + delay);
+		}
+	}
+
+	@Test
+	public void testInvalidBackoff() {
+		Assertions.assertThrows(IllegalArgumentException.class,
+				() -> new ICBackoffPollingStrategy("linear", 0, 100, 1000, 1, 0, 30000));
+	}
+}
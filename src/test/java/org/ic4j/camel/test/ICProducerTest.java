@@ -0,0 +1,343 @@
+package org.ic4j.camel.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.ic4j.agent.AgentError;
+import org.ic4j.camel.ICComponent;
+import org.ic4j.camel.ICEndpoint;
+import org.ic4j.camel.ICProducer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs the producer against a stub replica that accepts update calls and
+ * answers queries with 503, so no call needs a certified reply.
+ */
+public class ICProducerTest {
+
+	static final String CANISTER = "ryjl3-tyaaa-aaaaa-aaaba-cai";
+
+	// self-described CBOR map { "ic_api_version": "0.18.0", "impl_version": "stub" }
+	static final byte[] STATUS = HexFormat.of()
+			.parseHex("d9d9f7a26e69635f6170695f76657273696f6e66302e31382e306c696d706c5f76657273696f6e6473747562");
+
+	static final String ARG = "hello";
+
+	CamelContext context;
+
+	HttpServer replica;
+
+	ExecutorService replicaExecutor;
+
+	// request bodies of the update calls
+	List<byte[]> calls = new CopyOnWriteArrayList<byte[]>();
+
+	AtomicInteger queries = new AtomicInteger();
+
+	volatile CountDownLatch queryLatch = new CountDownLatch(0);
+
+	// HTTP status of the next update calls, 202 when empty
+	Queue<Integer> callStatuses = new ConcurrentLinkedQueue<Integer>();
+
+	volatile CountDownLatch callLatch = new CountDownLatch(0);
+
+	@BeforeEach
+	public void start() throws IOException {
+		this.context = new DefaultCamelContext();
+		this.context.start();
+
+		this.replicaExecutor = Executors.newCachedThreadPool();
+		this.replica = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.replica.setExecutor(this.replicaExecutor);
+
+		this.replica.createContext("/api/v2/status", exchange -> {
+			exchange.getResponseHeaders().add("Content-Type", "application/cbor");
+			exchange.sendResponseHeaders(200, STATUS.length);
+
+			try (OutputStream body = exchange.getResponseBody()) {
+				body.write(STATUS);
+			}
+		});
+
+		this.replica.createContext("/api/", exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			byte[] request = exchange.getRequestBody().readAllBytes();
+
+			if (path.endsWith("/call")) {
+				this.calls.add(request);
+				await(this.callLatch);
+
+				Integer status = this.callStatuses.poll();
+				respond(exchange, status == null ? 202 : status);
+			} else if (path.endsWith("/query")) {
+				this.queries.incrementAndGet();
+				await(this.queryLatch);
+
+				respond(exchange, 503);
+			} else
+				respond(exchange, 404);
+		});
+
+		this.replica.start();
+	}
+
+	@AfterEach
+	public void stop() {
+		this.context.stop();
+		this.replica.stop(0);
+		this.replicaExecutor.shutdownNow();
+	}
+
+	@Test
+	public void testAsyncCompletion() throws Exception {
+		ICProducer producer = this.producer("ic:oneway?url=" + this.url() + "&canisterId=" + CANISTER + "&method=log");
+
+		Exchange exchange = this.exchange(ARG);
+		CompletableFuture<Boolean> done = new CompletableFuture<Boolean>();
+
+		// the calling thread is released before the replica answers
+		Assertions.assertFalse(producer.process(exchange, done::complete));
+		Assertions.assertFalse(done.get(10, TimeUnit.SECONDS));
+
+		Assertions.assertNull(exchange.getException());
+		Assertions.assertNull(exchange.getMessage().getBody());
+
+		// the encoded body is the arg of the call envelope
+		Assertions.assertEquals(1, this.calls.size());
+		Assertions.assertTrue(contains(this.calls.get(0), ARG.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void testVirtualExecution() throws Exception {
+		ICProducer producer = this.producer("ic:oneway?url=" + this.url() + "&canisterId=" + CANISTER + "&method=log&executionMode=virtual");
+
+		Exchange exchange = this.exchange(ARG);
+		CompletableFuture<Boolean> virtual = new CompletableFuture<Boolean>();
+
+		Assertions.assertFalse(producer.process(exchange, doneSync -> virtual.complete(Thread.currentThread().isVirtual())));
+		Assertions.assertTrue(virtual.get(10, TimeUnit.SECONDS));
+		Assertions.assertNull(exchange.getException());
+	}
+
+	@Test
+	public void testAsyncError() throws Exception {
+		ICProducer producer = this.producer("ic:query?url=http://127.0.0.1:" + freePort() + "&canisterId=" + CANISTER + "&method=get");
+
+		Exchange exchange = this.exchange(ARG);
+		CompletableFuture<Boolean> done = new CompletableFuture<Boolean>();
+
+		Assertions.assertFalse(producer.process(exchange, done::complete));
+		Assertions.assertFalse(done.get(10, TimeUnit.SECONDS));
+
+		Assertions.assertTrue(exchange.getException() instanceof AgentError);
+	}
+
+	@Test
+	public void testSynchronousError() throws Exception {
+		// neither the endpoint nor the headers name the method
+		ICProducer producer = this.producer("ic:query?url=" + this.url() + "&canisterId=" + CANISTER);
+
+		Exchange exchange = this.exchange(ARG);
+		CompletableFuture<Boolean> done = new CompletableFuture<Boolean>();
+
+		Assertions.assertTrue(producer.process(exchange, done::complete));
+		Assertions.assertTrue(done.getNow(false));
+
+		Assertions.assertTrue(exchange.getException() instanceof AgentError);
+		Assertions.assertEquals(0, this.queries.get());
+	}
+
+	@Test
+	public void testResubmitNotExecuted() throws Exception {
+		ICProducer producer = this.producer("ic:oneway?url=" + this.url() + "&canisterId=" + CANISTER
+				+ "&method=log&retryAttempts=2&retryInitialDelay=10");
+
+		// the boundary node throttled the first submission, it was not executed
+		this.callStatuses.add(503);
+
+		Exchange exchange = this.exchange(ARG);
+		CompletableFuture<Boolean> done = new CompletableFuture<Boolean>();
+
+		producer.process(exchange, done::complete);
+		done.get(10, TimeUnit.SECONDS);
+
+		Assertions.assertNull(exchange.getException());
+		Assertions.assertEquals(2, this.calls.size());
+	}
+
+	@Test
+	public void testFinalErrorNotResubmitted() throws Exception {
+		ICProducer producer = this.producer("ic:oneway?url=" + this.url() + "&canisterId=" + CANISTER
+				+ "&method=log&retryAttempts=2&retryInitialDelay=10");
+
+		// the call may have been executed, a new submission could run it twice
+		this.callStatuses.add(400);
+
+		Exchange exchange = this.exchange(ARG);
+		CompletableFuture<Boolean> done = new CompletableFuture<Boolean>();
+
+		producer.process(exchange, done::complete);
+		done.get(10, TimeUnit.SECONDS);
+
+		Assertions.assertTrue(exchange.getException() instanceof AgentError);
+		Assertions.assertEquals(1, this.calls.size());
+	}
+
+	@Test
+	public void testQueryCoalescing() throws Exception {
+		ICProducer producer = this.producer("ic:query?url=" + this.url() + "&canisterId=" + CANISTER + "&method=get&queryCoalescing=true");
+
+		this.queryLatch = new CountDownLatch(1);
+
+		List<Exchange> exchanges = new ArrayList<Exchange>();
+		List<CompletableFuture<Boolean>> replies = new ArrayList<CompletableFuture<Boolean>>();
+
+		// 3 identical queries and a different one
+		for (String arg : List.of(ARG, ARG, ARG, "world")) {
+			Exchange exchange = this.exchange(arg);
+			CompletableFuture<Boolean> done = new CompletableFuture<Boolean>();
+			producer.process(exchange, done::complete);
+
+			exchanges.add(exchange);
+			replies.add(done);
+		}
+
+		waitFor(() -> this.queries.get() == 2);
+		Thread.sleep(100);
+
+		this.queryLatch.countDown();
+
+		CompletableFuture.allOf(replies.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+		Assertions.assertEquals(2, this.queries.get());
+
+		// every joined exchange gets the failure of the shared query
+		for (Exchange exchange : exchanges)
+			Assertions.assertTrue(exchange.getException() instanceof AgentError);
+	}
+
+	@Test
+	public void testBulkheads() throws Exception {
+		ICComponent component = new ICComponent();
+		component.setUpdateMaxConcurrency(1);
+		this.context.addComponent("icb", component);
+
+		ICProducer updates = this.producer("icb:oneway?url=" + this.url() + "&canisterId=" + CANISTER + "&method=log&executionMode=bulkhead");
+		ICProducer queries = this.producer("icb:query?url=" + this.url() + "&canisterId=" + CANISTER + "&method=get&executionMode=bulkhead");
+
+		this.callLatch = new CountDownLatch(1);
+
+		CompletableFuture<Boolean> update1 = new CompletableFuture<Boolean>();
+		CompletableFuture<Boolean> update2 = new CompletableFuture<Boolean>();
+		updates.process(this.exchange(ARG), update1::complete);
+		updates.process(this.exchange(ARG), update2::complete);
+
+		waitFor(() -> this.calls.size() == 1);
+
+		// the second update waits for the slot held by the first one
+		Assertions.assertEquals(1, component.getUpdateBulkhead().getInFlight());
+		Assertions.assertEquals(1, component.getUpdateBulkhead().getQueueDepth());
+
+		// queries have their own bulkhead
+		CompletableFuture<Boolean> query = new CompletableFuture<Boolean>();
+		queries.process(this.exchange(ARG), query::complete);
+		query.get(10, TimeUnit.SECONDS);
+
+		Assertions.assertEquals(1, this.queries.get());
+		Assertions.assertEquals(1, this.calls.size());
+
+		this.callLatch.countDown();
+
+		update1.get(10, TimeUnit.SECONDS);
+		update2.get(10, TimeUnit.SECONDS);
+
+		Assertions.assertEquals(2, this.calls.size());
+		Assertions.assertEquals(0, component.getUpdateBulkhead().getInFlight());
+	}
+
+	private ICProducer producer(String uri) throws Exception {
+		ICProducer producer = (ICProducer) this.context.getEndpoint(uri, ICEndpoint.class).createProducer();
+		producer.start();
+
+		return producer;
+	}
+
+	private Exchange exchange(Object body) {
+		Exchange exchange = new DefaultExchange(this.context);
+		exchange.getIn().setBody(body);
+
+		return exchange;
+	}
+
+	private String url() {
+		return "http://127.0.0.1:" + this.replica.getAddress().getPort();
+	}
+
+	private static void respond(HttpExchange exchange, int status) throws IOException {
+		byte[] body = status == 503 ? "Service Unavailable".getBytes(StandardCharsets.US_ASCII) : new byte[0];
+
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline)
+			Thread.sleep(10);
+
+		Assertions.assertTrue(condition.getAsBoolean());
+	}
+
+	private static boolean contains(byte[] bytes, byte[] part) {
+		for (int i = 0; i + part.length <= bytes.length; i++)
+			if (Arrays.equals(bytes, i, i + part.length, part, 0, part.length))
+				return true;
+
+		return false;
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
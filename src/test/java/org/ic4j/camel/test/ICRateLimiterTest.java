@@ -0,0 +1,84 @@
+package org.ic4j.camel.test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.ic4j.camel.ICRateLimiter;
+import org.ic4j.camel.ICRejectException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class ICRateLimiterTest {
+
+	@Test
+	public void testAdditiveIncrease() {
+		ICRateLimiter limiter = new ICRateLimiter("test", 10, 1, 100, 0.5);
+
+		Assertions.assertEquals("ok", limiter.submit(() -> CompletableFuture.completedFuture("ok")).join());
+
+		Assertions.assertEquals(10.1, limiter.getRate(), 1e-9);
+
+		for (int i = 0; i < 9; i++)
+			limiter.submit(() -> CompletableFuture.completedFuture("ok")).join();
+
+		// about one call per second more after one second of successes
+		Assertions.assertTrue(limiter.getRate() > 10.9 && limiter.getRate() < 11);
+	}
+
+	@Test
+	public void testMultiplicativeDecrease() {
+		ICRateLimiter limiter = new ICRateLimiter("test", 100, 1, 100, 0.5);
+
+		Assertions.assertThrows(CompletionException.class, () -> limiter.submit(ICRateLimiterTest::transientReject).join());
+
+		Assertions.assertEquals(50, limiter.getRate(), 1e-9);
+		Assertions.assertEquals(1L, limiter.getThrottledCount());
+
+		// errors of the same overload only count once per second
+		Assertions.assertThrows(CompletionException.class, () -> limiter.submit(ICRateLimiterTest::transientReject).join());
+
+		Assertions.assertEquals(50, limiter.getRate(), 1e-9);
+		Assertions.assertEquals(2L, limiter.getThrottledCount());
+	}
+
+	@Test
+	public void testOtherErrorsKeepRate() {
+		ICRateLimiter limiter = new ICRateLimiter("test", 100, 1, 100, 0.5);
+
+		Assertions.assertThrows(CompletionException.class, () -> limiter.submit(() -> CompletableFuture.<String>failedFuture(
+				new ICRejectException(ICRejectException.CANISTER_ERROR, "trapped"))).join());
+
+		Assertions.assertEquals(100, limiter.getRate(), 1e-9);
+		Assertions.assertEquals(0L, limiter.getThrottledCount());
+	}
+
+	@Test
+	public void testMinRate() {
+		ICRateLimiter limiter = new ICRateLimiter("test", 1.5, 1, 100, 0.5);
+
+		Assertions.assertThrows(CompletionException.class, () -> limiter.submit(ICRateLimiterTest::transientReject).join());
+
+		Assertions.assertEquals(1, limiter.getRate(), 1e-9);
+	}
+
+	@Test
+	public void testMaxDelay() {
+		// a slot every 100 ms, calls may wait 250 ms
+		ICRateLimiter limiter = new ICRateLimiter("test", 10, 1, 10, 0.5, 250);
+
+		for (int i = 0; i < 3; i++)
+			limiter.submit(() -> new CompletableFuture<String>());
+
+		CompletableFuture<String> reply = limiter.submit(() -> CompletableFuture.completedFuture("late"));
+
+		CompletionException e = Assertions.assertThrows(CompletionException.class, () -> reply.join());
+		Assertions.assertTrue(e.getCause() instanceof RejectedExecutionException);
+		Assertions.assertEquals(1L, limiter.getRejectedCount());
+		Assertions.assertEquals(10, limiter.getRate(), 1e-9);
+	}
+
+	private static CompletableFuture<String> transientReject() {
+		return CompletableFuture.failedFuture(new ICRejectException(ICRejectException.SYS_TRANSIENT, "busy"));
+	}
+}
@@ -0,0 +1,61 @@
+package org.ic4j.camel.test;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.ResolveEndpointFailedException;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.ic4j.agent.http.ReplicaJavaHttpTransport;
+import org.ic4j.camel.ICEndpoint;
+import org.ic4j.camel.ICTransportFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ICTransportOptionsTest {
+
+	static final String URI = "ic:query?url=http://localhost:4943&canisterId=ryjl3-tyaaa-aaaaa-aaaba-cai&method=get";
+
+	CamelContext context;
+
+	@BeforeEach
+	public void start() {
+		this.context = new DefaultCamelContext();
+		this.context.start();
+	}
+
+	@AfterEach
+	public void stop() {
+		this.context.stop();
+	}
+
+	@Test
+	public void testJavaTransport() {
+		Assertions.assertThrows(ResolveEndpointFailedException.class, () -> this.context.getEndpoint(URI + "&transportTimeout=10"));
+		Assertions.assertThrows(ResolveEndpointFailedException.class,
+				() -> this.context.getEndpoint(URI + "&transportType=java&transportMaxConnections=10"));
+	}
+
+	@Test
+	public void testOkHttpTransport() {
+		Assertions.assertNotNull(this.context.getEndpoint(URI + "&transportType=okhttp&transportTimeout=10"));
+		Assertions.assertThrows(ResolveEndpointFailedException.class,
+				() -> this.context.getEndpoint(URI + "&transportType=okhttp&transportMaxConnectionsPerRoute=10"));
+	}
+
+	@Test
+	public void testApacheTransport() {
+		Assertions.assertNotNull(this.context.getEndpoint(
+				URI + "&transportType=apache&transportMaxConnections=10&transportConnectionTimeToLive=30&transportTimeout=10"));
+	}
+
+	@Test
+	public void testTransportFactory() {
+		// the factory decides what to do with the options
+		ICTransportFactory factory = (endpoint, url) -> ReplicaJavaHttpTransport.create(url);
+		this.context.getRegistry().bind("factory", factory);
+
+		ICEndpoint endpoint = this.context.getEndpoint(URI + "&transportFactory=#factory&transportTimeout=10", ICEndpoint.class);
+
+		Assertions.assertSame(factory, endpoint.getTransportFactory());
+	}
+}